@@ -0,0 +1,350 @@
+package com.github.gcacace.signaturepad.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Converts recorded signatures to SVG and PNG files in parallel, on a
+ * {@link ForkJoinPool}, for post-processing archives after capture.
+ *
+ * <p>Each recording is replayed through a {@link StrokeEngine}, which feeds
+ * the touch samples the way the pad does, so it yields the same curves and
+ * SVG the pad produced when they were drawn, and the curves are stamped into
+ * a {@link CoverageRaster} for the PNG. Every pool thread
+ * reuses its own engine and raster from one recording to the next.
+ *
+ * <p>Recordings are pulled from the {@link Source} only as fast as they are
+ * converted: at most {@link #setMaxInFlight(int)} are read ahead, so an
+ * archive larger than memory streams through a bounded amount of it.
+ */
+public class BatchConverter {
+
+    /**
+     * Write an SVG document per recording, named {@code <name>.svg}.
+     */
+    public static final int FORMAT_SVG = 1;
+
+    /**
+     * Write a PNG per recording, named {@code <name>.png}.
+     */
+    public static final int FORMAT_PNG = 2;
+
+    /**
+     * A recorded signature: the samples of all its strokes, one after the
+     * other, with the index one past the last sample of each stroke in
+     * {@link #strokeEnds}. Coordinates are in pixels of a pad of
+     * {@link #width} x {@link #height}. The samples are the touch samples
+     * the pad received, unless {@link #setRecordedSamples(boolean)} says
+     * they are the ones it recorded.
+     */
+    public static final class Recording {
+        public final String name;
+        public final int width;
+        public final int height;
+        public final float[] xs;
+        public final float[] ys;
+        public final long[] timestampsNanos;
+        /** The pen pressures, or {@code null} if none were recorded. */
+        public final float[] pressures;
+        public final int[] strokeEnds;
+
+        public Recording(String name, int width, int height, float[] xs, float[] ys,
+                         long[] timestampsNanos, float[] pressures, int[] strokeEnds) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.xs = xs;
+            this.ys = ys;
+            this.timestampsNanos = timestampsNanos;
+            this.pressures = pressures;
+            this.strokeEnds = strokeEnds;
+        }
+    }
+
+    /**
+     * Where the recordings come from. Called from the thread running
+     * {@link #run}, one recording at a time.
+     */
+    public interface Source {
+        /**
+         * @return the next recording, or {@code null} once there are none left.
+         */
+        Recording next() throws IOException;
+    }
+
+    /**
+     * Where the converted files go. Called from the pool threads.
+     */
+    public interface Sink {
+        /**
+         * @param fileName the recording's name with the format's extension.
+         * @return a stream for the file, closed once it is written.
+         */
+        OutputStream open(String fileName) throws IOException;
+    }
+
+    /**
+     * @return a sink that writes the files into {@code directory}.
+     */
+    public static Sink directory(final File directory) {
+        return new Sink() {
+            @Override
+            public OutputStream open(String fileName) throws IOException {
+                return new BufferedOutputStream(new FileOutputStream(new File(directory, fileName)));
+            }
+        };
+    }
+
+    /**
+     * The outcome of a {@link #run}.
+     */
+    public static final class Stats {
+        /** Recordings converted to every requested format. */
+        public final long converted;
+        /** Recordings that could not be converted or written. */
+        public final long failed;
+        public final long elapsedNanos;
+        /** The first failure, or {@code null} if there was none. */
+        public final Throwable firstFailure;
+
+        public Stats(long converted, long failed, long elapsedNanos, Throwable firstFailure) {
+            this.converted = converted;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+            this.firstFailure = firstFailure;
+        }
+
+        /**
+         * @return the converted recordings per second of wall-clock time.
+         */
+        public double getSignaturesPerSecond() {
+            return elapsedNanos > 0 ? converted * 1e9 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{converted=" + converted + ", failed=" + failed
+                    + ", elapsedMillis=" + elapsedNanos / 1000000L
+                    + ", signaturesPerSecond=" + String.format("%.1f", getSignaturesPerSecond()) + "}";
+        }
+    }
+
+    private final float mMinWidth;
+    private final float mMaxWidth;
+    private final float mVelocityFilterWeight;
+    private int mWidthMode = StrokeFitter.WIDTH_MODE_VELOCITY;
+    private float mMinDistance;
+    private long mMinIntervalNanos;
+    private int mFormats = FORMAT_SVG;
+    private int mPenColor = 0xff000000;
+    private int mBackground = 0xffffffff;
+    private int mMaxInFlight = 64;
+    private boolean mRecordedSamples;
+
+    /**
+     * @param minWidth             the thinnest stroke, in pixels, as configured
+     *                             on the pad the recordings come from.
+     * @param maxWidth             the thickest stroke, in pixels.
+     * @param velocityFilterWeight the weight of the newest velocity against the
+     *                             previous one, from 0 to 1.
+     */
+    public BatchConverter(float minWidth, float maxWidth, float velocityFilterWeight) {
+        mMinWidth = minWidth;
+        mMaxWidth = maxWidth;
+        mVelocityFilterWeight = velocityFilterWeight;
+    }
+
+    /**
+     * @param widthMode {@link StrokeFitter#WIDTH_MODE_VELOCITY} or
+     *                  {@link StrokeFitter#WIDTH_MODE_PRESSURE}.
+     */
+    public void setWidthMode(int widthMode) {
+        if (widthMode != StrokeFitter.WIDTH_MODE_VELOCITY && widthMode != StrokeFitter.WIDTH_MODE_PRESSURE) {
+            throw new IllegalArgumentException("unknown width mode: " + widthMode);
+        }
+        mWidthMode = widthMode;
+    }
+
+    /**
+     * Decimates the touch samples like the pad did, see
+     * {@link SampleDecimator}. Recorded samples are not decimated again.
+     */
+    public void setSampleDecimation(float minDistance, long minIntervalNanos) {
+        mMinDistance = minDistance;
+        mMinIntervalNanos = minIntervalNanos;
+    }
+
+    /**
+     * @param recordedSamples {@code true} if the recordings hold the samples
+     *                        the pad recorded, from {@code getStrokes()} or
+     *                        a {@link StrokeCodec} stream, rather than its
+     *                        touch samples. They are replayed with
+     *                        {@link StrokeEngine#addRecordedStroke}.
+     */
+    public void setRecordedSamples(boolean recordedSamples) {
+        mRecordedSamples = recordedSamples;
+    }
+
+    /**
+     * @param formats {@link #FORMAT_SVG}, {@link #FORMAT_PNG} or both.
+     */
+    public void setFormats(int formats) {
+        if (formats == 0 || (formats & ~(FORMAT_SVG | FORMAT_PNG)) != 0) {
+            throw new IllegalArgumentException("unknown formats: " + formats);
+        }
+        mFormats = formats;
+    }
+
+    /**
+     * @param penColor   the ARGB color of the ink in the PNG.
+     * @param background the ARGB color behind it, or a fully transparent one
+     *                   for a transparent PNG.
+     */
+    public void setPngColors(int penColor, int background) {
+        mPenColor = penColor;
+        mBackground = background;
+    }
+
+    /**
+     * @param maxInFlight how many recordings may have been read from the
+     *                    source and not yet written.
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be > 0, was " + maxInFlight);
+        }
+        mMaxInFlight = maxInFlight;
+    }
+
+    /**
+     * Converts every recording of {@code source} on {@code pool} and writes
+     * the files to {@code sink}. Returns once all of them are written. A
+     * recording that fails is counted and skipped; the others go on.
+     */
+    public Stats run(ForkJoinPool pool, Source source, final Sink sink) throws IOException, InterruptedException {
+        final int maxInFlight = mMaxInFlight;
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        final AtomicLong converted = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final Throwable[] firstFailure = new Throwable[1];
+        // Set up on first use by each pool thread, and kept for the run.
+        final ThreadLocal<Converter> converters = new ThreadLocal<Converter>() {
+            @Override
+            protected Converter initialValue() {
+                return new Converter();
+            }
+        };
+
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                inFlight.acquire();
+                final Recording recording;
+                try {
+                    recording = source.next();
+                } catch (IOException | RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                if (recording == null) {
+                    inFlight.release();
+                    break;
+                }
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            converters.get().convert(recording, sink);
+                            converted.incrementAndGet();
+                        } catch (Throwable t) {
+                            if (failed.getAndIncrement() == 0) {
+                                synchronized (firstFailure) {
+                                    firstFailure[0] = t;
+                                }
+                            }
+                        } finally {
+                            inFlight.release();
+                        }
+                    }
+                });
+            }
+        } finally {
+            // Every permit back means every recording handed out is written.
+            inFlight.acquireUninterruptibly(maxInFlight);
+        }
+        long elapsed = System.nanoTime() - start;
+        synchronized (firstFailure) {
+            return new Stats(converted.get(), failed.get(), elapsed, firstFailure[0]);
+        }
+    }
+
+    /**
+     * What each pool thread reuses from one recording to the next.
+     */
+    private final class Converter implements StrokeEngine.CurveSink {
+        private final StrokeEngine mEngine;
+        private final CoverageRaster mRaster = new CoverageRaster();
+        private final boolean mPng = (mFormats & FORMAT_PNG) != 0;
+        private final boolean mSvg = (mFormats & FORMAT_SVG) != 0;
+        private final int mPenColorSnapshot = mPenColor;
+        private final int mBackgroundSnapshot = mBackground;
+        private final boolean mRecordedSamplesSnapshot = mRecordedSamples;
+
+        Converter() {
+            StrokeFitter fitter = new StrokeFitter(mMinWidth, mMaxWidth, mVelocityFilterWeight);
+            fitter.setWidthMode(mWidthMode);
+            mEngine = new StrokeEngine(new SampleDecimator(mMinDistance, mMinIntervalNanos),
+                    fitter, new SvgBuilder());
+        }
+
+        void convert(Recording recording, Sink sink) throws IOException {
+            mEngine.reset();
+            if (mPng) {
+                mRaster.reset(Math.max(recording.width, 1), Math.max(recording.height, 1));
+            }
+            int start = 0;
+            for (int end : recording.strokeEnds) {
+                if (mRecordedSamplesSnapshot) {
+                    mEngine.addRecordedStroke(recording.xs, recording.ys, recording.timestampsNanos,
+                            recording.pressures, start, end - start, mPng ? this : null);
+                } else {
+                    mEngine.addStroke(recording.xs, recording.ys, recording.timestampsNanos,
+                            recording.pressures, start, end - start, mPng ? this : null);
+                }
+                start = end;
+            }
+            if (mSvg) {
+                OutputStream out = sink.open(recording.name + ".svg");
+                try {
+                    Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                    mEngine.writeSvg(writer, recording.width, recording.height);
+                    writer.flush();
+                } finally {
+                    out.close();
+                }
+            }
+            if (mPng) {
+                OutputStream out = sink.open(recording.name + ".png");
+                try {
+                    mRaster.writePng(out, mPenColorSnapshot, mBackgroundSnapshot);
+                } finally {
+                    out.close();
+                }
+            }
+        }
+
+        @Override
+        public void onCurve(Bezier curve, float startWidth, float endWidth, int caps) {
+            mRaster.drawCurve(curve, startWidth, endWidth, caps);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.github.gcacace.signaturepad.utils;
+
+/**
+ * Walks a variable-width Bezier segment one round stamp at a time, with the
+ * stamps only as close together as their width requires.
+ *
+ * <p>The points are computed by adaptive forward differencing: each step adds
+ * the forward differences of the cubic to the previous point instead of
+ * evaluating the polynomial again, and the step is halved or doubled so that
+ * the curve between two stamps is never longer than {@link #spacing(float)}
+ * of the thinner of the two. The length of each step is bounded by the control
+ * polygon of its piece of the curve, so a step cannot skip over a tight turn.
+ *
+ * <p>The width follows the same {@code startWidth + t^3 * (endWidth - startWidth)}
+ * profile as {@link StrokeOutline}. The instance is reused from segment to
+ * segment and does not allocate.
+ */
+public class BezierSampler {
+
+    /**
+     * The initial step in fixed point units of the curve parameter, so that
+     * halving and doubling it keep the position exact and the walk ends on
+     * {@code t = 1}. It can be halved this many times over.
+     */
+    private static final int INITIAL_STEP = 1 << 8;
+    private static final int MAX_INITIAL_STEPS = 1 << 16;
+
+    private float mStartWidth;
+    private float mWidthDelta;
+    private float mEndX;
+    private float mEndY;
+    private boolean mIncludeEnd;
+
+    private int mPosition;
+    private int mEnd;
+    private int mStep;
+    private boolean mEmitted;
+
+    private float mX;
+    private float mY;
+    private float mWidth;
+    private float mDx1;
+    private float mDy1;
+    private float mDx2;
+    private float mDy2;
+    private float mDx3;
+    private float mDy3;
+
+    private int mSteps;
+
+    /**
+     * The widest spacing that keeps a row of round dots of the given diameter
+     * looking like a solid line: the edge between two neighbouring dots dips
+     * by at most a quarter of a pixel. Never less than one pixel.
+     */
+    public static float spacing(float width) {
+        return width > 1.25f ? (float) Math.sqrt(width - 0.25f) : 1f;
+    }
+
+    /**
+     * Starts walking a segment. The first {@link #next()} returns its start.
+     *
+     * @param includeEnd also stamp the end of the segment, {@code t = 1}. The
+     *                   next segment of a stroke starts there, so only the
+     *                   last one of a stroke needs it.
+     * @return {@code false} if the segment has no length (e.g. a tap), in which
+     * case there is nothing to walk.
+     */
+    public boolean start(Bezier curve, float startWidth, float endWidth, boolean includeEnd) {
+        float sX = curve.startPoint.x;
+        float sY = curve.startPoint.y;
+        float c1X = curve.control1.x;
+        float c1Y = curve.control1.y;
+        float c2X = curve.control2.x;
+        float c2Y = curve.control2.y;
+        float eX = curve.endPoint.x;
+        float eY = curve.endPoint.y;
+
+        mStartWidth = startWidth;
+        mWidthDelta = endWidth - startWidth;
+        mEndX = eX;
+        mEndY = eY;
+        mIncludeEnd = includeEnd;
+        mSteps = 0;
+
+        // The curve never moves faster than three times the longest edge of
+        // its control polygon per unit of t, so uniform steps of this count are
+        // short enough everywhere and mostly only need doubling from there.
+        float maxSpeed = 3 * Math.max(distance(sX, sY, c1X, c1Y), Math.max(
+                distance(c1X, c1Y, c2X, c2Y), distance(c2X, c2Y, eX, eY)));
+        if (maxSpeed == 0) {
+            mPosition = 0;
+            mEnd = 0;
+            mEmitted = true;
+            mIncludeEnd = false;
+            return false;
+        }
+        int steps = (int) Math.min(Math.max(
+                Math.ceil(maxSpeed / spacing(Math.min(startWidth, endWidth))), 1),
+                MAX_INITIAL_STEPS);
+        float h = 1f / steps;
+
+        // Power basis a*t + b*t^2 + c*t^3 and its forward differences for a
+        // step of h.
+        float aX = 3 * (c1X - sX);
+        float aY = 3 * (c1Y - sY);
+        float bX = 3 * (c2X - 2 * c1X + sX);
+        float bY = 3 * (c2Y - 2 * c1Y + sY);
+        float cX = eX - 3 * c2X + 3 * c1X - sX;
+        float cY = eY - 3 * c2Y + 3 * c1Y - sY;
+        float hh = h * h;
+        float hhh = hh * h;
+        mX = sX;
+        mY = sY;
+        mDx1 = aX * h + bX * hh + cX * hhh;
+        mDy1 = aY * h + bY * hh + cY * hhh;
+        mDx2 = 2 * bX * hh + 6 * cX * hhh;
+        mDy2 = 2 * bY * hh + 6 * cY * hhh;
+        mDx3 = 6 * cX * hhh;
+        mDy3 = 6 * cY * hhh;
+        mPosition = 0;
+        mEnd = steps * INITIAL_STEP;
+        mStep = INITIAL_STEP;
+        mEmitted = false;
+        return true;
+    }
+
+    /**
+     * Moves to the next stamp.
+     *
+     * @return {@code false} once the segment is done.
+     */
+    public boolean next() {
+        if (mEmitted) {
+            if (mPosition + mStep >= mEnd) {
+                if (!mIncludeEnd || mPosition == mEnd) {
+                    mPosition = mEnd;
+                    return false;
+                }
+                // Land on the end point itself rather than on the sum of the
+                // differences, which carries their rounding.
+                mX = mEndX;
+                mY = mEndY;
+                mPosition = mEnd;
+                mWidth = width(mEnd);
+                mSteps++;
+                return true;
+            }
+            mX += mDx1;
+            mY += mDy1;
+            mDx1 += mDx2;
+            mDy1 += mDy2;
+            mDx2 += mDx3;
+            mDy2 += mDy3;
+            mPosition += mStep;
+        }
+        mEmitted = true;
+        mWidth = width(mPosition);
+        adaptStep();
+        mSteps++;
+        return true;
+    }
+
+    public float getX() {
+        return mX;
+    }
+
+    public float getY() {
+        return mY;
+    }
+
+    /**
+     * @return the stroke width at the current stamp.
+     */
+    public float getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return the curve parameter of the current stamp, from 0 to 1.
+     */
+    public float getT() {
+        return (float) mPosition / mEnd;
+    }
+
+    /**
+     * @return the number of stamps returned so far for this segment.
+     */
+    public int getSteps() {
+        return mSteps;
+    }
+
+    /**
+     * Picks the step from the current stamp to the next one: halves it until
+     * that piece of the curve is short enough, otherwise doubles it once if
+     * twice the step still is.
+     */
+    private void adaptStep() {
+        while (mStep > 1 && (mPosition + mStep > mEnd
+                || stepLength(mDx1, mDy1, mDx2, mDy2, mDx3, mDy3)
+                > spacing(Math.min(mWidth, width(mPosition + mStep))))) {
+            halveStep();
+        }
+        // Doubling is only allowed where the longer step keeps the walk on
+        // its grid, so it still ends exactly on t = 1.
+        int doubled = mStep * 2;
+        if (mPosition % doubled == 0 && mPosition + doubled <= mEnd) {
+            float dx1 = 2 * mDx1 + mDx2;
+            float dy1 = 2 * mDy1 + mDy2;
+            float dx2 = 4 * mDx2 + 4 * mDx3;
+            float dy2 = 4 * mDy2 + 4 * mDy3;
+            float dx3 = 8 * mDx3;
+            float dy3 = 8 * mDy3;
+            if (stepLength(dx1, dy1, dx2, dy2, dx3, dy3)
+                    <= spacing(Math.min(mWidth, width(mPosition + doubled)))) {
+                mDx1 = dx1;
+                mDy1 = dy1;
+                mDx2 = dx2;
+                mDy2 = dy2;
+                mDx3 = dx3;
+                mDy3 = dy3;
+                mStep = doubled;
+            }
+        }
+    }
+
+    private void halveStep() {
+        mDx3 /= 8;
+        mDy3 /= 8;
+        mDx2 = mDx2 / 4 - mDx3;
+        mDy2 = mDy2 / 4 - mDy3;
+        mDx1 = (mDx1 - mDx2) / 2;
+        mDy1 = (mDy1 - mDy2) / 2;
+        mStep /= 2;
+    }
+
+    private float width(int position) {
+        float t = (float) position / mEnd;
+        return mStartWidth + t * t * t * mWidthDelta;
+    }
+
+    /**
+     * The control polygon length of the piece of the curve covered by one step
+     * with the given forward differences, an upper bound of its arc length.
+     */
+    private static float stepLength(float dx1, float dy1, float dx2, float dy2,
+                                    float dx3, float dy3) {
+        // Back to the power basis of the piece, then to its Bezier control
+        // points: the polygon edges are a/3, (a + b)/3 and (a + 2b + 3c)/3.
+        float cX = dx3 / 6;
+        float cY = dy3 / 6;
+        float bX = (dx2 - dx3) / 2;
+        float bY = (dy2 - dy3) / 2;
+        float aX = dx1 - bX - cX;
+        float aY = dy1 - bY - cY;
+        return (distance(0, 0, aX, aY)
+                + distance(0, 0, aX + bX, aY + bY)
+                + distance(0, 0, aX + 2 * bX + 3 * cX, aY + 2 * bY + 3 * cY)) / 3;
+    }
+
+    private static float distance(float x1, float y1, float x2, float y2) {
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.gcacace.signaturepad.utils;
+
+/**
+ * Monotonic time source for stroke timestamps, in nanoseconds.
+ *
+ * <p>Only differences between two readings are meaningful, so any origin will
+ * do. Swap in a fake implementation to replay stroke timing exactly in tests and
+ * benchmarks.
+ */
+public interface Clock {
+
+    /**
+     * Default clock, backed by {@link System#nanoTime()}.
+     */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * @return the current time in nanoseconds.
+     */
+    long nanoTime();
+}
@@ -0,0 +1,145 @@
+package com.github.gcacace.signaturepad.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * An 8-bit ink coverage raster that curves are stamped into with round,
+ * anti-aliased dots, the way {@code SignaturePad} draws them in its points
+ * render mode, but without {@code android.graphics}, so signatures can be
+ * rasterized on a plain JVM. The dots are laid out by a {@link BezierSampler}
+ * exactly as on screen; only their anti-aliasing may differ from Skia's by a
+ * little.
+ *
+ * <p>The pixels are kept for reuse by the next {@link #reset(int, int)}, so
+ * one raster per thread rasterizes any number of signatures without
+ * allocating once it has grown to the largest of them.
+ */
+public class CoverageRaster {
+
+    private final BezierSampler mSampler = new BezierSampler();
+    private byte[] mCoverage = new byte[0];
+    private int[] mRow = new int[0];
+    private int mWidth;
+    private int mHeight;
+
+    /**
+     * Clears the raster and sets its size.
+     */
+    public void reset(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("width and height must be > 0, were " + width + "x" + height);
+        }
+        int size = width * height;
+        if (mCoverage.length < size) {
+            mCoverage = new byte[size];
+        } else {
+            Arrays.fill(mCoverage, 0, size, (byte) 0);
+        }
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return the coverage of a pixel, from 0 to 255.
+     */
+    public int getCoverage(int x, int y) {
+        return mCoverage[y * mWidth + x] & 0xff;
+    }
+
+    /**
+     * Stamps a curve, varying the width from {@code startWidth} to
+     * {@code endWidth}. A curve without length is stamped as one dot of the
+     * average width, like a tap.
+     *
+     * @param caps which ends of the curve are stroke ends, see
+     *             {@link StrokeOutline#CAP_START}.
+     */
+    public void drawCurve(Bezier curve, float startWidth, float endWidth, int caps) {
+        BezierSampler sampler = mSampler;
+        if (!sampler.start(curve, startWidth, endWidth, (caps & StrokeOutline.CAP_END) != 0)) {
+            drawDot(curve.startPoint.x, curve.startPoint.y, (startWidth + endWidth) / 2);
+            return;
+        }
+        while (sampler.next()) {
+            drawDot(sampler.getX(), sampler.getY(), sampler.getWidth());
+        }
+    }
+
+    /**
+     * Stamps a round dot, each pixel covered as far as the disc reaches past
+     * its center, up to half a pixel either way.
+     */
+    public void drawDot(float centerX, float centerY, float diameter) {
+        float radius = diameter / 2;
+        int left = Math.max((int) Math.floor(centerX - radius - 0.5f), 0);
+        int top = Math.max((int) Math.floor(centerY - radius - 0.5f), 0);
+        int right = Math.min((int) Math.ceil(centerX + radius + 0.5f), mWidth - 1);
+        int bottom = Math.min((int) Math.ceil(centerY + radius + 0.5f), mHeight - 1);
+        byte[] coverage = mCoverage;
+        for (int y = top; y <= bottom; y++) {
+            float dy = y + 0.5f - centerY;
+            int row = y * mWidth;
+            for (int x = left; x <= right; x++) {
+                float dx = x + 0.5f - centerX;
+                float cover = radius + 0.5f - (float) Math.sqrt(dx * dx + dy * dy);
+                if (cover <= 0) {
+                    continue;
+                }
+                int old = coverage[row + x] & 0xff;
+                // Source-over: the dot covers its share of what is left.
+                int added = cover >= 1 ? 255 - old : (int) ((255 - old) * cover + 0.5f);
+                coverage[row + x] = (byte) (old + added);
+            }
+        }
+    }
+
+    /**
+     * Writes the raster as a PNG, row by row, tinted with {@code color}.
+     *
+     * @param background an ARGB color to composite the ink over; its alpha
+     *                   is ignored unless it is fully transparent, for a
+     *                   transparent image.
+     */
+    public void writePng(OutputStream out, int color, int background) throws IOException {
+        if (mRow.length < mWidth) {
+            mRow = new int[mWidth];
+        }
+        int[] row = mRow;
+        int alpha = color >>> 24;
+        boolean transparent = (background >>> 24) == 0;
+        PngStreamWriter png = new PngStreamWriter(out, mWidth, mHeight);
+        try {
+            for (int y = 0; y < mHeight; y++) {
+                int offset = y * mWidth;
+                for (int x = 0; x < mWidth; x++) {
+                    int cover = (mCoverage[offset + x] & 0xff) * alpha / 255;
+                    if (transparent) {
+                        row[x] = cover << 24 | (color & 0xffffff);
+                    } else {
+                        row[x] = 0xff000000 | blend(color >> 16, background >> 16, cover) << 16
+                                | blend(color >> 8, background >> 8, cover) << 8
+                                | blend(color, background, cover);
+                    }
+                }
+                png.writeRow(row, 0);
+            }
+            png.finish();
+        } finally {
+            png.end();
+        }
+    }
+
+    private static int blend(int ink, int background, int cover) {
+        return ((ink & 0xff) * cover + (background & 0xff) * (255 - cover) + 127) / 255;
+    }
+}
@@ -0,0 +1,158 @@
+package com.github.gcacace.signaturepad.utils;
+
+import java.util.Arrays;
+
+/**
+ * The drawn curves in order, with the widths, flags and color they were drawn
+ * with, so they can be drawn again: into a display list, onto a screen canvas,
+ * or into an export bitmap.
+ *
+ * <p>Everything is stored in growable primitive arrays, ten floats and two
+ * ints per curve, so recording a curve does not allocate once the arrays have
+ * grown to fit the signature.
+ */
+public class CurveList {
+
+    private static final int FLOATS_PER_CURVE = 10;
+
+    private float[] mFloats;
+    private int[] mInts;
+    private int mSize;
+
+    /**
+     * @param initialCapacity the number of curves to make room for up front.
+     */
+    public CurveList(int initialCapacity) {
+        mFloats = new float[Math.max(initialCapacity, 1) * FLOATS_PER_CURVE];
+        mInts = new int[Math.max(initialCapacity, 1) * 2];
+    }
+
+    /**
+     * Appends a curve. Only the coordinates of its points are kept.
+     *
+     * @param flags free for the caller, e.g. the {@link StrokeOutline#CAP_START}
+     *              and {@link StrokeOutline#CAP_END} caps it was drawn with.
+     * @param color the ARGB color it was drawn with.
+     */
+    public void add(Bezier curve, float startWidth, float endWidth, int flags, int color) {
+        if ((mSize + 1) * FLOATS_PER_CURVE > mFloats.length) {
+            mFloats = Arrays.copyOf(mFloats, mFloats.length * 2);
+            mInts = Arrays.copyOf(mInts, mInts.length * 2);
+        }
+        int f = mSize * FLOATS_PER_CURVE;
+        mFloats[f] = curve.startPoint.x;
+        mFloats[f + 1] = curve.startPoint.y;
+        mFloats[f + 2] = curve.control1.x;
+        mFloats[f + 3] = curve.control1.y;
+        mFloats[f + 4] = curve.control2.x;
+        mFloats[f + 5] = curve.control2.y;
+        mFloats[f + 6] = curve.endPoint.x;
+        mFloats[f + 7] = curve.endPoint.y;
+        mFloats[f + 8] = startWidth;
+        mFloats[f + 9] = endWidth;
+        mInts[mSize * 2] = flags;
+        mInts[mSize * 2 + 1] = color;
+        mSize++;
+    }
+
+    /**
+     * Appends a copy of every curve of {@code source}, as two array copies.
+     */
+    public void addAll(CurveList source) {
+        int size = mSize + source.mSize;
+        if (size * FLOATS_PER_CURVE > mFloats.length) {
+            int capacity = Math.max(size, mFloats.length / FLOATS_PER_CURVE * 2);
+            mFloats = Arrays.copyOf(mFloats, capacity * FLOATS_PER_CURVE);
+            mInts = Arrays.copyOf(mInts, capacity * 2);
+        }
+        System.arraycopy(source.mFloats, 0, mFloats, mSize * FLOATS_PER_CURVE, source.mSize * FLOATS_PER_CURVE);
+        System.arraycopy(source.mInts, 0, mInts, mSize * 2, source.mSize * 2);
+        mSize = size;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Forgets every curve, keeping the arrays for reuse.
+     */
+    public void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Forgets the curves from {@code size} on, keeping the first {@code size}.
+     */
+    public void truncate(int size) {
+        if (size < 0 || size > mSize) {
+            throw new IndexOutOfBoundsException("size " + size + ", was " + mSize);
+        }
+        mSize = size;
+    }
+
+    /**
+     * Scales and then offsets every curve's points, and scales their widths by
+     * {@code widthScale}.
+     */
+    public void transform(float scaleX, float scaleY, float dx, float dy, float widthScale) {
+        for (int f = 0; f < mSize * FLOATS_PER_CURVE; f += FLOATS_PER_CURVE) {
+            for (int p = f; p < f + 8; p += 2) {
+                mFloats[p] = mFloats[p] * scaleX + dx;
+                mFloats[p + 1] = mFloats[p + 1] * scaleY + dy;
+            }
+            mFloats[f + 8] *= widthScale;
+            mFloats[f + 9] *= widthScale;
+        }
+    }
+
+    /**
+     * Copies the points of a curve into {@code out}, whose four points must
+     * already be set. Their timestamps and pressures are left alone.
+     *
+     * @return {@code out}.
+     */
+    public Bezier get(int index, Bezier out) {
+        checkIndex(index);
+        int f = index * FLOATS_PER_CURVE;
+        out.startPoint.x = mFloats[f];
+        out.startPoint.y = mFloats[f + 1];
+        out.control1.x = mFloats[f + 2];
+        out.control1.y = mFloats[f + 3];
+        out.control2.x = mFloats[f + 4];
+        out.control2.y = mFloats[f + 5];
+        out.endPoint.x = mFloats[f + 6];
+        out.endPoint.y = mFloats[f + 7];
+        return out;
+    }
+
+    public float getStartWidth(int index) {
+        checkIndex(index);
+        return mFloats[index * FLOATS_PER_CURVE + 8];
+    }
+
+    public float getEndWidth(int index) {
+        checkIndex(index);
+        return mFloats[index * FLOATS_PER_CURVE + 9];
+    }
+
+    public int getFlags(int index) {
+        checkIndex(index);
+        return mInts[index * 2];
+    }
+
+    public int getColor(int index) {
+        checkIndex(index);
+        return mInts[index * 2 + 1];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + mSize);
+        }
+    }
+}
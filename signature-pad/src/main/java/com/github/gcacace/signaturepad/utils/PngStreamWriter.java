@@ -0,0 +1,172 @@
+package com.github.gcacace.signaturepad.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes an 8-bit RGBA PNG one row at a time, so that an image far larger
+ * than what fits in memory as a bitmap can be encoded from a few rows at a
+ * time. The rows are deflated as they come, into {@code IDAT} chunks of up to
+ * {@link #CHUNK_SIZE} bytes.
+ *
+ * <p>Rows are taken as non-premultiplied ARGB ints, as returned by
+ * {@code Bitmap.getPixels}. The stream is not closed by {@link #finish()}.
+ * A writer that is given up on, e.g. because the stream failed, must be
+ * {@link #end()}ed to release its compressor.
+ */
+public class PngStreamWriter {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int COLOR_TYPE_RGBA = 6;
+    private static final int FILTER_NONE = 0;
+
+    private final OutputStream mOut;
+    private final int mWidth;
+    private final int mHeight;
+    private final Deflater mDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final DeflaterOutputStream mDeflated;
+    private final byte[] mRow;
+    private final byte[] mChunk = new byte[CHUNK_SIZE];
+    private int mChunkLength;
+    private final CRC32 mCrc = new CRC32();
+    private int mRows;
+    private boolean mFinished;
+
+    /**
+     * Writes the PNG signature and header.
+     */
+    public PngStreamWriter(OutputStream out, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("width and height must be > 0, were " + width + "x" + height);
+        }
+        mOut = out;
+        mWidth = width;
+        mHeight = height;
+        mRow = new byte[1 + width * 4];
+        mDeflated = new DeflaterOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                appendIdat(b, off, len);
+            }
+        }, mDeflater, CHUNK_SIZE);
+
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;
+        header[9] = COLOR_TYPE_RGBA;
+        // Compression, filter and interlace methods: the only ones there are,
+        // and no interlacing.
+        try {
+            out.write(SIGNATURE);
+            writeChunk("IHDR", header, header.length);
+        } catch (IOException | RuntimeException e) {
+            end();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the next row.
+     *
+     * @param argb   the row's pixels, as non-premultiplied ARGB.
+     * @param offset where the row starts in {@code argb}.
+     */
+    public void writeRow(int[] argb, int offset) throws IOException {
+        if (mFinished || mRows == mHeight) {
+            throw new IllegalStateException("all " + mHeight + " rows were written");
+        }
+        byte[] row = mRow;
+        row[0] = FILTER_NONE;
+        for (int x = 0, b = 1; x < mWidth; x++, b += 4) {
+            int pixel = argb[offset + x];
+            row[b] = (byte) (pixel >> 16);
+            row[b + 1] = (byte) (pixel >> 8);
+            row[b + 2] = (byte) pixel;
+            row[b + 3] = (byte) (pixel >>> 24);
+        }
+        mDeflated.write(row, 0, row.length);
+        mRows++;
+    }
+
+    /**
+     * Writes the rest of the compressed rows and the end of the image. Every
+     * row must have been written.
+     */
+    public void finish() throws IOException {
+        if (mRows != mHeight) {
+            throw new IllegalStateException("wrote " + mRows + " of " + mHeight + " rows");
+        }
+        if (mFinished) {
+            return;
+        }
+        mFinished = true;
+        try {
+            mDeflated.finish();
+        } finally {
+            mDeflater.end();
+        }
+        if (mChunkLength > 0) {
+            writeChunk("IDAT", mChunk, mChunkLength);
+            mChunkLength = 0;
+        }
+        writeChunk("IEND", mChunk, 0);
+        mOut.flush();
+    }
+
+    /**
+     * Releases the compressor without finishing the image. Nothing can be
+     * written afterwards. Does nothing if the writer is already finished or
+     * ended.
+     */
+    public void end() {
+        mFinished = true;
+        mDeflater.end();
+    }
+
+    private void appendIdat(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int count = Math.min(len, CHUNK_SIZE - mChunkLength);
+            System.arraycopy(b, off, mChunk, mChunkLength, count);
+            mChunkLength += count;
+            off += count;
+            len -= count;
+            if (mChunkLength == CHUNK_SIZE) {
+                writeChunk("IDAT", mChunk, mChunkLength);
+                mChunkLength = 0;
+            }
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = {(byte) type.charAt(0), (byte) type.charAt(1),
+                (byte) type.charAt(2), (byte) type.charAt(3)};
+        byte[] field = new byte[4];
+        putInt(field, 0, length);
+        mOut.write(field);
+        mOut.write(typeBytes);
+        mOut.write(data, 0, length);
+        mCrc.reset();
+        mCrc.update(typeBytes);
+        mCrc.update(data, 0, length);
+        putInt(field, 0, (int) mCrc.getValue());
+        mOut.write(field);
+    }
+
+    private static void putInt(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 24);
+        b[offset + 1] = (byte) (value >>> 16);
+        b[offset + 2] = (byte) (value >>> 8);
+        b[offset + 3] = (byte) value;
+    }
+}
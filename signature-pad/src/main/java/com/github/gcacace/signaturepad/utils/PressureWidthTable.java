@@ -0,0 +1,44 @@
+package com.github.gcacace.signaturepad.utils;
+
+/**
+ * Precomputed pressure-to-stroke-width lookup table.
+ *
+ * <p>Pen pressure is quantized to {@link #SIZE} levels, which is finer than
+ * what digitizers actually resolve, so picking a width costs a clamp and an
+ * array read per curve instead of the velocity estimate.
+ */
+public class PressureWidthTable {
+
+    public static final int SIZE = 256;
+
+    private final float[] mWidths = new float[SIZE];
+
+    public PressureWidthTable(float minWidth, float maxWidth) {
+        set(minWidth, maxWidth);
+    }
+
+    /**
+     * Rebuilds the table so that pressure 0 maps to {@code minWidth} and
+     * pressure 1 (or more) maps to {@code maxWidth}, linearly in between.
+     */
+    public void set(float minWidth, float maxWidth) {
+        for (int i = 0; i < SIZE; i++) {
+            mWidths[i] = minWidth + (maxWidth - minWidth) * i / (SIZE - 1);
+        }
+    }
+
+    /**
+     * @param pressure the normalized pen pressure. Values outside 0 to 1, which
+     *                 some devices report, are clamped; NaN counts as 0.
+     * @return the stroke width for that pressure.
+     */
+    public float width(float pressure) {
+        if (!(pressure > 0f)) {
+            return mWidths[0];
+        }
+        if (pressure >= 1f) {
+            return mWidths[SIZE - 1];
+        }
+        return mWidths[(int) (pressure * (SIZE - 1) + 0.5f)];
+    }
+}
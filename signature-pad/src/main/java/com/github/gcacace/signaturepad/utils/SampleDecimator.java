@@ -0,0 +1,122 @@
+package com.github.gcacace.signaturepad.utils;
+
+/**
+ * Drops redundant touch samples before curve fitting.
+ *
+ * <p>High-rate digitizers deliver many samples that barely move. Each kept
+ * sample costs a full Bezier and an SVG segment, so a sample is dropped when it
+ * is closer than a minimum distance, or sooner than a minimum interval, to the
+ * last kept sample. The first sample of a stroke is always kept, and callers
+ * force the last one through, so strokes keep their exact end points.
+ */
+public class SampleDecimator {
+
+    private float mMinDistance;
+    private long mMinIntervalNanos;
+
+    private boolean mHasLastKept;
+    private float mLastKeptX;
+    private float mLastKeptY;
+    private long mLastKeptTimestampNanos;
+
+    private long mKeptCount;
+    private long mDroppedCount;
+
+    /**
+     * @param minDistance      samples closer than this to the last kept one are
+     *                         dropped, in pixels. {@code 0} disables the check.
+     * @param minIntervalNanos samples sooner than this after the last kept one
+     *                         are dropped. {@code 0} disables the check.
+     */
+    public SampleDecimator(float minDistance, long minIntervalNanos) {
+        set(minDistance, minIntervalNanos);
+    }
+
+    public void set(float minDistance, long minIntervalNanos) {
+        if (minDistance < 0 || minIntervalNanos < 0) {
+            throw new IllegalArgumentException("thresholds must be >= 0");
+        }
+        mMinDistance = minDistance;
+        mMinIntervalNanos = minIntervalNanos;
+    }
+
+    public float getMinDistance() {
+        return mMinDistance;
+    }
+
+    public long getMinIntervalNanos() {
+        return mMinIntervalNanos;
+    }
+
+    /**
+     * @return {@code true} if neither threshold is set, so every sample is kept.
+     */
+    public boolean isDisabled() {
+        return mMinDistance == 0 && mMinIntervalNanos == 0;
+    }
+
+    /**
+     * Starts a new stroke: its first sample will be kept.
+     */
+    public void reset() {
+        mHasLastKept = false;
+    }
+
+    /**
+     * Decides whether a sample is kept.
+     *
+     * @param force {@code true} to keep the sample regardless of the thresholds,
+     *              e.g. for the last sample of a stroke.
+     * @return {@code true} if the sample should be fed to the curve pipeline.
+     */
+    public boolean filter(float x, float y, long timestampNanos, boolean force) {
+        if (!force && mHasLastKept) {
+            float dx = x - mLastKeptX;
+            float dy = y - mLastKeptY;
+            boolean tooClose = dx * dx + dy * dy < mMinDistance * mMinDistance;
+            boolean tooSoon = timestampNanos - mLastKeptTimestampNanos < mMinIntervalNanos;
+            if (tooClose || tooSoon) {
+                mDroppedCount++;
+                return false;
+            }
+        }
+        mHasLastKept = true;
+        mLastKeptX = x;
+        mLastKeptY = y;
+        mLastKeptTimestampNanos = timestampNanos;
+        mKeptCount++;
+        return true;
+    }
+
+    /**
+     * @return how many samples were kept and dropped since the last
+     * {@link #resetStats()}.
+     */
+    public Stats getStats() {
+        return new Stats(mKeptCount, mDroppedCount);
+    }
+
+    public void resetStats() {
+        mKeptCount = 0;
+        mDroppedCount = 0;
+    }
+
+    /**
+     * Snapshot of the decimation counters. Every dropped sample is one Bezier
+     * curve and one SVG segment that was not produced.
+     */
+    public static final class Stats {
+        public final long kept;
+        public final long dropped;
+
+        public Stats(long kept, long dropped) {
+            this.kept = kept;
+            this.dropped = dropped;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{kept=" + kept + ", dropped=" + dropped + "}";
+        }
+    }
+}
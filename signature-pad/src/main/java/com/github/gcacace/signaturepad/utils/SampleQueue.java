@@ -0,0 +1,98 @@
+package com.github.gcacace.signaturepad.utils;
+
+import java.util.Arrays;
+
+/**
+ * Raw touch samples waiting to be fitted, in arrival order, with the
+ * {@link StrokeEngine} flags they were taken with.
+ *
+ * <p>Everything is stored in growable primitive arrays, so queueing a sample
+ * does not allocate once the arrays have grown to fit a frame's worth.
+ */
+public class SampleQueue {
+
+    private static final int FLOATS_PER_SAMPLE = 3;
+
+    private float[] mFloats;
+    private long[] mTimestamps;
+    private int[] mFlags;
+    private int mSize;
+
+    /**
+     * @param initialCapacity the number of samples to make room for up front.
+     */
+    public SampleQueue(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        mFloats = new float[capacity * FLOATS_PER_SAMPLE];
+        mTimestamps = new long[capacity];
+        mFlags = new int[capacity];
+    }
+
+    /**
+     * Appends a sample.
+     *
+     * @param flags any of {@link StrokeEngine#FLAG_STROKE_START},
+     *              {@link StrokeEngine#FLAG_FORCE} and
+     *              {@link StrokeEngine#FLAG_STROKE_END}.
+     */
+    public void add(float x, float y, long timestampNanos, float pressure, int flags) {
+        if (mSize == mTimestamps.length) {
+            mFloats = Arrays.copyOf(mFloats, mFloats.length * 2);
+            mTimestamps = Arrays.copyOf(mTimestamps, mTimestamps.length * 2);
+            mFlags = Arrays.copyOf(mFlags, mFlags.length * 2);
+        }
+        int f = mSize * FLOATS_PER_SAMPLE;
+        mFloats[f] = x;
+        mFloats[f + 1] = y;
+        mFloats[f + 2] = pressure;
+        mTimestamps[mSize] = timestampNanos;
+        mFlags[mSize] = flags;
+        mSize++;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Forgets every sample, keeping the arrays for reuse.
+     */
+    public void clear() {
+        mSize = 0;
+    }
+
+    public float getX(int index) {
+        checkIndex(index);
+        return mFloats[index * FLOATS_PER_SAMPLE];
+    }
+
+    public float getY(int index) {
+        checkIndex(index);
+        return mFloats[index * FLOATS_PER_SAMPLE + 1];
+    }
+
+    public float getPressure(int index) {
+        checkIndex(index);
+        return mFloats[index * FLOATS_PER_SAMPLE + 2];
+    }
+
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return mTimestamps[index];
+    }
+
+    public int getFlags(int index) {
+        checkIndex(index);
+        return mFlags[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + mSize);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.gcacace.signaturepad.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free queue for exactly one producer thread and one consumer
+ * thread.
+ *
+ * <p>Each record is a fixed number of floats plus one long and one int, stored
+ * in preallocated primitive arrays, so neither side allocates or takes a lock.
+ * The producer fills a slot between {@link #claim()} and {@link #publish()};
+ * the consumer reads it between {@link #peek()} and {@link #release()}. The
+ * ordered store of each counter publishes the slot contents written before it
+ * to the other side.
+ */
+public class SpscRing {
+
+    private final int mMask;
+    private final int mFloatsPerRecord;
+    private final float[] mFloats;
+    private final long[] mLongs;
+    private final int[] mInts;
+
+    // Next slot to read, written by the consumer only.
+    private final AtomicLong mHead = new AtomicLong();
+    // Next slot to write, written by the producer only.
+    private final AtomicLong mTail = new AtomicLong();
+
+    // Each side's last view of the other side's counter, so the shared counter
+    // is only re-read when the ring looks full (producer) or empty (consumer).
+    private long mProducerHeadCache;
+    private long mConsumerTailCache;
+
+    /**
+     * @param capacity        the number of records, a power of two.
+     * @param floatsPerRecord the number of floats in each record.
+     */
+    public SpscRing(int capacity, int floatsPerRecord) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        if (floatsPerRecord < 0) {
+            throw new IllegalArgumentException("floatsPerRecord must be >= 0");
+        }
+        mMask = capacity - 1;
+        mFloatsPerRecord = floatsPerRecord;
+        mFloats = new float[capacity * floatsPerRecord];
+        mLongs = new long[capacity];
+        mInts = new int[capacity];
+    }
+
+    public int capacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * @return the number of published records not yet released. Exact only
+     * when called from one of the two sides while the other is idle.
+     */
+    public int size() {
+        return (int) (mTail.get() - mHead.get());
+    }
+
+    public boolean isEmpty() {
+        return mTail.get() == mHead.get();
+    }
+
+    // Producer side
+
+    /**
+     * Reserves the next slot for writing. Producer thread only.
+     *
+     * @return the slot, or {@code -1} if the ring is full.
+     */
+    public int claim() {
+        long tail = mTail.get();
+        if (tail - mProducerHeadCache > mMask) {
+            mProducerHeadCache = mHead.get();
+            if (tail - mProducerHeadCache > mMask) {
+                return -1;
+            }
+        }
+        return (int) (tail & mMask);
+    }
+
+    public void putFloat(int slot, int field, float value) {
+        mFloats[slot * mFloatsPerRecord + field] = value;
+    }
+
+    public void putLong(int slot, long value) {
+        mLongs[slot] = value;
+    }
+
+    public void putInt(int slot, int value) {
+        mInts[slot] = value;
+    }
+
+    /**
+     * Makes the slot returned by the last {@link #claim()} visible to the
+     * consumer. Producer thread only.
+     */
+    public void publish() {
+        mTail.lazySet(mTail.get() + 1);
+    }
+
+    // Consumer side
+
+    /**
+     * Returns the oldest published slot without removing it. Consumer thread only.
+     *
+     * @return the slot, or {@code -1} if the ring is empty.
+     */
+    public int peek() {
+        long head = mHead.get();
+        if (head == mConsumerTailCache) {
+            mConsumerTailCache = mTail.get();
+            if (head == mConsumerTailCache) {
+                return -1;
+            }
+        }
+        return (int) (head & mMask);
+    }
+
+    public float getFloat(int slot, int field) {
+        return mFloats[slot * mFloatsPerRecord + field];
+    }
+
+    public long getLong(int slot) {
+        return mLongs[slot];
+    }
+
+    public int getInt(int slot) {
+        return mInts[slot];
+    }
+
+    /**
+     * Frees the slot returned by the last {@link #peek()} for the producer.
+     * Consumer thread only.
+     */
+    public void release() {
+        mHead.lazySet(mHead.get() + 1);
+    }
+}
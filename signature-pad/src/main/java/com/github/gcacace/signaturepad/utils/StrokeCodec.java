@@ -0,0 +1,384 @@
+package com.github.gcacace.signaturepad.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A compact, versioned binary format for the strokes of a {@link StrokeStore},
+ * written to an {@link OutputStream} and read back from an
+ * {@link InputStream} through a fixed buffer, with no per-sample allocation.
+ *
+ * <p>Every value is quantized to an integer (positions to
+ * {@link #setQuantization coordinate steps} per pixel, times to a time unit,
+ * pressures and widths to their own steps) and stored as a zig-zag varint
+ * delta. For the position and time, the delta is from where the sample would
+ * be had the pen taken the same step again as from the sample before, which a
+ * pen moving smoothly at a steady sampling rate nearly does, so most of them
+ * take a single byte. Pressures and widths are deltas from the sample before.
+ * Deltas are taken between quantized values, so rounding does not accumulate
+ * along a stroke.
+ *
+ * <p>The layout, after the magic bytes {@code "SPSK"} and a version byte:
+ * <pre>
+ * header:  coordinate steps (float), time unit in ns (varint),
+ *          pressure steps (varint, 0 if not stored),
+ *          width steps (float, 0 if not stored),
+ *          pad width, pad height, stroke count (varints)
+ * stroke:  sample count (varint), then per sample the zig-zag varint deltas
+ *          of x, y, time, and pressure and width if stored
+ * </pre>
+ * Deltas carry on from one stroke to the next; the step is 0 at the start of
+ * each stroke. Floats are big-endian IEEE
+ * 754 bits.
+ *
+ * <p>An instance reuses its buffer from one call to the next and is not
+ * thread safe; use one per thread.
+ */
+public class StrokeCodec {
+
+    /**
+     * The format version written, and the newest one read.
+     */
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = {'S', 'P', 'S', 'K'};
+    private static final int BUFFER_SIZE = 4096;
+    // Enough room for any single value: a 64 bit varint takes at most 10 bytes.
+    private static final int MAX_VALUE_BYTES = 10;
+
+    private final byte[] mBuffer = new byte[BUFFER_SIZE];
+    private int mPosition;
+    private int mLimit;
+    private OutputStream mOut;
+    private InputStream mIn;
+
+    private float mCoordinateSteps = 4;
+    private long mTimeUnitNanos = 100000L;
+    private int mPressureSteps = 128;
+    private float mWidthSteps = 0;
+
+    private int mWidth;
+    private int mHeight;
+    private int mVersion;
+
+    /**
+     * Sets how finely {@link #write} quantizes each field. The defaults are a
+     * quarter pixel, 0.1ms, 1/128 of full pressure, and no widths, which the
+     * curve fitter computes again when the strokes are replayed.
+     *
+     * @param coordinateSteps steps per pixel for the positions, &gt; 0.
+     * @param timeUnitNanos   the time step, in nanoseconds, &gt; 0.
+     * @param pressureSteps   steps per unit of pressure, or 0 to leave the
+     *                        pressures out; they read back as
+     *                        {@link TimedPoint#DEFAULT_PRESSURE}.
+     * @param widthSteps      steps per pixel for the widths, or 0 to leave
+     *                        them out; they read back as 0.
+     */
+    public void setQuantization(float coordinateSteps, long timeUnitNanos, int pressureSteps, float widthSteps) {
+        if (!(coordinateSteps > 0) || timeUnitNanos <= 0 || pressureSteps < 0 || !(widthSteps >= 0)) {
+            throw new IllegalArgumentException("invalid quantization: " + coordinateSteps + " coordinate steps, "
+                    + timeUnitNanos + "ns time unit, " + pressureSteps + " pressure steps, "
+                    + widthSteps + " width steps");
+        }
+        mCoordinateSteps = coordinateSteps;
+        mTimeUnitNanos = timeUnitNanos;
+        mPressureSteps = pressureSteps;
+        mWidthSteps = widthSteps;
+    }
+
+    public float getCoordinateSteps() {
+        return mCoordinateSteps;
+    }
+
+    public long getTimeUnitNanos() {
+        return mTimeUnitNanos;
+    }
+
+    public int getPressureSteps() {
+        return mPressureSteps;
+    }
+
+    public float getWidthSteps() {
+        return mWidthSteps;
+    }
+
+    /**
+     * Writes the ended strokes of {@code strokes}, the open one, if any,
+     * excluded. The stream is flushed but not closed.
+     *
+     * @param width  the width of the pad the positions are relative to.
+     * @param height its height.
+     */
+    public void write(StrokeStore strokes, int width, int height, OutputStream out) throws IOException {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("width and height must be >= 0, were " + width + "x" + height);
+        }
+        int strokeCount = strokes.getStrokeCount() - (strokes.isStrokeOpen() ? 1 : 0);
+        float coordinateSteps = mCoordinateSteps;
+        long timeUnit = mTimeUnitNanos;
+        int pressureSteps = mPressureSteps;
+        float widthSteps = mWidthSteps;
+
+        mOut = out;
+        mPosition = 0;
+        try {
+            for (byte b : MAGIC) {
+                writeByte(b);
+            }
+            writeByte(VERSION);
+            writeFloat(coordinateSteps);
+            writeVarint(timeUnit);
+            writeVarint(pressureSteps);
+            writeFloat(widthSteps);
+            writeVarint(width);
+            writeVarint(height);
+            writeVarint(strokeCount);
+
+            int lastX = 0;
+            int lastY = 0;
+            long lastTime = 0;
+            int stepX = 0;
+            int stepY = 0;
+            long stepTime = 0;
+            int lastPressure = 0;
+            int lastWidth = 0;
+            StrokeStore.Cursor cursor = strokes.cursor();
+            for (int stroke = 0; stroke < strokeCount && cursor.nextStroke(); stroke++) {
+                writeVarint(cursor.getStrokeSize());
+                stepX = 0;
+                stepY = 0;
+                stepTime = 0;
+                while (cursor.nextSample()) {
+                    int x = Math.round(cursor.getX() * coordinateSteps);
+                    int y = Math.round(cursor.getY() * coordinateSteps);
+                    long time = quantizeTime(cursor.getTimestamp(), timeUnit);
+                    // What is left once the last step is taken again.
+                    writeSigned(x - lastX - stepX);
+                    writeSigned(y - lastY - stepY);
+                    writeSigned(time - lastTime - stepTime);
+                    stepX = x - lastX;
+                    stepY = y - lastY;
+                    stepTime = time - lastTime;
+                    lastX = x;
+                    lastY = y;
+                    lastTime = time;
+                    if (pressureSteps > 0) {
+                        int pressure = Math.round(cursor.getPressure() * pressureSteps);
+                        writeSigned(pressure - lastPressure);
+                        lastPressure = pressure;
+                    }
+                    if (widthSteps > 0) {
+                        int w = Math.round(cursor.getWidth() * widthSteps);
+                        writeSigned(w - lastWidth);
+                        lastWidth = w;
+                    }
+                }
+            }
+            flushBuffer();
+            out.flush();
+        } finally {
+            mOut = null;
+        }
+    }
+
+    /**
+     * Reads strokes written by {@link #write} and appends them to
+     * {@code into} as ended strokes. The pad size they were written with is
+     * then available from {@link #getWidth()} and {@link #getHeight()}.
+     *
+     * <p>The stream is read ahead through a buffer, so whatever follows the
+     * strokes in it may be consumed too. It is not closed.
+     *
+     * @throws IOException if the data is not in this format, is of a newer
+     *                     version, or ends early; {@code into} is then left
+     *                     as it was.
+     */
+    public void read(InputStream in, StrokeStore into) throws IOException {
+        into.endStroke();
+        int baseStrokes = into.getStrokeCount();
+        mIn = in;
+        mPosition = 0;
+        mLimit = 0;
+        boolean complete = false;
+        try {
+            for (byte b : MAGIC) {
+                if (readByte() != b) {
+                    throw new IOException("not stroke data");
+                }
+            }
+            int version = readByte();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("unsupported stroke data version " + version);
+            }
+            float coordinateSteps = readFloat();
+            long timeUnit = readVarint();
+            int pressureSteps = readCount();
+            float widthSteps = readFloat();
+            if (!(coordinateSteps > 0) || timeUnit <= 0 || !(widthSteps >= 0)) {
+                throw new IOException("invalid stroke data quantization");
+            }
+            int width = readCount();
+            int height = readCount();
+            int strokeCount = readCount();
+
+            int x = 0;
+            int y = 0;
+            long time = 0;
+            int stepX;
+            int stepY;
+            long stepTime;
+            int pressure = 0;
+            int w = 0;
+            for (int stroke = 0; stroke < strokeCount; stroke++) {
+                int samples = readCount();
+                into.beginStroke();
+                stepX = 0;
+                stepY = 0;
+                stepTime = 0;
+                for (int i = 0; i < samples; i++) {
+                    stepX += (int) readSigned();
+                    stepY += (int) readSigned();
+                    stepTime += readSigned();
+                    x += stepX;
+                    y += stepY;
+                    time += stepTime;
+                    if (pressureSteps > 0) {
+                        pressure += (int) readSigned();
+                    }
+                    if (widthSteps > 0) {
+                        w += (int) readSigned();
+                    }
+                    into.add(x / coordinateSteps, y / coordinateSteps, time * timeUnit,
+                            pressureSteps > 0 ? (float) pressure / pressureSteps : TimedPoint.DEFAULT_PRESSURE,
+                            widthSteps > 0 ? w / widthSteps : 0);
+                }
+                into.endStroke();
+            }
+            mVersion = version;
+            mWidth = width;
+            mHeight = height;
+            complete = true;
+        } finally {
+            mIn = null;
+            if (!complete) {
+                into.truncate(baseStrokes);
+            }
+        }
+    }
+
+    /**
+     * @return the pad width of the last {@link #read}.
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return the pad height of the last {@link #read}.
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return the format version of the last {@link #read}.
+     */
+    public int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * @return {@code nanos} rounded to the nearest multiple of {@code unit},
+     * in units.
+     */
+    private static long quantizeTime(long nanos, long unit) {
+        long shifted = nanos + unit / 2;
+        long units = shifted / unit;
+        return shifted < 0 && units * unit != shifted ? units - 1 : units;
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (mPosition == mBuffer.length) {
+            flushBuffer();
+        }
+        mBuffer[mPosition++] = (byte) b;
+    }
+
+    private void writeFloat(float value) throws IOException {
+        int bits = Float.floatToIntBits(value);
+        writeByte(bits >>> 24);
+        writeByte(bits >>> 16);
+        writeByte(bits >>> 8);
+        writeByte(bits);
+    }
+
+    private void writeVarint(long value) throws IOException {
+        if (mPosition + MAX_VALUE_BYTES > mBuffer.length) {
+            flushBuffer();
+        }
+        byte[] buffer = mBuffer;
+        int position = mPosition;
+        while ((value & ~0x7fL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        mPosition = position;
+    }
+
+    private void writeSigned(long value) throws IOException {
+        writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    private void flushBuffer() throws IOException {
+        mOut.write(mBuffer, 0, mPosition);
+        mPosition = 0;
+    }
+
+    private int readByte() throws IOException {
+        if (mPosition == mLimit) {
+            int read = mIn.read(mBuffer, 0, mBuffer.length);
+            if (read <= 0) {
+                throw new EOFException("stroke data ended early");
+            }
+            mPosition = 0;
+            mLimit = read;
+        }
+        return mBuffer[mPosition++] & 0xff;
+    }
+
+    private float readFloat() throws IOException {
+        int bits = readByte() << 24;
+        bits |= readByte() << 16;
+        bits |= readByte() << 8;
+        bits |= readByte();
+        return Float.intBitsToFloat(bits);
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint in stroke data");
+    }
+
+    private long readSigned() throws IOException {
+        long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private int readCount() throws IOException {
+        long value = readVarint();
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("invalid count in stroke data: " + value);
+        }
+        return (int) value;
+    }
+}
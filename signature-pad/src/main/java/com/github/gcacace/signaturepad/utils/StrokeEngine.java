@@ -0,0 +1,297 @@
+package com.github.gcacace.signaturepad.utils;
+
+import java.io.IOException;
+
+/**
+ * The stroke processing behind {@code SignaturePad}, without the view: touch
+ * samples go in, and curves with their start and end widths, and the SVG
+ * document, come out. Each sample is passed through the
+ * {@link SampleDecimator}, the curves are fitted by the {@link StrokeFitter}
+ * and appended to the {@link SvgBuilder}, exactly as the view does it. The
+ * touch samples of a stroke given to {@link #addStroke} are fed the way the
+ * view feeds them, so they yield the same curves and SVG it drew; samples it
+ * recorded, from {@code getStrokes()}, are replayed with
+ * {@link #addRecordedStroke}.
+ *
+ * <p>It has no Android dependency and does not allocate per sample, apart
+ * from what the SVG text takes, so it can re-render and re-validate captured
+ * signatures on an ordinary JVM. It still ships inside the library's AAR,
+ * next to the Android-only {@code SignaturePadBindingAdapter}, so a backend
+ * takes the AAR's {@code classes.jar} and leaves that class alone. An
+ * instance is not thread safe; use one per thread.
+ */
+public class StrokeEngine {
+
+    /**
+     * The sample starts a new stroke.
+     */
+    public static final int FLAG_STROKE_START = 1;
+
+    /**
+     * The sample bypasses decimation, e.g. the last sample of a stroke.
+     */
+    public static final int FLAG_FORCE = 2;
+
+    /**
+     * The sample ends a stroke.
+     */
+    public static final int FLAG_STROKE_END = 4;
+
+    /**
+     * Receives the curves of {@link #addStroke}, in order. The curve instance
+     * is reused for the next one.
+     */
+    public interface CurveSink {
+        /**
+         * @param caps which ends of the curve are stroke ends, see
+         *             {@link StrokeOutline#CAP_START}.
+         */
+        void onCurve(Bezier curve, float startWidth, float endWidth, int caps);
+    }
+
+    private final SampleDecimator mDecimator;
+    private final StrokeFitter mFitter;
+    private final SvgBuilder mSvgBuilder;
+    private StrokeStore mStrokeStore;
+    private boolean mStrokeHasCurve;
+    private int mCurveCaps;
+
+    /**
+     * An engine without decimation.
+     *
+     * @param minWidth             the thinnest stroke, in pixels.
+     * @param maxWidth             the thickest stroke, in pixels.
+     * @param velocityFilterWeight the weight of the newest velocity against the
+     *                             previous one, from 0 to 1.
+     */
+    public StrokeEngine(float minWidth, float maxWidth, float velocityFilterWeight) {
+        this(new SampleDecimator(0, 0), new StrokeFitter(minWidth, maxWidth, velocityFilterWeight),
+                new SvgBuilder());
+    }
+
+    public StrokeEngine(SampleDecimator decimator, StrokeFitter fitter, SvgBuilder svgBuilder) {
+        mDecimator = decimator;
+        mFitter = fitter;
+        mSvgBuilder = svgBuilder;
+    }
+
+    /**
+     * @param flags the flags of the sample that produced the fitter's current
+     *              curve.
+     * @return which ends of that curve are stroke ends, as
+     * {@link StrokeOutline#CAP_START} and {@link StrokeOutline#CAP_END} flags.
+     */
+    public static int curveCaps(StrokeFitter fitter, int flags) {
+        int caps = fitter.isFirstCurve() ? StrokeOutline.CAP_START : 0;
+        if ((flags & FLAG_STROKE_END) != 0) {
+            caps |= StrokeOutline.CAP_END;
+        }
+        return caps;
+    }
+
+    public SampleDecimator getDecimator() {
+        return mDecimator;
+    }
+
+    public StrokeFitter getFitter() {
+        return mFitter;
+    }
+
+    public SvgBuilder getSvgBuilder() {
+        return mSvgBuilder;
+    }
+
+    /**
+     * Records every sample that gets past decimation, with the stroke width
+     * there, into {@code strokeStore}; {@code null} to stop recording. A
+     * stroke that ends without a curve is not kept, so the recorded strokes
+     * are the ones that drew ink.
+     */
+    public void setStrokeStore(StrokeStore strokeStore) {
+        mStrokeStore = strokeStore;
+    }
+
+    public StrokeStore getStrokeStore() {
+        return mStrokeStore;
+    }
+
+    /**
+     * Adds a sample, appending the curve it completes, if any, to the SVG.
+     *
+     * @param flags {@link #FLAG_STROKE_START} and {@link #FLAG_STROKE_END} for
+     *              the first and last sample of a stroke, {@link #FLAG_FORCE} to
+     *              bypass decimation, for the samples that start and end one.
+     * @return {@code true} if a new curve is available from {@link #getCurve()}.
+     */
+    public boolean addSample(float x, float y, long timestampNanos, float pressure, int flags) {
+        if ((flags & FLAG_STROKE_START) != 0) {
+            mSvgBuilder.beginStroke();
+            mDecimator.reset();
+            mFitter.startStroke();
+            if (mStrokeStore != null) {
+                if (mStrokeStore.isStrokeOpen() && !mStrokeHasCurve) {
+                    mStrokeStore.discardStroke();
+                }
+                mStrokeStore.beginStroke();
+            }
+            mStrokeHasCurve = false;
+        }
+        if (!mDecimator.filter(x, y, timestampNanos, (flags & FLAG_FORCE) != 0)) {
+            return false;
+        }
+        boolean curve = mFitter.addPoint(x, y, timestampNanos, pressure);
+        mStrokeHasCurve |= curve;
+        if (mStrokeStore != null && mStrokeStore.isStrokeOpen()) {
+            if (curve) {
+                // The fitter runs a sample behind: the curve this sample
+                // completes ends at the previous one, which now has its width.
+                mStrokeStore.setWidth(mStrokeStore.getSampleCount() - 1, mFitter.getCurveEndWidth());
+            }
+            // Until then, this one has the width the stroke has reached.
+            mStrokeStore.add(x, y, timestampNanos, pressure, mFitter.getLastWidth());
+            if ((flags & FLAG_STROKE_END) != 0) {
+                if (mStrokeHasCurve) {
+                    mStrokeStore.endStroke();
+                } else {
+                    mStrokeStore.discardStroke();
+                }
+            }
+        }
+        if (!curve) {
+            return false;
+        }
+        mSvgBuilder.append(mFitter.getCurve(),
+                (mFitter.getCurveStartWidth() + mFitter.getCurveEndWidth()) / 2);
+        mCurveCaps = curveCaps(mFitter, flags);
+        return true;
+    }
+
+    /**
+     * Adds the touch samples of a whole stroke, as the pad received them, and
+     * hands each curve to {@code sink}. They are fed the way the pad feeds
+     * them: the touch-down sample twice, to seed the fitter's window, and it
+     * and the last sample without decimation. A stroke of a single sample is
+     * a tap, lifted where it went down.
+     *
+     * @param pressures the pen pressures, or {@code null} for
+     *                  {@link TimedPoint#DEFAULT_PRESSURE}.
+     * @param sink      receives the curves; may be {@code null} if only the
+     *                  SVG is wanted.
+     * @return the number of curves.
+     */
+    public int addStroke(float[] xs, float[] ys, long[] timestampsNanos, float[] pressures,
+                         int offset, int count, CurveSink sink) {
+        if (count <= 0) {
+            return 0;
+        }
+        int curves = addStrokeSample(xs, ys, timestampsNanos, pressures, offset,
+                FLAG_STROKE_START | FLAG_FORCE, sink);
+        curves += addStrokeSample(xs, ys, timestampsNanos, pressures, offset, FLAG_FORCE, sink);
+        for (int i = 1; i < count - 1; i++) {
+            curves += addStrokeSample(xs, ys, timestampsNanos, pressures, offset + i, 0, sink);
+        }
+        return curves + addStrokeSample(xs, ys, timestampsNanos, pressures, offset + count - 1,
+                FLAG_FORCE | FLAG_STROKE_END, sink);
+    }
+
+    /**
+     * Adds a stroke recorded by {@link #setStrokeStore}, e.g. one copied out
+     * of {@code getStrokes()} with {@link StrokeStore#copyStroke}, and hands
+     * each curve to {@code sink}. Its samples got past decimation, and were
+     * seeded, when they were recorded, so all of them are fed as they are.
+     *
+     * @see #addStroke
+     */
+    public int addRecordedStroke(float[] xs, float[] ys, long[] timestampsNanos, float[] pressures,
+                                 int offset, int count, CurveSink sink) {
+        int curves = 0;
+        for (int i = 0; i < count; i++) {
+            int flags = FLAG_FORCE;
+            if (i == 0) {
+                flags |= FLAG_STROKE_START;
+            }
+            if (i == count - 1) {
+                flags |= FLAG_STROKE_END;
+            }
+            curves += addStrokeSample(xs, ys, timestampsNanos, pressures, offset + i, flags, sink);
+        }
+        return curves;
+    }
+
+    private int addStrokeSample(float[] xs, float[] ys, long[] timestampsNanos, float[] pressures,
+                                int index, int flags, CurveSink sink) {
+        float pressure = pressures != null ? pressures[index] : TimedPoint.DEFAULT_PRESSURE;
+        if (!addSample(xs[index], ys[index], timestampsNanos[index], pressure, flags)) {
+            return 0;
+        }
+        if (sink != null) {
+            sink.onCurve(getCurve(), getCurveStartWidth(), getCurveEndWidth(), mCurveCaps);
+        }
+        return 1;
+    }
+
+    /**
+     * The curve produced by the last {@link #addSample} that returned
+     * {@code true}. The instance is reused by the next call.
+     */
+    public Bezier getCurve() {
+        return mFitter.getCurve();
+    }
+
+    public float getCurveStartWidth() {
+        return mFitter.getCurveStartWidth();
+    }
+
+    public float getCurveEndWidth() {
+        return mFitter.getCurveEndWidth();
+    }
+
+    /**
+     * @return which ends of the current curve are stroke ends, see
+     * {@link StrokeOutline#CAP_START}.
+     */
+    public int getCurveCaps() {
+        return mCurveCaps;
+    }
+
+    /**
+     * Drops the stroke in progress from the SVG. Its curves were already
+     * handed out.
+     */
+    public void discardStroke() {
+        mSvgBuilder.discardStroke();
+        if (mStrokeStore != null) {
+            mStrokeStore.discardStroke();
+        }
+    }
+
+    /**
+     * @return the SVG document of everything added since the last
+     * {@link #reset()}.
+     */
+    public String buildSvg(int width, int height) {
+        return mSvgBuilder.build(width, height);
+    }
+
+    /**
+     * Writes the SVG document to {@code out}, see
+     * {@link SvgBuilder#writeTo(Appendable, int, int)}.
+     */
+    public void writeSvg(Appendable out, int width, int height) throws IOException {
+        mSvgBuilder.writeTo(out, width, height);
+    }
+
+    /**
+     * Forgets every stroke, the SVG and the recorded samples, and starts the
+     * width and velocity over. The decimation thresholds and statistics are
+     * kept.
+     */
+    public void reset() {
+        mSvgBuilder.clear();
+        mFitter.reset();
+        mDecimator.reset();
+        if (mStrokeStore != null) {
+            mStrokeStore.clear();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.github.gcacace.signaturepad.utils;
+
+/**
+ * Turns a stream of touch samples into Bezier curves with a start and end
+ * stroke width.
+ *
+ * <p>The last four samples are kept in a window; each time it fills up, a curve
+ * is fitted between the middle two and the oldest sample is dropped. The
+ * fitter only does the math: {@link #addPoint} reports whether a curve was
+ * produced, and the caller reads it back through {@link #getCurve()},
+ * {@link #getCurveStartWidth()} and {@link #getCurveEndWidth()} before adding
+ * the next sample. It has no Android dependency and does not allocate once
+ * constructed, so it can run on any thread that owns it.
+ */
+public class StrokeFitter {
+
+    /**
+     * Stroke width follows the pen velocity: faster strokes are thinner.
+     */
+    public static final int WIDTH_MODE_VELOCITY = 0;
+
+    /**
+     * Stroke width follows the pen pressure of each sample.
+     */
+    public static final int WIDTH_MODE_PRESSURE = 1;
+
+    private final TimedPointRingBuffer mPoints = new TimedPointRingBuffer(4);
+
+    private float mMinWidth;
+    private float mMaxWidth;
+    private float mVelocityFilterWeight;
+    private int mWidthMode = WIDTH_MODE_VELOCITY;
+    private final PressureWidthTable mPressureWidthTable;
+
+    private float mLastVelocity;
+    private float mLastWidth;
+    private float mCurveStartWidth;
+    private float mCurveEndWidth;
+    private boolean mStrokeHasCurve;
+    private boolean mCurveIsFirst;
+
+    // Cache
+    private final TimedPoint mCurveStartCached = new TimedPoint();
+    private final TimedPoint mCurveControl1Cached = new TimedPoint();
+    private final TimedPoint mCurveControl2Cached = new TimedPoint();
+    private final TimedPoint mCurveEndCached = new TimedPoint();
+    private final float[] mControlPointsCached = new float[4];
+    private final Bezier mBezierCached = new Bezier();
+
+    /**
+     * @param minWidth             the thinnest stroke, in pixels.
+     * @param maxWidth             the thickest stroke, in pixels.
+     * @param velocityFilterWeight the weight of the newest velocity against the
+     *                             previous one, from 0 to 1.
+     */
+    public StrokeFitter(float minWidth, float maxWidth, float velocityFilterWeight) {
+        mPressureWidthTable = new PressureWidthTable(minWidth, maxWidth);
+        mVelocityFilterWeight = velocityFilterWeight;
+        setWidths(minWidth, maxWidth);
+    }
+
+    /**
+     * Sets the stroke width range. The next curve starts from the middle of it.
+     */
+    public void setWidths(float minWidth, float maxWidth) {
+        mMinWidth = minWidth;
+        mMaxWidth = maxWidth;
+        mLastWidth = (minWidth + maxWidth) / 2f;
+        mPressureWidthTable.set(minWidth, maxWidth);
+    }
+
+    public float getMinWidth() {
+        return mMinWidth;
+    }
+
+    public float getMaxWidth() {
+        return mMaxWidth;
+    }
+
+    public void setVelocityFilterWeight(float velocityFilterWeight) {
+        mVelocityFilterWeight = velocityFilterWeight;
+    }
+
+    public float getVelocityFilterWeight() {
+        return mVelocityFilterWeight;
+    }
+
+    /**
+     * @param widthMode {@link #WIDTH_MODE_VELOCITY} or {@link #WIDTH_MODE_PRESSURE}.
+     */
+    public void setWidthMode(int widthMode) {
+        if (widthMode != WIDTH_MODE_VELOCITY && widthMode != WIDTH_MODE_PRESSURE) {
+            throw new IllegalArgumentException("unknown width mode: " + widthMode);
+        }
+        mWidthMode = widthMode;
+    }
+
+    public int getWidthMode() {
+        return mWidthMode;
+    }
+
+    /**
+     * Starts a new stroke. The width and velocity carry over from the previous
+     * stroke, as they always have.
+     */
+    public void startStroke() {
+        mPoints.clear();
+        mStrokeHasCurve = false;
+    }
+
+    /**
+     * Forgets everything, including the carried-over width and velocity.
+     */
+    public void reset() {
+        mPoints.clear();
+        mStrokeHasCurve = false;
+        mLastVelocity = 0;
+        mLastWidth = (mMinWidth + mMaxWidth) / 2f;
+    }
+
+    /**
+     * The current curve-fitting window, oldest sample first. Read-only by
+     * contract.
+     */
+    public TimedPointRingBuffer getWindow() {
+        return mPoints;
+    }
+
+    /**
+     * @return the end width of the last curve, or the middle of the width range
+     * before the first one.
+     */
+    public float getLastWidth() {
+        return mLastWidth;
+    }
+
+    /**
+     * The curve produced by the last {@link #addPoint} that returned
+     * {@code true}. The instance is reused by the next call.
+     */
+    public Bezier getCurve() {
+        return mBezierCached;
+    }
+
+    public float getCurveStartWidth() {
+        return mCurveStartWidth;
+    }
+
+    public float getCurveEndWidth() {
+        return mCurveEndWidth;
+    }
+
+    /**
+     * @return {@code true} if the current curve is the first of its stroke.
+     */
+    public boolean isFirstCurve() {
+        return mCurveIsFirst;
+    }
+
+    /**
+     * Adds a sample to the window.
+     *
+     * @return {@code true} if a new curve is available from {@link #getCurve()}.
+     */
+    public boolean addPoint(float x, float y, long timestampNanos, float pressure) {
+        mPoints.add(x, y, timestampNanos, pressure);
+
+        int pointsCount = mPoints.size();
+        if (pointsCount > 3) {
+
+            calculateCurveControlPoints(0);
+            float c2X = mControlPointsCached[2];
+            float c2Y = mControlPointsCached[3];
+
+            calculateCurveControlPoints(1);
+            float c3X = mControlPointsCached[0];
+            float c3Y = mControlPointsCached[1];
+
+            // The control points only shape the curve; velocity is measured
+            // between the real samples, so they share the start's timestamp.
+            mPoints.get(1, mCurveStartCached);
+            mPoints.get(2, mCurveEndCached);
+            mCurveControl1Cached.set(c2X, c2Y, mCurveStartCached.timestampNanos);
+            mCurveControl2Cached.set(c3X, c3Y, mCurveStartCached.timestampNanos);
+            Bezier curve = mBezierCached.set(mCurveStartCached, mCurveControl1Cached,
+                    mCurveControl2Cached, mCurveEndCached);
+
+            TimedPoint startPoint = curve.startPoint;
+            TimedPoint endPoint = curve.endPoint;
+
+            if (mWidthMode == WIDTH_MODE_PRESSURE) {
+                // The pen reports the width directly: each end of the Bezier
+                // takes the width of its own sample's pressure.
+                mCurveStartWidth = mPressureWidthTable.width(startPoint.pressure);
+                mCurveEndWidth = mPressureWidthTable.width(endPoint.pressure);
+            } else {
+                float velocity = endPoint.velocityFrom(startPoint);
+                velocity = Float.isNaN(velocity) ? 0.0f : velocity;
+
+                velocity = mVelocityFilterWeight * velocity
+                        + (1 - mVelocityFilterWeight) * mLastVelocity;
+
+                // The Bezier's width starts out as last curve's final width, and
+                // gradually changes to the stroke width calculated from the
+                // velocity between the Bezier's start and end points. Higher
+                // velocities correspond to thinner strokes.
+                mCurveStartWidth = mLastWidth;
+                mCurveEndWidth = strokeWidth(velocity);
+                mLastVelocity = velocity;
+            }
+            mLastWidth = mCurveEndWidth;
+            mCurveIsFirst = !mStrokeHasCurve;
+            mStrokeHasCurve = true;
+
+            // Remove the oldest sample, so that we always have no more than
+            // 4 points in the window.
+            mPoints.removeFirst();
+            return true;
+
+        } else if (pointsCount == 1) {
+            // To reduce the initial lag make it work with 3 points
+            // by duplicating the first point
+            mPoints.add(x, y, timestampNanos, pressure);
+        }
+        return false;
+    }
+
+    /**
+     * Computes the two control points around the middle of three consecutive
+     * window samples, starting at {@code first}, into {@link #mControlPointsCached}
+     * as {c1.x, c1.y, c2.x, c2.y}.
+     */
+    private void calculateCurveControlPoints(int first) {
+        float s1X = mPoints.getX(first);
+        float s1Y = mPoints.getY(first);
+        float s2X = mPoints.getX(first + 1);
+        float s2Y = mPoints.getY(first + 1);
+        float s3X = mPoints.getX(first + 2);
+        float s3Y = mPoints.getY(first + 2);
+
+        float dx1 = s1X - s2X;
+        float dy1 = s1Y - s2Y;
+        float dx2 = s2X - s3X;
+        float dy2 = s2Y - s3Y;
+
+        float m1X = (s1X + s2X) / 2.0f;
+        float m1Y = (s1Y + s2Y) / 2.0f;
+        float m2X = (s2X + s3X) / 2.0f;
+        float m2Y = (s2Y + s3Y) / 2.0f;
+
+        float l1 = (float) Math.sqrt(dx1 * dx1 + dy1 * dy1);
+        float l2 = (float) Math.sqrt(dx2 * dx2 + dy2 * dy2);
+
+        float dxm = (m1X - m2X);
+        float dym = (m1Y - m2Y);
+        float k = l2 / (l1 + l2);
+        if (Float.isNaN(k)) k = 0.0f;
+        float cmX = m2X + dxm * k;
+        float cmY = m2Y + dym * k;
+
+        float tx = s2X - cmX;
+        float ty = s2Y - cmY;
+
+        mControlPointsCached[0] = m1X + tx;
+        mControlPointsCached[1] = m1Y + ty;
+        mControlPointsCached[2] = m2X + tx;
+        mControlPointsCached[3] = m2Y + ty;
+    }
+
+    private float strokeWidth(float velocity) {
+        return Math.max(mMaxWidth / (velocity + 1), mMinWidth);
+    }
+}
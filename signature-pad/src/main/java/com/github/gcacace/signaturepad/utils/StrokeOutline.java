@@ -0,0 +1,199 @@
+package com.github.gcacace.signaturepad.utils;
+
+/**
+ * Outline of a variable-width Bezier segment, so the whole segment can be
+ * filled at once instead of stamped one round dot per pixel of its length.
+ *
+ * <p>The curve is flattened into a centre line. Each centre point is offset by
+ * half the stroke width along the curve normal, to the left and to the right.
+ * The width follows the same {@code startWidth + t^3 * (endWidth - startWidth)}
+ * profile as the dot-stamping renderer. Caps are not part of the outline: the
+ * caller adds a half circle at the ends that need one, see {@link #CAP_START}
+ * and {@link #CAP_END}.
+ */
+public class StrokeOutline {
+
+    /**
+     * The segment starts a stroke and needs a round cap at its start.
+     */
+    public static final int CAP_START = 1;
+
+    /**
+     * The segment ends a stroke and needs a round cap at its end.
+     */
+    public static final int CAP_END = 2;
+
+    /**
+     * Target length of a flattened step, in pixels. Chords this short stay
+     * within a fifth of a pixel of the curve down to a 10px turn radius.
+     */
+    private static final float STEP = 3f;
+    private static final int MAX_STEPS = 64;
+
+    private final float[] mCenterX = new float[MAX_STEPS + 1];
+    private final float[] mCenterY = new float[MAX_STEPS + 1];
+    private final float[] mNormalX = new float[MAX_STEPS + 1];
+    private final float[] mNormalY = new float[MAX_STEPS + 1];
+    private final float[] mHalfWidth = new float[MAX_STEPS + 1];
+    private int mSize;
+
+    private float mLeft;
+    private float mTop;
+    private float mRight;
+    private float mBottom;
+
+    /**
+     * Tessellates a segment.
+     *
+     * @return {@code false} if the segment has no direction (e.g. a tap), in
+     * which case it should be drawn as a dot.
+     */
+    public boolean set(Bezier curve, float startWidth, float endWidth) {
+        float sX = curve.startPoint.x;
+        float sY = curve.startPoint.y;
+        float c1X = curve.control1.x;
+        float c1Y = curve.control1.y;
+        float c2X = curve.control2.x;
+        float c2Y = curve.control2.y;
+        float eX = curve.endPoint.x;
+        float eY = curve.endPoint.y;
+
+        // The control polygon bounds the arc length from above, which is all
+        // the step count needs.
+        float polygonLength = distance(sX, sY, c1X, c1Y)
+                + distance(c1X, c1Y, c2X, c2Y)
+                + distance(c2X, c2Y, eX, eY);
+        if (polygonLength == 0) {
+            mSize = 0;
+            return false;
+        }
+        int steps = Math.min(Math.max((int) Math.ceil(polygonLength / STEP), 1), MAX_STEPS);
+        mSize = steps + 1;
+
+        float widthDelta = endWidth - startWidth;
+        for (int i = 0; i <= steps; i++) {
+            float t = (float) i / steps;
+            float tt = t * t;
+            float ttt = tt * t;
+            float u = 1 - t;
+            float uu = u * u;
+            float uuu = uu * u;
+            mCenterX[i] = uuu * sX + 3 * uu * t * c1X + 3 * u * tt * c2X + ttt * eX;
+            mCenterY[i] = uuu * sY + 3 * uu * t * c1Y + 3 * u * tt * c2Y + ttt * eY;
+            mHalfWidth[i] = (startWidth + ttt * widthDelta) / 2;
+        }
+
+        // Tangents by central differences of the flattened points. They stay
+        // defined where the analytic derivative vanishes, which happens at the
+        // ends of the first curve of a stroke (its control point coincides
+        // with the start). Points with no direction inherit a neighbour's.
+        int firstValid = -1;
+        for (int i = 0; i < mSize; i++) {
+            int prev = Math.max(i - 1, 0);
+            int next = Math.min(i + 1, steps);
+            float tx = mCenterX[next] - mCenterX[prev];
+            float ty = mCenterY[next] - mCenterY[prev];
+            float length = (float) Math.sqrt(tx * tx + ty * ty);
+            if (length > 0) {
+                mNormalX[i] = -ty / length;
+                mNormalY[i] = tx / length;
+                if (firstValid < 0) {
+                    firstValid = i;
+                }
+            } else if (firstValid >= 0) {
+                mNormalX[i] = mNormalX[i - 1];
+                mNormalY[i] = mNormalY[i - 1];
+            }
+        }
+        if (firstValid < 0) {
+            mSize = 0;
+            return false;
+        }
+        for (int i = 0; i < firstValid; i++) {
+            mNormalX[i] = mNormalX[firstValid];
+            mNormalY[i] = mNormalY[firstValid];
+        }
+
+        mLeft = Float.MAX_VALUE;
+        mTop = Float.MAX_VALUE;
+        mRight = -Float.MAX_VALUE;
+        mBottom = -Float.MAX_VALUE;
+        for (int i = 0; i < mSize; i++) {
+            mLeft = Math.min(mLeft, mCenterX[i] - mHalfWidth[i]);
+            mTop = Math.min(mTop, mCenterY[i] - mHalfWidth[i]);
+            mRight = Math.max(mRight, mCenterX[i] + mHalfWidth[i]);
+            mBottom = Math.max(mBottom, mCenterY[i] + mHalfWidth[i]);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of points on each side of the outline.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public float getCenterX(int index) {
+        return mCenterX[index];
+    }
+
+    public float getCenterY(int index) {
+        return mCenterY[index];
+    }
+
+    /**
+     * @return the x of the unit normal, pointing to the left side.
+     */
+    public float getNormalX(int index) {
+        return mNormalX[index];
+    }
+
+    public float getNormalY(int index) {
+        return mNormalY[index];
+    }
+
+    public float getHalfWidth(int index) {
+        return mHalfWidth[index];
+    }
+
+    public float getLeftX(int index) {
+        return mCenterX[index] + mNormalX[index] * mHalfWidth[index];
+    }
+
+    public float getLeftY(int index) {
+        return mCenterY[index] + mNormalY[index] * mHalfWidth[index];
+    }
+
+    public float getRightX(int index) {
+        return mCenterX[index] - mNormalX[index] * mHalfWidth[index];
+    }
+
+    public float getRightY(int index) {
+        return mCenterY[index] - mNormalY[index] * mHalfWidth[index];
+    }
+
+    // Bounds of the outline including round caps at both ends.
+
+    public float getBoundsLeft() {
+        return mLeft;
+    }
+
+    public float getBoundsTop() {
+        return mTop;
+    }
+
+    public float getBoundsRight() {
+        return mRight;
+    }
+
+    public float getBoundsBottom() {
+        return mBottom;
+    }
+
+    private static float distance(float x1, float y1, float x2, float y2) {
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+}
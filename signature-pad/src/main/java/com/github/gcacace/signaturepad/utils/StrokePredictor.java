@@ -0,0 +1,158 @@
+package com.github.gcacace.signaturepad.utils;
+
+/**
+ * Extrapolates where the pen will be a short time ahead of the newest sample,
+ * so a transient overlay can hide part of the input-to-ink latency.
+ *
+ * <p>The prediction assumes constant velocity over the curve-fitting window:
+ * the velocity between its oldest and newest samples is projected forward by
+ * the horizon. Predictions are also scored against the samples that actually
+ * arrive, see {@link #getStats()}.
+ */
+public class StrokePredictor {
+
+    private long mHorizonNanos;
+
+    // Previous real sample, used to interpolate the actual position at the
+    // target time of the pending prediction.
+    private boolean mHasLastSample;
+    private float mLastX;
+    private float mLastY;
+    private long mLastTimestampNanos;
+
+    // Prediction waiting to be scored. Only one is tracked at a time: newer
+    // predictions are not scored until it resolves.
+    private boolean mHasPending;
+    private float mPendingX;
+    private float mPendingY;
+    private long mPendingTimestampNanos;
+
+    private int mScoredCount;
+    private double mErrorSum;
+    private float mMaxError;
+
+    public StrokePredictor(long horizonNanos) {
+        setHorizonNanos(horizonNanos);
+    }
+
+    public long getHorizonNanos() {
+        return mHorizonNanos;
+    }
+
+    /**
+     * @param horizonNanos how far ahead to predict, in nanoseconds. {@code 0}
+     *                     disables prediction.
+     */
+    public void setHorizonNanos(long horizonNanos) {
+        if (horizonNanos < 0) {
+            throw new IllegalArgumentException("horizon must be >= 0");
+        }
+        mHorizonNanos = horizonNanos;
+    }
+
+    /**
+     * Forgets the current stroke. Error statistics are kept.
+     */
+    public void reset() {
+        mHasLastSample = false;
+        mHasPending = false;
+    }
+
+    /**
+     * Records a real sample, scoring the pending prediction once a sample at or
+     * past its target time arrives.
+     */
+    public void addSample(float x, float y, long timestampNanos) {
+        if (mHasPending && mHasLastSample && timestampNanos >= mPendingTimestampNanos) {
+            float actualX = x;
+            float actualY = y;
+            long span = timestampNanos - mLastTimestampNanos;
+            if (span > 0 && mPendingTimestampNanos > mLastTimestampNanos) {
+                float f = (float) (mPendingTimestampNanos - mLastTimestampNanos) / span;
+                actualX = mLastX + (x - mLastX) * f;
+                actualY = mLastY + (y - mLastY) * f;
+            }
+            float dx = actualX - mPendingX;
+            float dy = actualY - mPendingY;
+            float error = (float) Math.sqrt(dx * dx + dy * dy);
+            mScoredCount++;
+            mErrorSum += error;
+            mMaxError = Math.max(mMaxError, error);
+            mHasPending = false;
+        }
+        mHasLastSample = true;
+        mLastX = x;
+        mLastY = y;
+        mLastTimestampNanos = timestampNanos;
+    }
+
+    /**
+     * Predicts the pen position {@link #getHorizonNanos()} after the newest
+     * sample of {@code window}.
+     *
+     * @param window the curve-fitting window, oldest sample first.
+     * @param out    receives the predicted {x, y}.
+     * @return {@code false} if no prediction could be made: prediction is
+     * disabled, or the window holds no two samples with distinct timestamps.
+     */
+    public boolean predict(TimedPointRingBuffer window, float[] out) {
+        int size = window.size();
+        if (mHorizonNanos == 0 || size < 2) {
+            return false;
+        }
+        int newest = size - 1;
+        long newestTimestamp = window.getTimestampNanos(newest);
+        long span = newestTimestamp - window.getTimestampNanos(0);
+        if (span <= 0) {
+            return false;
+        }
+        float scale = (float) mHorizonNanos / span;
+        float newestX = window.getX(newest);
+        float newestY = window.getY(newest);
+        out[0] = newestX + (newestX - window.getX(0)) * scale;
+        out[1] = newestY + (newestY - window.getY(0)) * scale;
+
+        if (!mHasPending) {
+            mHasPending = true;
+            mPendingX = out[0];
+            mPendingY = out[1];
+            mPendingTimestampNanos = newestTimestamp + mHorizonNanos;
+        }
+        return true;
+    }
+
+    /**
+     * @return how far scored predictions landed from the actual samples.
+     */
+    public Stats getStats() {
+        return new Stats(mScoredCount,
+                mScoredCount == 0 ? 0f : (float) (mErrorSum / mScoredCount),
+                mMaxError);
+    }
+
+    public void resetStats() {
+        mScoredCount = 0;
+        mErrorSum = 0;
+        mMaxError = 0;
+    }
+
+    /**
+     * Snapshot of the prediction error, in pixels.
+     */
+    public static final class Stats {
+        public final int count;
+        public final float meanError;
+        public final float maxError;
+
+        public Stats(int count, float meanError, float maxError) {
+            this.count = count;
+            this.meanError = meanError;
+            this.maxError = maxError;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{count=" + count + ", meanError=" + meanError + ", maxError=" + maxError + "}";
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.github.gcacace.signaturepad.utils;
+
+import java.util.Arrays;
+
+/**
+ * The samples of every stroke, in order: position, time, pen pressure and the
+ * stroke width the curve fitter had reached when the sample came in, kept so
+ * that the signature can be exported, saved and analysed again from one
+ * record rather than from its pixels or SVG.
+ *
+ * <p>Everything is stored in growable primitive arrays, four floats and a
+ * long per sample and an int per stroke, with no per-sample objects. Strokes
+ * are only ever appended, or dropped from the end. {@link #getMemoryBytes()}
+ * reports exactly what the arrays take.
+ *
+ * <p>The samples are the ones that were fed to the curve fitter, after
+ * decimation, so replaying them through a {@link StrokeEngine} gives the same
+ * curves again.
+ */
+public class StrokeStore {
+
+    private static final int BYTES_PER_SAMPLE = 4 * 4 + 8;
+    private static final int BYTES_PER_STROKE = 4;
+
+    private float[] mXs;
+    private float[] mYs;
+    private long[] mTimestamps;
+    private float[] mPressures;
+    private float[] mWidths;
+    private int mSampleCount;
+
+    // The index one past the last sample of each stroke; the open stroke, if
+    // any, is the last one and ends at mSampleCount.
+    private int[] mStrokeEnds;
+    private int mStrokeCount;
+    private boolean mStrokeOpen;
+
+    /**
+     * @param initialSamples the number of samples to make room for up front.
+     * @param initialStrokes the number of strokes to make room for up front.
+     */
+    public StrokeStore(int initialSamples, int initialStrokes) {
+        int samples = Math.max(initialSamples, 1);
+        mXs = new float[samples];
+        mYs = new float[samples];
+        mTimestamps = new long[samples];
+        mPressures = new float[samples];
+        mWidths = new float[samples];
+        mStrokeEnds = new int[Math.max(initialStrokes, 1)];
+    }
+
+    /**
+     * Starts a new stroke, ending the open one, if any.
+     */
+    public void beginStroke() {
+        endStroke();
+        if (mStrokeCount == mStrokeEnds.length) {
+            mStrokeEnds = Arrays.copyOf(mStrokeEnds, mStrokeEnds.length * 2);
+        }
+        mStrokeEnds[mStrokeCount++] = mSampleCount;
+        mStrokeOpen = true;
+    }
+
+    /**
+     * Appends a sample to the open stroke.
+     *
+     * @throws IllegalStateException if no stroke is open.
+     */
+    public void add(float x, float y, long timestampNanos, float pressure, float width) {
+        if (!mStrokeOpen) {
+            throw new IllegalStateException("no stroke was begun");
+        }
+        if (mSampleCount == mXs.length) {
+            int capacity = mXs.length * 2;
+            mXs = Arrays.copyOf(mXs, capacity);
+            mYs = Arrays.copyOf(mYs, capacity);
+            mTimestamps = Arrays.copyOf(mTimestamps, capacity);
+            mPressures = Arrays.copyOf(mPressures, capacity);
+            mWidths = Arrays.copyOf(mWidths, capacity);
+        }
+        int i = mSampleCount++;
+        mXs[i] = x;
+        mYs[i] = y;
+        mTimestamps[i] = timestampNanos;
+        mPressures[i] = pressure;
+        mWidths[i] = width;
+        mStrokeEnds[mStrokeCount - 1] = mSampleCount;
+    }
+
+    /**
+     * Ends the open stroke, if any. A stroke without samples is dropped.
+     */
+    public void endStroke() {
+        if (mStrokeOpen) {
+            mStrokeOpen = false;
+            if (getStrokeStart(mStrokeCount - 1) == mSampleCount) {
+                mStrokeCount--;
+            }
+        }
+    }
+
+    /**
+     * Appends a copy of a stroke of {@code source} as a new, ended stroke,
+     * ending the open one, if any.
+     */
+    public void appendStroke(StrokeStore source, int stroke) {
+        int start = source.getStrokeStart(stroke);
+        int end = source.mStrokeEnds[stroke];
+        beginStroke();
+        for (int i = start; i < end; i++) {
+            add(source.mXs[i], source.mYs[i], source.mTimestamps[i], source.mPressures[i], source.mWidths[i]);
+        }
+        endStroke();
+    }
+
+    /**
+     * Drops the open stroke, if any.
+     */
+    public void discardStroke() {
+        if (mStrokeOpen) {
+            mStrokeOpen = false;
+            mStrokeCount--;
+            mSampleCount = mStrokeCount > 0 ? mStrokeEnds[mStrokeCount - 1] : 0;
+        }
+    }
+
+    /**
+     * Keeps the first {@code strokeCount} strokes and drops the rest,
+     * including the open one.
+     */
+    public void truncate(int strokeCount) {
+        if (strokeCount < 0 || strokeCount > mStrokeCount) {
+            throw new IndexOutOfBoundsException("strokeCount " + strokeCount + ", was " + mStrokeCount);
+        }
+        mStrokeOpen = false;
+        mStrokeCount = strokeCount;
+        mSampleCount = strokeCount > 0 ? mStrokeEnds[strokeCount - 1] : 0;
+    }
+
+    /**
+     * Forgets every stroke, keeping the arrays for reuse.
+     */
+    public void clear() {
+        mSampleCount = 0;
+        mStrokeCount = 0;
+        mStrokeOpen = false;
+    }
+
+    /**
+     * Scales and then offsets every sample's position, and scales the widths
+     * by {@code widthScale}, like {@link CurveList#transform}.
+     */
+    public void transform(float scaleX, float scaleY, float dx, float dy, float widthScale) {
+        for (int i = 0; i < mSampleCount; i++) {
+            mXs[i] = mXs[i] * scaleX + dx;
+            mYs[i] = mYs[i] * scaleY + dy;
+            mWidths[i] *= widthScale;
+        }
+    }
+
+    public int getStrokeCount() {
+        return mStrokeCount;
+    }
+
+    public int getSampleCount() {
+        return mSampleCount;
+    }
+
+    public boolean isEmpty() {
+        return mStrokeCount == 0;
+    }
+
+    /**
+     * @return {@code true} while a stroke is being appended to.
+     */
+    public boolean isStrokeOpen() {
+        return mStrokeOpen;
+    }
+
+    /**
+     * @return the index of the first sample of a stroke.
+     */
+    public int getStrokeStart(int stroke) {
+        checkStroke(stroke);
+        return stroke > 0 ? mStrokeEnds[stroke - 1] : 0;
+    }
+
+    /**
+     * @return the index one past the last sample of a stroke.
+     */
+    public int getStrokeEnd(int stroke) {
+        checkStroke(stroke);
+        return mStrokeEnds[stroke];
+    }
+
+    public float getX(int sample) {
+        checkSample(sample);
+        return mXs[sample];
+    }
+
+    public float getY(int sample) {
+        checkSample(sample);
+        return mYs[sample];
+    }
+
+    public long getTimestamp(int sample) {
+        checkSample(sample);
+        return mTimestamps[sample];
+    }
+
+    public float getPressure(int sample) {
+        checkSample(sample);
+        return mPressures[sample];
+    }
+
+    public float getWidth(int sample) {
+        checkSample(sample);
+        return mWidths[sample];
+    }
+
+    /**
+     * Replaces the width of a sample already added, e.g. once the curve that
+     * ends at it has been fitted.
+     */
+    public void setWidth(int sample, float width) {
+        checkSample(sample);
+        mWidths[sample] = width;
+    }
+
+    /**
+     * @return the bytes taken by the arrays, allocated capacity included.
+     */
+    public long getMemoryBytes() {
+        return (long) mXs.length * BYTES_PER_SAMPLE + (long) mStrokeEnds.length * BYTES_PER_STROKE;
+    }
+
+    /**
+     * @return the bytes taken by the stored samples and strokes alone.
+     */
+    public long getUsedBytes() {
+        return (long) mSampleCount * BYTES_PER_SAMPLE + (long) mStrokeCount * BYTES_PER_STROKE;
+    }
+
+    /**
+     * @return a new read-only cursor over the strokes, see {@link Cursor}.
+     */
+    public Cursor cursor() {
+        return new Cursor(this);
+    }
+
+    /**
+     * Copies the samples of {@code stroke} into the given arrays, which must
+     * have room for them from {@code offset} on. Any of them may be
+     * {@code null} to skip that field.
+     *
+     * @return the number of samples copied.
+     */
+    public int copyStroke(int stroke, float[] xs, float[] ys, long[] timestampsNanos,
+                          float[] pressures, float[] widths, int offset) {
+        int start = getStrokeStart(stroke);
+        int count = mStrokeEnds[stroke] - start;
+        if (xs != null) {
+            System.arraycopy(mXs, start, xs, offset, count);
+        }
+        if (ys != null) {
+            System.arraycopy(mYs, start, ys, offset, count);
+        }
+        if (timestampsNanos != null) {
+            System.arraycopy(mTimestamps, start, timestampsNanos, offset, count);
+        }
+        if (pressures != null) {
+            System.arraycopy(mPressures, start, pressures, offset, count);
+        }
+        if (widths != null) {
+            System.arraycopy(mWidths, start, widths, offset, count);
+        }
+        return count;
+    }
+
+    private void checkStroke(int stroke) {
+        if (stroke < 0 || stroke >= mStrokeCount) {
+            throw new IndexOutOfBoundsException("stroke " + stroke + ", count " + mStrokeCount);
+        }
+    }
+
+    private void checkSample(int sample) {
+        if (sample < 0 || sample >= mSampleCount) {
+            throw new IndexOutOfBoundsException("sample " + sample + ", count " + mSampleCount);
+        }
+    }
+
+    /**
+     * Walks the strokes one sample at a time, without allocating and without
+     * any way to change them:
+     * <pre>
+     * while (cursor.nextStroke()) {
+     *     while (cursor.nextSample()) {
+     *         use(cursor.getX(), cursor.getY(), cursor.getWidth());
+     *     }
+     * }
+     * </pre>
+     * The cursor reads the store as it is when it moves, so it must not be
+     * used while strokes are appended from another thread.
+     */
+    public static final class Cursor {
+        private final StrokeStore mStore;
+        private int mStroke = -1;
+        private int mSample = -1;
+        private int mStrokeEnd;
+
+        Cursor(StrokeStore store) {
+            mStore = store;
+        }
+
+        /**
+         * Moves to the start of the next stroke.
+         *
+         * @return {@code false} once there are no more strokes.
+         */
+        public boolean nextStroke() {
+            if (mStroke + 1 >= mStore.mStrokeCount) {
+                mStroke = mStore.mStrokeCount;
+                return false;
+            }
+            mStroke++;
+            mSample = mStore.getStrokeStart(mStroke) - 1;
+            mStrokeEnd = mStore.mStrokeEnds[mStroke];
+            return true;
+        }
+
+        /**
+         * Moves to the next sample of the current stroke.
+         *
+         * @return {@code false} once there are no more in it.
+         */
+        public boolean nextSample() {
+            if (mStroke < 0 || mSample + 1 >= mStrokeEnd) {
+                return false;
+            }
+            mSample++;
+            return true;
+        }
+
+        /**
+         * Goes back to before the first stroke.
+         */
+        public void rewind() {
+            mStroke = -1;
+            mSample = -1;
+            mStrokeEnd = 0;
+        }
+
+        public int getStrokeCount() {
+            return mStore.mStrokeCount;
+        }
+
+        /**
+         * @return the index of the current stroke.
+         */
+        public int getStroke() {
+            return mStroke;
+        }
+
+        /**
+         * @return the number of samples in the current stroke.
+         */
+        public int getStrokeSize() {
+            return mStrokeEnd - mStore.getStrokeStart(mStroke);
+        }
+
+        public float getX() {
+            return mStore.mXs[mSample];
+        }
+
+        public float getY() {
+            return mStore.mYs[mSample];
+        }
+
+        public long getTimestamp() {
+            return mStore.mTimestamps[mSample];
+        }
+
+        public float getPressure() {
+            return mStore.mPressures[mSample];
+        }
+
+        public float getWidth() {
+            return mStore.mWidths[mSample];
+        }
+    }
+}
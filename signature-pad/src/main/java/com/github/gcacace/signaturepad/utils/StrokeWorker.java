@@ -0,0 +1,305 @@
+package com.github.gcacace.signaturepad.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a {@link StrokeEngine} (decimation, curve fitting and SVG building) on
+ * a dedicated thread.
+ *
+ * <p>The input thread only {@link #push}es raw samples into a lock-free
+ * {@link SpscRing}. The worker feeds them through the same
+ * {@link StrokeEngine#addSample} step the synchronous path uses, and
+ * publishes each curve's geometry and widths through a second ring, from
+ * which the input thread {@link #pollCurve}s them for drawing. The curves are
+ * therefore identical to the synchronous ones, only later.
+ *
+ * <p>The engine is handed over to the worker: the input thread may only touch
+ * it while {@link #isIdle()} returns {@code true}, which also makes the
+ * worker's writes visible to it. Without
+ * {@link #start()}, the worker does nothing until {@link #processPending()} is
+ * called, which lets tests drive it deterministically on a single thread.
+ */
+public class StrokeWorker implements Runnable {
+
+    /**
+     * Notified on the worker thread after it has published new curves.
+     */
+    public interface Callback {
+        void onCurvesAvailable();
+    }
+
+    /**
+     * How long {@link #push(float, float, long, float, int, Runnable)} waits
+     * for the worker thread to make room before it processes the queue itself.
+     */
+    public static final long MAX_PUSH_WAIT_NANOS = 100000000L;
+
+    private static final int SAMPLE_X = 0;
+    private static final int SAMPLE_Y = 1;
+    private static final int SAMPLE_PRESSURE = 2;
+    private static final int SAMPLE_FLOATS = 3;
+
+    private static final int CURVE_START_X = 0;
+    private static final int CURVE_START_Y = 1;
+    private static final int CURVE_CONTROL1_X = 2;
+    private static final int CURVE_CONTROL1_Y = 3;
+    private static final int CURVE_CONTROL2_X = 4;
+    private static final int CURVE_CONTROL2_Y = 5;
+    private static final int CURVE_END_X = 6;
+    private static final int CURVE_END_Y = 7;
+    private static final int CURVE_START_WIDTH = 8;
+    private static final int CURVE_END_WIDTH = 9;
+    private static final int CURVE_FLOATS = 10;
+
+    private final StrokeEngine mEngine;
+    private final Callback mCallback;
+
+    private final SpscRing mSamples;
+    private final SpscRing mCurves;
+
+    // Written by the input thread only.
+    private long mPushedCount;
+    // Written by the worker only, after the sample's curve is published.
+    private final AtomicLong mProcessedCount = new AtomicLong();
+
+    private volatile Thread mThread;
+    private volatile boolean mRunning;
+
+    /**
+     * @param sampleCapacity the number of raw samples that can be queued, a
+     *                       power of two.
+     * @param curveCapacity  the number of finished curves that can wait to be
+     *                       drawn, a power of two.
+     */
+    public StrokeWorker(StrokeEngine engine, Callback callback, int sampleCapacity, int curveCapacity) {
+        mEngine = engine;
+        mCallback = callback;
+        mSamples = new SpscRing(sampleCapacity, SAMPLE_FLOATS);
+        mCurves = new SpscRing(curveCapacity, CURVE_FLOATS);
+    }
+
+    /**
+     * Starts the worker thread, if it is not running yet.
+     */
+    public void start() {
+        if (mThread != null) {
+            return;
+        }
+        mRunning = true;
+        Thread thread = new Thread(this, "SignaturePad-StrokeWorker");
+        thread.setDaemon(true);
+        mThread = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the worker thread and waits for it to exit. Samples still queued
+     * stay queued; call it once {@link #isIdle()}.
+     */
+    public void stop() {
+        Thread thread = mThread;
+        if (thread == null) {
+            return;
+        }
+        mRunning = false;
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        mThread = null;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isStarted() {
+        return mThread != null;
+    }
+
+    @Override
+    public void run() {
+        while (mRunning) {
+            if (!processPending()) {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    /**
+     * Queues a raw sample, see {@link #push(float, float, long, float, int, Runnable)},
+     * for callers that take the finished curves on another thread.
+     */
+    public void push(float x, float y, long timestampNanos, float pressure, int flags) {
+        push(x, y, timestampNanos, pressure, flags, null);
+    }
+
+    /**
+     * Queues a raw sample. Input thread only. If the worker is too far behind
+     * to take it, this waits for room rather than drop the sample.
+     *
+     * <p>The worker stops while the curve queue is full, and only the input
+     * thread empties it, so while it waits, this runs {@code drain}, which must
+     * {@link #pollCurve} the finished curves. If the worker still makes no room
+     * within {@link #MAX_PUSH_WAIT_NANOS}, the worker thread is stopped and the
+     * queue is processed on this thread until there is room, after which the
+     * thread is started again.
+     *
+     * @param flags any of {@link StrokeEngine#FLAG_STROKE_START},
+     *              {@link StrokeEngine#FLAG_FORCE} and
+     *              {@link StrokeEngine#FLAG_STROKE_END}.
+     * @param drain takes the finished curves, or {@code null} if another
+     *              thread does.
+     * @throws IllegalStateException if the queue is full and the worker thread
+     *                               is not started, so nothing would ever make room.
+     */
+    public void push(float x, float y, long timestampNanos, float pressure, int flags, Runnable drain) {
+        int slot = mSamples.claim();
+        if (slot < 0) {
+            long deadline = System.nanoTime() + MAX_PUSH_WAIT_NANOS;
+            while ((slot = mSamples.claim()) < 0) {
+                if (mThread == null) {
+                    throw new IllegalStateException("sample queue is full");
+                }
+                if (drain != null) {
+                    drain.run();
+                    if (System.nanoTime() - deadline > 0) {
+                        slot = makeRoomHere(drain);
+                        break;
+                    }
+                }
+                wake();
+                Thread.yield();
+            }
+        }
+        mSamples.putFloat(slot, SAMPLE_X, x);
+        mSamples.putFloat(slot, SAMPLE_Y, y);
+        mSamples.putFloat(slot, SAMPLE_PRESSURE, pressure);
+        mSamples.putLong(slot, timestampNanos);
+        mSamples.putInt(slot, flags);
+        mSamples.publish();
+        mPushedCount++;
+        wake();
+    }
+
+    /**
+     * Processes the queue on the input thread, with the worker thread
+     * stopped, until a sample slot is free.
+     *
+     * @return the free slot.
+     */
+    private int makeRoomHere(Runnable drain) {
+        stop();
+        int slot;
+        while ((slot = mSamples.claim()) < 0) {
+            processPending();
+            drain.run();
+        }
+        start();
+        return slot;
+    }
+
+    /**
+     * @return {@code true} once every pushed sample has been processed and its
+     * curve, if any, published. Input thread only.
+     */
+    public boolean isIdle() {
+        return mProcessedCount.get() == mPushedCount;
+    }
+
+    /**
+     * Processes the queued samples. Called by the worker thread, or by the only
+     * thread driving the worker when it is not started. A sample yields at most
+     * one curve, so processing stops while the curve queue is full: the drawing
+     * side has to {@link #pollCurve} first, and no ink is ever dropped.
+     *
+     * @return {@code true} if any sample was processed.
+     */
+    public boolean processPending() {
+        boolean processed = false;
+        boolean published = false;
+        int slot;
+        while ((slot = mSamples.peek()) >= 0) {
+            if (mCurves.claim() < 0) {
+                // Make sure the drawing side knows there is work waiting.
+                published = true;
+                break;
+            }
+            float x = mSamples.getFloat(slot, SAMPLE_X);
+            float y = mSamples.getFloat(slot, SAMPLE_Y);
+            float pressure = mSamples.getFloat(slot, SAMPLE_PRESSURE);
+            long timestampNanos = mSamples.getLong(slot);
+            int flags = mSamples.getInt(slot);
+            mSamples.release();
+
+            if (mEngine.addSample(x, y, timestampNanos, pressure, flags)) {
+                publishCurve(mEngine.getCurve(), mEngine.getCurveStartWidth(),
+                        mEngine.getCurveEndWidth(), mEngine.getCurveCaps());
+                published = true;
+            }
+            mProcessedCount.lazySet(mProcessedCount.get() + 1);
+            processed = true;
+        }
+        if (published && mCallback != null) {
+            mCallback.onCurvesAvailable();
+        }
+        return processed;
+    }
+
+    /**
+     * Takes the oldest finished curve. Input thread only.
+     *
+     * @param out    receives the curve geometry into its existing points.
+     *               Timestamps are not carried over.
+     * @param widths receives {start width, end width}.
+     * @return the curve's cap flags, see {@link StrokeEngine#curveCaps}, or {@code -1} if
+     * no curve is waiting.
+     */
+    public int pollCurve(Bezier out, float[] widths) {
+        int slot = mCurves.peek();
+        if (slot < 0) {
+            return -1;
+        }
+        out.startPoint.set(mCurves.getFloat(slot, CURVE_START_X), mCurves.getFloat(slot, CURVE_START_Y), 0);
+        out.control1.set(mCurves.getFloat(slot, CURVE_CONTROL1_X), mCurves.getFloat(slot, CURVE_CONTROL1_Y), 0);
+        out.control2.set(mCurves.getFloat(slot, CURVE_CONTROL2_X), mCurves.getFloat(slot, CURVE_CONTROL2_Y), 0);
+        out.endPoint.set(mCurves.getFloat(slot, CURVE_END_X), mCurves.getFloat(slot, CURVE_END_Y), 0);
+        widths[0] = mCurves.getFloat(slot, CURVE_START_WIDTH);
+        widths[1] = mCurves.getFloat(slot, CURVE_END_WIDTH);
+        int caps = mCurves.getInt(slot);
+        mCurves.release();
+        // The worker may be parked on a full curve queue.
+        wake();
+        return caps;
+    }
+
+    private void publishCurve(Bezier curve, float startWidth, float endWidth, int caps) {
+        // Room was checked before the sample was taken.
+        int slot = mCurves.claim();
+        mCurves.putFloat(slot, CURVE_START_X, curve.startPoint.x);
+        mCurves.putFloat(slot, CURVE_START_Y, curve.startPoint.y);
+        mCurves.putFloat(slot, CURVE_CONTROL1_X, curve.control1.x);
+        mCurves.putFloat(slot, CURVE_CONTROL1_Y, curve.control1.y);
+        mCurves.putFloat(slot, CURVE_CONTROL2_X, curve.control2.x);
+        mCurves.putFloat(slot, CURVE_CONTROL2_Y, curve.control2.y);
+        mCurves.putFloat(slot, CURVE_END_X, curve.endPoint.x);
+        mCurves.putFloat(slot, CURVE_END_Y, curve.endPoint.y);
+        mCurves.putFloat(slot, CURVE_START_WIDTH, startWidth);
+        mCurves.putFloat(slot, CURVE_END_WIDTH, endWidth);
+        mCurves.putInt(slot, caps);
+        mCurves.publish();
+    }
+
+    private void wake() {
+        Thread thread = mThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
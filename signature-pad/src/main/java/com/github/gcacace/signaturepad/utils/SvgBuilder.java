@@ -1,50 +1,136 @@
 package com.github.gcacace.signaturepad.utils;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
 public class SvgBuilder {
 
+    /**
+     * The most chars of paths {@link #writeTo(Appendable, int, int)} hands to
+     * its sink at once.
+     */
+    public static final int CHUNK_CHARS = 8192;
+
+    // About what the document takes besides the paths.
+    private static final int DOCUMENT_OVERHEAD = 320;
+
     private final StringBuilder mSvgPathsBuilder = new StringBuilder();
     private SvgPathBuilder mCurrentPathBuilder = null;
 
+    // What had been built when the current stroke began, for discardStroke();
+    // mStrokeStartLength is -1 outside of a stroke.
+    private int mStrokeStartLength = -1;
+    private SvgPathBuilder mStrokeStartPath;
+    private int mStrokeStartPathLength;
+    private SvgPoint mStrokeStartPathLastPoint;
+
     public SvgBuilder() {
     }
 
     public void clear() {
         mSvgPathsBuilder.setLength(0);
         mCurrentPathBuilder = null;
+        mStrokeStartLength = -1;
+        mStrokeStartPath = null;
+    }
+
+    /**
+     * Marks the start of a stroke, so that the curves appended from now on can
+     * be dropped with {@link #discardStroke()}.
+     */
+    public void beginStroke() {
+        mStrokeStartLength = mSvgPathsBuilder.length();
+        mStrokeStartPath = mCurrentPathBuilder;
+        if (mCurrentPathBuilder != null) {
+            mStrokeStartPathLength = mCurrentPathBuilder.getLength();
+            mStrokeStartPathLastPoint = mCurrentPathBuilder.getLastPoint();
+        }
+    }
+
+    /**
+     * Drops every curve appended since {@link #beginStroke()}, including any the
+     * stroke added to a path it continued. A no-op outside of a stroke.
+     */
+    public void discardStroke() {
+        if (mStrokeStartLength < 0) {
+            return;
+        }
+        // A path flushed by build() since then is still the same object, so
+        // putting it back as the current path undoes the flush as well.
+        mSvgPathsBuilder.setLength(mStrokeStartLength);
+        mCurrentPathBuilder = mStrokeStartPath;
+        if (mCurrentPathBuilder != null) {
+            mCurrentPathBuilder.truncate(mStrokeStartPathLength, mStrokeStartPathLastPoint);
+        }
+        mStrokeStartLength = -1;
+        mStrokeStartPath = null;
     }
 
     public String build(final int width, final int height) {
+        final StringBuilder svg = new StringBuilder(mSvgPathsBuilder.length() + DOCUMENT_OVERHEAD);
+        try {
+            writeTo(svg, width, height);
+        } catch (IOException e) {
+            // A StringBuilder does not throw.
+            throw new AssertionError(e);
+        }
+        return svg.toString();
+    }
+
+    /**
+     * Writes the same document as {@link #build(int, int)} to {@code out}: the
+     * header, the paths, in chunks of at most {@link #CHUNK_CHARS} chars, and
+     * the footer, without making a string of the whole document first.
+     */
+    public void writeTo(final Appendable out, final int width, final int height) throws IOException {
         if (isPathStarted()) {
             appendCurrentPath();
         }
-        return (new StringBuilder())
-                .append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n")
+        out.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n")
                 .append("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.2\" baseProfile=\"tiny\" ")
                 .append("height=\"")
-                .append(height)
+                .append(Integer.toString(height))
                 .append("\" ")
                 .append("width=\"")
-                .append(width)
+                .append(Integer.toString(width))
                 .append("\" ")
                 .append("viewBox=\"")
-                .append(0)
+                .append("0")
                 .append(" ")
-                .append(0)
+                .append("0")
                 .append(" ")
-                .append(width)
+                .append(Integer.toString(width))
                 .append(" ")
-                .append(height)
+                .append(Integer.toString(height))
                 .append("\">")
                 .append("<g ")
                 .append("stroke-linejoin=\"round\" ")
                 .append("stroke-linecap=\"round\" ")
                 .append("fill=\"none\" ")
                 .append("stroke=\"black\"")
-                .append(">")
-                .append(mSvgPathsBuilder)
-                .append("</g>")
-                .append("</svg>")
-                .toString();
+                .append(">");
+        // A Writer copies whatever it is given into a String first, so the
+        // paths go out a chunk at a time.
+        final int length = mSvgPathsBuilder.length();
+        for (int start = 0; start < length; start += CHUNK_CHARS) {
+            out.append(mSvgPathsBuilder, start, Math.min(start + CHUNK_CHARS, length));
+        }
+        out.append("</g>")
+                .append("</svg>");
+    }
+
+    /**
+     * Writes the document to {@code out} as UTF-8, see
+     * {@link #writeTo(Appendable, int, int)}. The stream is flushed but not
+     * closed.
+     */
+    public void writeTo(final OutputStream out, final int width, final int height) throws IOException {
+        final Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writeTo(writer, width, height);
+        writer.flush();
     }
 
     /**
@@ -76,6 +162,21 @@ public class SvgBuilder {
         }
     }
 
+    /**
+     * Starts over from {@code innerPaths}, as {@link #restorePaths(String)}
+     * takes them, followed by {@code curves}, each at its mean width, as the
+     * pad appends them while they are drawn.
+     */
+    public SvgBuilder rebuild(final String innerPaths, final CurveList curves) {
+        clear();
+        restorePaths(innerPaths);
+        final Bezier curve = new Bezier().set(new TimedPoint(), new TimedPoint(), new TimedPoint(), new TimedPoint());
+        for (int i = 0; i < curves.size(); i++) {
+            append(curves.get(i, curve), (curves.getStartWidth(i) + curves.getEndWidth(i)) / 2);
+        }
+        return this;
+    }
+
     public SvgBuilder append(final Bezier curve, final float strokeWidth) {
         final Integer roundedStrokeWidth = Math.round(strokeWidth);
         final SvgPoint curveStartSvgPoint = new SvgPoint(curve.startPoint);
@@ -102,7 +203,7 @@ public class SvgBuilder {
     }
 
     private void appendCurrentPath() {
-        mSvgPathsBuilder.append(mCurrentPathBuilder);
+        mCurrentPathBuilder.appendTo(mSvgPathsBuilder);
         // Null out so build()/getInnerPaths() are idempotent: without this, a
         // second call would flush (and thus duplicate) the same in-progress path
         // again. The append() path re-assigns mCurrentPathBuilder via
@@ -31,6 +31,23 @@ public class SvgPathBuilder {
         return mLastPoint;
     }
 
+    /**
+     * @return how much has been appended so far, to come back to with
+     * {@link #truncate(int, SvgPoint)}.
+     */
+    public int getLength() {
+        return mStringBuilder.length();
+    }
+
+    /**
+     * Drops what was appended after {@link #getLength()} returned {@code length},
+     * when the last point was {@code lastPoint}.
+     */
+    public void truncate(final int length, final SvgPoint lastPoint) {
+        mStringBuilder.setLength(length);
+        mLastPoint = lastPoint;
+    }
+
     public SvgPathBuilder append(final SvgPoint controlPoint1, final SvgPoint controlPoint2, final SvgPoint endPoint) {
         mStringBuilder.append(makeRelativeCubicBezierCurve(controlPoint1, controlPoint2, endPoint));
         mLastPoint = endPoint;
@@ -39,8 +56,17 @@ public class SvgPathBuilder {
 
     @Override
     public String toString() {
-        return (new StringBuilder())
-                .append("<path ")
+        return appendTo(new StringBuilder(mStringBuilder.length() + 48)).toString();
+    }
+
+    /**
+     * Appends the {@code <path>} element to {@code out}, like
+     * {@link #toString()} but without a string of it in between.
+     *
+     * @return {@code out}.
+     */
+    public StringBuilder appendTo(final StringBuilder out) {
+        return out.append("<path ")
                 .append("stroke-width=\"")
                 .append(mStrokeWidth)
                 .append("\" ")
@@ -48,8 +74,7 @@ public class SvgPathBuilder {
                 .append(SVG_MOVE)
                 .append(mStartPoint)
                 .append(mStringBuilder)
-                .append("\"/>")
-                .toString();
+                .append("\"/>");
     }
 
     private String makeRelativeCubicBezierCurve(final SvgPoint controlPoint1, final SvgPoint controlPoint2, final SvgPoint endPoint) {
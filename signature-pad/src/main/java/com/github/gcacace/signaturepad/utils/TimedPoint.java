@@ -1,23 +1,69 @@
 package com.github.gcacace.signaturepad.utils;
 
 public class TimedPoint {
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * Pressure assumed for samples that do not report one, matching the value
+     * {@code MotionEvent} uses for input devices without pressure sensing.
+     */
+    public static final float DEFAULT_PRESSURE = 1f;
+
     public float x;
     public float y;
+    /**
+     * Sample time in milliseconds, {@link #timestampNanos} divided down by
+     * {@code set}. It is read-only: {@link #velocityFrom(TimedPoint)} reads
+     * {@link #timestampNanos}, so writing it has no effect. It is on the
+     * monotonic clock of {@link Clock#nanoTime()}, not the epoch time of
+     * {@link System#currentTimeMillis()} it used to hold.
+     *
+     * @deprecated read {@link #timestampNanos} instead.
+     */
+    @Deprecated
     public long timestamp;
+    public long timestampNanos;
+    public float pressure = DEFAULT_PRESSURE;
 
     public TimedPoint set(float x, float y) {
+        return set(x, y, Clock.SYSTEM.nanoTime());
+    }
+
+    /**
+     * Sets the point to the given coordinates, stamped with the time the sample
+     * was taken rather than the time it is processed.
+     *
+     * @param timestampNanos the sample time, in nanoseconds.
+     */
+    public TimedPoint set(float x, float y, long timestampNanos) {
+        return set(x, y, timestampNanos, DEFAULT_PRESSURE);
+    }
+
+    /**
+     * Sets the point to the given coordinates, sample time and pen pressure.
+     *
+     * @param timestampNanos the sample time, in nanoseconds.
+     * @param pressure       the normalized pen pressure, nominally 0 to 1.
+     */
+    public TimedPoint set(float x, float y, long timestampNanos, float pressure) {
         this.x = x;
         this.y = y;
-        this.timestamp = System.currentTimeMillis();
+        this.timestampNanos = timestampNanos;
+        this.timestamp = timestampNanos / NANOS_PER_MILLI;
+        this.pressure = pressure;
         return this;
     }
 
+    /**
+     * @return the velocity from {@code start} to this point, in pixels per
+     * millisecond. Identical or backwards timestamps are treated as 1ms apart.
+     */
     public float velocityFrom(TimedPoint start) {
-        long diff = this.timestamp - start.timestamp;
+        long diff = this.timestampNanos - start.timestampNanos;
         if(diff <= 0) {
-            diff = 1;
+            diff = NANOS_PER_MILLI;
         }
-        float velocity = distanceTo(start) / diff;
+        float velocity = distanceTo(start) * NANOS_PER_MILLI / diff;
         if (Float.isInfinite(velocity) || Float.isNaN(velocity)) {
             velocity = 0;
         }
@@ -0,0 +1,119 @@
+package com.github.gcacace.signaturepad.utils;
+
+/**
+ * Fixed-capacity ring buffer of timed points, stored as parallel primitive
+ * arrays rather than {@link TimedPoint} objects.
+ *
+ * <p>Points are addressed by their index from the oldest one, so removing the
+ * oldest point is a head move instead of an array shift, and no operation
+ * allocates once the buffer is constructed.
+ */
+public class TimedPointRingBuffer {
+
+    private final float[] mX;
+    private final float[] mY;
+    private final long[] mTimestampNanos;
+    private final float[] mPressure;
+    private int mHead;
+    private int mSize;
+
+    public TimedPointRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        mX = new float[capacity];
+        mY = new float[capacity];
+        mTimestampNanos = new long[capacity];
+        mPressure = new float[capacity];
+    }
+
+    public int capacity() {
+        return mX.length;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public void clear() {
+        mHead = 0;
+        mSize = 0;
+    }
+
+    /**
+     * Appends a point with {@link TimedPoint#DEFAULT_PRESSURE}.
+     */
+    public void add(float x, float y, long timestampNanos) {
+        add(x, y, timestampNanos, TimedPoint.DEFAULT_PRESSURE);
+    }
+
+    /**
+     * Appends a point. When the buffer is full the oldest point is overwritten.
+     */
+    public void add(float x, float y, long timestampNanos, float pressure) {
+        int slot;
+        if (mSize == mX.length) {
+            slot = mHead;
+            mHead = (mHead + 1) % mX.length;
+        } else {
+            slot = (mHead + mSize) % mX.length;
+            mSize++;
+        }
+        mX[slot] = x;
+        mY[slot] = y;
+        mTimestampNanos[slot] = timestampNanos;
+        mPressure[slot] = pressure;
+    }
+
+    /**
+     * Drops the oldest point.
+     *
+     * @throws IllegalStateException if the buffer is empty.
+     */
+    public void removeFirst() {
+        if (mSize == 0) {
+            throw new IllegalStateException("buffer is empty");
+        }
+        mHead = (mHead + 1) % mX.length;
+        mSize--;
+    }
+
+    public float getX(int index) {
+        return mX[slot(index)];
+    }
+
+    public float getY(int index) {
+        return mY[slot(index)];
+    }
+
+    public long getTimestampNanos(int index) {
+        return mTimestampNanos[slot(index)];
+    }
+
+    public float getPressure(int index) {
+        return mPressure[slot(index)];
+    }
+
+    /**
+     * Copies a point into {@code out}.
+     *
+     * @param index the index from the oldest point.
+     * @param out   the point to fill.
+     * @return {@code out}, for chaining.
+     */
+    public TimedPoint get(int index, TimedPoint out) {
+        int slot = slot(index);
+        return out.set(mX[slot], mY[slot], mTimestampNanos[slot], mPressure[slot]);
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + mSize);
+        }
+        return (mHead + index) % mX.length;
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.gcacace.signaturepad.view;
+
+import android.os.Build;
+import android.view.MotionEvent;
+
+public class MotionEventCompat {
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * Returns the time the current sample of {@code event} was taken, in nanoseconds.
+     *
+     * @param event the event
+     * @return the event time in the {@link android.os.SystemClock#uptimeMillis()} time base, in nanoseconds.
+     */
+    public static long getEventTimeNanos(MotionEvent event) {
+        // Future (API34+)...
+        if (Build.VERSION.SDK_INT >= 34) {
+            return event.getEventTimeNanos();
+        }
+        // Legacy...
+        return event.getEventTime() * NANOS_PER_MILLI;
+    }
+
+    /**
+     * Returns the time a historical sample of {@code event} was taken, in nanoseconds.
+     *
+     * @param event the event
+     * @param pos which historical value to return; must be less than {@link MotionEvent#getHistorySize()}
+     * @return the historical event time in the {@link android.os.SystemClock#uptimeMillis()} time base, in nanoseconds.
+     */
+    public static long getHistoricalEventTimeNanos(MotionEvent event, int pos) {
+        // Future (API34+)...
+        if (Build.VERSION.SDK_INT >= 34) {
+            return event.getHistoricalEventTimeNanos(pos);
+        }
+        // Legacy...
+        return event.getHistoricalEventTime(pos) * NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.gcacace.signaturepad.views;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+import com.github.gcacace.signaturepad.utils.Bezier;
+import com.github.gcacace.signaturepad.utils.BezierSampler;
+import com.github.gcacace.signaturepad.utils.StrokeOutline;
+
+/**
+ * Rasterizes curves, either as a row of dots or as a filled outline, with the
+ * scratch objects that takes. {@link SignaturePad} has one for the UI thread;
+ * an export running on another thread has its own.
+ */
+class CurveRenderer {
+
+    // Points rendering mode: walks each curve one dot at a time.
+    private final BezierSampler mBezierSampler = new BezierSampler();
+
+    // Outline rendering mode: the tessellated curve and the path it is filled as.
+    private final StrokeOutline mStrokeOutline = new StrokeOutline();
+    private final Path mOutlinePath = new Path();
+    private final RectF mOutlineCapOval = new RectF();
+
+    /**
+     * Rasterizes a curve onto {@code canvas} with {@code paint}, a round-capped
+     * stroke paint. Its width and style are put back afterwards.
+     *
+     * @param outline {@code true} to fill it as an outline, {@code false} to
+     *                stamp it with dots.
+     */
+    void rasterize(Canvas canvas, Paint paint, Bezier curve, float startWidth, float endWidth,
+                   int caps, boolean outline) {
+        if (outline && mStrokeOutline.set(curve, startWidth, endWidth)) {
+            drawOutline(canvas, paint, caps);
+            return;
+        }
+        float originalWidth = paint.getStrokeWidth();
+        BezierSampler sampler = mBezierSampler;
+
+        if (!sampler.start(curve, startWidth, endWidth, (caps & StrokeOutline.CAP_END) != 0)) {
+            // A zero-length curve (e.g. a single tap / dot) would otherwise draw
+            // nothing, because the loop below never runs. Render a single dot so
+            // the tap is visible (#41). The ROUND stroke cap makes drawPoint paint
+            // a filled circle; use the average width to match the SVG segment.
+            paint.setStrokeWidth((startWidth + endWidth) / 2);
+            canvas.drawPoint(curve.startPoint.x, curve.startPoint.y, paint);
+            paint.setStrokeWidth(originalWidth);
+            return;
+        }
+
+        // The dots are as far apart as their width allows, rather than a
+        // pixel apart; the last curve of a stroke also gets one on its end.
+        while (sampler.next()) {
+            paint.setStrokeWidth(sampler.getWidth());
+            canvas.drawPoint(sampler.getX(), sampler.getY(), paint);
+        }
+
+        paint.setStrokeWidth(originalWidth);
+    }
+
+    /**
+     * Fills {@link #mStrokeOutline} onto {@code canvas} with a single draw
+     * call: the left side forwards, a half circle around the end if it is a
+     * stroke end, the right side backwards, and a half circle around the start
+     * if it is a stroke start. Inside a stroke, consecutive curves share their
+     * end point, width and tangent, so their outlines join without caps.
+     */
+    private void drawOutline(Canvas canvas, Paint paint, int caps) {
+        StrokeOutline outline = mStrokeOutline;
+        int last = outline.size() - 1;
+        Path path = mOutlinePath;
+        path.rewind();
+
+        path.moveTo(outline.getLeftX(0), outline.getLeftY(0));
+        for (int i = 1; i <= last; i++) {
+            path.lineTo(outline.getLeftX(i), outline.getLeftY(i));
+        }
+        if ((caps & StrokeOutline.CAP_END) != 0) {
+            addCap(outline, last, 0f);
+        }
+        for (int i = last; i >= 0; i--) {
+            path.lineTo(outline.getRightX(i), outline.getRightY(i));
+        }
+        if ((caps & StrokeOutline.CAP_START) != 0) {
+            addCap(outline, 0, 180f);
+        }
+        path.close();
+
+        Paint.Style style = paint.getStyle();
+        paint.setStyle(Paint.Style.FILL);
+        canvas.drawPath(path, paint);
+        paint.setStyle(style);
+    }
+
+    /**
+     * Appends a half circle around an outline point to {@link #mOutlinePath},
+     * from the left side to the right side ({@code fromNormal} 0) or back
+     * ({@code fromNormal} 180), through the outside of the stroke.
+     */
+    private void addCap(StrokeOutline outline, int index, float fromNormal) {
+        float cx = outline.getCenterX(index);
+        float cy = outline.getCenterY(index);
+        float r = outline.getHalfWidth(index);
+        float normalAngle = (float) Math.toDegrees(
+                Math.atan2(outline.getNormalY(index), outline.getNormalX(index)));
+        mOutlineCapOval.set(cx - r, cy - r, cx + r, cy + r);
+        mOutlinePath.arcTo(mOutlineCapOval, normalAngle + fromNormal, -180f, false);
+    }
+}
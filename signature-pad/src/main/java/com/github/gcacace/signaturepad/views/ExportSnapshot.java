@@ -0,0 +1,143 @@
+package com.github.gcacace.signaturepad.views;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import com.github.gcacace.signaturepad.utils.Bezier;
+import com.github.gcacace.signaturepad.utils.CurveList;
+import com.github.gcacace.signaturepad.utils.SvgBuilder;
+import com.github.gcacace.signaturepad.utils.TimedPoint;
+
+/**
+ * What an asynchronous export of {@link SignaturePad} needs, copied on the UI
+ * thread so that the bitmap or SVG can be made on another one while the user
+ * keeps drawing. Copying the curves takes two array copies; only ink that has
+ * no curves (a bitmap set with {@link SignaturePad#setSignatureBitmap}) is
+ * copied as pixels.
+ *
+ * <p>Nothing in it changes once it is taken, and each export method uses its
+ * own scratch objects, so it can be exported from any thread.
+ */
+class ExportSnapshot {
+
+    private final int mWidth;
+    private final int mHeight;
+    // The ink as curves, or, if mInk is set, only the curves for the SVG.
+    private final CurveList mCurves;
+    private final Bitmap mInk;
+    private final Paint mPaint;
+    // In coverage-only mode every curve takes the pen colour of mPaint.
+    private final boolean mCoverageOnly;
+
+    private final String mRestoredSvgPaths;
+    private final int mSvgWidth;
+    private final int mSvgHeight;
+
+    /**
+     * @param curves           the curves, copied.
+     * @param ink              the ink as an ARGB_8888 bitmap the snapshot may
+     *                         keep and return, or {@code null} to render it
+     *                         from {@code curves}.
+     * @param paint            the pen, copied.
+     * @param restoredSvgPaths SVG paths that go before the curves', or
+     *                         {@code null}.
+     */
+    ExportSnapshot(CurveList curves, Bitmap ink, Paint paint, boolean coverageOnly, int width, int height,
+                   String restoredSvgPaths, int svgWidth, int svgHeight) {
+        mCurves = new CurveList(curves.size());
+        mCurves.addAll(curves);
+        mInk = ink;
+        mPaint = new Paint(paint);
+        mCoverageOnly = coverageOnly;
+        mWidth = width;
+        mHeight = height;
+        mRestoredSvgPaths = restoredSvgPaths;
+        mSvgWidth = svgWidth;
+        mSvgHeight = svgHeight;
+    }
+
+    /**
+     * @return the ink on a transparent background, like
+     * {@link SignaturePad#getTransparentSignatureBitmap()}.
+     */
+    Bitmap renderTransparent() {
+        if (mInk != null) {
+            return mInk;
+        }
+        Bitmap bitmap = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        CurveRenderer renderer = new CurveRenderer();
+        Paint paint = new Paint(mPaint);
+        Bezier curve = new Bezier().set(new TimedPoint(), new TimedPoint(), new TimedPoint(), new TimedPoint());
+        for (int i = 0; i < mCurves.size(); i++) {
+            int flags = mCurves.getFlags(i);
+            paint.setColor(mCoverageOnly ? mPaint.getColor() : mCurves.getColor(i));
+            renderer.rasterize(canvas, paint, mCurves.get(i, curve), mCurves.getStartWidth(i),
+                    mCurves.getEndWidth(i), flags, (flags & SignaturePad.CURVE_FLAG_OUTLINE) != 0);
+        }
+        return bitmap;
+    }
+
+    /**
+     * @return the ink on a white background, like
+     * {@link SignaturePad#getSignatureBitmap()}.
+     */
+    Bitmap renderOnWhite() {
+        Bitmap ink = renderTransparent();
+        Bitmap bitmap = Bitmap.createBitmap(ink.getWidth(), ink.getHeight(), Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(Color.WHITE);
+        canvas.drawBitmap(ink, 0, 0, null);
+        return bitmap;
+    }
+
+    /**
+     * @return the ink cropped to the pixels that are not transparent, or
+     * {@code null} if there are none, like
+     * {@link SignaturePad#getTransparentSignatureBitmap(boolean)}.
+     */
+    Bitmap renderTrimmed() {
+        Bitmap ink = renderTransparent();
+        int width = ink.getWidth();
+        int height = ink.getHeight();
+        // One row at a time, in bulk, rather than a getPixel() call per pixel.
+        int[] row = new int[width];
+        int xMin = width;
+        int xMax = -1;
+        int yMin = -1;
+        int yMax = -1;
+        for (int y = 0; y < height; y++) {
+            ink.getPixels(row, 0, width, 0, y, width, 1);
+            int first = 0;
+            while (first < width && row[first] == Color.TRANSPARENT) {
+                first++;
+            }
+            if (first == width) {
+                continue;
+            }
+            int last = width - 1;
+            while (row[last] == Color.TRANSPARENT) {
+                last--;
+            }
+            if (yMin < 0) {
+                yMin = y;
+            }
+            yMax = y;
+            xMin = Math.min(xMin, first);
+            xMax = Math.max(xMax, last);
+        }
+        if (yMin < 0) {
+            return null;
+        }
+        return Bitmap.createBitmap(ink, xMin, yMin, xMax - xMin + 1, yMax - yMin + 1);
+    }
+
+    /**
+     * @return the SVG document, like {@link SignaturePad#getSignatureSvg()}.
+     */
+    String buildSvg() {
+        return new SvgBuilder().rebuild(mRestoredSvgPaths, mCurves).build(mSvgWidth, mSvgHeight);
+    }
+}
@@ -0,0 +1,248 @@
+package com.github.gcacace.signaturepad.views;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import java.util.Arrays;
+
+/**
+ * Copies of {@link SignaturePad}'s signature raster, each as it was once a
+ * number of its recorded curves had been drawn into it, so that undoing a
+ * stroke rasterizes only the curves after the nearest copy rather than all of
+ * them. The copies are {@link TiledRaster}s, which keep only the tiles that
+ * hold ink, whether the pad itself is tiled or not.
+ *
+ * <p>A copy is taken lazily: it starts out sharing every tile with the
+ * raster, and {@link #take} copies a tile only once the raster is about to
+ * change there, so that a stroke copies the few tiles it touches rather than
+ * the whole raster. Copies that still share a tile share its copy, too.
+ *
+ * <p>At most a fixed number are kept; adding another drops the oldest. A
+ * base copy, of ink that has no curves (a bitmap set with
+ * {@code setSignatureBitmap}), is taken before any curve and never dropped
+ * that way, since nothing else can restore it.
+ */
+class InkCheckpoints {
+
+    private final TiledRaster[] mRasters;
+    private final int[] mCurves;
+    // For each copy, which of its tiles are still the raster's, and how many;
+    // null once it has all of its own.
+    private final boolean[][] mShared;
+    private final int[] mSharedCount;
+    private int mSize;
+    private boolean mHasBase;
+
+    /**
+     * @param maxCount how many copies to keep, besides the base one.
+     */
+    InkCheckpoints(int maxCount) {
+        mRasters = new TiledRaster[maxCount + 1];
+        mCurves = new int[maxCount + 1];
+        mShared = new boolean[maxCount + 1][];
+        mSharedCount = new int[maxCount + 1];
+    }
+
+    /**
+     * Keeps {@code raster} as the raster with the first {@code curves} curves
+     * drawn into it.
+     *
+     * @param base {@code true} if it holds ink that has no curves.
+     */
+    void add(int curves, TiledRaster raster, boolean base) {
+        if (mSize == mRasters.length) {
+            int first = mHasBase ? 1 : 0;
+            System.arraycopy(mRasters, first + 1, mRasters, first, mSize - first - 1);
+            System.arraycopy(mCurves, first + 1, mCurves, first, mSize - first - 1);
+            System.arraycopy(mShared, first + 1, mShared, first, mSize - first - 1);
+            System.arraycopy(mSharedCount, first + 1, mSharedCount, first, mSize - first - 1);
+            mSize--;
+        }
+        mRasters[mSize] = raster;
+        mCurves[mSize] = curves;
+        mShared[mSize] = null;
+        mSize++;
+        mHasBase |= base && mSize == 1;
+    }
+
+    /**
+     * Keeps the raster, of {@code width} x {@code height}, as it is now, with
+     * the first {@code curves} curves drawn into it, without copying it yet:
+     * it has to be passed to {@link #take} before it changes.
+     *
+     * @param base {@code true} if it holds ink that has no curves.
+     */
+    void addShared(int curves, int width, int height, Bitmap.Config config, boolean base) {
+        TiledRaster raster = new TiledRaster(width, height, config);
+        add(curves, raster, base);
+        int tiles = raster.getColumns() * raster.getRows();
+        boolean[] shared = new boolean[tiles];
+        Arrays.fill(shared, true);
+        mShared[mSize - 1] = shared;
+        mSharedCount[mSize - 1] = tiles;
+    }
+
+    /**
+     * @return {@code true} if a copy still shares tiles with the raster, so
+     * {@link #take} has to be called before it changes.
+     */
+    boolean isShared() {
+        for (int i = 0; i < mSize; i++) {
+            if (mShared[i] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies the tiles of {@code area} that copies still share with the
+     * raster, about to change there, from it.
+     *
+     * @param tiled  the raster if it is tiled, or {@code null}.
+     * @param bitmap the raster otherwise.
+     * @param area   the area about to change, or {@code null} for all of it.
+     */
+    void take(TiledRaster tiled, Bitmap bitmap, Rect area) {
+        if (mSize == 0) {
+            return;
+        }
+        TiledRaster grid = mRasters[mSize - 1];
+        int firstColumn = 0;
+        int firstRow = 0;
+        int lastColumn = grid.getColumns() - 1;
+        int lastRow = grid.getRows() - 1;
+        if (area != null) {
+            if (area.isEmpty()) {
+                return;
+            }
+            firstColumn = grid.columnOf(area.left);
+            firstRow = grid.rowOf(area.top);
+            lastColumn = grid.columnOf(area.right - 1);
+            lastRow = grid.rowOf(area.bottom - 1);
+        }
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int index = row * grid.getColumns() + column;
+                boolean copied = false;
+                Bitmap tile = null;
+                for (int i = 0; i < mSize; i++) {
+                    if (mShared[i] == null || !mShared[i][index]) {
+                        continue;
+                    }
+                    if (!copied) {
+                        tile = tiled != null ? tiled.copyTile(column, row) : grid.copyTile(bitmap, column, row);
+                        copied = true;
+                    }
+                    mRasters[i].setTile(column, row, tile);
+                    mShared[i][index] = false;
+                    if (--mSharedCount[i] == 0) {
+                        mShared[i] = null;
+                    }
+                }
+            }
+        }
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    boolean hasBase() {
+        return mHasBase;
+    }
+
+    /**
+     * @return the newest copy taken at or before {@code curves} curves, or -1
+     * if there is none.
+     */
+    int find(int curves) {
+        for (int i = mSize - 1; i >= 0; i--) {
+            if (mCurves[i] <= curves) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    TiledRaster getRaster(int index) {
+        return mRasters[index];
+    }
+
+    int getCurves(int index) {
+        return mCurves[index];
+    }
+
+    /**
+     * @return how many curves the newest copy holds, 0 if there is none.
+     */
+    int getLastCurves() {
+        return mSize > 0 ? mCurves[mSize - 1] : 0;
+    }
+
+    /**
+     * Drops the copies that hold more than the first {@code curves} curves.
+     */
+    void truncate(int curves) {
+        while (mSize > 0 && mCurves[mSize - 1] > curves) {
+            mRasters[--mSize] = null;
+            mShared[mSize] = null;
+        }
+        mHasBase &= mSize > 0;
+    }
+
+    /**
+     * Drops every copy but the base one, transformed by {@code matrix} into a
+     * raster of {@code width} x {@code height}: after a resize the curves are
+     * rasterized again at the new size, but the base ink can only be scaled.
+     * No copy may share tiles with the raster.
+     */
+    void resize(int width, int height, Matrix matrix) {
+        TiledRaster base = null;
+        if (mHasBase) {
+            TiledRaster old = mRasters[0];
+            base = new TiledRaster(width, height, old.getConfig());
+            base.drawBitmap(old.render(new Rect(0, 0, old.getWidth(), old.getHeight()), old.getConfig(), null),
+                    matrix);
+        }
+        clear();
+        if (base != null) {
+            add(0, base, true);
+        }
+    }
+
+    /**
+     * Converts every copy to another configuration, like the raster itself.
+     * No copy may share tiles with the raster.
+     */
+    void convert(Bitmap.Config config, Paint paint) {
+        for (int i = 0; i < mSize; i++) {
+            mRasters[i] = mRasters[i].convert(config, paint);
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < mSize; i++) {
+            mRasters[i] = null;
+            mShared[i] = null;
+        }
+        mSize = 0;
+        mHasBase = false;
+    }
+
+    /**
+     * @return the bytes of pixels the copies take, tiles they share counted
+     * once.
+     */
+    long getByteCount() {
+        long bytes = 0;
+        for (int i = 0; i < mSize; i++) {
+            // Copies sharing a tile are consecutive: all those taken since
+            // the raster last changed there.
+            bytes += mRasters[i].getByteCount(i > 0 ? mRasters[i - 1] : null);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.gcacace.signaturepad.views;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+
+/**
+ * The stroke being drawn, rasterized into a bitmap that only covers the area
+ * it has inked so far, instead of into {@link SignaturePad}'s view-sized
+ * signature bitmap. Each new curve touches, and each frame uploads, only this
+ * small bitmap; the signature bitmap changes once per stroke, when the stroke
+ * is committed to it. A stroke that is thrown away is simply erased.
+ *
+ * <p>The bitmap grows in steps of {@link #GRANULE} pixels as the stroke does,
+ * and is kept for the next stroke. It has the configuration of the signature
+ * raster, so that committing keeps what it would keep.
+ */
+class LiveStrokeLayer {
+
+    private static final int GRANULE = 64;
+
+    private Bitmap.Config mConfig = Bitmap.Config.ARGB_8888;
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    // The area mBitmap covers, and the part of it inked so far, in view
+    // coordinates.
+    private final Rect mBounds = new Rect();
+    private final Rect mUsed = new Rect();
+    private final Rect mNeeded = new Rect();
+    private final Rect mSource = new Rect();
+
+    /**
+     * Sets the configuration of the bitmap, dropping the current one if it
+     * differs. The layer must be empty.
+     */
+    void setConfig(Bitmap.Config config) {
+        if (config != mConfig) {
+            mConfig = config;
+            mBitmap = null;
+            mCanvas = null;
+            mBounds.setEmpty();
+        }
+    }
+
+    /**
+     * @return {@code true} if nothing has been drawn since the last commit or
+     * discard.
+     */
+    boolean isEmpty() {
+        return mUsed.isEmpty();
+    }
+
+    /**
+     * @return the area inked since the last commit or discard, in view
+     * coordinates.
+     */
+    Rect getBounds() {
+        return mUsed;
+    }
+
+    /**
+     * Makes room for drawing in the given area, in view coordinates, and
+     * returns a canvas to draw into, also in view coordinates.
+     *
+     * @param width  the width of the signature bitmap; nothing beyond it is kept.
+     * @param height the height of the signature bitmap.
+     * @return {@code null} if the area is entirely outside the signature bitmap.
+     */
+    Canvas getCanvas(float left, float top, float right, float bottom, int width, int height) {
+        int l = Math.max((int) Math.floor(left), 0);
+        int t = Math.max((int) Math.floor(top), 0);
+        int r = Math.min((int) Math.ceil(right), width);
+        int b = Math.min((int) Math.ceil(bottom), height);
+        if (l >= r || t >= b) {
+            return null;
+        }
+        mNeeded.set(l, t, r, b);
+        mNeeded.union(mUsed);
+        if (!mBounds.contains(mNeeded)) {
+            grow(width, height);
+        }
+        mUsed.union(l, t, r, b);
+        return mCanvas;
+    }
+
+    /**
+     * Draws the stroke onto the view's canvas.
+     */
+    void draw(Canvas canvas, Paint paint) {
+        if (!mUsed.isEmpty()) {
+            toSource(mUsed);
+            canvas.drawBitmap(mBitmap, mSource, mUsed, paint);
+        }
+    }
+
+    /**
+     * Draws the stroke into the signature bitmap's canvas, then erases it here.
+     */
+    void commit(Canvas target) {
+        if (!mUsed.isEmpty()) {
+            toSource(mUsed);
+            target.drawBitmap(mBitmap, mSource, mUsed, null);
+            discard();
+        }
+    }
+
+    /**
+     * Draws the stroke into the tiles of a tiled signature raster, then erases
+     * it here.
+     */
+    void commit(TiledRaster target) {
+        if (!mUsed.isEmpty()) {
+            toSource(mUsed);
+            target.drawBitmap(mBitmap, mSource, mUsed);
+            discard();
+        }
+    }
+
+    /**
+     * @return the bytes of pixels the layer's bitmap takes, 0 before the first
+     * stroke.
+     */
+    long getByteCount() {
+        return mBitmap != null ? mBitmap.getAllocationByteCount() : 0;
+    }
+
+    /**
+     * Erases the stroke without committing it.
+     */
+    void discard() {
+        if (!mUsed.isEmpty()) {
+            mCanvas.save();
+            mCanvas.clipRect(mUsed);
+            mCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            mCanvas.restore();
+            mUsed.setEmpty();
+        }
+    }
+
+    /**
+     * Moves or reallocates the bitmap so that it covers {@link #mNeeded}, with
+     * a granule to spare around it, within the signature bitmap. An empty
+     * layer whose bitmap is large enough is just moved.
+     */
+    private void grow(int width, int height) {
+        int left = Math.max((mNeeded.left / GRANULE - 1) * GRANULE, 0);
+        int top = Math.max((mNeeded.top / GRANULE - 1) * GRANULE, 0);
+        int right = Math.min((mNeeded.right / GRANULE + 2) * GRANULE, width);
+        int bottom = Math.min((mNeeded.bottom / GRANULE + 2) * GRANULE, height);
+
+        if (mUsed.isEmpty() && mBitmap != null
+                && mBitmap.getWidth() >= right - left && mBitmap.getHeight() >= bottom - top) {
+            mBounds.set(left, top, left + mBitmap.getWidth(), top + mBitmap.getHeight());
+        } else {
+            Bitmap bitmap = Bitmap.createBitmap(right - left, bottom - top, mConfig);
+            Canvas canvas = new Canvas(bitmap);
+            if (!mUsed.isEmpty()) {
+                toSource(mUsed);
+                canvas.drawBitmap(mBitmap, mSource, new Rect(
+                        mUsed.left - left, mUsed.top - top, mUsed.right - left, mUsed.bottom - top), null);
+            }
+            mBitmap = bitmap;
+            mCanvas = canvas;
+            mBounds.set(left, top, right, bottom);
+        }
+        mCanvas.restoreToCount(1);
+        mCanvas.save();
+        mCanvas.translate(-mBounds.left, -mBounds.top);
+    }
+
+    /**
+     * Sets {@link #mSource} to {@code area}, in view coordinates, in the
+     * coordinates of the bitmap.
+     */
+    private void toSource(Rect area) {
+        mSource.set(area);
+        mSource.offset(-mBounds.left, -mBounds.top);
+    }
+}
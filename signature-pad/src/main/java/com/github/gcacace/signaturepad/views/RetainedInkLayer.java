@@ -0,0 +1,70 @@
+package com.github.gcacace.signaturepad.views;
+
+import android.annotation.TargetApi;
+import android.graphics.Canvas;
+import android.graphics.RenderNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finished ink kept as GPU display lists for {@link SignaturePad}'s retained
+ * rendering mode: one {@link RenderNode} per recorded run of curves. Drawing
+ * the layer hands the display lists to the hardware canvas as they are, so
+ * nothing is rasterized on the CPU and nothing is uploaded as a texture.
+ */
+@TargetApi(29)
+class RetainedInkLayer {
+
+    private final List<RenderNode> mNodes = new ArrayList<>();
+    private RenderNode mRecording;
+
+    /**
+     * Starts recording a new display list, in view coordinates. Draw into the
+     * returned canvas, then call {@link #endRecording()}.
+     */
+    Canvas beginRecording(int width, int height) {
+        RenderNode node = new RenderNode("SignaturePadInk");
+        node.setPosition(0, 0, width, height);
+        // Ink recorded before the view grew must not be cut off afterwards.
+        node.setClipToBounds(false);
+        mRecording = node;
+        return node.beginRecording(width, height);
+    }
+
+    void endRecording() {
+        mRecording.endRecording();
+        mNodes.add(mRecording);
+        mRecording = null;
+    }
+
+    /**
+     * Draws every display list, oldest first. {@code canvas} must be hardware
+     * accelerated.
+     */
+    void draw(Canvas canvas) {
+        for (int i = 0; i < mNodes.size(); i++) {
+            canvas.drawRenderNode(mNodes.get(i));
+        }
+    }
+
+    int size() {
+        return mNodes.size();
+    }
+
+    /**
+     * Discards the display lists from {@code size} on.
+     */
+    void truncate(int size) {
+        while (mNodes.size() > size) {
+            mNodes.remove(mNodes.size() - 1).discardDisplayList();
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < mNodes.size(); i++) {
+            mNodes.get(i).discardDisplayList();
+        }
+        mNodes.clear();
+    }
+}
@@ -10,11 +10,17 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
 import android.graphics.RectF;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Parcelable;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.View;
@@ -22,20 +28,94 @@ import android.view.ViewTreeObserver;
 
 import com.github.gcacace.signaturepad.R;
 import com.github.gcacace.signaturepad.utils.Bezier;
-import com.github.gcacace.signaturepad.utils.ControlTimedPoints;
-import com.github.gcacace.signaturepad.utils.SvgBuilder;
+import com.github.gcacace.signaturepad.utils.Clock;
+import com.github.gcacace.signaturepad.utils.CurveList;
+import com.github.gcacace.signaturepad.utils.PngStreamWriter;
+import com.github.gcacace.signaturepad.utils.SampleDecimator;
+import com.github.gcacace.signaturepad.utils.SampleQueue;
+import com.github.gcacace.signaturepad.utils.StrokeCodec;
+import com.github.gcacace.signaturepad.utils.StrokeEngine;
+import com.github.gcacace.signaturepad.utils.StrokeFitter;
+import com.github.gcacace.signaturepad.utils.StrokeOutline;
+import com.github.gcacace.signaturepad.utils.StrokePredictor;
+import com.github.gcacace.signaturepad.utils.StrokeStore;
+import com.github.gcacace.signaturepad.utils.StrokeWorker;
 import com.github.gcacace.signaturepad.utils.TimedPoint;
+import com.github.gcacace.signaturepad.utils.TimedPointRingBuffer;
+import com.github.gcacace.signaturepad.view.MotionEventCompat;
 import com.github.gcacace.signaturepad.view.ViewCompat;
 import com.github.gcacace.signaturepad.view.ViewTreeObserverCompat;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class SignaturePad extends View {
     private static final String TAG = SignaturePad.class.getName();
 
+    /**
+     * Stroke width follows the pen velocity: faster strokes are thinner.
+     */
+    public static final int WIDTH_MODE_VELOCITY = StrokeFitter.WIDTH_MODE_VELOCITY;
+
+    /**
+     * Stroke width follows the pen pressure reported by the digitizer. Input
+     * without pressure sensing (e.g. most fingers) draws at a constant width.
+     */
+    public static final int WIDTH_MODE_PRESSURE = StrokeFitter.WIDTH_MODE_PRESSURE;
+
+    /**
+     * Curves are drawn by stamping round dots along them, spaced as far apart
+     * as their width allows.
+     */
+    public static final int RENDER_MODE_POINTS = 0;
+
+    /**
+     * Each curve is tessellated into a variable-width outline and filled with a
+     * single draw call. Round caps are only added at stroke ends.
+     */
+    public static final int RENDER_MODE_OUTLINE = 1;
+
+    /**
+     * When the view is resized, the ink keeps its coordinates: it stays where
+     * it was drawn, and whatever falls outside the new size is cut off.
+     */
+    public static final int RESIZE_MODE_KEEP = 0;
+
+    /**
+     * When the view is resized, the ink is scaled uniformly to the largest
+     * size that fits the new one, and centered in it.
+     */
+    public static final int RESIZE_MODE_FIT = 1;
+
+    /**
+     * When the view is resized, the ink is scaled on each axis to fill the new
+     * size.
+     */
+    public static final int RESIZE_MODE_STRETCH = 2;
+
+    /**
+     * The signature is saved across configuration changes as a PNG of the
+     * signature raster, and scaled to fit the restored view.
+     */
+    public static final int SAVED_STATE_PNG = 0;
+
+    /**
+     * The signature is saved across configuration changes as its recorded
+     * strokes, in the compact {@link StrokeCodec} format, and rasterized
+     * again from them, fitted to the restored view.
+     */
+    public static final int SAVED_STATE_STROKES = 1;
+
     /**
      * Upper bound (in bytes) on the PNG-compressed signature stored in the
      * saved-state {@link Bundle}. Android hands the whole Bundle to the system
@@ -63,18 +143,82 @@ public class SignaturePad extends View {
      */
     int mMaxSavedStateBytesSvg = MAX_SAVED_STATE_BYTES;
 
+    /**
+     * Queue sizes of the background stroke engine. A second of 240 Hz stylus
+     * input fits in the sample queue before the UI thread has to wait, and the
+     * curve queue only has to cover the curves finished between two drains.
+     */
+    private static final int STROKE_WORKER_SAMPLE_CAPACITY = 256;
+    private static final int STROKE_WORKER_CURVE_CAPACITY = 128;
+
+    /**
+     * In retained rendering mode, the curves of a stroke are recorded into a
+     * display list when it ends, or every this many curves while it goes on,
+     * so that redrawing the live stroke stays cheap.
+     */
+    private static final int RETAINED_CHUNK_CURVES = 64;
+
+    // Set on recorded curves drawn in RENDER_MODE_OUTLINE, next to their caps.
+    static final int CURVE_FLAG_OUTLINE = 1 << 8;
+
+    /**
+     * A signature bitmap rasterized again after a resize is allocated with
+     * its sides rounded up to this many pixels, and reused for as long as the
+     * view fits in it, so that dragging a window's edge allocates once every
+     * this many pixels rather than once per frame.
+     */
+    private static final int RESIZE_GRANULE = 128;
+
+    /**
+     * A PNG written with {@link #writeSignaturePng(OutputStream, int, int, boolean)}
+     * is rendered this many pixels at a time: 4 MB of ARGB_8888, in bands of
+     * rows as tall as that allows.
+     */
+    private static final int EXPORT_BAND_PIXELS = 1 << 20;
+
+    /**
+     * Undo keeps at most this many checkpoints of the signature raster, besides
+     * the one of a bitmap set with {@link #setSignatureBitmap(Bitmap)}; taking
+     * another drops the oldest.
+     */
+    private static final int MAX_UNDO_CHECKPOINTS = 4;
+
     //View state
-    private List<TimedPoint> mPoints;
     private boolean mIsEmpty;
     private Boolean mHasEditState;
     private float mLastTouchX;
     private float mLastTouchY;
-    private float mLastVelocity;
-    private float mLastWidth;
+    // Where the drawn ink currently ends, and how wide it is there.
+    private float mInkEndX;
+    private float mInkEndY;
+    private float mInkEndWidth;
     private RectF mDirtyRect;
+    // Union of the dirty regions of all events since the last frame, in
+    // unbuffered input mode (see scheduleInvalidate).
+    private final RectF mPendingInvalidateRect = new RectF();
+    private boolean mInvalidatePending;
+    private final Runnable mInvalidateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mInvalidatePending = false;
+            invalidate(
+                    (int) mPendingInvalidateRect.left,
+                    (int) mPendingInvalidateRect.top,
+                    (int) mPendingInvalidateRect.right,
+                    (int) mPendingInvalidateRect.bottom);
+        }
+    };
     private Bitmap mBitmapSavedState;
 
-    // SVG state staged during onRestoreInstanceState, re-injected into mSvgBuilder
+    // Strokes from saved state, in the StrokeCodec format, with the colour
+    // and outline flag of each stroke, staged by onRestoreInstanceState until
+    // the view is laid out and they can be replayed at its size.
+    private byte[] mRestoredStrokes;
+    private int[] mRestoredStrokeColors;
+    private boolean[] mRestoredStrokeOutlines;
+    private final StrokeCodec mStrokeCodec = new StrokeCodec();
+
+    // SVG state staged during onRestoreInstanceState, re-injected into the SVG builder
     // after setSignatureBitmap()'s clearView() wipes it (see onRestoreInstanceState
     // / setSignatureBitmap). mRestoredSvgWidth/Height are the ORIGINAL view size the
     // paths were captured in, used for a self-consistent viewBox in getSignatureSvg().
@@ -82,19 +226,151 @@ public class SignaturePad extends View {
     private int mRestoredSvgWidth;
     private int mRestoredSvgHeight;
 
-    private final SvgBuilder mSvgBuilder = new SvgBuilder();
-
-    // Cache
-    private List<TimedPoint> mPointsCache = new ArrayList<>();
-    private ControlTimedPoints mControlTimedPointsCached = new ControlTimedPoints();
-    private Bezier mBezierCached = new Bezier();
+    // Turns the samples into curves, widths and SVG: drops redundant samples
+    // (disabled unless a threshold is configured), fits the curves and
+    // builds the SVG.
+    private final StrokeEngine mStrokeEngine;
+
+    // Every sample the engine fitted since the last clear, with its width;
+    // written by the engine, so only read here after awaitStrokeWorker().
+    private final StrokeStore mStrokeStore = new StrokeStore(1024, 32);
+
+    // Runs mStrokeEngine off the UI thread in background stroke engine mode,
+    // null otherwise. While it is set, the engine is only touched here after
+    // awaitStrokeWorker().
+    private StrokeWorker mStrokeWorker;
+    private final Bezier mDrainCurveCached = new Bezier().set(
+            new TimedPoint(), new TimedPoint(), new TimedPoint(), new TimedPoint());
+    private final float[] mDrainWidthsCached = new float[2];
+    private final AtomicBoolean mDrainPosted = new AtomicBoolean();
+    private final Runnable mDrainCurvesRunnable = new Runnable() {
+        @Override
+        public void run() {
+            drainCurves();
+        }
+    };
+    private final Runnable mDrainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mDrainPosted.set(false);
+            if (mFrameCoalescing) {
+                scheduleFrame();
+            } else {
+                drainCurves();
+            }
+        }
+    };
+
+    // Frame coalescing mode: the samples queued for the next frame (unless the
+    // background stroke engine takes them), and the union of what was drawn
+    // since the last frame, invalidated once the frame has drawn.
+    private boolean mFrameCoalescing;
+    private final SampleQueue mFrameSamples = new SampleQueue(64);
+    private final RectF mFrameDirtyRect = new RectF();
+    private boolean mFramePending;
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mFramePending = false;
+            renderFrame();
+        }
+    };
+    private long mEventCount;
+    private long mFrameCount;
+    private final RectF mCurveBoundsCached = new RectF();
+    private final StrokeWorker.Callback mStrokeWorkerCallback = new StrokeWorker.Callback() {
+        @Override
+        public void onCurvesAvailable() {
+            if (mDrainPosted.compareAndSet(false, true)) {
+                post(mDrainRunnable);
+            }
+        }
+    };
+
+    // Predicted stroke segment, drawn as a transient overlay in onDraw. It never
+    // reaches mSignatureBitmap or the SVG builder and is rebuilt on every event,
+    // from the last raw samples in mPredictionWindow.
+    private final StrokePredictor mStrokePredictor = new StrokePredictor(0);
+    private final TimedPointRingBuffer mPredictionWindow = new TimedPointRingBuffer(4);
+    private final Path mPredictionPath = new Path();
+    private final RectF mPredictionBounds = new RectF();
+    private final float[] mPredictionCached = new float[2];
+    private boolean mHasPrediction;
+
+    // Rasterizes curves as dots or outlines, on the UI thread.
+    private final CurveRenderer mCurveRenderer = new CurveRenderer();
+
+    // The stroke being drawn, until it is committed to the signature bitmap,
+    // whether the pad was empty before it began, and whether it can still be
+    // discarded (between its ACTION_DOWN and ACTION_UP).
+    private final LiveStrokeLayer mLiveStrokeLayer = new LiveStrokeLayer();
+    private boolean mStrokeActive;
+    private boolean mEmptyBeforeStroke;
+
+    // Retained rendering mode: every curve drawn since the last clear, the
+    // display lists the first mRetainedSealed of them are recorded in (API 29+
+    // only, null otherwise), and the export rendered from them, if any. The
+    // current stroke starts at curve mRetainedStrokeStart and display list
+    // mRetainedStrokeNodes.
+    private boolean mRetainedRendering;
+    private final CurveList mRetainedCurves = new CurveList(256);
+    private RetainedInkLayer mRetainedInkLayer;
+    private int mRetainedSealed;
+    private Bitmap mRetainedExport;
+    private int mRetainedStrokeStart;
+    private int mRetainedStrokeNodes;
+    private final Bezier mReplayCurveCached = new Bezier().set(
+            new TimedPoint(), new TimedPoint(), new TimedPoint(), new TimedPoint());
+
+    // Every curve drawn since the last clear, in every mode, in the
+    // coordinates of a view of mInkWidth x mInkHeight, so that the ink can be
+    // rasterized again at another size; the current stroke starts at curve
+    // mInkStrokeStart. Once ink that is not among them reaches the signature
+    // raster (a bitmap set with setSignatureBitmap), mInkCurvesComplete is
+    // cleared, and a resize transforms the raster's pixels, kept in
+    // mResizeSource, instead. mRasterStale is set when the raster no longer
+    // has the view's size, and mRestartStroke when a resize cut the stroke in
+    // progress short.
+    private final CurveList mInkCurves = new CurveList(256);
+    private int mInkStrokeStart;
+    private boolean mInkCurvesComplete = true;
+    private int mInkWidth;
+    private int mInkHeight;
+    private Bitmap mResizeSource;
+    private boolean mRasterStale;
+    private boolean mRestartStroke;
+    private final float[] mInkTransform = new float[4];
+    private final Matrix mInkMatrixCached = new Matrix();
+    // Scale and offset on each axis, then width scale, taking the recorded
+    // curves to a scaled export; see prepareScaledExport.
+    private final float[] mExportTransform = new float[5];
+
+    // Undo: the curves of the strokes undone since the last stroke was drawn,
+    // and their samples, the last undone at the end; and the copies of the
+    // signature raster undo rasterizes the remaining curves from, with how
+    // many strokes and how much ink have been drawn since the newest one.
+    private final CurveList mRedoCurves = new CurveList(64);
+    private final StrokeStore mRedoStrokes = new StrokeStore(256, 8);
+    private final InkCheckpoints mInkCheckpoints = new InkCheckpoints(MAX_UNDO_CHECKPOINTS);
+    private int mUndoCheckpointStrokes;
+    private float mUndoCheckpointInkArea;
+    private int mStrokesSinceCheckpoint;
+    private float mInkAreaSinceCheckpoint;
 
     //Configurable parameters
     private int mMinWidth;
     private int mMaxWidth;
-    private float mVelocityFilterWeight;
     private OnSignedListener mOnSignedListener;
     private boolean mClearOnDoubleClick;
+    private boolean mConsumeHistoricalSamples;
+    private boolean mUnbufferedInput;
+    private int mRenderMode;
+    private int mResizeMode;
+    private int mSavedStateMode;
+    private Clock mClock;
+
+    // Delivers the results of asynchronous exports.
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
 
     //Double click detector
     private GestureDetector mGestureDetector;
@@ -105,10 +381,41 @@ public class SignaturePad extends View {
     private final int DEFAULT_ATTR_PEN_COLOR = Color.BLACK;
     private final float DEFAULT_ATTR_VELOCITY_FILTER_WEIGHT = 0.9f;
     private final boolean DEFAULT_ATTR_CLEAR_ON_DOUBLE_CLICK = false;
+    private final boolean DEFAULT_ATTR_CONSUME_HISTORICAL_SAMPLES = false;
+    private final float DEFAULT_ATTR_PREDICTION_HORIZON_MS = 0f;
+    private final boolean DEFAULT_ATTR_UNBUFFERED_INPUT = false;
+    private final int DEFAULT_ATTR_WIDTH_MODE = WIDTH_MODE_VELOCITY;
+    private final float DEFAULT_ATTR_SAMPLE_MIN_DISTANCE_PX = 0f;
+    private final float DEFAULT_ATTR_SAMPLE_MIN_INTERVAL_MS = 0f;
+    private final boolean DEFAULT_ATTR_BACKGROUND_STROKE_ENGINE = false;
+    private final int DEFAULT_ATTR_RENDER_MODE = RENDER_MODE_POINTS;
+    private final int DEFAULT_ATTR_RESIZE_MODE = RESIZE_MODE_KEEP;
+    private final boolean DEFAULT_ATTR_RETAINED_RENDERING = false;
+    private final boolean DEFAULT_ATTR_TILED_BACKING = false;
+    private final boolean DEFAULT_ATTR_COVERAGE_ONLY = false;
+    private final boolean DEFAULT_ATTR_FRAME_COALESCING = false;
+    private final int DEFAULT_ATTR_UNDO_CHECKPOINT_STROKES = 8;
+    private final float DEFAULT_ATTR_UNDO_CHECKPOINT_INK_AREA = 0.25f;
+    private final int DEFAULT_ATTR_SAVED_STATE_MODE = SAVED_STATE_PNG;
 
     private Paint mPaint = new Paint();
     private Bitmap mSignatureBitmap = null;
     private Canvas mSignatureBitmapCanvas = null;
+    // mSignatureBitmap was returned by getTransparentSignatureBitmap(), so a
+    // resize must not reuse it: the caller may still hold it.
+    private boolean mSignatureBitmapHandedOut;
+    // Coverage-only mode: the tinted export of mSignatureBitmap, kept until the
+    // raster changes, and the pen colour it was tinted with.
+    private Bitmap mCoverageExport;
+    private int mCoverageExportColor;
+    // Tiled backing mode: the signature raster in tiles, instead of
+    // mSignatureBitmap, which then stays null.
+    private boolean mTiledBacking;
+    private TiledRaster mTiledRaster = null;
+    // Coverage-only mode: the signature raster is ALPHA_8, tinted with the pen
+    // colour by mTintPaint wherever it is drawn.
+    private boolean mCoverageOnly;
+    private final Paint mTintPaint = new Paint();
 
     public SignaturePad(Context context, AttributeSet attrs) {
         super(context, attrs);
@@ -123,8 +430,27 @@ public class SignaturePad extends View {
             mMinWidth = a.getDimensionPixelSize(R.styleable.SignaturePad_penMinWidth, convertDpToPx(DEFAULT_ATTR_PEN_MIN_WIDTH_PX));
             mMaxWidth = a.getDimensionPixelSize(R.styleable.SignaturePad_penMaxWidth, convertDpToPx(DEFAULT_ATTR_PEN_MAX_WIDTH_PX));
             mPaint.setColor(a.getColor(R.styleable.SignaturePad_penColor, DEFAULT_ATTR_PEN_COLOR));
-            mVelocityFilterWeight = a.getFloat(R.styleable.SignaturePad_velocityFilterWeight, DEFAULT_ATTR_VELOCITY_FILTER_WEIGHT);
+            mStrokeEngine = new StrokeEngine(mMinWidth, mMaxWidth,
+                    a.getFloat(R.styleable.SignaturePad_velocityFilterWeight, DEFAULT_ATTR_VELOCITY_FILTER_WEIGHT));
+            mStrokeEngine.setStrokeStore(mStrokeStore);
             mClearOnDoubleClick = a.getBoolean(R.styleable.SignaturePad_clearOnDoubleClick, DEFAULT_ATTR_CLEAR_ON_DOUBLE_CLICK);
+            mConsumeHistoricalSamples = a.getBoolean(R.styleable.SignaturePad_consumeHistoricalSamples, DEFAULT_ATTR_CONSUME_HISTORICAL_SAMPLES);
+            setPredictionHorizon(a.getFloat(R.styleable.SignaturePad_predictionHorizon, DEFAULT_ATTR_PREDICTION_HORIZON_MS));
+            mUnbufferedInput = a.getBoolean(R.styleable.SignaturePad_unbufferedInput, DEFAULT_ATTR_UNBUFFERED_INPUT);
+            mFrameCoalescing = a.getBoolean(R.styleable.SignaturePad_frameCoalescing, DEFAULT_ATTR_FRAME_COALESCING);
+            mStrokeEngine.getFitter().setWidthMode(a.getInt(R.styleable.SignaturePad_widthMode, DEFAULT_ATTR_WIDTH_MODE));
+            mStrokeEngine.getDecimator().set(
+                    a.getDimension(R.styleable.SignaturePad_sampleMinDistance, DEFAULT_ATTR_SAMPLE_MIN_DISTANCE_PX),
+                    (long) (a.getFloat(R.styleable.SignaturePad_sampleMinInterval, DEFAULT_ATTR_SAMPLE_MIN_INTERVAL_MS) * 1000000L));
+            setBackgroundStrokeEngine(a.getBoolean(R.styleable.SignaturePad_backgroundStrokeEngine, DEFAULT_ATTR_BACKGROUND_STROKE_ENGINE));
+            mRenderMode = a.getInt(R.styleable.SignaturePad_renderMode, DEFAULT_ATTR_RENDER_MODE);
+            mResizeMode = a.getInt(R.styleable.SignaturePad_resizeMode, DEFAULT_ATTR_RESIZE_MODE);
+            setRetainedRendering(a.getBoolean(R.styleable.SignaturePad_retainedRendering, DEFAULT_ATTR_RETAINED_RENDERING));
+            setTiledBacking(a.getBoolean(R.styleable.SignaturePad_tiledBacking, DEFAULT_ATTR_TILED_BACKING));
+            setCoverageOnly(a.getBoolean(R.styleable.SignaturePad_coverageOnly, DEFAULT_ATTR_COVERAGE_ONLY));
+            setUndoCheckpoints(a.getInt(R.styleable.SignaturePad_undoCheckpointStrokes, DEFAULT_ATTR_UNDO_CHECKPOINT_STROKES),
+                    a.getFloat(R.styleable.SignaturePad_undoCheckpointInkArea, DEFAULT_ATTR_UNDO_CHECKPOINT_INK_AREA));
+            setSavedStateMode(a.getInt(R.styleable.SignaturePad_savedStateMode, DEFAULT_ATTR_SAVED_STATE_MODE));
         } finally {
             a.recycle();
         }
@@ -170,8 +496,16 @@ public class SignaturePad extends View {
             // clear() also matches neither term — clear() nulls mBitmapSavedState —
             // so a cleared pad likewise persists nothing and restores empty, even if
             // it was itself restored from a prior save.
-            if (!this.mIsEmpty || this.mBitmapSavedState != null) {
+            if (!this.mIsEmpty || this.mBitmapSavedState != null || this.mRestoredStrokes != null) {
+                // Strokes still staged from the last restore are saved as they
+                // came, whatever the mode.
+                if ((mSavedStateMode == SAVED_STATE_STROKES || mRestoredStrokes != null)
+                        && saveStrokes(bundle)) {
+                    return bundle;
+                }
                 if (this.mHasEditState == null || this.mHasEditState) {
+                    // In coverage-only mode too the tinted export, in the pen
+                    // colour, so that it restores the same into any pad.
                     this.mBitmapSavedState = this.getTransparentSignatureBitmap();
                 }
                 // Persist a PNG-compressed copy rather than the raw Bitmap. A raw
@@ -187,7 +521,7 @@ public class SignaturePad extends View {
                         bundle.putByteArray("signaturePng", stream.toByteArray());
                         // Also persist the vector paths so getSignatureSvg() survives
                         // the config change: the PNG restore repaints raster ink but
-                        // leaves mSvgBuilder empty. Nested here so SVG is only stored
+                        // leaves the SVG builder empty. Nested here so SVG is only stored
                         // when the PNG is ("SVG present implies PNG present"), and
                         // capped independently so an oversized SVG is dropped on its
                         // own without affecting the raster restore. The paths are in
@@ -197,11 +531,15 @@ public class SignaturePad extends View {
                         // prior restore that have not been replayed yet: after
                         // onRestoreInstanceState the view may be saved AGAIN before its
                         // first layout pass (a recreate/rotation storm), at which point
-                        // mSvgBuilder is still empty while mRestoredSvgPaths holds the
+                        // the SVG builder is still empty while mRestoredSvgPaths holds the
                         // signature. Without this fallback the PNG would persist but the
                         // SVG would be dropped, leaving getSignatureSvg() empty after the
                         // next restore.
-                        String svgPaths = mSvgBuilder.getInnerPaths();
+                        // Paths and dimensions in the view's current coordinates.
+                        if (isInkResized()) {
+                            bakeResize();
+                        }
+                        String svgPaths = mStrokeEngine.getSvgBuilder().getInnerPaths();
                         if ((svgPaths == null || svgPaths.isEmpty()) && mRestoredSvgPaths != null) {
                             svgPaths = mRestoredSvgPaths;
                         }
@@ -250,12 +588,18 @@ public class SignaturePad extends View {
     protected void onRestoreInstanceState(Parcelable state) {
         if (state instanceof Bundle) {
             Bundle bundle = (Bundle) state;
+            byte[] strokes = bundle.getByteArray("signatureStrokes");
             byte[] png = bundle.getByteArray("signaturePng");
-            if (png != null) {
+            if (strokes != null) {
+                this.mRestoredStrokes = strokes;
+                this.mRestoredStrokeColors = bundle.getIntArray("signatureStrokeColors");
+                this.mRestoredStrokeOutlines = bundle.getBooleanArray("signatureStrokeOutlines");
+                this.replayRestoredStrokes();
+            } else if (png != null) {
                 Bitmap signature = BitmapFactory.decodeByteArray(png, 0, png.length);
                 if (signature != null) {
                     // Stage the restored SVG BEFORE setSignatureBitmap() -> clearView()
-                    // wipes mSvgBuilder. Re-injection happens in setSignatureBitmap()'s
+                    // wipes the SVG builder. Re-injection happens in setSignatureBitmap()'s
                     // laid-out branch, which both the laid-out and the deferred
                     // (OnGlobalLayoutListener) restore paths funnel through, so it is
                     // guaranteed to run AFTER clearView().
@@ -285,6 +629,147 @@ public class SignaturePad extends View {
         super.onRestoreInstanceState(state);
     }
 
+    /**
+     * Puts the recorded strokes into {@code bundle}, in
+     * {@link #SAVED_STATE_STROKES} mode, unless the ink is not all strokes.
+     *
+     * @return {@code false} if the signature has to be saved as a PNG instead:
+     * it holds a bitmap set with {@link #setSignatureBitmap(Bitmap)}.
+     */
+    private boolean saveStrokes(Bundle bundle) throws IOException {
+        byte[] data = mRestoredStrokes;
+        int[] colors = mRestoredStrokeColors;
+        boolean[] outlines = mRestoredStrokeOutlines;
+        if (data == null) {
+            awaitStrokeWorker();
+            if (!mInkCurvesComplete || (mIsEmpty && mBitmapSavedState != null)) {
+                return false;
+            }
+            // The open stroke is left out, like by the codec.
+            int strokes = mStrokeStore.getStrokeCount() - (mStrokeStore.isStrokeOpen() ? 1 : 0);
+            colors = new int[strokes];
+            outlines = new boolean[strokes];
+            int stroke = 0;
+            for (int i = 0; i < mInkCurves.size() && stroke < strokes; i++) {
+                int flags = mInkCurves.getFlags(i);
+                if ((flags & StrokeOutline.CAP_START) != 0) {
+                    colors[stroke] = mInkCurves.getColor(i);
+                    outlines[stroke] = (flags & CURVE_FLAG_OUTLINE) != 0;
+                    stroke++;
+                }
+            }
+            if (stroke < strokes) {
+                return false;
+            }
+            // In the coordinates the ink was drawn in, which a pending
+            // resize has not moved yet.
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            mStrokeCodec.write(mStrokeStore, mInkWidth, mInkHeight, stream);
+            data = stream.toByteArray();
+        }
+        if (data.length > mMaxSavedStateBytes) {
+            Log.w(TAG, String.format(
+                    "signature strokes too large to save (%d bytes > %d cap); "
+                            + "they will not be restored after the config change",
+                    data.length, mMaxSavedStateBytes));
+            return true;
+        }
+        bundle.putByteArray("signatureStrokes", data);
+        bundle.putIntArray("signatureStrokeColors", colors);
+        bundle.putBooleanArray("signatureStrokeOutlines", outlines);
+        return true;
+    }
+
+    /**
+     * Replays the strokes staged from saved state through the stroke engine,
+     * in the coordinates they were drawn in, and draws their curves scaled to
+     * fit the view and centred, like a restored PNG, widths included. Waits
+     * for the view to be laid out first.
+     */
+    private void replayRestoredStrokes() {
+        if (!ViewCompat.isLaidOut(this)) {
+            getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
+                @Override
+                public void onGlobalLayout() {
+                    ViewTreeObserverCompat.removeOnGlobalLayoutListener(getViewTreeObserver(), this);
+                    // Unless clear() dropped them meanwhile.
+                    if (mRestoredStrokes != null) {
+                        replayRestoredStrokes();
+                    }
+                }
+            });
+            return;
+        }
+        byte[] data = mRestoredStrokes;
+        int[] colors = mRestoredStrokeColors;
+        boolean[] outlines = mRestoredStrokeOutlines;
+        clearView();
+
+        StrokeStore strokes = new StrokeStore(256, 16);
+        try {
+            mStrokeCodec.read(new ByteArrayInputStream(data), strokes);
+        } catch (IOException e) {
+            Log.w(TAG, String.format("error restoring signature strokes: %s", e.getMessage()));
+            return;
+        }
+        int width = mStrokeCodec.getWidth();
+        int height = mStrokeCodec.getHeight();
+        float scale = width > 0 && height > 0
+                ? Math.min((float) getWidth() / width, (float) getHeight() / height) : 1;
+        float dx = (getWidth() - width * scale) / 2;
+        float dy = (getHeight() - height * scale) / 2;
+
+        int originalColor = mPaint.getColor();
+        int originalRenderMode = mRenderMode;
+        Bezier curve = new Bezier().set(new TimedPoint(), new TimedPoint(), new TimedPoint(), new TimedPoint());
+        StrokeStore.Cursor cursor = strokes.cursor();
+        while (cursor.nextStroke()) {
+            int stroke = cursor.getStroke();
+            if (colors != null && stroke < colors.length) {
+                mPaint.setColor(colors[stroke]);
+            }
+            if (outlines != null && stroke < outlines.length) {
+                mRenderMode = outlines[stroke] ? RENDER_MODE_OUTLINE : RENDER_MODE_POINTS;
+            }
+            int last = cursor.getStrokeSize() - 1;
+            for (int i = 0; cursor.nextSample(); i++) {
+                // Every recorded sample got past decimation once already.
+                int flags = StrokeEngine.FLAG_FORCE;
+                if (i == 0) {
+                    flags |= StrokeEngine.FLAG_STROKE_START;
+                }
+                if (i == last) {
+                    flags |= StrokeEngine.FLAG_STROKE_END;
+                }
+                if (mStrokeEngine.addSample(cursor.getX(), cursor.getY(), cursor.getTimestamp(),
+                        cursor.getPressure(), flags)) {
+                    Bezier fitted = mStrokeEngine.getCurve();
+                    transformRestoredPoint(curve.startPoint, fitted.startPoint, scale, dx, dy);
+                    transformRestoredPoint(curve.control1, fitted.control1, scale, dx, dy);
+                    transformRestoredPoint(curve.control2, fitted.control2, scale, dx, dy);
+                    transformRestoredPoint(curve.endPoint, fitted.endPoint, scale, dx, dy);
+                    drawCurve(curve, mStrokeEngine.getCurveStartWidth() * scale,
+                            mStrokeEngine.getCurveEndWidth() * scale, mStrokeEngine.getCurveCaps());
+                }
+            }
+        }
+        mPaint.setColor(originalColor);
+        mRenderMode = originalRenderMode;
+        commitLiveStroke();
+        // The engine recorded the samples and built the SVG where they were
+        // drawn; move them to where the curves went.
+        mStrokeStore.transform(scale, scale, dx, dy, scale);
+        rebuildSvg();
+        if (!mInkCurves.isEmpty()) {
+            setIsEmpty(false);
+        }
+        invalidate();
+    }
+
+    private static void transformRestoredPoint(TimedPoint to, TimedPoint from, float scale, float dx, float dy) {
+        to.set(from.x * scale + dx, from.y * scale + dy);
+    }
+
     /**
      * Set the pen color from a given resource.
      * If the resource is not found, {@link android.graphics.Color#BLACK} is assumed.
@@ -300,12 +785,18 @@ public class SignaturePad extends View {
     }
 
     /**
-     * Set the pen color from a given color.
+     * Set the pen color from a given color. It applies to the strokes drawn
+     * from now on, or in coverage-only mode to the whole signature at once
+     * (see {@link #setCoverageOnly(boolean)}).
      *
      * @param color the color.
      */
     public void setPenColor(int color) {
         mPaint.setColor(color);
+        if (mCoverageOnly) {
+            rerecordRetainedInk();
+            invalidate();
+        }
     }
 
     /**
@@ -314,8 +805,9 @@ public class SignaturePad extends View {
      * @param minWidth the width in dp.
      */
     public void setMinWidth(float minWidth) {
+        awaitStrokeWorker();
         mMinWidth = convertDpToPx(minWidth);
-        mLastWidth = (mMinWidth + mMaxWidth) / 2f;
+        mStrokeEngine.getFitter().setWidths(mMinWidth, mMaxWidth);
     }
 
     /**
@@ -324,8 +816,9 @@ public class SignaturePad extends View {
      * @param maxWidth the width in dp.
      */
     public void setMaxWidth(float maxWidth) {
+        awaitStrokeWorker();
         mMaxWidth = convertDpToPx(maxWidth);
-        mLastWidth = (mMinWidth + mMaxWidth) / 2f;
+        mStrokeEngine.getFitter().setWidths(mMinWidth, mMaxWidth);
     }
 
     /**
@@ -334,23 +827,159 @@ public class SignaturePad extends View {
      * @param velocityFilterWeight the weight.
      */
     public void setVelocityFilterWeight(float velocityFilterWeight) {
-        mVelocityFilterWeight = velocityFilterWeight;
+        awaitStrokeWorker();
+        mStrokeEngine.getFitter().setVelocityFilterWeight(velocityFilterWeight);
+    }
+
+    /**
+     * Set how the stroke width is derived. {@link #WIDTH_MODE_PRESSURE} maps the
+     * pen pressure of each sample through a precomputed table and skips the
+     * velocity estimate entirely, which is cheaper and more natural on stylus
+     * hardware. This mirrors the {@code widthMode} XML attribute.
+     *
+     * @param widthMode {@link #WIDTH_MODE_VELOCITY} or {@link #WIDTH_MODE_PRESSURE}.
+     */
+    public void setWidthMode(int widthMode) {
+        awaitStrokeWorker();
+        mStrokeEngine.getFitter().setWidthMode(widthMode);
+    }
+
+    /**
+     * @return {@link #WIDTH_MODE_VELOCITY} or {@link #WIDTH_MODE_PRESSURE}.
+     */
+    public int getWidthMode() {
+        return mStrokeEngine.getFitter().getWidthMode();
+    }
+
+    /**
+     * Set how curves are rasterized. {@link #RENDER_MODE_OUTLINE} fills each
+     * curve as one tessellated outline instead of stamping a round dot per
+     * pixel of its length, which saves hundreds of overlapping draws on long,
+     * fast strokes. Its coverage matches {@link #RENDER_MODE_POINTS} to within
+     * one pixel along the stroke edges. This mirrors the {@code renderMode} XML
+     * attribute.
+     *
+     * @param renderMode {@link #RENDER_MODE_POINTS} or {@link #RENDER_MODE_OUTLINE}.
+     */
+    public void setRenderMode(int renderMode) {
+        if (renderMode != RENDER_MODE_POINTS && renderMode != RENDER_MODE_OUTLINE) {
+            throw new IllegalArgumentException("unknown render mode: " + renderMode);
+        }
+        mRenderMode = renderMode;
+    }
+
+    /**
+     * @return {@link #RENDER_MODE_POINTS} or {@link #RENDER_MODE_OUTLINE}.
+     */
+    public int getRenderMode() {
+        return mRenderMode;
+    }
+
+    /**
+     * Set what happens to the ink when the view is resized, e.g. in
+     * split-screen, in a freeform window or on a foldable. The signature
+     * raster is reallocated at the new size and the ink rasterized again from
+     * its curves, transformed by {@link #RESIZE_MODE_KEEP},
+     * {@link #RESIZE_MODE_FIT} or {@link #RESIZE_MODE_STRETCH}, rather than
+     * scaled as pixels. Only a bitmap set with
+     * {@link #setSignatureBitmap(Bitmap)}, which has no curves, is scaled as
+     * pixels. Several resizes in a row, until the next stroke, all transform
+     * the ink from where it was drawn, and the bitmap is reallocated at most
+     * once per frame, reusing the previous one when it is large enough. This
+     * mirrors the {@code resizeMode} XML attribute.
+     *
+     * @param resizeMode {@link #RESIZE_MODE_KEEP}, {@link #RESIZE_MODE_FIT} or
+     *                   {@link #RESIZE_MODE_STRETCH}.
+     */
+    public void setResizeMode(int resizeMode) {
+        if (resizeMode != RESIZE_MODE_KEEP && resizeMode != RESIZE_MODE_FIT
+                && resizeMode != RESIZE_MODE_STRETCH) {
+            throw new IllegalArgumentException("unknown resize mode: " + resizeMode);
+        }
+        mResizeMode = resizeMode;
+        if (isInkResized()) {
+            mRasterStale = mSignatureBitmap != null || mTiledRaster != null;
+            mRetainedExport = null;
+            invalidate();
+        }
+    }
+
+    /**
+     * @return {@link #RESIZE_MODE_KEEP}, {@link #RESIZE_MODE_FIT} or
+     * {@link #RESIZE_MODE_STRETCH}.
+     */
+    public int getResizeMode() {
+        return mResizeMode;
+    }
+
+    /**
+     * Set how the signature is kept across configuration changes, e.g. a
+     * rotation. {@link #SAVED_STATE_STROKES} saves the recorded strokes, a few
+     * bytes per sample, instead of compressing the raster to a PNG on the UI
+     * thread, and restores by replaying them: the ink is rasterized again at
+     * the new size rather than scaled as pixels, and the SVG and
+     * {@link #getStrokes()} come back too. A bitmap set with
+     * {@link #setSignatureBitmap(Bitmap)} has no strokes, so a signature
+     * holding one is saved as a PNG either way. Saved state of either mode,
+     * and of older versions, is read back whatever the mode. This mirrors the
+     * {@code savedStateMode} XML attribute.
+     *
+     * @param savedStateMode {@link #SAVED_STATE_PNG} or {@link #SAVED_STATE_STROKES}.
+     */
+    public void setSavedStateMode(int savedStateMode) {
+        if (savedStateMode != SAVED_STATE_PNG && savedStateMode != SAVED_STATE_STROKES) {
+            throw new IllegalArgumentException("unknown saved state mode: " + savedStateMode);
+        }
+        mSavedStateMode = savedStateMode;
+    }
+
+    /**
+     * @return {@link #SAVED_STATE_PNG} or {@link #SAVED_STATE_STROKES}.
+     */
+    public int getSavedStateMode() {
+        return mSavedStateMode;
     }
 
     public void clearView() {
-        mSvgBuilder.clear();
+        awaitStrokeWorker();
+        mStrokeEngine.reset();
         // Drop any staged/active restored-SVG state so clear(), a double-tap clear,
         // or a fresh setSignatureBitmap() don't resurrect stale paths or dimensions.
         mRestoredSvgPaths = null;
         mRestoredSvgWidth = 0;
         mRestoredSvgHeight = 0;
-        mPoints = new ArrayList<>();
-        mLastVelocity = 0;
-        mLastWidth = (mMinWidth + mMaxWidth) / 2f;
-
-        if (mSignatureBitmap != null) {
+        mRestoredStrokes = null;
+        mRestoredStrokeColors = null;
+        mRestoredStrokeOutlines = null;
+        mStrokePredictor.reset();
+        mPredictionWindow.clear();
+        mHasPrediction = false;
+        mInkEndWidth = mStrokeEngine.getFitter().getLastWidth();
+        mStrokeActive = false;
+        mLiveStrokeLayer.discard();
+        clearRetainedInk();
+        mInkCurves.clear();
+        mInkStrokeStart = 0;
+        mInkCurvesComplete = true;
+        mRedoCurves.clear();
+        mRedoStrokes.clear();
+        mInkCheckpoints.clear();
+        mStrokesSinceCheckpoint = 0;
+        mInkAreaSinceCheckpoint = 0;
+        mInkWidth = getWidth();
+        mInkHeight = getHeight();
+        mResizeSource = null;
+        mRasterStale = false;
+        mRestartStroke = false;
+
+        if (mSignatureBitmap != null || mTiledRaster != null) {
             mSignatureBitmap = null;
-            ensureSignatureBitmap();
+            mSignatureBitmapCanvas = null;
+            mCoverageExport = null;
+            mTiledRaster = null;
+            if (!mRetainedRendering) {
+                ensureBacking();
+            }
         }
 
         setIsEmpty(true);
@@ -372,6 +1001,295 @@ public class SignaturePad extends View {
         this.mBitmapSavedState = null;
     }
 
+    /**
+     * Removes the last stroke. {@link #redo()} puts it back, until the next
+     * stroke is drawn. The signature raster is restored from the newest
+     * checkpoint taken before that stroke (see
+     * {@link #setUndoCheckpoints(int, float)}), and only the strokes drawn
+     * after the checkpoint are rasterized again. The SVG and
+     * {@link #getStrokes()} follow. A bitmap set with
+     * {@link #setSignatureBitmap(Bitmap)} is not a stroke, and stays.
+     *
+     * @return {@code false} if there is no stroke to undo, or one is being
+     * drawn.
+     */
+    public boolean undo() {
+        awaitStrokeWorker();
+        if (mStrokeActive || mInkCurves.isEmpty()) {
+            return false;
+        }
+        if (isInkResized()) {
+            bakeResize();
+        }
+        int end = mInkCurves.size();
+        int start = lastStrokeStart(mInkCurves, end);
+        // The retained curves are drawn over the raster, not into it.
+        int rasterCurves = end - mRetainedCurves.size();
+        if (start < rasterCurves && !restoreRaster(start)) {
+            return false;
+        }
+        if (end > rasterCurves) {
+            mRetainedCurves.truncate(Math.max(start - rasterCurves, 0));
+            mRetainedStrokeStart = mRetainedCurves.size();
+            rerecordRetainedInk();
+        }
+        for (int i = start; i < end; i++) {
+            mRedoCurves.add(mInkCurves.get(i, mReplayCurveCached), mInkCurves.getStartWidth(i),
+                    mInkCurves.getEndWidth(i), mInkCurves.getFlags(i), mInkCurves.getColor(i));
+        }
+        mInkCurves.truncate(start);
+        mInkStrokeStart = start;
+        int strokes = mStrokeStore.getStrokeCount();
+        if (strokes > 0) {
+            mRedoStrokes.appendStroke(mStrokeStore, strokes - 1);
+            mStrokeStore.truncate(strokes - 1);
+        }
+        rebuildSvg();
+        recountSinceCheckpoint();
+        finishUndoStep();
+        return true;
+    }
+
+    /**
+     * Puts back the last stroke removed by {@link #undo()}, rasterizing only
+     * that stroke.
+     *
+     * @return {@code false} if there is no stroke to redo, or one is being
+     * drawn.
+     */
+    public boolean redo() {
+        awaitStrokeWorker();
+        if (mStrokeActive || mRedoCurves.isEmpty()) {
+            return false;
+        }
+        if (isInkResized()) {
+            bakeResize();
+        }
+        int end = mRedoCurves.size();
+        int start = lastStrokeStart(mRedoCurves, end);
+        if (mRetainedRendering) {
+            sealRetainedInk();
+            for (int i = start; i < end; i++) {
+                mRetainedCurves.add(mRedoCurves.get(i, mReplayCurveCached), mRedoCurves.getStartWidth(i),
+                        mRedoCurves.getEndWidth(i), mRedoCurves.getFlags(i), mRedoCurves.getColor(i));
+            }
+            sealRetainedInk();
+            mRetainedStrokeStart = mRetainedCurves.size();
+            mRetainedStrokeNodes = mRetainedInkLayer != null ? mRetainedInkLayer.size() : 0;
+        } else {
+            checkpointInk();
+            ensureBacking();
+            preserveCheckpoints(null);
+            if (mTiledRaster != null) {
+                replayCurvesIntoTiles(mRedoCurves, start, end, new Matrix());
+            } else {
+                replayCurves(mSignatureBitmapCanvas, mRedoCurves, start, end);
+                mCoverageExport = null;
+            }
+        }
+        mStrokesSinceCheckpoint++;
+        for (int i = start; i < end; i++) {
+            Bezier curve = mRedoCurves.get(i, mReplayCurveCached);
+            float startWidth = mRedoCurves.getStartWidth(i);
+            float endWidth = mRedoCurves.getEndWidth(i);
+            mInkCurves.add(curve, startWidth, endWidth, mRedoCurves.getFlags(i), mRedoCurves.getColor(i));
+            mStrokeEngine.getSvgBuilder().append(curve, (startWidth + endWidth) / 2);
+            mInkAreaSinceCheckpoint += estimateInkArea(curve, startWidth, endWidth);
+        }
+        mInkStrokeStart = mInkCurves.size();
+        mRedoCurves.truncate(start);
+        int strokes = mRedoStrokes.getStrokeCount();
+        if (strokes > 0) {
+            mStrokeStore.appendStroke(mRedoStrokes, strokes - 1);
+            mRedoStrokes.truncate(strokes - 1);
+        }
+        finishUndoStep();
+        return true;
+    }
+
+    /**
+     * @return {@code true} if {@link #undo()} has a stroke to remove.
+     */
+    public boolean canUndo() {
+        awaitStrokeWorker();
+        return !mStrokeActive && !mInkCurves.isEmpty();
+    }
+
+    /**
+     * @return {@code true} if {@link #redo()} has a stroke to put back.
+     */
+    public boolean canRedo() {
+        awaitStrokeWorker();
+        return !mStrokeActive && !mRedoCurves.isEmpty();
+    }
+
+    /**
+     * Sets how often the signature raster is checkpointed for
+     * {@link #undo()}: before a stroke, once {@code strokes} strokes have been
+     * drawn since the last checkpoint, or strokes inking about {@code inkArea}
+     * of the view's area, whichever comes first. Undo then rasterizes at most
+     * that much ink again, however long the signature is. A checkpoint keeps
+     * only the 256 pixel tiles that hold ink, and at most four are kept. Pass
+     * {@code 0} for both to take none, and rasterize every remaining stroke
+     * on each undo. This mirrors the {@code undoCheckpointStrokes} and
+     * {@code undoCheckpointInkArea} XML attributes.
+     *
+     * @param strokes the number of strokes, or 0.
+     * @param inkArea the fraction of the view's area, or 0.
+     * @see #getMemoryStats()
+     */
+    public void setUndoCheckpoints(int strokes, float inkArea) {
+        if (strokes < 0 || inkArea < 0) {
+            throw new IllegalArgumentException("strokes and inkArea must be >= 0, were "
+                    + strokes + " and " + inkArea);
+        }
+        mUndoCheckpointStrokes = strokes;
+        mUndoCheckpointInkArea = inkArea;
+    }
+
+    public int getUndoCheckpointStrokes() {
+        return mUndoCheckpointStrokes;
+    }
+
+    public float getUndoCheckpointInkArea() {
+        return mUndoCheckpointInkArea;
+    }
+
+    /**
+     * @return the index of the first curve of the last stroke among the
+     * first {@code end} of {@code curves}.
+     */
+    private static int lastStrokeStart(CurveList curves, int end) {
+        int start = end - 1;
+        while (start > 0 && (curves.getFlags(start) & StrokeOutline.CAP_START) == 0) {
+            start--;
+        }
+        return Math.max(start, 0);
+    }
+
+    /**
+     * Rasterizes the signature raster again with only the first
+     * {@code curves} of {@link #mInkCurves}: from the newest checkpoint that
+     * holds no more than those, or from scratch.
+     *
+     * @return {@code false} if it holds ink without curves that no
+     * checkpoint has.
+     */
+    private boolean restoreRaster(int curves) {
+        int checkpoint = mInkCheckpoints.find(curves);
+        if (checkpoint < 0 && !mInkCurvesComplete) {
+            return false;
+        }
+        int from = checkpoint >= 0 ? mInkCheckpoints.getCurves(checkpoint) : 0;
+        ensureBacking();
+        commitLiveStroke();
+        preserveCheckpoints(null);
+        if (mTiledRaster != null) {
+            mTiledRaster = checkpoint >= 0
+                    ? mInkCheckpoints.getRaster(checkpoint).convert(getRasterConfig(), null)
+                    : new TiledRaster(mTiledRaster.getWidth(), mTiledRaster.getHeight(), getRasterConfig());
+            replayCurvesIntoTiles(mInkCurves, from, curves, new Matrix());
+        } else {
+            mSignatureBitmap.eraseColor(Color.TRANSPARENT);
+            if (checkpoint >= 0) {
+                mInkCheckpoints.getRaster(checkpoint).draw(mSignatureBitmapCanvas, null);
+            }
+            replayCurves(mSignatureBitmapCanvas, mInkCurves, from, curves);
+            mCoverageExport = null;
+        }
+        mInkCheckpoints.truncate(curves);
+        return true;
+    }
+
+    /**
+     * Checkpoints the signature raster in {@link #mInkCheckpoints} before a
+     * stroke is drawn into it, if enough has been drawn since the newest
+     * checkpoint, or if it holds ink without curves that has none yet. The
+     * checkpoint shares the raster's tiles until they change.
+     */
+    private void checkpointInk() {
+        int curves = mInkCurves.size() - mRetainedCurves.size();
+        boolean base = !mInkCurvesComplete && curves == 0 && !mInkCheckpoints.hasBase();
+        if (!base) {
+            boolean due = (mUndoCheckpointStrokes > 0 && mStrokesSinceCheckpoint >= mUndoCheckpointStrokes)
+                    || (mUndoCheckpointInkArea > 0 && mInkAreaSinceCheckpoint
+                    >= mUndoCheckpointInkArea * getExportWidth() * getExportHeight());
+            if (!due || curves == mInkCheckpoints.getLastCurves()) {
+                return;
+            }
+        }
+        ensureBacking();
+        commitLiveStroke();
+        // Nothing is copied yet; see preserveCheckpoints.
+        mInkCheckpoints.addShared(curves, getExportWidth(), getExportHeight(), getRasterConfig(), base);
+        mStrokesSinceCheckpoint = 0;
+        mInkAreaSinceCheckpoint = 0;
+    }
+
+    /**
+     * Copies the tiles of {@code area}, or of the whole raster for
+     * {@code null}, that checkpoints still share with the raster into them,
+     * before the raster changes there.
+     */
+    private void preserveCheckpoints(Rect area) {
+        if (mInkCheckpoints.isShared()) {
+            mInkCheckpoints.take(mTiledRaster, mSignatureBitmap, area);
+        }
+    }
+
+    /**
+     * Counts the strokes and ink drawn since the newest checkpoint again,
+     * after curves were removed.
+     */
+    private void recountSinceCheckpoint() {
+        mStrokesSinceCheckpoint = 0;
+        mInkAreaSinceCheckpoint = 0;
+        for (int i = Math.min(mInkCheckpoints.getLastCurves(), mInkCurves.size()); i < mInkCurves.size(); i++) {
+            if ((mInkCurves.getFlags(i) & StrokeOutline.CAP_START) != 0) {
+                mStrokesSinceCheckpoint++;
+            }
+            mInkAreaSinceCheckpoint += estimateInkArea(mInkCurves.get(i, mReplayCurveCached),
+                    mInkCurves.getStartWidth(i), mInkCurves.getEndWidth(i));
+        }
+    }
+
+    /**
+     * @return about how many pixels a curve inks: the length of its control
+     * polygon, which is at least its own, times its average width.
+     */
+    private static float estimateInkArea(Bezier curve, float startWidth, float endWidth) {
+        float length = (float) (Math.hypot(curve.control1.x - curve.startPoint.x, curve.control1.y - curve.startPoint.y)
+                + Math.hypot(curve.control2.x - curve.control1.x, curve.control2.y - curve.control1.y)
+                + Math.hypot(curve.endPoint.x - curve.control2.x, curve.endPoint.y - curve.control2.y));
+        float width = (startWidth + endWidth) / 2;
+        return Math.max(length, width) * width;
+    }
+
+    /**
+     * Builds the SVG again from {@link #mInkCurves}, after the paths restored
+     * from saved state, if any.
+     */
+    private void rebuildSvg() {
+        mStrokeEngine.getSvgBuilder().rebuild(mRestoredSvgPaths, mInkCurves);
+    }
+
+    /**
+     * Updates what follows from the ink after an undo or redo.
+     */
+    private void finishUndoStep() {
+        mRetainedExport = null;
+        mHasEditState = true;
+        boolean empty = mInkCurves.isEmpty() && mInkCurvesComplete;
+        if (empty) {
+            // Like clear(): nothing is left to persist.
+            mBitmapSavedState = null;
+        }
+        if (empty != mIsEmpty) {
+            setIsEmpty(empty);
+        }
+        invalidate();
+    }
+
     @Override
     public boolean onTouchEvent(MotionEvent event) {
         if (!isEnabled())
@@ -379,6 +1297,8 @@ public class SignaturePad extends View {
 
         float eventX = event.getX();
         float eventY = event.getY();
+        long eventTime = getSampleTime(MotionEventCompat.getEventTimeNanos(event));
+        float eventPressure = event.getPressure();
 
         // Feed the FULL event stream to the GestureDetector. Double-tap detection
         // compares the current ACTION_DOWN against the previous ACTION_UP, so the
@@ -391,47 +1311,170 @@ public class SignaturePad extends View {
         switch (event.getAction()) {
             case MotionEvent.ACTION_DOWN:
                 getParent().requestDisallowInterceptTouchEvent(true);
-                mPoints.clear();
+                if (mUnbufferedInput) {
+                    // Scoped to this gesture: the framework resumes vsync-aligned
+                    // batching by itself once ACTION_UP/ACTION_CANCEL is delivered.
+                    requestUnbufferedDispatch(event);
+                }
                 if (consumedByGesture) break;
                 mLastTouchX = eventX;
                 mLastTouchY = eventY;
-                addPoint(getNewPoint(eventX, eventY));
+                mInkEndX = eventX;
+                mInkEndY = eventY;
+                mStrokePredictor.reset();
+                mPredictionWindow.clear();
+                mStrokeActive = true;
+                mEmptyBeforeStroke = mIsEmpty;
+                addSample(eventX, eventY, eventTime, eventPressure,
+                        StrokeEngine.FLAG_STROKE_START | StrokeEngine.FLAG_FORCE);
                 if (mOnSignedListener != null) mOnSignedListener.onStartSigning();
 
             case MotionEvent.ACTION_MOVE:
                 resetDirtyRect(eventX, eventY);
-                addPoint(getNewPoint(eventX, eventY));
+                addHistoricalPoints(event);
+                // Falling through from ACTION_DOWN, the touch-down sample is fed a
+                // second time to seed the window; that must not be decimated.
+                addSample(eventX, eventY, eventTime, eventPressure,
+                        event.getAction() == MotionEvent.ACTION_DOWN ? StrokeEngine.FLAG_FORCE : 0);
+                updatePrediction();
                 setIsEmpty(false);
                 break;
 
             case MotionEvent.ACTION_UP:
                 resetDirtyRect(eventX, eventY);
-                addPoint(getNewPoint(eventX, eventY));
+                addHistoricalPoints(event);
+                // Always keep the stroke's last sample, so it ends where the pen lifted.
+                addSample(eventX, eventY, eventTime, eventPressure,
+                        StrokeEngine.FLAG_FORCE | StrokeEngine.FLAG_STROKE_END);
+                mStrokeActive = false;
+                clearPrediction();
                 getParent().requestDisallowInterceptTouchEvent(true);
                 break;
 
             default:
+                if (event.getAction() == MotionEvent.ACTION_CANCEL) {
+                    // The gesture was taken away from us mid-stroke (e.g. by a
+                    // scrolling parent, or palm rejection): the stroke was never
+                    // finished, so drop it, along with any predicted tail.
+                    mHasPrediction = false;
+                    discardStroke();
+                    invalidate();
+                }
                 return false;
         }
 
-        //invalidate();
-        invalidate(
-                (int) (mDirtyRect.left - mMaxWidth),
-                (int) (mDirtyRect.top - mMaxWidth),
-                (int) (mDirtyRect.right + mMaxWidth),
-                (int) (mDirtyRect.bottom + mMaxWidth));
-
+        mEventCount++;
+        if (mFrameCoalescing) {
+            scheduleFrame();
+        } else {
+            invalidateDirtyRect();
+        }
         return true;
     }
 
-    @Override
-    protected void onDraw(Canvas canvas) {
-        if (mSignatureBitmap != null) {
-            canvas.drawBitmap(mSignatureBitmap, 0, 0, mPaint);
+    /**
+     * Invalidates {@link #mDirtyRect}, grown by the widest stroke.
+     */
+    private void invalidateDirtyRect() {
+        mFrameCount++;
+        float left = mDirtyRect.left - mMaxWidth;
+        float top = mDirtyRect.top - mMaxWidth;
+        float right = mDirtyRect.right + mMaxWidth;
+        float bottom = mDirtyRect.bottom + mMaxWidth;
+        if (mUnbufferedInput) {
+            scheduleInvalidate(left, top, right, bottom);
+        } else {
+            invalidate((int) left, (int) top, (int) right, (int) bottom);
         }
     }
 
-    public void setOnSignedListener(OnSignedListener listener) {
+    /**
+     * Coalesces invalidation in unbuffered input mode. Raw events can arrive
+     * several times per frame; each one is still rasterized immediately, but
+     * their dirty regions are merged and invalidated once, on the next
+     * animation frame.
+     */
+    private void scheduleInvalidate(float left, float top, float right, float bottom) {
+        if (mInvalidatePending) {
+            mPendingInvalidateRect.union(left, top, right, bottom);
+            return;
+        }
+        mPendingInvalidateRect.set(left, top, right, bottom);
+        mInvalidatePending = true;
+        postOnAnimation(mInvalidateRunnable);
+    }
+
+    /**
+     * Asks for {@link #renderFrame()} on the next display frame, in frame
+     * coalescing mode.
+     */
+    private void scheduleFrame() {
+        if (!mFramePending) {
+            mFramePending = true;
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        }
+    }
+
+    /**
+     * Draws everything that arrived since the last frame, the samples queued
+     * for it or the curves the background stroke engine finished, then
+     * invalidates the area that was actually drawn, once.
+     */
+    private void renderFrame() {
+        mFrameCount++;
+        drawFrameSamples();
+        drainCurves();
+        if (!mFrameDirtyRect.isEmpty()) {
+            invalidate((int) Math.floor(mFrameDirtyRect.left), (int) Math.floor(mFrameDirtyRect.top),
+                    (int) Math.ceil(mFrameDirtyRect.right), (int) Math.ceil(mFrameDirtyRect.bottom));
+            mFrameDirtyRect.setEmpty();
+        }
+    }
+
+    /**
+     * Adds an area that was drawn, or needs redrawing, in view coordinates, to
+     * the area the next frame invalidates.
+     */
+    private void addFrameDirty(float left, float top, float right, float bottom) {
+        if (mFrameCoalescing) {
+            mFrameDirtyRect.union(left, top, right, bottom);
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mRasterStale) {
+            rebuildRaster();
+        }
+        Paint rasterPaint = mCoverageOnly ? getTintPaint() : mPaint;
+        if (mSignatureBitmap != null) {
+            canvas.drawBitmap(mSignatureBitmap, 0, 0, rasterPaint);
+        } else if (mTiledRaster != null) {
+            mTiledRaster.draw(canvas, rasterPaint);
+        }
+        mLiveStrokeLayer.draw(canvas, rasterPaint);
+        if (mRetainedRendering) {
+            // The retained curves stay where they were drawn until the next
+            // stroke after a resize.
+            int saveCount = canvas.save();
+            canvas.concat(getInkMatrix());
+            if (mRetainedInkLayer != null && canvas.isHardwareAccelerated()) {
+                mRetainedInkLayer.draw(canvas);
+                replayCurves(canvas, mRetainedCurves, mRetainedSealed, mRetainedCurves.size());
+            } else {
+                replayCurves(canvas, mRetainedCurves, 0, mRetainedCurves.size());
+            }
+            canvas.restoreToCount(saveCount);
+        }
+        if (mHasPrediction) {
+            float originalWidth = mPaint.getStrokeWidth();
+            mPaint.setStrokeWidth(mInkEndWidth);
+            canvas.drawPath(mPredictionPath, mPaint);
+            mPaint.setStrokeWidth(originalWidth);
+        }
+    }
+
+    public void setOnSignedListener(OnSignedListener listener) {
         mOnSignedListener = listener;
     }
 
@@ -451,20 +1494,53 @@ public class SignaturePad extends View {
      * those new strokes are captured in the CURRENT (post-rotation) view space and
      * are therefore geometrically inconsistent with the restored paths in the same
      * document. The visible bitmap remains correct; only the mixed SVG is affected.
+     * In {@link #SAVED_STATE_STROKES} mode the SVG is built again from the
+     * restored strokes instead, at the new view size, and this does not apply.
      */
     public String getSignatureSvg() {
-        // Call once — getTransparentSignatureBitmap() lazily allocates the backing
-        // bitmap, so reuse the result rather than invoking it per dimension.
-        Bitmap bitmap = getTransparentSignatureBitmap();
-        int width = bitmap.getWidth();
-        int height = bitmap.getHeight();
+        StringBuilder svg = new StringBuilder();
+        try {
+            writeSignatureSvg(svg);
+        } catch (IOException e) {
+            // A StringBuilder does not throw.
+            throw new AssertionError(e);
+        }
+        return svg.toString();
+    }
+
+    /**
+     * Writes the document {@link #getSignatureSvg()} returns to {@code out},
+     * a chunk of paths at a time, without making a string of it first.
+     */
+    public void writeSignatureSvg(Appendable out) throws IOException {
+        // The SVG has the size of the exported bitmap, without rendering one in
+        // retained rendering mode.
+        awaitStrokeWorker();
+        if (isInkResized()) {
+            bakeResize();
+        }
+        if (!mRetainedRendering) {
+            ensureBacking();
+        }
+        int width = getExportWidth();
+        int height = getExportHeight();
         // When paths were restored from saved state they are in the original view
         // space; pair them with the original dimensions for a self-consistent viewBox.
         if (mRestoredSvgWidth > 0 && mRestoredSvgHeight > 0) {
             width = mRestoredSvgWidth;
             height = mRestoredSvgHeight;
         }
-        return mSvgBuilder.build(width, height);
+        mStrokeEngine.writeSvg(out, width, height);
+    }
+
+    /**
+     * Writes the document {@link #getSignatureSvg()} returns to {@code out} as
+     * UTF-8. The stream is flushed but not closed.
+     */
+    public void writeSignatureSvg(OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writeSignatureSvg(writer);
+        writer.flush();
     }
 
     public Bitmap getSignatureBitmap() {
@@ -493,7 +1569,7 @@ public class SignaturePad extends View {
             final int pendingSvgHeight = mRestoredSvgHeight;
 
             clearView();
-            ensureSignatureBitmap();
+            ensureBacking();
 
             RectF tempSrc = new RectF();
             RectF tempDst = new RectF();
@@ -510,15 +1586,24 @@ public class SignaturePad extends View {
             Matrix drawMatrix = new Matrix();
             drawMatrix.setRectToRect(tempSrc, tempDst, Matrix.ScaleToFit.CENTER);
 
-            Canvas canvas = new Canvas(mSignatureBitmap);
-            canvas.drawBitmap(signature, drawMatrix, null);
+            if (mTiledRaster != null) {
+                mTiledRaster.drawBitmap(signature, drawMatrix);
+            } else {
+                Canvas canvas = new Canvas(mSignatureBitmap);
+                canvas.drawBitmap(signature, drawMatrix, null);
+                mCoverageExport = null;
+            }
+            // This ink has no curves to rasterize again after a resize.
+            mInkCurvesComplete = false;
             setIsEmpty(false);
 
             // Re-inject SVG paths staged by onRestoreInstanceState AFTER clearView()
-            // has wiped mSvgBuilder, so getSignatureSvg() returns the signature again.
+            // has wiped the SVG builder, so getSignatureSvg() returns the signature again.
             // No-op for ordinary callers (pendingSvgPaths == null).
             if (pendingSvgPaths != null) {
-                mSvgBuilder.restorePaths(pendingSvgPaths);
+                mStrokeEngine.getSvgBuilder().restorePaths(pendingSvgPaths);
+                // Kept for rebuilding the SVG after an undo.
+                mRestoredSvgPaths = pendingSvgPaths;
                 // Re-arm the original dimensions (cleared by clearView) so
                 // getSignatureSvg() pairs the restored, original-space paths with a
                 // self-consistent viewBox.
@@ -543,7 +1628,23 @@ public class SignaturePad extends View {
     }
 
     public Bitmap getTransparentSignatureBitmap() {
-        ensureSignatureBitmap();
+        awaitStrokeWorker();
+        if (mRetainedRendering) {
+            return getRetainedExport();
+        }
+        ensureBacking();
+        if (!mLiveStrokeLayer.isEmpty()) {
+            // Mid-stroke: ACTION_CANCEL may still take the stroke back, so it
+            // is drawn over a copy of the raster rather than committed to it.
+            return renderRaster(new Rect(0, 0, getExportWidth(), getExportHeight()));
+        }
+        if (mTiledRaster != null) {
+            return mTiledRaster.toBitmap(getTintPaint());
+        }
+        if (mCoverageOnly) {
+            return getCoverageExport();
+        }
+        mSignatureBitmapHandedOut = true;
         return mSignatureBitmap;
     }
 
@@ -553,10 +1654,21 @@ public class SignaturePad extends View {
             return getTransparentSignatureBitmap();
         }
 
-        ensureSignatureBitmap();
+        awaitStrokeWorker();
+        if (mTiledBacking && !mRetainedRendering) {
+            ensureBacking();
+            // Only the tiles holding ink are scanned, and only the trimmed
+            // area is rendered; mid-stroke, the whole export is scanned below.
+            if (mLiveStrokeLayer.isEmpty()) {
+                Rect inkBounds = new Rect();
+                return mTiledRaster.getInkBounds(inkBounds) ? renderRaster(inkBounds) : null;
+            }
+        }
+
+        Bitmap signature = getTransparentSignatureBitmap();
 
-        int imgHeight = mSignatureBitmap.getHeight();
-        int imgWidth = mSignatureBitmap.getWidth();
+        int imgHeight = signature.getHeight();
+        int imgWidth = signature.getWidth();
 
         int backgroundColor = Color.TRANSPARENT;
 
@@ -571,7 +1683,7 @@ public class SignaturePad extends View {
         for (int x = 0; x < imgWidth; x++) {
             boolean stop = false;
             for (int y = 0; y < imgHeight; y++) {
-                if (mSignatureBitmap.getPixel(x, y) != backgroundColor) {
+                if (signature.getPixel(x, y) != backgroundColor) {
                     xMin = x;
                     stop = true;
                     foundPixel = true;
@@ -590,7 +1702,7 @@ public class SignaturePad extends View {
         for (int y = 0; y < imgHeight; y++) {
             boolean stop = false;
             for (int x = xMin; x < imgWidth; x++) {
-                if (mSignatureBitmap.getPixel(x, y) != backgroundColor) {
+                if (signature.getPixel(x, y) != backgroundColor) {
                     yMin = y;
                     stop = true;
                     break;
@@ -604,7 +1716,7 @@ public class SignaturePad extends View {
         for (int x = imgWidth - 1; x >= xMin; x--) {
             boolean stop = false;
             for (int y = yMin; y < imgHeight; y++) {
-                if (mSignatureBitmap.getPixel(x, y) != backgroundColor) {
+                if (signature.getPixel(x, y) != backgroundColor) {
                     xMax = x;
                     stop = true;
                     break;
@@ -618,7 +1730,7 @@ public class SignaturePad extends View {
         for (int y = imgHeight - 1; y >= yMin; y--) {
             boolean stop = false;
             for (int x = xMin; x <= xMax; x++) {
-                if (mSignatureBitmap.getPixel(x, y) != backgroundColor) {
+                if (signature.getPixel(x, y) != backgroundColor) {
                     yMax = y;
                     stop = true;
                     break;
@@ -638,7 +1750,288 @@ public class SignaturePad extends View {
         // imgWidth (same for height).
         int trimmedWidth = Math.max(xMax - xMin + 1, 1);
         int trimmedHeight = Math.max(yMax - yMin + 1, 1);
-        return Bitmap.createBitmap(mSignatureBitmap, xMin, yMin, trimmedWidth, trimmedHeight);
+        return Bitmap.createBitmap(signature, xMin, yMin, trimmedWidth, trimmedHeight);
+    }
+
+    /**
+     * Like {@link #getSignatureBitmap()}, but the bitmap is rendered on
+     * {@code executor}, see {@link #getSignatureSvgAsync(Executor, ExportCallback)}.
+     */
+    public ExportTask getSignatureBitmapAsync(Executor executor, ExportCallback<Bitmap> callback) {
+        final ExportSnapshot snapshot = takeExportSnapshot(true);
+        return startExport(executor, callback, new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() {
+                return snapshot.renderOnWhite();
+            }
+        });
+    }
+
+    /**
+     * Like {@link #getTransparentSignatureBitmap(boolean)}, but the bitmap is
+     * rendered, and trimmed, on {@code executor}, see
+     * {@link #getSignatureSvgAsync(Executor, ExportCallback)}. A blank
+     * signature trims to a {@code null} result.
+     */
+    public ExportTask getTransparentSignatureBitmapAsync(final boolean trimBlankSpace, Executor executor,
+                                                         ExportCallback<Bitmap> callback) {
+        final ExportSnapshot snapshot = takeExportSnapshot(true);
+        return startExport(executor, callback, new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() {
+                return trimBlankSpace ? snapshot.renderTrimmed() : snapshot.renderTransparent();
+            }
+        });
+    }
+
+    /**
+     * Like {@link #getSignatureSvg()}, but the document is built on
+     * {@code executor}. Call it from the UI thread: it copies the signature's
+     * curves there, which takes a couple of array copies, and exports that
+     * copy, so strokes drawn, undone or cleared afterwards are not in the
+     * result. Ink set with {@link #setSignatureBitmap(Bitmap)} has no curves;
+     * for the bitmap exports, its pixels are copied instead.
+     *
+     * <p>The result, or the error the export threw, is delivered to
+     * {@code callback} on the main thread, unless the returned task was
+     * cancelled first.
+     */
+    public ExportTask getSignatureSvgAsync(Executor executor, ExportCallback<String> callback) {
+        final ExportSnapshot snapshot = takeExportSnapshot(false);
+        return startExport(executor, callback, new Callable<String>() {
+            @Override
+            public String call() {
+                return snapshot.buildSvg();
+            }
+        });
+    }
+
+    /**
+     * Copies what an export needs into an {@link ExportSnapshot}, once the
+     * queued samples are drawn and a resize is applied, as the synchronous
+     * exports do.
+     *
+     * @param pixels {@code true} for a bitmap export.
+     */
+    private ExportSnapshot takeExportSnapshot(boolean pixels) {
+        awaitStrokeWorker();
+        if (isInkResized()) {
+            bakeResize();
+        }
+        if (!mRetainedRendering) {
+            ensureBacking();
+        }
+        Bitmap ink = null;
+        if (pixels && !mInkCurvesComplete) {
+            ink = getTransparentSignatureBitmap();
+            // The other exports are rendered anew once the ink changes; only
+            // the live raster has to be copied.
+            if (ink == mSignatureBitmap) {
+                ink = ink.copy(Bitmap.Config.ARGB_8888, false);
+            }
+        }
+        int width = getExportWidth();
+        int height = getExportHeight();
+        boolean restoredSize = mRestoredSvgWidth > 0 && mRestoredSvgHeight > 0;
+        return new ExportSnapshot(mInkCurves, ink, mPaint, mCoverageOnly, width, height, mRestoredSvgPaths,
+                restoredSize ? mRestoredSvgWidth : width, restoredSize ? mRestoredSvgHeight : height);
+    }
+
+    /**
+     * Runs {@code export} on {@code executor} and posts its outcome to
+     * {@code callback} on the main thread.
+     */
+    private <T> ExportTask startExport(Executor executor, final ExportCallback<T> callback,
+                                       final Callable<T> export) {
+        final ExportTask task = new ExportTask();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (task.isCancelled()) {
+                    return;
+                }
+                T result = null;
+                Throwable error = null;
+                try {
+                    result = export.call();
+                } catch (Throwable t) {
+                    error = t;
+                }
+                final T exported = result;
+                final Throwable failure = error;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        task.deliver(callback, exported, failure);
+                    }
+                });
+            }
+        });
+        return task;
+    }
+
+    /**
+     * Renders the signature again at {@code width} x {@code height} pixels, on
+     * a white background, from its curves: the widths are scaled with the
+     * coordinates, so the ink stays as sharp at 300 DPI as on screen. Ink that
+     * has no curves (a bitmap set with {@link #setSignatureBitmap(Bitmap)}) is
+     * scaled as pixels.
+     *
+     * <p>The whole bitmap is allocated; for large outputs, see
+     * {@link #writeSignaturePng(OutputStream, int, int, boolean)}.
+     */
+    public Bitmap getSignatureBitmap(int width, int height) {
+        checkExportSize(width, height);
+        Bitmap source = prepareScaledExport(width, height);
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.WHITE);
+        renderScaledBand(new Canvas(bitmap), 0, height, source);
+        return bitmap;
+    }
+
+    /**
+     * Writes the signature as a PNG of {@code scale} times its size in the
+     * view, see {@link #writeSignaturePng(OutputStream, int, int, boolean)}.
+     */
+    public void writeSignaturePng(OutputStream out, float scale, boolean transparent) throws IOException {
+        if (!(scale > 0)) {
+            throw new IllegalArgumentException("scale must be > 0, was " + scale);
+        }
+        awaitStrokeWorker();
+        if (!mRetainedRendering) {
+            ensureBacking();
+        }
+        writeSignaturePng(out, Math.max(Math.round(getExportWidth() * scale), 1),
+                Math.max(Math.round(getExportHeight() * scale), 1), transparent);
+    }
+
+    /**
+     * Writes the signature as a PNG of {@code width} x {@code height} pixels,
+     * rendered again from its curves like
+     * {@link #getSignatureBitmap(int, int)}. The image is rendered and
+     * compressed in bands of rows, so only one band is ever held in memory,
+     * however large the output. The stream is not closed.
+     *
+     * @param transparent {@code true} for a transparent background, like
+     *                    {@link #getTransparentSignatureBitmap()}, {@code false}
+     *                    for a white one.
+     */
+    public void writeSignaturePng(OutputStream out, int width, int height, boolean transparent) throws IOException {
+        checkExportSize(width, height);
+        Bitmap source = prepareScaledExport(width, height);
+        int bandHeight = Math.max(Math.min(EXPORT_BAND_PIXELS / width, height), 1);
+        Bitmap band = Bitmap.createBitmap(width, bandHeight, Bitmap.Config.ARGB_8888);
+        try {
+            Canvas canvas = new Canvas(band);
+            int[] pixels = new int[width * bandHeight];
+            PngStreamWriter png = new PngStreamWriter(out, width, height);
+            try {
+                for (int top = 0; top < height; top += bandHeight) {
+                    int rows = Math.min(bandHeight, height - top);
+                    band.eraseColor(transparent ? Color.TRANSPARENT : Color.WHITE);
+                    renderScaledBand(canvas, top, rows, source);
+                    band.getPixels(pixels, 0, width, 0, 0, width, rows);
+                    for (int row = 0; row < rows; row++) {
+                        png.writeRow(pixels, row * width);
+                    }
+                }
+                png.finish();
+            } finally {
+                png.end();
+            }
+        } finally {
+            band.recycle();
+        }
+    }
+
+    private static void checkExportSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("width and height must be > 0, were " + width + "x" + height);
+        }
+    }
+
+    /**
+     * Sets {@link #mExportTransform} to take the ink to a {@code width} x
+     * {@code height} export of the signature.
+     *
+     * @return the pixels to scale, if the recorded curves do not hold all the
+     * ink; {@code null} if they do, and the transform applies to them.
+     */
+    private Bitmap prepareScaledExport(int width, int height) {
+        awaitStrokeWorker();
+        if (!mRetainedRendering) {
+            ensureBacking();
+        }
+        float scaleX = (float) width / getExportWidth();
+        float scaleY = (float) height / getExportHeight();
+        float[] transform = mExportTransform;
+        if (!mInkCurvesComplete) {
+            transform[0] = scaleX;
+            transform[1] = scaleY;
+            transform[2] = 0;
+            transform[3] = 0;
+            transform[4] = 1;
+            return getTransparentSignatureBitmap();
+        }
+        // The curves are in the ink's coordinates, see updateInkTransform.
+        updateInkTransform();
+        transform[0] = mInkTransform[0] * scaleX;
+        transform[1] = mInkTransform[1] * scaleY;
+        transform[2] = mInkTransform[2] * scaleX;
+        transform[3] = mInkTransform[3] * scaleY;
+        // Widths scale like they do on a resize, see bakeResize.
+        transform[4] = (float) Math.sqrt(transform[0] * transform[1]);
+        return null;
+    }
+
+    /**
+     * Renders rows {@code top} to {@code top + rows} of the export prepared by
+     * {@link #prepareScaledExport(int, int)} onto {@code canvas}, at its
+     * origin: {@code source} scaled, if there is one, or else the recorded
+     * curves that reach those rows, transformed before they are rasterized
+     * so that dots and outlines are laid out at the output's resolution.
+     */
+    private void renderScaledBand(Canvas canvas, int top, int rows, Bitmap source) {
+        float[] transform = mExportTransform;
+        if (source != null) {
+            Matrix matrix = new Matrix();
+            matrix.setScale(transform[0], transform[1]);
+            matrix.postTranslate(0, -top);
+            canvas.drawBitmap(source, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+            return;
+        }
+        CurveList curves = mInkCurves;
+        Bezier curve = mReplayCurveCached;
+        int originalColor = mPaint.getColor();
+        for (int i = 0; i < curves.size(); i++) {
+            curves.get(i, curve);
+            float startWidth = curves.getStartWidth(i) * transform[4];
+            float endWidth = curves.getEndWidth(i) * transform[4];
+            transformExportPoint(curve.startPoint, top);
+            transformExportPoint(curve.control1, top);
+            transformExportPoint(curve.control2, top);
+            transformExportPoint(curve.endPoint, top);
+            // The curve lies within its control points, and its ink within
+            // half its widest width of it.
+            float margin = Math.max(startWidth, endWidth) / 2 + 1;
+            if (Math.max(Math.max(curve.startPoint.y, curve.control1.y),
+                    Math.max(curve.control2.y, curve.endPoint.y)) + margin < 0
+                    || Math.min(Math.min(curve.startPoint.y, curve.control1.y),
+                    Math.min(curve.control2.y, curve.endPoint.y)) - margin > rows) {
+                continue;
+            }
+            int flags = curves.getFlags(i);
+            // In coverage-only mode everything takes the current pen colour.
+            mPaint.setColor(mCoverageOnly ? originalColor : curves.getColor(i));
+            rasterizeCurve(canvas, curve, startWidth, endWidth,
+                    flags, (flags & CURVE_FLAG_OUTLINE) != 0);
+        }
+        mPaint.setColor(originalColor);
+    }
+
+    private void transformExportPoint(TimedPoint point, int top) {
+        point.x = point.x * mExportTransform[0] + mExportTransform[2];
+        point.y = point.y * mExportTransform[1] + mExportTransform[3] - top;
     }
 
     private boolean onDoubleClick() {
@@ -672,199 +2065,1171 @@ public class SignaturePad extends View {
         return mClearOnDoubleClick;
     }
 
-    private TimedPoint getNewPoint(float x, float y) {
-        int mCacheSize = mPointsCache.size();
-        TimedPoint timedPoint;
-        if (mCacheSize == 0) {
-            // Cache is empty, create a new point
-            timedPoint = new TimedPoint();
-        } else {
-            // Get point from cache
-            timedPoint = mPointsCache.remove(mCacheSize - 1);
-        }
-
-        return timedPoint.set(x, y);
+    /**
+     * Enables or disables consuming the historical samples Android batches into
+     * each {@code ACTION_MOVE}. On high-rate digitizers (120 Hz panels, styluses
+     * sampling at 240 Hz and above) most input points only exist as history, so
+     * enabling this produces finer curves. This mirrors the
+     * {@code consumeHistoricalSamples} XML attribute.
+     *
+     * @param consumeHistoricalSamples {@code true} to feed every batched sample
+     *                                 through the curve pipeline.
+     */
+    public void setConsumeHistoricalSamples(boolean consumeHistoricalSamples) {
+        mConsumeHistoricalSamples = consumeHistoricalSamples;
     }
 
-    private void recyclePoint(TimedPoint point) {
-        mPointsCache.add(point);
+    /**
+     * @return {@code true} if batched historical samples are drawn.
+     */
+    public boolean isConsumeHistoricalSamples() {
+        return mConsumeHistoricalSamples;
     }
 
-    private void addPoint(TimedPoint newPoint) {
-        mPoints.add(newPoint);
-
-        int pointsCount = mPoints.size();
-        if (pointsCount > 3) {
-
-            ControlTimedPoints tmp = calculateCurveControlPoints(mPoints.get(0), mPoints.get(1), mPoints.get(2));
-            TimedPoint c2 = tmp.c2;
-            recyclePoint(tmp.c1);
-
-            tmp = calculateCurveControlPoints(mPoints.get(1), mPoints.get(2), mPoints.get(3));
-            TimedPoint c3 = tmp.c1;
-            recyclePoint(tmp.c2);
-
-            Bezier curve = mBezierCached.set(mPoints.get(1), c2, c3, mPoints.get(2));
-
-            TimedPoint startPoint = curve.startPoint;
-            TimedPoint endPoint = curve.endPoint;
-
-            float velocity = endPoint.velocityFrom(startPoint);
-            velocity = Float.isNaN(velocity) ? 0.0f : velocity;
-
-            velocity = mVelocityFilterWeight * velocity
-                    + (1 - mVelocityFilterWeight) * mLastVelocity;
-
-            // The new width is a function of the velocity. Higher velocities
-            // correspond to thinner strokes.
-            float newWidth = strokeWidth(velocity);
-
-            // The Bezier's width starts out as last curve's final width, and
-            // gradually changes to the stroke width just calculated. The new
-            // width calculation is based on the velocity between the Bezier's
-            // start and end mPoints.
-            addBezier(curve, mLastWidth, newWidth);
-
-            mLastVelocity = velocity;
-            mLastWidth = newWidth;
-
-            // Remove the first element from the list,
-            // so that we always have no more than 4 mPoints in mPoints array.
-            recyclePoint(mPoints.remove(0));
+    /**
+     * Feeds the historical samples of a batched event through {@link #addSample},
+     * oldest first, ahead of the event's current sample. The dirty region is
+     * reset once by the caller for the whole batch; each drawn curve then grows
+     * it through {@link #expandDirtyRect}, so the event still ends in a single
+     * invalidate. A no-op unless {@link #setConsumeHistoricalSamples} is on.
+     *
+     * @param event the event whose history should be replayed.
+     */
+    private void addHistoricalPoints(MotionEvent event) {
+        if (!mConsumeHistoricalSamples) {
+            return;
+        }
+        final int historySize = event.getHistorySize();
+        for (int i = 0; i < historySize; i++) {
+            addSample(event.getHistoricalX(i), event.getHistoricalY(i),
+                    getSampleTime(MotionEventCompat.getHistoricalEventTimeNanos(event, i)),
+                    event.getHistoricalPressure(i), 0);
+        }
+    }
 
-            recyclePoint(c2);
-            recyclePoint(c3);
+    /**
+     * Enables or disables low-latency input. When enabled, the pad asks for
+     * unbuffered dispatch at the start of each stroke, so touch samples are
+     * delivered as soon as they are read instead of being batched to the display
+     * frame, and each one is drawn immediately. Dispatch returns to batched mode
+     * when the stroke ends. Redraws are still coalesced to at most one per frame.
+     * This mirrors the {@code unbufferedInput} XML attribute.
+     *
+     * @param unbufferedInput {@code true} to request unbuffered dispatch.
+     */
+    public void setUnbufferedInput(boolean unbufferedInput) {
+        mUnbufferedInput = unbufferedInput;
+    }
 
-        } else if (pointsCount == 1) {
-            // To reduce the initial lag make it work with 3 mPoints
-            // by duplicating the first point
-            TimedPoint firstPoint = mPoints.get(0);
-            mPoints.add(getNewPoint(firstPoint.x, firstPoint.y));
-        }
-        this.mHasEditState = true;
+    /**
+     * @return {@code true} if unbuffered dispatch is requested while drawing.
+     */
+    public boolean isUnbufferedInput() {
+        return mUnbufferedInput;
     }
 
-    private void addBezier(Bezier curve, float startWidth, float endWidth) {
-        mSvgBuilder.append(curve, (startWidth + endWidth) / 2);
-        ensureSignatureBitmap();
-        float originalWidth = mPaint.getStrokeWidth();
-        float widthDelta = endWidth - startWidth;
-        float drawSteps = (float) Math.ceil(curve.length());
-
-        if (drawSteps == 0) {
-            // A zero-length curve (e.g. a single tap / dot) would otherwise draw
-            // nothing, because the loop below never runs. Render a single dot so
-            // the tap is visible (#41). The ROUND stroke cap makes drawPoint paint
-            // a filled circle; use the average width to match the SVG output above.
-            mPaint.setStrokeWidth((startWidth + endWidth) / 2);
-            mSignatureBitmapCanvas.drawPoint(curve.startPoint.x, curve.startPoint.y, mPaint);
-            expandDirtyRect(curve.startPoint.x, curve.startPoint.y);
-            mPaint.setStrokeWidth(originalWidth);
+    /**
+     * Enables or disables frame coalescing. When enabled, touch samples are
+     * only queued as they arrive; once per display frame, on a
+     * {@link Choreographer} callback, the queued samples are fitted and drawn
+     * (or, with the background stroke engine, the finished curves are drawn),
+     * and the union of what was actually drawn is invalidated once. Devices
+     * that deliver several events per frame then rasterize once per frame
+     * instead of once per event. Exports and setters draw the queued samples
+     * first. This mirrors the {@code frameCoalescing} XML attribute.
+     *
+     * @param frameCoalescing {@code true} to draw once per display frame.
+     * @see #getFrameStats()
+     */
+    public void setFrameCoalescing(boolean frameCoalescing) {
+        if (frameCoalescing == mFrameCoalescing) {
             return;
         }
+        if (!frameCoalescing) {
+            awaitStrokeWorker();
+            if (mFramePending) {
+                Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+                mFramePending = false;
+            }
+            invalidate();
+            mFrameDirtyRect.setEmpty();
+        }
+        mFrameCoalescing = frameCoalescing;
+    }
 
-        for (int i = 0; i < drawSteps; i++) {
-            // Calculate the Bezier (x, y) coordinate for this step.
-            float t = ((float) i) / drawSteps;
-            float tt = t * t;
-            float ttt = tt * t;
-            float u = 1 - t;
-            float uu = u * u;
-            float uuu = uu * u;
+    /**
+     * @return {@code true} if drawing is coalesced to once per display frame.
+     */
+    public boolean isFrameCoalescing() {
+        return mFrameCoalescing;
+    }
 
-            float x = uuu * curve.startPoint.x;
-            x += 3 * uu * t * curve.control1.x;
-            x += 3 * u * tt * curve.control2.x;
-            x += ttt * curve.endPoint.x;
+    /**
+     * Returns how many touch events were received, and how many times the pad
+     * rasterized and invalidated what they brought, since the last
+     * {@link #resetFrameStats()}.
+     */
+    public FrameStats getFrameStats() {
+        return new FrameStats(mEventCount, mFrameCount);
+    }
 
-            float y = uuu * curve.startPoint.y;
-            y += 3 * uu * t * curve.control1.y;
-            y += 3 * u * tt * curve.control2.y;
-            y += ttt * curve.endPoint.y;
+    public void resetFrameStats() {
+        mEventCount = 0;
+        mFrameCount = 0;
+    }
 
-            // Set the incremental stroke width and draw.
-            mPaint.setStrokeWidth(startWidth + ttt * widthDelta);
-            mSignatureBitmapCanvas.drawPoint(x, y, mPaint);
-            expandDirtyRect(x, y);
-        }
+    /**
+     * Configures the input decimation filter. Samples that move less than
+     * {@code minDistance} from, or arrive sooner than {@code minIntervalMillis}
+     * after, the last kept sample are dropped before curve fitting, saving a
+     * Bezier evaluation and an SVG segment each. The first and last sample of
+     * every stroke are always kept. Pass {@code 0} for both to disable it (the
+     * default). This mirrors the {@code sampleMinDistance} and
+     * {@code sampleMinInterval} XML attributes.
+     *
+     * @param minDistance       the minimum distance in dp; may be fractional.
+     * @param minIntervalMillis the minimum interval in milliseconds.
+     */
+    public void setSampleDecimation(float minDistance, float minIntervalMillis) {
+        awaitStrokeWorker();
+        mStrokeEngine.getDecimator().set(getContext().getResources().getDisplayMetrics().density * minDistance,
+                (long) (minIntervalMillis * 1000000L));
+    }
 
-        mPaint.setStrokeWidth(originalWidth);
+    /**
+     * Returns how many touch samples the decimation filter kept and dropped
+     * since the last {@link #resetDecimationStats()}.
+     */
+    public SampleDecimator.Stats getDecimationStats() {
+        awaitStrokeWorker();
+        return mStrokeEngine.getDecimator().getStats();
     }
 
-    private ControlTimedPoints calculateCurveControlPoints(TimedPoint s1, TimedPoint s2, TimedPoint s3) {
-        float dx1 = s1.x - s2.x;
-        float dy1 = s1.y - s2.y;
-        float dx2 = s2.x - s3.x;
-        float dy2 = s2.y - s3.y;
+    public void resetDecimationStats() {
+        awaitStrokeWorker();
+        mStrokeEngine.getDecimator().resetStats();
+    }
 
-        float m1X = (s1.x + s2.x) / 2.0f;
-        float m1Y = (s1.y + s2.y) / 2.0f;
-        float m2X = (s2.x + s3.x) / 2.0f;
-        float m2Y = (s2.y + s3.y) / 2.0f;
+    /**
+     * Sets how far ahead of the newest touch sample the stroke is predicted.
+     * The predicted segment is drawn as a transient overlay that is replaced as
+     * soon as real samples arrive; it is never part of the exported bitmap or
+     * SVG. This mirrors the {@code predictionHorizon} XML attribute.
+     *
+     * @param horizonMillis the horizon in milliseconds, {@code 0} to disable
+     *                      prediction.
+     */
+    public void setPredictionHorizon(float horizonMillis) {
+        mStrokePredictor.setHorizonNanos((long) (horizonMillis * 1000000L));
+    }
 
-        float l1 = (float) Math.sqrt(dx1 * dx1 + dy1 * dy1);
-        float l2 = (float) Math.sqrt(dx2 * dx2 + dy2 * dy2);
+    /**
+     * @return the prediction horizon in milliseconds, {@code 0} if disabled.
+     */
+    public float getPredictionHorizon() {
+        return mStrokePredictor.getHorizonNanos() / 1000000f;
+    }
 
-        float dxm = (m1X - m2X);
-        float dym = (m1Y - m2Y);
-        float k = l2 / (l1 + l2);
-        if (Float.isNaN(k)) k = 0.0f;
-        float cmX = m2X + dxm * k;
-        float cmY = m2Y + dym * k;
+    /**
+     * Returns how far predictions have landed from the samples that actually
+     * arrived at the predicted time, in pixels, since the last
+     * {@link #resetPredictionStats()}.
+     */
+    public StrokePredictor.Stats getPredictionStats() {
+        return mStrokePredictor.getStats();
+    }
 
-        float tx = s2.x - cmX;
-        float ty = s2.y - cmY;
+    public void resetPredictionStats() {
+        mStrokePredictor.resetStats();
+    }
 
-        return mControlTimedPointsCached.set(getNewPoint(m1X + tx, m1Y + ty), getNewPoint(m2X + tx, m2Y + ty));
+    /**
+     * Sets the time source used to stamp touch samples. By default ({@code null})
+     * each sample carries the time it was taken, as reported by its
+     * {@link MotionEvent}. A custom clock replaces those timestamps, so stroke
+     * timing, and therefore the velocity-driven stroke width, can be replayed
+     * exactly in tests and benchmarks.
+     *
+     * @param clock the clock, or {@code null} to use the event timestamps.
+     */
+    public void setClock(Clock clock) {
+        mClock = clock;
     }
 
-    private float strokeWidth(float velocity) {
-        return Math.max(mMaxWidth / (velocity + 1), mMinWidth);
+    private long getSampleTime(long eventTimeNanos) {
+        return mClock != null ? mClock.nanoTime() : eventTimeNanos;
     }
 
     /**
-     * Called when replaying history to ensure the dirty region includes all
-     * mPoints.
+     * Passes a touch sample through the decimation filter and the curve fitter,
+     * drawing each curve it completes. In background stroke engine mode the
+     * sample is queued for {@link #mStrokeWorker} instead, and the curves are
+     * drawn once it hands them back (see {@link #drainCurves()}).
      *
-     * @param historicalX the previous x coordinate.
-     * @param historicalY the previous y coordinate.
+     * @param flags {@link StrokeEngine#FLAG_STROKE_START} and
+     *              {@link StrokeEngine#FLAG_STROKE_END} for the first and last
+     *              sample of a stroke, {@link StrokeEngine#FLAG_FORCE} to bypass
+     *              the decimation filter, for the samples that start and end a
+     *              stroke.
      */
-    private void expandDirtyRect(float historicalX, float historicalY) {
-        if (historicalX < mDirtyRect.left) {
-            mDirtyRect.left = historicalX;
-        } else if (historicalX > mDirtyRect.right) {
-            mDirtyRect.right = historicalX;
+    private void addSample(float x, float y, long timestampNanos, float pressure, int flags) {
+        if (isInkResized()) {
+            bakeResize();
         }
-        if (historicalY < mDirtyRect.top) {
-            mDirtyRect.top = historicalY;
-        } else if (historicalY > mDirtyRect.bottom) {
-            mDirtyRect.bottom = historicalY;
+        if (mRestartStroke) {
+            // A resize cut the stroke short; the rest of it is a new stroke,
+            // in the new coordinates. A lone lift sample would just be a dot.
+            mRestartStroke = false;
+            if ((flags & StrokeEngine.FLAG_STROKE_END) != 0) {
+                return;
+            }
+            flags |= StrokeEngine.FLAG_STROKE_START | StrokeEngine.FLAG_FORCE;
+            mStrokeActive = true;
+            mEmptyBeforeStroke = mIsEmpty;
+        }
+        if (mStrokePredictor.getHorizonNanos() > 0) {
+            mStrokePredictor.addSample(x, y, timestampNanos);
+            mPredictionWindow.add(x, y, timestampNanos, pressure);
+        }
+        if (mStrokeWorker != null) {
+            mStrokeWorker.start();
+            // While the queue is full, this thread has to take the curves
+            // that hold the worker up.
+            mStrokeWorker.push(x, y, timestampNanos, pressure, flags, mDrainCurvesRunnable);
+        } else if (mFrameCoalescing) {
+            mFrameSamples.add(x, y, timestampNanos, pressure, flags);
+        } else {
+            fitSample(x, y, timestampNanos, pressure, flags);
         }
+        this.mHasEditState = true;
     }
 
     /**
-     * Resets the dirty region when the motion event occurs.
-     *
-     * @param eventX the event x coordinate.
-     * @param eventY the event y coordinate.
+     * Fits a sample on the UI thread, drawing the curve it completes, if any.
      */
-    private void resetDirtyRect(float eventX, float eventY) {
+    private void fitSample(float x, float y, long timestampNanos, float pressure, int flags) {
+        if (mStrokeEngine.addSample(x, y, timestampNanos, pressure, flags)) {
+            drawCurve(mStrokeEngine.getCurve(), mStrokeEngine.getCurveStartWidth(),
+                    mStrokeEngine.getCurveEndWidth(), mStrokeEngine.getCurveCaps());
+        }
+    }
 
-        // The mLastTouchX and mLastTouchY were set when the ACTION_DOWN motion event occurred.
-        mDirtyRect.left = Math.min(mLastTouchX, eventX);
-        mDirtyRect.right = Math.max(mLastTouchX, eventX);
-        mDirtyRect.top = Math.min(mLastTouchY, eventY);
-        mDirtyRect.bottom = Math.max(mLastTouchY, eventY);
+    /**
+     * Fits and draws the samples queued for the next frame, in frame
+     * coalescing mode.
+     */
+    private void drawFrameSamples() {
+        SampleQueue samples = mFrameSamples;
+        for (int i = 0; i < samples.size(); i++) {
+            fitSample(samples.getX(i), samples.getY(i), samples.getTimestamp(i),
+                    samples.getPressure(i), samples.getFlags(i));
+        }
+        samples.clear();
     }
 
-    private void setIsEmpty(boolean newValue) {
-        mIsEmpty = newValue;
-        if (mOnSignedListener != null) {
-            if (mIsEmpty) {
-                mOnSignedListener.onClear();
-            } else {
-                mOnSignedListener.onSigned();
+    /**
+     * Draws the curves {@link #mStrokeWorker} has finished since the last call,
+     * and invalidates the area they cover.
+     */
+    private void drainCurves() {
+        if (mStrokeWorker == null) {
+            return;
+        }
+        boolean drawn = false;
+        int caps;
+        while ((caps = mStrokeWorker.pollCurve(mDrainCurveCached, mDrainWidthsCached)) >= 0) {
+            if (!drawn) {
+                mDirtyRect.set(mDrainCurveCached.startPoint.x, mDrainCurveCached.startPoint.y,
+                        mDrainCurveCached.startPoint.x, mDrainCurveCached.startPoint.y);
+                drawn = true;
             }
+            drawCurve(mDrainCurveCached, mDrainWidthsCached[0], mDrainWidthsCached[1], caps);
+        }
+        if (drawn && !mFrameCoalescing) {
+            invalidateDirtyRect();
+        }
+    }
+
+    /**
+     * Waits until {@link #mStrokeWorker} has processed every queued sample and
+     * draws its remaining curves, so the bitmap and SVG match what the
+     * synchronous mode would hold at this point. Afterwards the decimator,
+     * fitter and SVG builder can be used from the UI thread again. Samples
+     * queued for the next frame in frame coalescing mode are drawn right away
+     * as well; their area is still invalidated with that frame.
+     */
+    private void awaitStrokeWorker() {
+        drawFrameSamples();
+        if (mStrokeWorker == null) {
+            return;
+        }
+        while (!mStrokeWorker.isIdle()) {
+            drainCurves();
+            Thread.yield();
+        }
+        drainCurves();
+    }
+
+    /**
+     * Draws the live stroke, as far as it got, into the signature bitmap,
+     * where mode switches expect all the ink to be.
+     */
+    private void commitLiveStroke() {
+        if (mLiveStrokeLayer.isEmpty()) {
+            return;
+        }
+        preserveCheckpoints(mLiveStrokeLayer.getBounds());
+        if (mTiledRaster != null) {
+            mLiveStrokeLayer.commit(mTiledRaster);
+        } else {
+            mLiveStrokeLayer.commit(mSignatureBitmapCanvas);
+            mCoverageExport = null;
+        }
+    }
+
+    /**
+     * Drops the stroke in progress, if any, from the ink and from the SVG. Ink
+     * of it that a mode switch or a resize already committed stays; exports
+     * leave it in the live stroke layer.
+     */
+    private void discardStroke() {
+        if (!mStrokeActive) {
+            return;
+        }
+        mStrokeActive = false;
+        awaitStrokeWorker();
+        mStrokeEngine.discardStroke();
+        if (mInkStrokeStart < mInkCurves.size()) {
+            mInkCurves.truncate(mInkStrokeStart);
+            recountSinceCheckpoint();
+        }
+        if (mRetainedRendering) {
+            if (mRetainedStrokeStart < mRetainedCurves.size()) {
+                mRetainedCurves.truncate(mRetainedStrokeStart);
+                mRetainedSealed = Math.min(mRetainedSealed, mRetainedStrokeStart);
+                if (mRetainedInkLayer != null) {
+                    mRetainedInkLayer.truncate(mRetainedStrokeNodes);
+                }
+                mRetainedExport = null;
+            }
+        } else {
+            mLiveStrokeLayer.discard();
+        }
+        if (mEmptyBeforeStroke) {
+            setIsEmpty(true);
+        }
+    }
+
+    /**
+     * Enables or disables the background stroke engine. When enabled, the UI
+     * thread only queues raw touch samples; decimation, curve fitting and SVG
+     * building run on a dedicated thread, and the finished curves are drawn on
+     * the UI thread as they come back. The result is identical to the default,
+     * synchronous mode. Exports and setters wait for the queued samples to be
+     * processed first. This mirrors the {@code backgroundStrokeEngine} XML
+     * attribute.
+     *
+     * @param backgroundStrokeEngine {@code true} to fit strokes off the UI thread.
+     */
+    public void setBackgroundStrokeEngine(boolean backgroundStrokeEngine) {
+        if (backgroundStrokeEngine == (mStrokeWorker != null)) {
+            return;
+        }
+        if (backgroundStrokeEngine) {
+            mStrokeWorker = new StrokeWorker(mStrokeEngine, mStrokeWorkerCallback,
+                    STROKE_WORKER_SAMPLE_CAPACITY, STROKE_WORKER_CURVE_CAPACITY);
+        } else {
+            awaitStrokeWorker();
+            mStrokeWorker.stop();
+            mStrokeWorker = null;
+        }
+    }
+
+    /**
+     * @return {@code true} if strokes are fitted off the UI thread.
+     */
+    public boolean isBackgroundStrokeEngine() {
+        return mStrokeWorker != null;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mStrokeWorker != null) {
+            // Restarted by the next sample.
+            awaitStrokeWorker();
+            mStrokeWorker.stop();
+            // The curves it posted about are drawn already.
+            removeCallbacks(mDrainRunnable);
+            mDrainPosted.set(false);
+        }
+        if (mInvalidatePending) {
+            // A detached view has nothing to redraw; the next attach draws it all.
+            removeCallbacks(mInvalidateRunnable);
+            mInvalidatePending = false;
+        }
+        if (mFramePending) {
+            // Detached views get no frames; draw what was queued now.
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+            mFramePending = false;
+            renderFrame();
+        }
+    }
+
+    /**
+     * Enables or disables retained rendering. When enabled, finished strokes
+     * are kept as GPU display lists ({@code RenderNode}) and the live stroke is
+     * drawn straight onto the hardware canvas, instead of being rasterized into
+     * a view-sized bitmap that is uploaded as a texture on every frame. No such
+     * bitmap exists until an export asks for one, which is then rendered by
+     * replaying the strokes offscreen. Display lists need API 29; below that,
+     * or on a canvas that is not hardware accelerated, every stroke is replayed
+     * on each draw. A bitmap set with {@link #setSignatureBitmap(Bitmap)}, or
+     * drawn before retained rendering was enabled, stays underneath as is.
+     * Disabling it flattens the retained strokes into the bitmap. This mirrors
+     * the {@code retainedRendering} XML attribute.
+     *
+     * @param retainedRendering {@code true} to keep strokes as display lists.
+     */
+    public void setRetainedRendering(boolean retainedRendering) {
+        if (retainedRendering == mRetainedRendering) {
+            return;
+        }
+        awaitStrokeWorker();
+        if (retainedRendering) {
+            commitLiveStroke();
+            mRetainedStrokeStart = 0;
+            mRetainedStrokeNodes = 0;
+            mRetainedRendering = true;
+            if (Build.VERSION.SDK_INT >= 29) {
+                mRetainedInkLayer = new RetainedInkLayer();
+            }
+        } else {
+            checkpointInk();
+            ensureBacking();
+            preserveCheckpoints(null);
+            if (mTiledRaster != null) {
+                replayCurvesIntoTiles(mRetainedCurves, 0, mRetainedCurves.size(), getInkMatrix());
+            } else {
+                int saveCount = mSignatureBitmapCanvas.save();
+                mSignatureBitmapCanvas.concat(getInkMatrix());
+                replayCurves(mSignatureBitmapCanvas, mRetainedCurves, 0, mRetainedCurves.size());
+                mSignatureBitmapCanvas.restoreToCount(saveCount);
+                mCoverageExport = null;
+            }
+            clearRetainedInk();
+            mRetainedInkLayer = null;
+            mRetainedRendering = false;
+        }
+        invalidate();
+    }
+
+    /**
+     * @return {@code true} if strokes are kept as display lists rather than
+     * rasterized into a bitmap.
+     */
+    public boolean isRetainedRendering() {
+        return mRetainedRendering;
+    }
+
+    /**
+     * Enables or disables the tiled backing store. When enabled, the signature
+     * is rasterized into 256 pixel square tiles that are only allocated once
+     * ink touches them, instead of into one bitmap the size of the view.
+     * {@code onDraw} and the trimmed export work across the tiles; the other
+     * exports still return one view-sized bitmap, rendered from the tiles when
+     * asked for. Switching moves the current ink over. This mirrors the
+     * {@code tiledBacking} XML attribute.
+     *
+     * @param tiledBacking {@code true} to allocate the signature raster in tiles.
+     * @see #getMemoryStats()
+     */
+    public void setTiledBacking(boolean tiledBacking) {
+        if (tiledBacking == mTiledBacking) {
+            return;
+        }
+        awaitStrokeWorker();
+        commitLiveStroke();
+        preserveCheckpoints(null);
+        mTiledBacking = tiledBacking;
+        if (tiledBacking) {
+            if (mSignatureBitmap != null) {
+                mTiledRaster = new TiledRaster(mSignatureBitmap.getWidth(), mSignatureBitmap.getHeight(),
+                        getRasterConfig());
+                mTiledRaster.drawBitmap(mSignatureBitmap, new Matrix());
+                mSignatureBitmap = null;
+                mSignatureBitmapCanvas = null;
+            }
+        } else if (mTiledRaster != null) {
+            mSignatureBitmap = Bitmap.createBitmap(mTiledRaster.getWidth(), mTiledRaster.getHeight(),
+                    getRasterConfig());
+            mSignatureBitmapCanvas = new Canvas(mSignatureBitmap);
+            mSignatureBitmapHandedOut = false;
+            mCoverageExport = null;
+            mTiledRaster.draw(mSignatureBitmapCanvas, null);
+            mTiledRaster = null;
+        }
+        invalidate();
+    }
+
+    /**
+     * @return {@code true} if the signature raster is allocated in tiles.
+     */
+    public boolean isTiledBacking() {
+        return mTiledBacking;
+    }
+
+    /**
+     * Returns how much memory the signature raster and the recorded strokes
+     * take, next to what one view-sized bitmap takes.
+     */
+    public MemoryStats getMemoryStats() {
+        awaitStrokeWorker();
+        long backingBytes;
+        int tiles = 0;
+        if (mTiledRaster != null) {
+            backingBytes = mTiledRaster.getByteCount();
+            tiles = mTiledRaster.getTileCount();
+        } else {
+            backingBytes = mSignatureBitmap != null ? mSignatureBitmap.getAllocationByteCount() : 0;
+        }
+        return new MemoryStats(backingBytes, tiles, mLiveStrokeLayer.getByteCount(),
+                4L * getExportWidth() * getExportHeight(), mStrokeStore.getMemoryBytes(),
+                mInkCheckpoints.getByteCount());
+    }
+
+    /**
+     * Returns a read-only cursor over the samples of every stroke drawn since
+     * the last clear, and not undone, in the view's coordinates, with the
+     * stroke width at each. Ink set with {@link #setSignatureBitmap(Bitmap)}
+     * has no samples. The cursor reads the strokes as they are when it moves;
+     * get a new one after the pad changes.
+     */
+    public StrokeStore.Cursor getStrokes() {
+        awaitStrokeWorker();
+        if (isInkResized()) {
+            bakeResize();
+        }
+        return mStrokeStore.cursor();
+    }
+
+    /**
+     * Enables or disables coverage-only mode. When enabled, the signature
+     * raster (and the live stroke layer) keep only how much ink covers each
+     * pixel, in an ALPHA_8 bitmap, a quarter of the memory and upload
+     * bandwidth of ARGB_8888. The pen colour is applied when the raster is
+     * drawn and exported, so {@link #setPenColor(int)} recolours the whole
+     * signature at once, and saved state stores the single-channel coverage.
+     * The pen colour's alpha still applies to each stroke as it is drawn.
+     * Enabling it drops the colours strokes were drawn with. This mirrors the
+     * {@code coverageOnly} XML attribute.
+     *
+     * @param coverageOnly {@code true} to keep only ink coverage.
+     */
+    public void setCoverageOnly(boolean coverageOnly) {
+        if (coverageOnly == mCoverageOnly) {
+            return;
+        }
+        awaitStrokeWorker();
+        commitLiveStroke();
+        preserveCheckpoints(null);
+        // Tints the coverage when converting back to ARGB_8888.
+        Paint paint = getTintPaint();
+        mCoverageOnly = coverageOnly;
+        Bitmap.Config config = getRasterConfig();
+        mLiveStrokeLayer.setConfig(config);
+        mInkCheckpoints.convert(config, paint);
+        if (mSignatureBitmap != null) {
+            Bitmap converted = Bitmap.createBitmap(mSignatureBitmap.getWidth(), mSignatureBitmap.getHeight(), config);
+            Canvas canvas = new Canvas(converted);
+            canvas.drawBitmap(mSignatureBitmap, 0, 0, paint);
+            mSignatureBitmap = converted;
+            mSignatureBitmapCanvas = canvas;
+            mSignatureBitmapHandedOut = false;
+            mCoverageExport = null;
+        } else if (mTiledRaster != null) {
+            mTiledRaster = mTiledRaster.convert(config, paint);
+        }
+        rerecordRetainedInk();
+        invalidate();
+    }
+
+    /**
+     * @return {@code true} if the signature raster keeps only ink coverage.
+     */
+    public boolean isCoverageOnly() {
+        return mCoverageOnly;
+    }
+
+    private Bitmap.Config getRasterConfig() {
+        return mCoverageOnly ? Bitmap.Config.ALPHA_8 : Bitmap.Config.ARGB_8888;
+    }
+
+    /**
+     * @return in coverage-only mode, a paint that tints the ALPHA_8 raster
+     * with the opaque pen colour; {@code null} otherwise.
+     */
+    private Paint getTintPaint() {
+        if (!mCoverageOnly) {
+            return null;
+        }
+        mTintPaint.setColor(mPaint.getColor() | 0xff000000);
+        return mTintPaint;
+    }
+
+    /**
+     * @return a new ARGB_8888 bitmap of {@code area} of the signature raster,
+     * with the stroke being drawn, if any, over it, tinted in coverage-only
+     * mode.
+     */
+    private Bitmap renderRaster(Rect area) {
+        Bitmap bitmap;
+        if (mTiledRaster != null) {
+            bitmap = mTiledRaster.render(area, Bitmap.Config.ARGB_8888, getTintPaint());
+        } else {
+            bitmap = Bitmap.createBitmap(area.width(), area.height(), Bitmap.Config.ARGB_8888);
+            new Canvas(bitmap).drawBitmap(mSignatureBitmap, -area.left, -area.top, getTintPaint());
+        }
+        if (!mLiveStrokeLayer.isEmpty()) {
+            Canvas canvas = new Canvas(bitmap);
+            canvas.translate(-area.left, -area.top);
+            mLiveStrokeLayer.draw(canvas, getTintPaint());
+        }
+        return bitmap;
+    }
+
+    /**
+     * @return in coverage-only mode, the whole ALPHA_8 raster tinted into an
+     * ARGB_8888 bitmap. It is kept until the raster or the pen colour changes.
+     */
+    private Bitmap getCoverageExport() {
+        Paint paint = getTintPaint();
+        if (mCoverageExport == null || mCoverageExport.isRecycled()
+                || mCoverageExportColor != paint.getColor()) {
+            mCoverageExport = renderRaster(new Rect(0, 0, getExportWidth(), getExportHeight()));
+            mCoverageExportColor = paint.getColor();
+        }
+        return mCoverageExport;
+    }
+
+    /**
+     * Draws a curve, varying the stroke width from {@code startWidth} to
+     * {@code endWidth}: into {@link #mLiveStrokeLayer}, which is committed to
+     * the signature bitmap with the stroke's last curve, or in retained
+     * rendering mode into {@link #mRetainedCurves}, to be drawn from there.
+     *
+     * @param caps which ends of the curve are stroke ends, see
+     *             {@link StrokeOutline#CAP_START}.
+     */
+    private void drawCurve(Bezier curve, float startWidth, float endWidth, int caps) {
+        mInkEndX = curve.endPoint.x;
+        mInkEndY = curve.endPoint.y;
+        mInkEndWidth = endWidth;
+        // The curve lies within its control points.
+        expandDirtyRect(curve.startPoint.x, curve.startPoint.y);
+        expandDirtyRect(curve.control1.x, curve.control1.y);
+        expandDirtyRect(curve.control2.x, curve.control2.y);
+        expandDirtyRect(curve.endPoint.x, curve.endPoint.y);
+        // The dots and outlines stay within half the widest width, plus a
+        // pixel of antialiasing, of the control points.
+        float margin = Math.max(startWidth, endWidth) / 2 + 1;
+        RectF bounds = mCurveBoundsCached;
+        bounds.set(Math.min(Math.min(curve.startPoint.x, curve.control1.x),
+                        Math.min(curve.control2.x, curve.endPoint.x)) - margin,
+                Math.min(Math.min(curve.startPoint.y, curve.control1.y),
+                        Math.min(curve.control2.y, curve.endPoint.y)) - margin,
+                Math.max(Math.max(curve.startPoint.x, curve.control1.x),
+                        Math.max(curve.control2.x, curve.endPoint.x)) + margin,
+                Math.max(Math.max(curve.startPoint.y, curve.control1.y),
+                        Math.max(curve.control2.y, curve.endPoint.y)) + margin);
+        addFrameDirty(bounds.left, bounds.top, bounds.right, bounds.bottom);
+
+        int flags = mRenderMode == RENDER_MODE_OUTLINE ? caps | CURVE_FLAG_OUTLINE : caps;
+        if ((caps & StrokeOutline.CAP_START) != 0) {
+            mInkStrokeStart = mInkCurves.size();
+            // A new stroke drops the ones undone before it.
+            mRedoCurves.clear();
+            mRedoStrokes.clear();
+            if (!mRetainedRendering) {
+                checkpointInk();
+            }
+            mStrokesSinceCheckpoint++;
+        }
+        mInkCurves.add(curve, startWidth, endWidth, flags, mPaint.getColor());
+        mInkAreaSinceCheckpoint += estimateInkArea(curve, startWidth, endWidth);
+        if ((caps & StrokeOutline.CAP_END) != 0) {
+            // A stroke cancelled before its first curve has nothing to drop.
+            mInkStrokeStart = mInkCurves.size();
+        }
+
+        if (mRetainedRendering) {
+            if ((caps & StrokeOutline.CAP_START) != 0) {
+                sealRetainedInk();
+                mRetainedStrokeStart = mRetainedCurves.size();
+                mRetainedStrokeNodes = mRetainedInkLayer != null ? mRetainedInkLayer.size() : 0;
+            }
+            mRetainedCurves.add(curve, startWidth, endWidth, flags, mPaint.getColor());
+            mRetainedExport = null;
+            if ((caps & StrokeOutline.CAP_END) != 0
+                    || mRetainedCurves.size() - mRetainedSealed >= RETAINED_CHUNK_CURVES) {
+                sealRetainedInk();
+            }
+            if ((caps & StrokeOutline.CAP_END) != 0) {
+                mRetainedStrokeStart = mRetainedCurves.size();
+                mRetainedStrokeNodes = mRetainedInkLayer != null ? mRetainedInkLayer.size() : 0;
+            }
+            return;
+        }
+        ensureBacking();
+        Canvas canvas = mLiveStrokeLayer.getCanvas(bounds.left, bounds.top, bounds.right, bounds.bottom,
+                getExportWidth(), getExportHeight());
+        if (canvas != null) {
+            rasterizeCurve(canvas, curve, startWidth, endWidth, caps,
+                    mRenderMode == RENDER_MODE_OUTLINE);
+        }
+        if ((caps & StrokeOutline.CAP_END) != 0) {
+            commitLiveStroke();
+        }
+    }
+
+    /**
+     * Rasterizes a curve onto {@code canvas} with {@link #mPaint}.
+     *
+     * @param outline {@code true} to fill it as an outline, {@code false} to
+     *                stamp it with dots.
+     */
+    private void rasterizeCurve(Canvas canvas, Bezier curve, float startWidth, float endWidth,
+                                int caps, boolean outline) {
+        mCurveRenderer.rasterize(canvas, mPaint, curve, startWidth, endWidth, caps, outline);
+    }
+
+    /**
+     * Rasterizes {@code curves} from {@code from} (inclusive) to {@code to}
+     * (exclusive) onto {@code canvas}, each in its own color.
+     */
+    private void replayCurves(Canvas canvas, CurveList curves, int from, int to) {
+        int originalColor = mPaint.getColor();
+        for (int i = from; i < to; i++) {
+            int flags = curves.getFlags(i);
+            // In coverage-only mode everything takes the current pen colour.
+            mPaint.setColor(mCoverageOnly ? originalColor : curves.getColor(i));
+            rasterizeCurve(canvas, curves.get(i, mReplayCurveCached),
+                    curves.getStartWidth(i), curves.getEndWidth(i),
+                    flags, (flags & CURVE_FLAG_OUTLINE) != 0);
+        }
+        mPaint.setColor(originalColor);
+    }
+
+    /**
+     * Rasterizes {@code curves} from {@code from} (inclusive) to {@code to}
+     * (exclusive), transformed by {@code matrix}, into {@link #mTiledRaster},
+     * one tile at a time, over the tiles their control points and widths
+     * reach.
+     */
+    private void replayCurvesIntoTiles(CurveList curves, int from, int to, Matrix matrix) {
+        if (from >= to) {
+            return;
+        }
+        RectF bounds = new RectF();
+        for (int i = from; i < to; i++) {
+            Bezier curve = curves.get(i, mReplayCurveCached);
+            float margin = Math.max(curves.getStartWidth(i), curves.getEndWidth(i)) / 2 + 1;
+            if (i == from) {
+                bounds.set(curve.startPoint.x, curve.startPoint.y, curve.startPoint.x, curve.startPoint.y);
+            }
+            bounds.union(curve.startPoint.x - margin, curve.startPoint.y - margin,
+                    curve.startPoint.x + margin, curve.startPoint.y + margin);
+            bounds.union(curve.control1.x - margin, curve.control1.y - margin,
+                    curve.control1.x + margin, curve.control1.y + margin);
+            bounds.union(curve.control2.x - margin, curve.control2.y - margin,
+                    curve.control2.x + margin, curve.control2.y + margin);
+            bounds.union(curve.endPoint.x - margin, curve.endPoint.y - margin,
+                    curve.endPoint.x + margin, curve.endPoint.y + margin);
+        }
+        matrix.mapRect(bounds);
+        TiledRaster raster = mTiledRaster;
+        for (int row = raster.rowOf((int) bounds.top); row <= raster.rowOf((int) bounds.bottom); row++) {
+            for (int column = raster.columnOf((int) bounds.left); column <= raster.columnOf((int) bounds.right); column++) {
+                boolean allocated = raster.lockTile(column, row);
+                Canvas canvas = raster.getTileCanvas(column, row);
+                int saveCount = canvas.save();
+                canvas.concat(matrix);
+                replayCurves(canvas, curves, from, to);
+                canvas.restoreToCount(saveCount);
+                raster.unlockTile(column, row, allocated);
+            }
+        }
+    }
+
+    /**
+     * Records the retained curves that are not in a display list yet into a
+     * new one. A no-op without display lists (before API 29).
+     */
+    private void sealRetainedInk() {
+        int size = mRetainedCurves.size();
+        if (mRetainedInkLayer == null || mRetainedSealed == size) {
+            return;
+        }
+        Canvas canvas = mRetainedInkLayer.beginRecording(Math.max(getWidth(), 1), Math.max(getHeight(), 1));
+        replayCurves(canvas, mRetainedCurves, mRetainedSealed, size);
+        mRetainedInkLayer.endRecording();
+        mRetainedSealed = size;
+    }
+
+    /**
+     * Drops the display lists and export recorded with the previous colours or
+     * coordinates; the retained curves are replayed on each draw until the
+     * next stroke records them again.
+     */
+    private void rerecordRetainedInk() {
+        mRetainedExport = null;
+        if (mRetainedInkLayer != null) {
+            mRetainedInkLayer.clear();
+            mRetainedSealed = 0;
+            mRetainedStrokeNodes = 0;
+        }
+    }
+
+    private void clearRetainedInk() {
+        mRetainedCurves.clear();
+        mRetainedSealed = 0;
+        mRetainedExport = null;
+        if (mRetainedInkLayer != null) {
+            mRetainedInkLayer.clear();
+        }
+    }
+
+    /**
+     * Renders the retained curves offscreen, over the bitmap underneath them if
+     * there is one. The result is kept until the ink changes.
+     */
+    private Bitmap getRetainedExport() {
+        if (mRetainedExport == null) {
+            Bitmap export = Bitmap.createBitmap(getExportWidth(), getExportHeight(), Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(export);
+            if (mSignatureBitmap != null) {
+                canvas.drawBitmap(mSignatureBitmap, 0, 0, getTintPaint());
+            } else if (mTiledRaster != null) {
+                mTiledRaster.draw(canvas, getTintPaint());
+            }
+            canvas.concat(getInkMatrix());
+            replayCurves(canvas, mRetainedCurves, 0, mRetainedCurves.size());
+            mRetainedExport = export;
+        }
+        return mRetainedExport;
+    }
+
+    // The size of the exported bitmap: the signature raster's if there is one,
+    // the view's otherwise. Clamped to 1px like the bitmap itself (#145).
+
+    private int getExportWidth() {
+        if (mSignatureBitmap != null) {
+            return mSignatureBitmap.getWidth();
+        }
+        return mTiledRaster != null ? mTiledRaster.getWidth() : Math.max(getWidth(), 1);
+    }
+
+    private int getExportHeight() {
+        if (mSignatureBitmap != null) {
+            return mSignatureBitmap.getHeight();
+        }
+        return mTiledRaster != null ? mTiledRaster.getHeight() : Math.max(getHeight(), 1);
+    }
+
+    /**
+     * Rebuilds the prediction overlay from the last raw samples: from where the
+     * drawn ink ends (see {@link #drawCurve}), through the newest sample, to the
+     * predicted point. Both the previous and the new overlay are added to the
+     * dirty region.
+     */
+    private void updatePrediction() {
+        clearPrediction();
+        if (!mStrokePredictor.predict(mPredictionWindow, mPredictionCached)) {
+            return;
+        }
+        int newest = mPredictionWindow.size() - 1;
+        float inkEndX = mInkEndX;
+        float inkEndY = mInkEndY;
+        float newestX = mPredictionWindow.getX(newest);
+        float newestY = mPredictionWindow.getY(newest);
+        float predictedX = mPredictionCached[0];
+        float predictedY = mPredictionCached[1];
+
+        mPredictionPath.rewind();
+        mPredictionPath.moveTo(inkEndX, inkEndY);
+        mPredictionPath.lineTo(newestX, newestY);
+        mPredictionPath.lineTo(predictedX, predictedY);
+
+        mPredictionBounds.left = Math.min(inkEndX, Math.min(newestX, predictedX));
+        mPredictionBounds.top = Math.min(inkEndY, Math.min(newestY, predictedY));
+        mPredictionBounds.right = Math.max(inkEndX, Math.max(newestX, predictedX));
+        mPredictionBounds.bottom = Math.max(inkEndY, Math.max(newestY, predictedY));
+        expandDirtyRect(mPredictionBounds.left, mPredictionBounds.top);
+        expandDirtyRect(mPredictionBounds.right, mPredictionBounds.bottom);
+        addPredictionFrameDirty();
+        mHasPrediction = true;
+    }
+
+    /**
+     * Drops the prediction overlay, adding the area it covered to the dirty region.
+     */
+    private void clearPrediction() {
+        if (mHasPrediction) {
+            expandDirtyRect(mPredictionBounds.left, mPredictionBounds.top);
+            expandDirtyRect(mPredictionBounds.right, mPredictionBounds.bottom);
+            addPredictionFrameDirty();
+            mHasPrediction = false;
+        }
+    }
+
+    /**
+     * Adds the prediction overlay, as wide as the ink it extends, to the area
+     * the next frame invalidates.
+     */
+    private void addPredictionFrameDirty() {
+        float margin = mInkEndWidth / 2 + 1;
+        addFrameDirty(mPredictionBounds.left - margin, mPredictionBounds.top - margin,
+                mPredictionBounds.right + margin, mPredictionBounds.bottom + margin);
+    }
+
+    /**
+     * Called when replaying history to ensure the dirty region includes all
+     * mPoints.
+     *
+     * @param historicalX the previous x coordinate.
+     * @param historicalY the previous y coordinate.
+     */
+    private void expandDirtyRect(float historicalX, float historicalY) {
+        if (historicalX < mDirtyRect.left) {
+            mDirtyRect.left = historicalX;
+        } else if (historicalX > mDirtyRect.right) {
+            mDirtyRect.right = historicalX;
+        }
+        if (historicalY < mDirtyRect.top) {
+            mDirtyRect.top = historicalY;
+        } else if (historicalY > mDirtyRect.bottom) {
+            mDirtyRect.bottom = historicalY;
+        }
+    }
+
+    /**
+     * Resets the dirty region when the motion event occurs.
+     *
+     * @param eventX the event x coordinate.
+     * @param eventY the event y coordinate.
+     */
+    private void resetDirtyRect(float eventX, float eventY) {
+
+        // The mLastTouchX and mLastTouchY were set when the ACTION_DOWN motion event occurred.
+        mDirtyRect.left = Math.min(mLastTouchX, eventX);
+        mDirtyRect.right = Math.max(mLastTouchX, eventX);
+        mDirtyRect.top = Math.min(mLastTouchY, eventY);
+        mDirtyRect.bottom = Math.max(mLastTouchY, eventY);
+    }
+
+    private void setIsEmpty(boolean newValue) {
+        mIsEmpty = newValue;
+        if (mOnSignedListener != null) {
+            if (mIsEmpty) {
+                mOnSignedListener.onClear();
+            } else {
+                mOnSignedListener.onSigned();
+            }
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        awaitStrokeWorker();
+        if (mSignatureBitmap != null || mTiledRaster != null) {
+            commitLiveStroke();
+            if (!mInkCurvesComplete && mResizeSource == null) {
+                mResizeSource = mSignatureBitmap != null ? mSignatureBitmap : mTiledRaster.render(
+                        new Rect(0, 0, mTiledRaster.getWidth(), mTiledRaster.getHeight()), getRasterConfig(), null);
+            }
+            // Rasterized again on the next draw or export, once however many
+            // resizes come before it.
+            mRasterStale = true;
+        }
+        if (mInkWidth <= 0 || mInkHeight <= 0) {
+            mInkWidth = w;
+            mInkHeight = h;
+        }
+        if (mStrokeActive) {
+            mStrokeActive = false;
+            mRestartStroke = true;
+        }
+        clearPrediction();
+        mRetainedExport = null;
+        invalidate();
+    }
+
+    /**
+     * @return {@code true} if the view has been resized since the ink's
+     * coordinates were last moved into its own, see {@link #bakeResize()}.
+     */
+    private boolean isInkResized() {
+        return getWidth() > 0 && getHeight() > 0 && (mInkWidth != getWidth() || mInkHeight != getHeight());
+    }
+
+    /**
+     * Sets {@link #mInkTransform} to the scale and offset, on each axis, that
+     * take the ink's coordinates to the view's in the current resize mode.
+     *
+     * @return {@code false} if that is the identity.
+     */
+    private boolean updateInkTransform() {
+        float[] transform = mInkTransform;
+        transform[0] = 1;
+        transform[1] = 1;
+        transform[2] = 0;
+        transform[3] = 0;
+        if (!isInkResized() || mInkWidth <= 0 || mInkHeight <= 0 || mResizeMode == RESIZE_MODE_KEEP) {
+            return false;
+        }
+        float scaleX = (float) getWidth() / mInkWidth;
+        float scaleY = (float) getHeight() / mInkHeight;
+        if (mResizeMode == RESIZE_MODE_FIT) {
+            float scale = Math.min(scaleX, scaleY);
+            transform[0] = scale;
+            transform[1] = scale;
+            transform[2] = (getWidth() - mInkWidth * scale) / 2;
+            transform[3] = (getHeight() - mInkHeight * scale) / 2;
+        } else {
+            transform[0] = scaleX;
+            transform[1] = scaleY;
+        }
+        return true;
+    }
+
+    /**
+     * @return {@link #mInkMatrixCached}, set to take the ink's coordinates to
+     * the view's.
+     */
+    private Matrix getInkMatrix() {
+        Matrix matrix = mInkMatrixCached;
+        matrix.reset();
+        if (updateInkTransform()) {
+            matrix.setScale(mInkTransform[0], mInkTransform[1]);
+            matrix.postTranslate(mInkTransform[2], mInkTransform[3]);
+        }
+        return matrix;
+    }
+
+    /**
+     * Reallocates the signature raster at the view's size and rasterizes the
+     * ink into it again, transformed to the view's coordinates: from
+     * {@link #mInkCurves}, or, if they do not hold all of it, from the pixels
+     * of {@link #mResizeSource}.
+     */
+    private void rebuildRaster() {
+        mRasterStale = false;
+        preserveCheckpoints(null);
+        Matrix matrix = getInkMatrix();
+        int width = Math.max(getWidth(), 1);
+        int height = Math.max(getHeight(), 1);
+        // The retained curves are drawn over the raster, not into it.
+        int rasterCurves = mInkCurves.size() - mRetainedCurves.size();
+        if (mTiledRaster != null) {
+            mTiledRaster = new TiledRaster(width, height, getRasterConfig());
+            if (mInkCurvesComplete) {
+                replayCurvesIntoTiles(mInkCurves, 0, rasterCurves, matrix);
+            } else {
+                mTiledRaster.drawBitmap(mResizeSource, matrix);
+            }
+        } else if (mSignatureBitmap != null) {
+            Bitmap previous = mSignatureBitmap != mResizeSource && !mSignatureBitmapHandedOut
+                    ? mSignatureBitmap : null;
+            mSignatureBitmap = allocateRaster(previous, width, height);
+            mSignatureBitmapHandedOut = false;
+            mCoverageExport = null;
+            mSignatureBitmapCanvas = new Canvas(mSignatureBitmap);
+            if (mInkCurvesComplete) {
+                int saveCount = mSignatureBitmapCanvas.save();
+                mSignatureBitmapCanvas.concat(matrix);
+                replayCurves(mSignatureBitmapCanvas, mInkCurves, 0, rasterCurves);
+                mSignatureBitmapCanvas.restoreToCount(saveCount);
+            } else {
+                mSignatureBitmapCanvas.drawBitmap(mResizeSource, matrix, null);
+            }
+        }
+    }
+
+    /**
+     * @return a cleared bitmap of the given size, in the raster's
+     * configuration: {@code reusable}, if it was allocated large enough, or a
+     * new one allocated with its sides rounded up to {@link #RESIZE_GRANULE}.
+     */
+    private Bitmap allocateRaster(Bitmap reusable, int width, int height) {
+        Bitmap.Config config = getRasterConfig();
+        int bytesPerPixel = config == Bitmap.Config.ALPHA_8 ? 1 : 4;
+        if (reusable != null && reusable.isMutable()
+                && reusable.getAllocationByteCount() >= (long) width * height * bytesPerPixel) {
+            reusable.reconfigure(width, height, config);
+            reusable.eraseColor(Color.TRANSPARENT);
+            return reusable;
+        }
+        Bitmap bitmap = Bitmap.createBitmap(
+                (width + RESIZE_GRANULE - 1) / RESIZE_GRANULE * RESIZE_GRANULE,
+                (height + RESIZE_GRANULE - 1) / RESIZE_GRANULE * RESIZE_GRANULE, config);
+        bitmap.reconfigure(width, height, config);
+        return bitmap;
+    }
+
+    /**
+     * Moves the ink into the view's coordinates after a resize, so that new
+     * strokes and the SVG line up with it: the recorded curves are
+     * transformed, and the SVG is built again from them. Until then the ink
+     * keeps the coordinates it was drawn in, so that a run of resizes
+     * transforms it once, from there, rather than once per resize.
+     */
+    private void bakeResize() {
+        awaitStrokeWorker();
+        if (mRasterStale) {
+            rebuildRaster();
+        }
+        if (mInkCheckpoints.size() > 0 && (mInkWidth != getWidth() || mInkHeight != getHeight())) {
+            // The curves after the base ink are rasterized again on undo.
+            preserveCheckpoints(null);
+            mInkCheckpoints.resize(Math.max(getWidth(), 1), Math.max(getHeight(), 1), getInkMatrix());
+            recountSinceCheckpoint();
+        }
+        if (updateInkTransform()) {
+            float scaleX = mInkTransform[0];
+            float scaleY = mInkTransform[1];
+            float widthScale = (float) Math.sqrt(scaleX * scaleY);
+            mInkCurves.transform(scaleX, scaleY, mInkTransform[2], mInkTransform[3], widthScale);
+            mRetainedCurves.transform(scaleX, scaleY, mInkTransform[2], mInkTransform[3], widthScale);
+            mStrokeStore.transform(scaleX, scaleY, mInkTransform[2], mInkTransform[3], widthScale);
+            mRedoCurves.transform(scaleX, scaleY, mInkTransform[2], mInkTransform[3], widthScale);
+            mRedoStrokes.transform(scaleX, scaleY, mInkTransform[2], mInkTransform[3], widthScale);
+            rerecordRetainedInk();
+            // Paths restored from saved state have no curves; they keep the
+            // coordinates they came with.
+            if (mRestoredSvgWidth == 0 && mRestoredSvgHeight == 0) {
+                rebuildSvg();
+            }
+        }
+        mResizeSource = null;
+        mInkWidth = getWidth();
+        mInkHeight = getHeight();
+    }
+
+    /**
+     * Makes sure there is a signature raster to draw into: {@link #mTiledRaster}
+     * in tiled backing mode, {@link #mSignatureBitmap} otherwise.
+     */
+    private void ensureBacking() {
+        if (mRasterStale) {
+            rebuildRaster();
+        }
+        if (!mTiledBacking) {
+            ensureSignatureBitmap();
+        } else if (mTiledRaster == null) {
+            // Clamped to 1px like the bitmap (#145).
+            mTiledRaster = new TiledRaster(Math.max(getWidth(), 1), Math.max(getHeight(), 1),
+                    getRasterConfig());
         }
     }
 
@@ -875,15 +3240,147 @@ public class SignaturePad extends View {
             // getWidth()/getHeight() are still 0 — Bitmap.createBitmap then throws
             // "width and height must be > 0" (#145).
             mSignatureBitmap = Bitmap.createBitmap(Math.max(getWidth(), 1), Math.max(getHeight(), 1),
-                    Bitmap.Config.ARGB_8888);
+                    getRasterConfig());
             mSignatureBitmapCanvas = new Canvas(mSignatureBitmap);
+            mSignatureBitmapHandedOut = false;
+            mCoverageExport = null;
         }
     }
 
+    /**
+     * @return the bitmap the ink is rasterized into, or {@code null} if none is
+     * allocated (e.g. in retained rendering mode). Package-private (not public
+     * API) so tests can check when it is allocated.
+     */
+    Bitmap peekSignatureBitmap() {
+        return mSignatureBitmap;
+    }
+
     private int convertDpToPx(float dp) {
         return Math.round(getContext().getResources().getDisplayMetrics().density * dp);
     }
 
+    /**
+     * Snapshot of the memory taken by the signature raster, see
+     * {@link #getMemoryStats()}. Sizes are in bytes.
+     */
+    public static final class MemoryStats {
+        /** The signature bitmap, or the allocated tiles in tiled backing mode. */
+        public final long backingBytes;
+        /** How many tiles are allocated; 0 outside tiled backing mode. */
+        public final int tiles;
+        /** The bitmap the stroke being drawn is rasterized into. */
+        public final long liveStrokeBytes;
+        /** What one view-sized ARGB_8888 signature bitmap takes. */
+        public final long fullBitmapBytes;
+        /** The recorded strokes, see {@link #getStrokes()}. */
+        public final long strokeBytes;
+        /** The undo checkpoints, see {@link #setUndoCheckpoints(int, float)}. */
+        public final long checkpointBytes;
+
+        public MemoryStats(long backingBytes, int tiles, long liveStrokeBytes, long fullBitmapBytes,
+                           long strokeBytes, long checkpointBytes) {
+            this.backingBytes = backingBytes;
+            this.tiles = tiles;
+            this.liveStrokeBytes = liveStrokeBytes;
+            this.fullBitmapBytes = fullBitmapBytes;
+            this.strokeBytes = strokeBytes;
+            this.checkpointBytes = checkpointBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "MemoryStats{backingBytes=" + backingBytes + ", tiles=" + tiles
+                    + ", liveStrokeBytes=" + liveStrokeBytes + ", fullBitmapBytes=" + fullBitmapBytes
+                    + ", strokeBytes=" + strokeBytes + ", checkpointBytes=" + checkpointBytes + "}";
+        }
+    }
+
+    /**
+     * Snapshot of the frame counters, see {@link #getFrameStats()}.
+     */
+    public static final class FrameStats {
+        /** Touch events received. */
+        public final long events;
+        /**
+         * Rendering passes: once per event (or per batch of curves from the
+         * background stroke engine), or at most once per display frame with
+         * frame coalescing.
+         */
+        public final long frames;
+
+        public FrameStats(long events, long frames) {
+            this.events = events;
+            this.frames = frames;
+        }
+
+        @Override
+        public String toString() {
+            return "FrameStats{events=" + events + ", frames=" + frames + "}";
+        }
+    }
+
+    /**
+     * Receives the outcome of an asynchronous export, on the main thread.
+     */
+    public interface ExportCallback<T> {
+        /**
+         * @param result the exported bitmap or SVG; {@code null} for a blank
+         *               signature exported trimmed.
+         */
+        void onExported(T result);
+
+        void onExportFailed(Throwable error);
+    }
+
+    /**
+     * An asynchronous export started with, e.g.,
+     * {@link #getSignatureSvgAsync(Executor, ExportCallback)}.
+     */
+    public static final class ExportTask {
+        private final AtomicBoolean mCancelled = new AtomicBoolean();
+        private volatile boolean mDone;
+
+        ExportTask() {
+        }
+
+        /**
+         * Cancels the export: it is skipped if it has not started, and its
+         * callback is not called. Called on the main thread, no callback comes
+         * after it returns.
+         *
+         * @return {@code false} if the callback was already called or the
+         * task was already cancelled.
+         */
+        public boolean cancel() {
+            return !mDone && mCancelled.compareAndSet(false, true);
+        }
+
+        public boolean isCancelled() {
+            return mCancelled.get();
+        }
+
+        /**
+         * @return {@code true} once the callback was called or the task was
+         * cancelled.
+         */
+        public boolean isDone() {
+            return mDone || mCancelled.get();
+        }
+
+        private <T> void deliver(ExportCallback<T> callback, T result, Throwable error) {
+            if (mCancelled.get()) {
+                return;
+            }
+            mDone = true;
+            if (error != null) {
+                callback.onExportFailed(error);
+            } else {
+                callback.onExported(result);
+            }
+        }
+    }
+
     public interface OnSignedListener {
         void onStartSigning();
 
@@ -892,7 +3389,18 @@ public class SignaturePad extends View {
         void onClear();
     }
 
+    /**
+     * Returns a snapshot of the current curve-fitting window (at most the last
+     * four samples). The window itself is stored as primitives, so the returned
+     * list is a copy: changing it does not affect the pad.
+     */
     public List<TimedPoint> getPoints() {
-        return mPoints;
+        awaitStrokeWorker();
+        TimedPointRingBuffer window = mStrokeEngine.getFitter().getWindow();
+        List<TimedPoint> points = new ArrayList<>(window.size());
+        for (int i = 0; i < window.size(); i++) {
+            points.add(window.get(i, new TimedPoint()));
+        }
+        return points;
     }
 }
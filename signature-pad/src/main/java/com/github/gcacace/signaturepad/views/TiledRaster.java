@@ -0,0 +1,362 @@
+package com.github.gcacace.signaturepad.views;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * The signature raster for {@link SignaturePad}'s tiled backing mode: a grid
+ * of {@link #TILE_SIZE} pixel square tiles covering the view, of which only
+ * the ones that hold ink are allocated. A signature usually inks a small part
+ * of the view, so this takes a fraction of the memory of one view-sized
+ * bitmap.
+ *
+ * <p>Everything is drawn in view coordinates. A tile is allocated when
+ * something is drawn over it, and dropped again right away if nothing it
+ * received was visible.
+ */
+class TiledRaster {
+
+    static final int TILE_SIZE = 256;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final Bitmap.Config mConfig;
+    private final int mColumns;
+    private final int mRows;
+    private final Bitmap[] mTiles;
+    private final Canvas[] mCanvases;
+    private int mTileCount;
+    private Bitmap mFlattened;
+    // The tint mFlattened was rendered with, 0 for none.
+    private int mFlattenedColor;
+    private int[] mRowCached;
+    private final RectF mBoundsCached = new RectF();
+    private final Rect mTileBoundsCached = new Rect();
+
+    /**
+     * @param config the tiles' configuration: ARGB_8888, or ALPHA_8 for
+     *               coverage only.
+     */
+    TiledRaster(int width, int height, Bitmap.Config config) {
+        mWidth = width;
+        mHeight = height;
+        mConfig = config;
+        mColumns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        mRows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        mTiles = new Bitmap[mColumns * mRows];
+        mCanvases = new Canvas[mColumns * mRows];
+    }
+
+    int getWidth() {
+        return mWidth;
+    }
+
+    int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return how many tiles are allocated.
+     */
+    int getTileCount() {
+        return mTileCount;
+    }
+
+    /**
+     * @return the bytes of pixels the allocated tiles take.
+     */
+    long getByteCount() {
+        return getByteCount(null);
+    }
+
+    /**
+     * @param shared a raster whose tiles this one may share, see
+     *               {@link #setTile}, or {@code null}.
+     * @return the bytes of pixels the allocated tiles take, besides those
+     * shared with {@code shared}.
+     */
+    long getByteCount(TiledRaster shared) {
+        if (shared != null && shared.mTiles.length != mTiles.length) {
+            shared = null;
+        }
+        long bytes = 0;
+        for (int index = 0; index < mTiles.length; index++) {
+            Bitmap tile = mTiles[index];
+            if (tile != null && (shared == null || shared.mTiles[index] != tile)) {
+                bytes += tile.getAllocationByteCount();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Draws {@code src} of {@code bitmap} at {@code dst}, which must have the
+     * same size.
+     */
+    void drawBitmap(Bitmap bitmap, Rect src, Rect dst) {
+        for (int row = rowOf(dst.top); row <= rowOf(dst.bottom - 1); row++) {
+            for (int column = columnOf(dst.left); column <= columnOf(dst.right - 1); column++) {
+                boolean allocated = lockTile(column, row);
+                mCanvases[row * mColumns + column].drawBitmap(bitmap, src, dst, null);
+                unlockTile(column, row, allocated);
+            }
+        }
+    }
+
+    /**
+     * Draws {@code bitmap} transformed by {@code matrix}.
+     */
+    void drawBitmap(Bitmap bitmap, Matrix matrix) {
+        mBoundsCached.set(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        matrix.mapRect(mBoundsCached);
+        mBoundsCached.roundOut(mTileBoundsCached);
+        if (!mTileBoundsCached.intersect(0, 0, mWidth, mHeight)) {
+            return;
+        }
+        Rect area = mTileBoundsCached;
+        for (int row = rowOf(area.top); row <= rowOf(area.bottom - 1); row++) {
+            for (int column = columnOf(area.left); column <= columnOf(area.right - 1); column++) {
+                boolean allocated = lockTile(column, row);
+                mCanvases[row * mColumns + column].drawBitmap(bitmap, matrix, null);
+                unlockTile(column, row, allocated);
+            }
+        }
+    }
+
+    /**
+     * Makes the tile at {@code column}, {@code row} ready to draw into with
+     * {@link #getTileCanvas(int, int)}, allocating it if needed.
+     *
+     * @return {@code true} if the tile was allocated for this, to pass to
+     * {@link #unlockTile(int, int, boolean)}.
+     */
+    boolean lockTile(int column, int row) {
+        int index = row * mColumns + column;
+        mFlattened = null;
+        if (mTiles[index] != null) {
+            if (mCanvases[index] == null) {
+                mCanvases[index] = newTileCanvas(mTiles[index], column, row);
+            }
+            return false;
+        }
+        int left = column * TILE_SIZE;
+        int top = row * TILE_SIZE;
+        Bitmap tile = Bitmap.createBitmap(Math.min(TILE_SIZE, mWidth - left),
+                Math.min(TILE_SIZE, mHeight - top), mConfig);
+        mTiles[index] = tile;
+        mCanvases[index] = newTileCanvas(tile, column, row);
+        mTileCount++;
+        return true;
+    }
+
+    private static Canvas newTileCanvas(Bitmap tile, int column, int row) {
+        Canvas canvas = new Canvas(tile);
+        canvas.translate(-column * TILE_SIZE, -row * TILE_SIZE);
+        return canvas;
+    }
+
+    /**
+     * @return a copy of the tile at {@code column}, {@code row}, or
+     * {@code null} if it is not allocated.
+     */
+    Bitmap copyTile(int column, int row) {
+        Bitmap tile = mTiles[row * mColumns + column];
+        return tile != null ? tile.copy(mConfig, true) : null;
+    }
+
+    /**
+     * @param source a bitmap the size of this raster.
+     * @return a copy of the pixels of {@code source} under the tile at
+     * {@code column}, {@code row}, or {@code null} if they hold no ink.
+     */
+    Bitmap copyTile(Bitmap source, int column, int row) {
+        int left = column * TILE_SIZE;
+        int top = row * TILE_SIZE;
+        Bitmap tile = Bitmap.createBitmap(Math.min(TILE_SIZE, mWidth - left),
+                Math.min(TILE_SIZE, mHeight - top), mConfig);
+        new Canvas(tile).drawBitmap(source, -left, -top, null);
+        return hasInk(tile) ? tile : null;
+    }
+
+    /**
+     * Sets the tile at {@code column}, {@code row} to {@code tile}, a mutable
+     * bitmap of its size, or drops it for {@code null}. The tile may be
+     * shared with another raster, as long as neither draws into it.
+     */
+    void setTile(int column, int row, Bitmap tile) {
+        int index = row * mColumns + column;
+        mFlattened = null;
+        mTileCount += (tile != null ? 1 : 0) - (mTiles[index] != null ? 1 : 0);
+        mTiles[index] = tile;
+        mCanvases[index] = null;
+    }
+
+    /**
+     * @return the canvas of a locked tile, in view coordinates.
+     */
+    Canvas getTileCanvas(int column, int row) {
+        return mCanvases[row * mColumns + column];
+    }
+
+    /**
+     * Done drawing into a tile. A tile allocated by the matching
+     * {@link #lockTile(int, int)} is dropped again if it is still blank.
+     */
+    void unlockTile(int column, int row, boolean allocated) {
+        int index = row * mColumns + column;
+        if (allocated && !hasInk(mTiles[index])) {
+            mTiles[index] = null;
+            mCanvases[index] = null;
+            mTileCount--;
+        }
+    }
+
+    int getColumns() {
+        return mColumns;
+    }
+
+    int getRows() {
+        return mRows;
+    }
+
+    /**
+     * @return the column of the tile covering {@code x}, clamped to the grid.
+     */
+    int columnOf(int x) {
+        return Math.min(Math.max(x / TILE_SIZE, 0), mColumns - 1);
+    }
+
+    /**
+     * @return the row of the tile covering {@code y}, clamped to the grid.
+     */
+    int rowOf(int y) {
+        return Math.min(Math.max(y / TILE_SIZE, 0), mRows - 1);
+    }
+
+    /**
+     * Draws the allocated tiles onto {@code canvas}, in view coordinates.
+     */
+    void draw(Canvas canvas, Paint paint) {
+        for (int row = 0; row < mRows; row++) {
+            for (int column = 0; column < mColumns; column++) {
+                Bitmap tile = mTiles[row * mColumns + column];
+                if (tile != null) {
+                    canvas.drawBitmap(tile, column * TILE_SIZE, row * TILE_SIZE, paint);
+                }
+            }
+        }
+    }
+
+    Bitmap.Config getConfig() {
+        return mConfig;
+    }
+
+    /**
+     * @param paint the paint to draw the tiles with, e.g. to tint ALPHA_8 ones,
+     *              or {@code null}.
+     * @return the whole raster as one ARGB_8888 bitmap. It is kept until the
+     * next change, or until it is asked for with another tint.
+     */
+    Bitmap toBitmap(Paint paint) {
+        int color = paint != null ? paint.getColor() : 0;
+        if (mFlattened == null || mFlattened.isRecycled() || mFlattenedColor != color) {
+            mFlattened = render(new Rect(0, 0, mWidth, mHeight), Bitmap.Config.ARGB_8888, paint);
+            mFlattenedColor = color;
+        }
+        return mFlattened;
+    }
+
+    /**
+     * @param paint the paint to draw the tiles with, e.g. to tint ALPHA_8 ones.
+     * @return a new bitmap of {@code area}, in view coordinates.
+     */
+    Bitmap render(Rect area, Bitmap.Config config, Paint paint) {
+        Bitmap bitmap = Bitmap.createBitmap(area.width(), area.height(), config);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.translate(-area.left, -area.top);
+        draw(canvas, paint);
+        return bitmap;
+    }
+
+    /**
+     * @param paint the paint to draw the tiles with, e.g. to tint ALPHA_8 ones.
+     * @return a copy of this raster with tiles of another configuration.
+     */
+    TiledRaster convert(Bitmap.Config config, Paint paint) {
+        TiledRaster converted = new TiledRaster(mWidth, mHeight, config);
+        for (int index = 0; index < mTiles.length; index++) {
+            if (mTiles[index] != null) {
+                int column = index % mColumns;
+                int row = index / mColumns;
+                converted.lockTile(column, row);
+                converted.mCanvases[index].drawBitmap(mTiles[index], column * TILE_SIZE, row * TILE_SIZE, paint);
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * Sets {@code out} to the smallest area holding every pixel that is not
+     * fully transparent. Only the allocated tiles are scanned.
+     *
+     * @return {@code false} if there is no such pixel.
+     */
+    boolean getInkBounds(Rect out) {
+        out.setEmpty();
+        for (int row = 0; row < mRows; row++) {
+            for (int column = 0; column < mColumns; column++) {
+                Bitmap tile = mTiles[row * mColumns + column];
+                if (tile != null) {
+                    unionInkBounds(tile, column * TILE_SIZE, row * TILE_SIZE, out);
+                }
+            }
+        }
+        return !out.isEmpty();
+    }
+
+    private void unionInkBounds(Bitmap tile, int left, int top, Rect out) {
+        int width = tile.getWidth();
+        int[] pixels = rowPixels(width);
+        for (int y = 0; y < tile.getHeight(); y++) {
+            tile.getPixels(pixels, 0, width, 0, y, width, 1);
+            int first = -1;
+            int last = -1;
+            for (int x = 0; x < width; x++) {
+                if (pixels[x] != 0) {
+                    if (first < 0) {
+                        first = x;
+                    }
+                    last = x;
+                }
+            }
+            if (first >= 0) {
+                out.union(left + first, top + y, left + last + 1, top + y + 1);
+            }
+        }
+    }
+
+    private boolean hasInk(Bitmap tile) {
+        int width = tile.getWidth();
+        int[] pixels = rowPixels(width);
+        for (int y = 0; y < tile.getHeight(); y++) {
+            tile.getPixels(pixels, 0, width, 0, y, width, 1);
+            for (int x = 0; x < width; x++) {
+                if (pixels[x] != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int[] rowPixels(int width) {
+        if (mRowCached == null || mRowCached.length < width) {
+            mRowCached = new int[TILE_SIZE];
+        }
+        return mRowCached;
+    }
+}
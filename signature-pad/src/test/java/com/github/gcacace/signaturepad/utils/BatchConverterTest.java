@@ -0,0 +1,202 @@
+package com.github.gcacace.signaturepad.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Pure-JVM tests for {@link BatchConverter}, writing into memory.
+ */
+public class BatchConverterTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void run_writesTheSameSvgAsTheEngine() throws Exception {
+        BatchConverter converter = new BatchConverter(2f, 8f, 0.9f);
+        converter.setFormats(BatchConverter.FORMAT_SVG | BatchConverter.FORMAT_PNG);
+        MemorySink sink = new MemorySink();
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        BatchConverter.Stats stats;
+        try {
+            stats = converter.run(pool, new Recordings(50), sink);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(50, stats.converted);
+        assertEquals(0, stats.failed);
+        assertNull(stats.firstFailure);
+        assertTrue(stats.getSignaturesPerSecond() > 0);
+        assertEquals(100, sink.files.size());
+        for (int i = 0; i < 50; i++) {
+            StrokeEngine engine = new StrokeEngine(2f, 8f, 0.9f);
+            BatchConverter.Recording recording = recording(i);
+            int start = 0;
+            for (int end : recording.strokeEnds) {
+                engine.addStroke(recording.xs, recording.ys, recording.timestampsNanos, null,
+                        start, end - start, null);
+                start = end;
+            }
+            assertEquals(engine.buildSvg(200, 100),
+                    new String(sink.files.get("signature" + i + ".svg"), StandardCharsets.UTF_8));
+
+            BufferedImage png = ImageIO.read(new ByteArrayInputStream(sink.files.get("signature" + i + ".png")));
+            assertEquals(200, png.getWidth());
+            assertEquals(0xffffffff, png.getRGB(199, 99));
+            assertEquals(0xff000000, png.getRGB(60, 30 + i % 10));
+        }
+    }
+
+    @Test
+    public void run_replaysRecordedSamplesWithoutDecimatingThemAgain() throws Exception {
+        BatchConverter converter = new BatchConverter(2f, 8f, 0.9f);
+        converter.setSampleDecimation(12f, 0);
+        converter.setRecordedSamples(true);
+        MemorySink sink = new MemorySink();
+        ForkJoinPool pool = new ForkJoinPool(2);
+
+        try {
+            converter.run(pool, new Recordings(1), sink);
+        } finally {
+            pool.shutdown();
+        }
+
+        StrokeEngine engine = new StrokeEngine(2f, 8f, 0.9f);
+        BatchConverter.Recording recording = recording(0);
+        int start = 0;
+        for (int end : recording.strokeEnds) {
+            engine.addRecordedStroke(recording.xs, recording.ys, recording.timestampsNanos, null,
+                    start, end - start, null);
+            start = end;
+        }
+        assertEquals(engine.buildSvg(200, 100),
+                new String(sink.files.get("signature0.svg"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void run_readsNoFurtherAheadThanMaxInFlight() throws Exception {
+        BatchConverter converter = new BatchConverter(2f, 8f, 0.9f);
+        converter.setMaxInFlight(3);
+        final AtomicInteger written = new AtomicInteger();
+        Recordings source = new Recordings(40);
+        source.written = written;
+        ForkJoinPool pool = new ForkJoinPool(2);
+
+        try {
+            converter.run(pool, source, new BatchConverter.Sink() {
+                @Override
+                public OutputStream open(String fileName) {
+                    return new ByteArrayOutputStream() {
+                        @Override
+                        public void close() {
+                            written.incrementAndGet();
+                        }
+                    };
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(40, written.get());
+        assertTrue("read " + source.maxAhead + " ahead", source.maxAhead <= 3);
+    }
+
+    @Test
+    public void run_countsFailuresAndGoesOn() throws Exception {
+        BatchConverter converter = new BatchConverter(2f, 8f, 0.9f);
+        MemorySink sink = new MemorySink() {
+            @Override
+            public OutputStream open(String fileName) throws IOException {
+                if (fileName.equals("signature3.svg")) {
+                    throw new IOException("disk full");
+                }
+                return super.open(fileName);
+            }
+        };
+        ForkJoinPool pool = new ForkJoinPool(2);
+
+        BatchConverter.Stats stats;
+        try {
+            stats = converter.run(pool, new Recordings(10), sink);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(9, stats.converted);
+        assertEquals(1, stats.failed);
+        assertNotNull(stats.firstFailure);
+        assertEquals(9, sink.files.size());
+    }
+
+    private static class MemorySink implements BatchConverter.Sink {
+        final Map<String, byte[]> files = new ConcurrentHashMap<>();
+
+        @Override
+        public OutputStream open(final String fileName) throws IOException {
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() {
+                    files.put(fileName, toByteArray());
+                }
+            };
+        }
+    }
+
+    private static class Recordings implements BatchConverter.Source {
+        private final int mCount;
+        private int mNext;
+        // Counts the files closed, to see how far ahead of them next() is called.
+        AtomicInteger written;
+        int maxAhead;
+
+        Recordings(int count) {
+            mCount = count;
+        }
+
+        @Override
+        public BatchConverter.Recording next() {
+            if (written != null) {
+                // Recordings handed out and not written yet, this one included.
+                maxAhead = Math.max(maxAhead, mNext + 1 - written.get());
+            }
+            return mNext < mCount ? recording(mNext++) : null;
+        }
+    }
+
+    /** Two strokes: a horizontal one through (60, 30 + i % 10), and a tap. */
+    private static BatchConverter.Recording recording(int i) {
+        int samples = 21;
+        float[] xs = new float[samples];
+        float[] ys = new float[samples];
+        long[] times = new long[samples];
+        for (int s = 0; s < 20; s++) {
+            xs[s] = 20f + s * 5f;
+            ys[s] = 30f + i % 10;
+            times[s] = s * 8 * MS;
+        }
+        xs[20] = 150f;
+        ys[20] = 70f;
+        times[20] = 400 * MS;
+        return new BatchConverter.Recording("signature" + i, 200, 100, xs, ys, times, null,
+                new int[]{20, 21});
+    }
+}
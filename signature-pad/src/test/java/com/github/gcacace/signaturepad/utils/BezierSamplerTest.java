@@ -0,0 +1,135 @@
+package com.github.gcacace.signaturepad.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Pure-JVM tests for {@link BezierSampler}.
+ */
+public class BezierSamplerTest {
+
+    private static final long MS = 1000000L;
+
+    private static Bezier curve(float sx, float sy, float c1x, float c1y,
+                                float c2x, float c2y, float ex, float ey) {
+        return new Bezier().set(new TimedPoint().set(sx, sy, 0), new TimedPoint().set(c1x, c1y, 0),
+                new TimedPoint().set(c2x, c2y, 0), new TimedPoint().set(ex, ey, 0));
+    }
+
+    @Test
+    public void spacing_growsWithTheWidth_butNeverBelowAPixel() {
+        assertEquals(1f, BezierSampler.spacing(0.5f), 0f);
+        assertEquals(1f, BezierSampler.spacing(1.25f), 0f);
+        assertEquals(3f, BezierSampler.spacing(9.25f), 1e-5f);
+    }
+
+    @Test
+    public void straightSegment_isStampedAsSparselyAsItsWidthAllows() {
+        BezierSampler sampler = new BezierSampler();
+        assertTrue(sampler.start(curve(0, 0, 10, 0, 20, 0, 30, 0), 8f, 8f, false));
+
+        float previous = Float.NaN;
+        while (sampler.next()) {
+            if (!Float.isNaN(previous)) {
+                assertTrue(sampler.getX() - previous <= BezierSampler.spacing(8f));
+            }
+            previous = sampler.getX();
+        }
+        assertTrue("fewer dots than one per pixel", sampler.getSteps() < 30);
+        assertTrue(30f - previous <= BezierSampler.spacing(8f));
+    }
+
+    @Test
+    public void stamps_lieOnTheCurve_withTheDotStampingWidthProfile() {
+        Bezier bezier = curve(0, 0, 0, 100, 100, 100, 100, 0);
+        BezierSampler sampler = new BezierSampler();
+        sampler.start(bezier, 2f, 10f, false);
+
+        while (sampler.next()) {
+            float t = sampler.getT();
+            assertEquals(bezier.point(t, 0, 0, 100, 100), sampler.getX(), 1e-2);
+            assertEquals(bezier.point(t, 0, 100, 100, 0), sampler.getY(), 1e-2);
+            assertEquals(2f + t * t * t * 8f, sampler.getWidth(), 1e-4f);
+        }
+    }
+
+    @Test
+    public void tightTurns_areNotSkipped() {
+        // Starts and ends on the same point: the chord of any big step is short.
+        BezierSampler sampler = new BezierSampler();
+        sampler.start(curve(0, 0, 60, 40, -60, 40, 0, 0), 3f, 3f, true);
+
+        float x = Float.NaN;
+        float y = Float.NaN;
+        while (sampler.next()) {
+            if (!Float.isNaN(x)) {
+                float dx = sampler.getX() - x;
+                float dy = sampler.getY() - y;
+                assertTrue((float) Math.sqrt(dx * dx + dy * dy) <= BezierSampler.spacing(3f));
+            }
+            x = sampler.getX();
+            y = sampler.getY();
+        }
+        assertTrue(sampler.getSteps() > 10);
+    }
+
+    @Test
+    public void includeEnd_landsOnTheEndPoint() {
+        BezierSampler sampler = new BezierSampler();
+        sampler.start(curve(0, 0, 5, 5, 10, 5, 15, 0), 2f, 6f, true);
+        while (sampler.next()) {
+            // walk to the end
+        }
+        assertEquals(1f, sampler.getT(), 0f);
+        assertEquals(15f, sampler.getX(), 0f);
+        assertEquals(0f, sampler.getY(), 0f);
+        assertEquals(6f, sampler.getWidth(), 0f);
+
+        sampler.start(curve(0, 0, 5, 5, 10, 5, 15, 0), 2f, 6f, false);
+        float lastT = 0;
+        while (sampler.next()) {
+            lastT = sampler.getT();
+        }
+        assertTrue("the next segment stamps the end", lastT < 1f);
+    }
+
+    @Test
+    public void zeroLengthSegment_hasNothingToWalk() {
+        BezierSampler sampler = new BezierSampler();
+
+        assertFalse(sampler.start(curve(5, 5, 5, 5, 5, 5, 5, 5), 3f, 3f, true));
+        assertFalse(sampler.next());
+    }
+
+    @Test
+    public void referenceSignature_takesFewerStepsThanOnePerPixel() {
+        // Three wavy strokes with uneven spacing and speed, the same as the
+        // StrokeWorkerTest ones, fitted with the pad's default 3-7px widths.
+        StrokeFitter fitter = new StrokeFitter(3f, 7f, 0.9f);
+        BezierSampler sampler = new BezierSampler();
+        int perPixel = 0;
+        int sampled = 0;
+        for (int stroke = 0; stroke < 3; stroke++) {
+            fitter.startStroke();
+            for (int i = 0; i < 40; i++) {
+                float x = 20f + i * (i % 3 + 0.5f);
+                float y = 20f + stroke * 5f + (float) Math.sin(i / 4.0) * 30f;
+                long t = (stroke * 1000L + i * (4 + i % 5)) * MS;
+                if (fitter.addPoint(x, y, t, 1f)) {
+                    Bezier bezier = fitter.getCurve();
+                    perPixel += (int) Math.ceil(bezier.length());
+                    sampler.start(bezier, fitter.getCurveStartWidth(), fitter.getCurveEndWidth(), i == 39);
+                    while (sampler.next()) {
+                        sampled++;
+                    }
+                }
+            }
+        }
+
+        assertEquals(3165, perPixel);
+        assertTrue("took " + sampled + " steps", sampled < perPixel * 9 / 10);
+    }
+}
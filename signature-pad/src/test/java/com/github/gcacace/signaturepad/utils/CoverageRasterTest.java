@@ -0,0 +1,76 @@
+package com.github.gcacace.signaturepad.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Pure-JVM tests for {@link CoverageRaster}.
+ */
+public class CoverageRasterTest {
+
+    @Test
+    public void drawDot_coversItsDiscAndNothingElse() {
+        CoverageRaster raster = new CoverageRaster();
+        raster.reset(20, 20);
+
+        raster.drawDot(10f, 10f, 6f);
+
+        assertEquals(255, raster.getCoverage(10, 10));
+        assertEquals(255, raster.getCoverage(8, 10));
+        assertEquals(0, raster.getCoverage(14, 10));
+        assertEquals(0, raster.getCoverage(10, 4));
+        // An edge pixel is partly covered.
+        int edge = raster.getCoverage(12, 9);
+        assertTrue(edge > 0 && edge < 255);
+    }
+
+    @Test
+    public void drawCurve_withoutLength_stampsADot() {
+        CoverageRaster raster = new CoverageRaster();
+        raster.reset(20, 20);
+        TimedPoint point = new TimedPoint().set(10f, 10f, 0);
+
+        raster.drawCurve(new Bezier().set(point, point, point, point), 4f, 4f,
+                StrokeOutline.CAP_START | StrokeOutline.CAP_END);
+
+        assertEquals(255, raster.getCoverage(10, 10));
+    }
+
+    @Test
+    public void reset_clearsThePreviousSignature() {
+        CoverageRaster raster = new CoverageRaster();
+        raster.reset(20, 20);
+        raster.drawDot(10f, 10f, 6f);
+
+        raster.reset(10, 10);
+
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 10; x++) {
+                assertEquals(0, raster.getCoverage(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void writePng_tintsTheCoverageOverTheBackground() throws IOException {
+        CoverageRaster raster = new CoverageRaster();
+        raster.reset(20, 20);
+        raster.drawDot(10f, 10f, 6f);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        raster.writePng(out, 0xff0000ff, 0xffffffff);
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(0xff0000ff, image.getRGB(10, 10));
+        assertEquals(0xffffffff, image.getRGB(1, 1));
+    }
+}
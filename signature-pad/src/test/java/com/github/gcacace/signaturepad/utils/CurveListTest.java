@@ -0,0 +1,129 @@
+package com.github.gcacace.signaturepad.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Pure-JVM tests for {@link CurveList}.
+ */
+public class CurveListTest {
+
+    private static Bezier curve(float offset) {
+        return new Bezier().set(new TimedPoint().set(offset, 1, 0), new TimedPoint().set(offset + 2, 3, 0),
+                new TimedPoint().set(offset + 4, 5, 0), new TimedPoint().set(offset + 6, 7, 0));
+    }
+
+    private static Bezier emptyCurve() {
+        return new Bezier().set(new TimedPoint(), new TimedPoint(), new TimedPoint(), new TimedPoint());
+    }
+
+    @Test
+    public void add_thenGet_roundTripsEveryField() {
+        CurveList curves = new CurveList(4);
+        curves.add(curve(0), 2f, 5f, 3, 0xff00ff00);
+
+        Bezier out = emptyCurve();
+        assertSame(out, curves.get(0, out));
+        assertEquals(0f, out.startPoint.x, 0f);
+        assertEquals(1f, out.startPoint.y, 0f);
+        assertEquals(2f, out.control1.x, 0f);
+        assertEquals(5f, out.control2.y, 0f);
+        assertEquals(6f, out.endPoint.x, 0f);
+        assertEquals(7f, out.endPoint.y, 0f);
+        assertEquals(2f, curves.getStartWidth(0), 0f);
+        assertEquals(5f, curves.getEndWidth(0), 0f);
+        assertEquals(3, curves.getFlags(0));
+        assertEquals(0xff00ff00, curves.getColor(0));
+    }
+
+    @Test
+    public void add_growsPastTheInitialCapacity() {
+        CurveList curves = new CurveList(1);
+        for (int i = 0; i < 100; i++) {
+            curves.add(curve(i), i, i + 1, i, i);
+        }
+
+        assertEquals(100, curves.size());
+        Bezier out = emptyCurve();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, curves.get(i, out).startPoint.x, 0f);
+            assertEquals(i + 1, curves.getEndWidth(i), 0f);
+            assertEquals(i, curves.getColor(i));
+        }
+    }
+
+    @Test
+    public void clear_empties() {
+        CurveList curves = new CurveList(2);
+        curves.add(curve(0), 1f, 1f, 0, 0);
+
+        curves.clear();
+
+        assertTrue(curves.isEmpty());
+        assertEquals(0, curves.size());
+    }
+
+    @Test
+    public void truncate_keepsTheFirstCurves() {
+        CurveList curves = new CurveList(2);
+        for (int i = 0; i < 5; i++) {
+            curves.add(curve(i), 1f, 1f, 0, i);
+        }
+
+        curves.truncate(2);
+        curves.add(curve(9), 1f, 1f, 0, 9);
+
+        assertEquals(3, curves.size());
+        assertEquals(1, curves.getColor(1));
+        assertEquals(9, curves.getColor(2));
+    }
+
+    @Test
+    public void addAll_appendsACopy() {
+        CurveList source = new CurveList(2);
+        for (int i = 0; i < 5; i++) {
+            source.add(curve(i), i, i + 1, i, i);
+        }
+        CurveList curves = new CurveList(1);
+        curves.add(curve(9), 1f, 1f, 0, 9);
+
+        curves.addAll(source);
+        source.transform(2f, 2f, 0f, 0f, 2f);
+
+        assertEquals(6, curves.size());
+        assertEquals(9, curves.getColor(0));
+        Bezier out = emptyCurve();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, curves.get(i + 1, out).startPoint.x, 0f);
+            assertEquals(i + 1, curves.getEndWidth(i + 1), 0f);
+            assertEquals(i, curves.getFlags(i + 1));
+        }
+    }
+
+    @Test
+    public void transform_scalesAndOffsetsThePointsAndScalesTheWidths() {
+        CurveList curves = new CurveList(1);
+        curves.add(curve(1), 2f, 4f, 0, 0);
+
+        curves.transform(2f, 3f, 10f, 20f, 0.5f);
+
+        Bezier out = curves.get(0, emptyCurve());
+        assertEquals(1f * 2 + 10, out.startPoint.x, 0f);
+        assertEquals(1f * 3 + 20, out.startPoint.y, 0f);
+        assertEquals(7f * 2 + 10, out.endPoint.x, 0f);
+        assertEquals(7f * 3 + 20, out.endPoint.y, 0f);
+        assertEquals(1f, curves.getStartWidth(0), 0f);
+        assertEquals(2f, curves.getEndWidth(0), 0f);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_pastTheEnd_throws() {
+        CurveList curves = new CurveList(2);
+        curves.add(curve(0), 1f, 1f, 0, 0);
+
+        curves.getFlags(1);
+    }
+}
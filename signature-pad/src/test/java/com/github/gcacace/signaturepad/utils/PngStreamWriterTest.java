@@ -0,0 +1,126 @@
+package com.github.gcacace.signaturepad.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Pure-JVM tests for {@link PngStreamWriter}, decoding its output with
+ * {@link ImageIO}.
+ */
+public class PngStreamWriterTest {
+
+    private static byte[] encode(int[] pixels, int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PngStreamWriter png = new PngStreamWriter(out, width, height);
+        for (int y = 0; y < height; y++) {
+            png.writeRow(pixels, y * width);
+        }
+        png.finish();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void writtenRows_decodeToTheSamePixels() throws IOException {
+        int[] pixels = {
+                0xff000000, 0x80ff0000, 0x00000000,
+                0x4000ff00, 0xff0000ff, 0xffffffff,
+        };
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(encode(pixels, 3, 2)));
+
+        assertEquals(3, image.getWidth());
+        assertEquals(2, image.getHeight());
+        for (int y = 0; y < 2; y++) {
+            for (int x = 0; x < 3; x++) {
+                assertEquals(pixels[y * 3 + x], image.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void largeImages_spanSeveralChunks() throws IOException {
+        int width = 300;
+        int height = 300;
+        int[] pixels = new int[width * height];
+        Random random = new Random(17);
+        for (int i = 0; i < pixels.length; i++) {
+            // Opaque, so ImageIO hands the colour back unchanged.
+            pixels[i] = random.nextInt() | 0xff000000;
+        }
+
+        byte[] png = encode(pixels, width, height);
+        assertTrue(png.length > 2 * PngStreamWriter.CHUNK_SIZE);
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(pixels[y * width + x], image.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void end_afterTheStreamFails_releasesTheWriter() throws IOException {
+        // Takes the signature and header, then fails.
+        OutputStream out = new OutputStream() {
+            private int mWritten;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                mWritten += len;
+                if (mWritten > 33) {
+                    throw new IOException("disk full");
+                }
+            }
+        };
+        PngStreamWriter png = new PngStreamWriter(out, 2, 2);
+        png.writeRow(new int[2], 0);
+        png.writeRow(new int[2], 0);
+        try {
+            png.finish();
+            fail("expected IOException");
+        } catch (IOException expected) {
+        }
+
+        png.end();
+        png.end();
+        try {
+            png.writeRow(new int[2], 0);
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void finish_beforeEveryRow_throws() throws IOException {
+        PngStreamWriter png = new PngStreamWriter(new ByteArrayOutputStream(), 2, 2);
+        png.writeRow(new int[2], 0);
+
+        png.finish();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void writeRow_pastTheLastRow_throws() throws IOException {
+        PngStreamWriter png = new PngStreamWriter(new ByteArrayOutputStream(), 2, 1);
+        png.writeRow(new int[2], 0);
+
+        png.writeRow(new int[2], 0);
+    }
+}
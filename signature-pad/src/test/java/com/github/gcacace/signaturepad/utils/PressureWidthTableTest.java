@@ -0,0 +1,41 @@
+package com.github.gcacace.signaturepad.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Pure-JVM tests for {@link PressureWidthTable}.
+ */
+public class PressureWidthTableTest {
+
+    private static final float DELTA = 0.02f;
+
+    @Test
+    public void width_mapsPressureLinearlyBetweenMinAndMax() {
+        PressureWidthTable table = new PressureWidthTable(2f, 10f);
+
+        assertEquals(2f, table.width(0f), DELTA);
+        assertEquals(6f, table.width(0.5f), DELTA);
+        assertEquals(10f, table.width(1f), DELTA);
+    }
+
+    @Test
+    public void width_clampsOutOfRangePressure() {
+        PressureWidthTable table = new PressureWidthTable(2f, 10f);
+
+        assertEquals(2f, table.width(-0.3f), DELTA);
+        assertEquals(2f, table.width(Float.NaN), DELTA);
+        assertEquals(10f, table.width(1.7f), DELTA);
+    }
+
+    @Test
+    public void set_rebuildsTheTable() {
+        PressureWidthTable table = new PressureWidthTable(2f, 10f);
+
+        table.set(1f, 3f);
+
+        assertEquals(1f, table.width(0f), DELTA);
+        assertEquals(3f, table.width(1f), DELTA);
+    }
+}
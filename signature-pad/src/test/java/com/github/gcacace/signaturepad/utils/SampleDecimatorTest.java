@@ -0,0 +1,86 @@
+package com.github.gcacace.signaturepad.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Pure-JVM tests for {@link SampleDecimator}.
+ */
+public class SampleDecimatorTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void disabled_keepsEverySample() {
+        SampleDecimator decimator = new SampleDecimator(0, 0);
+
+        assertTrue(decimator.isDisabled());
+        assertTrue(decimator.filter(0, 0, 0, false));
+        assertTrue(decimator.filter(0, 0, 0, false));
+        assertEquals(0, decimator.getStats().dropped);
+    }
+
+    @Test
+    public void firstSampleOfAStroke_isAlwaysKept() {
+        SampleDecimator decimator = new SampleDecimator(5f, 0);
+        assertTrue(decimator.filter(10, 10, 0, false));
+
+        decimator.reset();
+
+        assertTrue("a new stroke starts fresh", decimator.filter(10, 10, MS, false));
+    }
+
+    @Test
+    public void samplesCloserThanMinDistance_areDropped() {
+        SampleDecimator decimator = new SampleDecimator(1f, 0);
+        decimator.filter(0, 0, 0, false);
+
+        assertFalse(decimator.filter(0.5f, 0.5f, MS, false));
+        assertTrue(decimator.filter(1f, 0f, 2 * MS, false));
+        // distance is measured from the last KEPT sample, not the last seen one
+        assertFalse(decimator.filter(1.6f, 0f, 3 * MS, false));
+        assertTrue(decimator.filter(2.1f, 0f, 4 * MS, false));
+    }
+
+    @Test
+    public void samplesSoonerThanMinInterval_areDropped() {
+        SampleDecimator decimator = new SampleDecimator(0, 4 * MS);
+        decimator.filter(0, 0, 0, false);
+
+        assertFalse(decimator.filter(50, 0, 2 * MS, false));
+        assertTrue(decimator.filter(60, 0, 4 * MS, false));
+    }
+
+    @Test
+    public void forcedSamples_bypassTheThresholds() {
+        SampleDecimator decimator = new SampleDecimator(10f, 0);
+        decimator.filter(0, 0, 0, false);
+
+        assertTrue(decimator.filter(0.1f, 0, MS, true));
+    }
+
+    @Test
+    public void stats_countKeptAndDroppedSamples() {
+        SampleDecimator decimator = new SampleDecimator(1f, 0);
+        for (int i = 0; i < 10; i++) {
+            decimator.filter(i * 0.25f, 0, i * MS, i == 9);
+        }
+
+        SampleDecimator.Stats stats = decimator.getStats();
+        // kept: 0, 1.0, 2.0 (thresholds) + the forced last sample at 2.25
+        assertEquals(4, stats.kept);
+        assertEquals(6, stats.dropped);
+
+        decimator.resetStats();
+        assertEquals(0, decimator.getStats().kept);
+        assertEquals(0, decimator.getStats().dropped);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void set_rejectsNegativeThresholds() {
+        new SampleDecimator(-1f, 0);
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.gcacace.signaturepad.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Pure-JVM tests for {@link SampleQueue}.
+ */
+public class SampleQueueTest {
+
+    @Test
+    public void add_thenGet_roundTripsEveryField() {
+        SampleQueue samples = new SampleQueue(4);
+        samples.add(1f, 2f, 3L, 0.5f, StrokeEngine.FLAG_STROKE_START);
+
+        assertEquals(1, samples.size());
+        assertEquals(1f, samples.getX(0), 0f);
+        assertEquals(2f, samples.getY(0), 0f);
+        assertEquals(3L, samples.getTimestamp(0));
+        assertEquals(0.5f, samples.getPressure(0), 0f);
+        assertEquals(StrokeEngine.FLAG_STROKE_START, samples.getFlags(0));
+    }
+
+    @Test
+    public void add_growsPastTheInitialCapacity_inOrder() {
+        SampleQueue samples = new SampleQueue(1);
+        for (int i = 0; i < 100; i++) {
+            samples.add(i, -i, i * 1000L, i / 100f, i);
+        }
+
+        assertEquals(100, samples.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, samples.getX(i), 0f);
+            assertEquals(-i, samples.getY(i), 0f);
+            assertEquals(i * 1000L, samples.getTimestamp(i));
+            assertEquals(i, samples.getFlags(i));
+        }
+    }
+
+    @Test
+    public void clear_empties_andKeepsAcceptingSamples() {
+        SampleQueue samples = new SampleQueue(2);
+        samples.add(1f, 1f, 1L, 1f, 0);
+
+        samples.clear();
+        assertTrue(samples.isEmpty());
+
+        samples.add(7f, 8f, 9L, 1f, 0);
+        assertEquals(7f, samples.getX(0), 0f);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_pastTheEnd_throws() {
+        SampleQueue samples = new SampleQueue(2);
+        samples.add(1f, 1f, 1L, 1f, 0);
+
+        samples.getX(1);
+    }
+}
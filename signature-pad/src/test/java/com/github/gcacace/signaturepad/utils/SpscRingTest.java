@@ -0,0 +1,105 @@
+package com.github.gcacace.signaturepad.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Pure-JVM tests for {@link SpscRing}.
+ */
+public class SpscRingTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacity_mustBeAPowerOfTwo() {
+        new SpscRing(3, 1);
+    }
+
+    @Test
+    public void records_comeOutInOrder() {
+        SpscRing ring = new SpscRing(4, 2);
+        for (int i = 0; i < 3; i++) {
+            int slot = ring.claim();
+            ring.putFloat(slot, 0, i);
+            ring.putFloat(slot, 1, -i);
+            ring.putLong(slot, 100L + i);
+            ring.putInt(slot, 10 + i);
+            ring.publish();
+        }
+        assertEquals(3, ring.size());
+
+        for (int i = 0; i < 3; i++) {
+            int slot = ring.peek();
+            assertEquals(i, ring.getFloat(slot, 0), 0f);
+            assertEquals(-i, ring.getFloat(slot, 1), 0f);
+            assertEquals(100L + i, ring.getLong(slot));
+            assertEquals(10 + i, ring.getInt(slot));
+            ring.release();
+        }
+        assertTrue(ring.isEmpty());
+        assertEquals(-1, ring.peek());
+    }
+
+    @Test
+    public void claim_failsWhenFull_untilTheConsumerReleases() {
+        SpscRing ring = new SpscRing(2, 0);
+        ring.claim();
+        ring.publish();
+        ring.claim();
+        ring.publish();
+
+        assertEquals(-1, ring.claim());
+
+        ring.peek();
+        ring.release();
+        assertTrue(ring.claim() >= 0);
+    }
+
+    @Test
+    public void slots_wrapAround() {
+        SpscRing ring = new SpscRing(2, 1);
+        for (int i = 0; i < 7; i++) {
+            int slot = ring.claim();
+            ring.putFloat(slot, 0, i);
+            ring.publish();
+            assertEquals(i, ring.getFloat(ring.peek(), 0), 0f);
+            ring.release();
+        }
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void crossThread_deliversEveryRecordInOrder() throws InterruptedException {
+        final int count = 200000;
+        final SpscRing ring = new SpscRing(64, 1);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    int slot;
+                    while ((slot = ring.claim()) < 0) {
+                        Thread.yield();
+                    }
+                    ring.putLong(slot, i);
+                    ring.putFloat(slot, 0, i);
+                    ring.publish();
+                }
+            }
+        });
+        producer.start();
+
+        for (long expected = 0; expected < count; ) {
+            int slot = ring.peek();
+            if (slot < 0) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(expected, ring.getLong(slot));
+            assertEquals((float) expected, ring.getFloat(slot, 0), 0f);
+            ring.release();
+            expected++;
+        }
+        producer.join();
+        assertTrue(ring.isEmpty());
+    }
+}
@@ -0,0 +1,238 @@
+package com.github.gcacace.signaturepad.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Pure-JVM tests for {@link StrokeCodec}.
+ */
+public class StrokeCodecTest {
+
+    private static final long MS = 1000000L;
+
+    private static byte[] encode(StrokeCodec codec, StrokeStore store, int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.write(store, width, height, out);
+        return out.toByteArray();
+    }
+
+    private static StrokeStore decode(StrokeCodec codec, byte[] data) throws IOException {
+        StrokeStore store = new StrokeStore(16, 4);
+        codec.read(new ByteArrayInputStream(data), store);
+        return store;
+    }
+
+    /**
+     * Three strokes of a looping scrawl across a 600x200 pad, sampled at
+     * 120Hz and recorded through a {@link StrokeEngine}, like a signature
+     * drawn on the pad.
+     */
+    private static StrokeEngine signature() {
+        StrokeEngine engine = new StrokeEngine(3f, 7f, 0.9f);
+        engine.setStrokeStore(new StrokeStore(64, 4));
+        long time = 5000 * MS;
+        int[] sampleCounts = {150, 90, 12};
+        for (int stroke = 0; stroke < sampleCounts.length; stroke++) {
+            int count = sampleCounts[stroke];
+            for (int i = 0; i < count; i++) {
+                double t = (double) i / count;
+                float x = (float) (60 + stroke * 180 + t * 160 + 25 * Math.sin(t * 14));
+                float y = (float) (100 + 50 * Math.sin(t * 9 + stroke) * (1 - t / 2));
+                int flags = 0;
+                if (i == 0) {
+                    flags |= StrokeEngine.FLAG_STROKE_START | StrokeEngine.FLAG_FORCE;
+                }
+                if (i == count - 1) {
+                    flags |= StrokeEngine.FLAG_STROKE_END | StrokeEngine.FLAG_FORCE;
+                }
+                engine.addSample(x, y, time, 0.4f + 0.3f * (float) t, flags);
+                time += 8333333L;
+            }
+            time += 300 * MS;
+        }
+        return engine;
+    }
+
+    @Test
+    public void roundTrip_keepsEveryStrokeWithinTheQuantization() throws IOException {
+        StrokeStore store = signature().getStrokeStore();
+        StrokeCodec codec = new StrokeCodec();
+        codec.setQuantization(4, 100000L, 128, 8);
+
+        StrokeStore decoded = decode(codec, encode(codec, store, 600, 200));
+
+        assertEquals(600, codec.getWidth());
+        assertEquals(200, codec.getHeight());
+        assertEquals(StrokeCodec.VERSION, codec.getVersion());
+        assertEquals(store.getStrokeCount(), decoded.getStrokeCount());
+        assertEquals(store.getSampleCount(), decoded.getSampleCount());
+        for (int stroke = 0; stroke < store.getStrokeCount(); stroke++) {
+            assertEquals(store.getStrokeEnd(stroke), decoded.getStrokeEnd(stroke));
+        }
+        for (int i = 0; i < store.getSampleCount(); i++) {
+            assertEquals(store.getX(i), decoded.getX(i), 0.125f);
+            assertEquals(store.getY(i), decoded.getY(i), 0.125f);
+            assertEquals(store.getTimestamp(i), decoded.getTimestamp(i), 50000L);
+            assertEquals(store.getPressure(i), decoded.getPressure(i), 1f / 256);
+            assertEquals(store.getWidth(i), decoded.getWidth(i), 1f / 16);
+        }
+    }
+
+    @Test
+    public void roundTrip_isExactForValuesOnTheSteps() throws IOException {
+        StrokeStore store = new StrokeStore(4, 2);
+        store.beginStroke();
+        store.add(10.25f, -3.5f, -7 * MS, 0.5f, 2.5f);
+        store.add(400000.75f, 20f, 123456789 * MS, 1.25f, 0f);
+        store.beginStroke();
+        store.add(0f, 0f, 0L, 0f, 9f);
+        store.endStroke();
+        StrokeCodec codec = new StrokeCodec();
+        codec.setQuantization(4, MS, 4, 2);
+
+        StrokeStore decoded = decode(codec, encode(codec, store, 0, 0));
+
+        assertEquals(3, decoded.getSampleCount());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(store.getX(i), decoded.getX(i), 0f);
+            assertEquals(store.getY(i), decoded.getY(i), 0f);
+            assertEquals(store.getTimestamp(i), decoded.getTimestamp(i));
+            assertEquals(store.getPressure(i), decoded.getPressure(i), 0f);
+            assertEquals(store.getWidth(i), decoded.getWidth(i), 0f);
+        }
+    }
+
+    @Test
+    public void fieldsLeftOut_readBackAsDefaults() throws IOException {
+        StrokeStore store = signature().getStrokeStore();
+        StrokeCodec codec = new StrokeCodec();
+        codec.setQuantization(1, MS, 0, 0);
+
+        StrokeStore decoded = decode(codec, encode(codec, store, 600, 200));
+
+        assertEquals(store.getSampleCount(), decoded.getSampleCount());
+        assertEquals(TimedPoint.DEFAULT_PRESSURE, decoded.getPressure(5), 0f);
+        assertEquals(0f, decoded.getWidth(5), 0f);
+        assertEquals(store.getX(5), decoded.getX(5), 0.5f);
+    }
+
+    @Test
+    public void write_leavesOutTheOpenStroke() throws IOException {
+        StrokeStore store = new StrokeStore(4, 2);
+        store.beginStroke();
+        store.add(1f, 1f, 0L, 0.5f, 3f);
+        store.beginStroke();
+        store.add(2f, 2f, MS, 0.5f, 3f);
+        StrokeCodec codec = new StrokeCodec();
+
+        StrokeStore decoded = decode(codec, encode(codec, store, 10, 10));
+
+        assertEquals(1, decoded.getStrokeCount());
+        assertEquals(1f, decoded.getX(0), 0f);
+    }
+
+    @Test
+    public void read_appendsToTheStore() throws IOException {
+        StrokeStore store = new StrokeStore(4, 2);
+        store.beginStroke();
+        store.add(1f, 1f, 0L, 0.5f, 3f);
+        store.endStroke();
+        StrokeCodec codec = new StrokeCodec();
+        byte[] data = encode(codec, store, 10, 10);
+
+        codec.read(new ByteArrayInputStream(data), store);
+
+        assertEquals(2, store.getStrokeCount());
+        assertEquals(1f, store.getX(1), 0f);
+    }
+
+    @Test
+    public void read_rejectsOtherDataAndNewerVersions_leavingTheStoreAlone() throws IOException {
+        StrokeCodec codec = new StrokeCodec();
+        byte[] data = encode(codec, signature().getStrokeStore(), 600, 200);
+        StrokeStore store = new StrokeStore(4, 2);
+
+        assertReadFails(codec, "<svg/>".getBytes(StandardCharsets.UTF_8), store, IOException.class);
+
+        byte[] newer = data.clone();
+        newer[4] = (byte) (StrokeCodec.VERSION + 1);
+        assertReadFails(codec, newer, store, IOException.class);
+
+        assertReadFails(codec, Arrays.copyOf(data, data.length - 1), store, EOFException.class);
+        assertTrue(store.isEmpty());
+    }
+
+    private static void assertReadFails(StrokeCodec codec, byte[] data, StrokeStore store,
+                                        Class<? extends IOException> expected) {
+        try {
+            codec.read(new ByteArrayInputStream(data), store);
+            fail("expected " + expected.getSimpleName());
+        } catch (IOException e) {
+            assertEquals(expected, e.getClass());
+        }
+    }
+
+    @Test
+    public void setQuantization_rejectsNonPositiveSteps() {
+        StrokeCodec codec = new StrokeCodec();
+        try {
+            codec.setQuantization(0, MS, 0, 0);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            codec.setQuantization(1, 0, 0, 0);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            codec.setQuantization(1, MS, -1, 0);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void signature_isFarSmallerThanItsSvgAndPng() throws IOException {
+        StrokeEngine engine = signature();
+        StrokeStore store = engine.getStrokeStore();
+        byte[] data = encode(new StrokeCodec(), store, 600, 200);
+
+        int svgBytes = engine.buildSvg(600, 200).getBytes(StandardCharsets.UTF_8).length;
+        CoverageRaster raster = new CoverageRaster();
+        raster.reset(600, 200);
+        StrokeEngine replay = new StrokeEngine(3f, 7f, 0.9f);
+        float[] xs = new float[store.getSampleCount()];
+        float[] ys = new float[xs.length];
+        long[] times = new long[xs.length];
+        float[] pressures = new float[xs.length];
+        for (int stroke = 0; stroke < store.getStrokeCount(); stroke++) {
+            int count = store.copyStroke(stroke, xs, ys, times, pressures, null, 0);
+            replay.addRecordedStroke(xs, ys, times, pressures, 0, count, new StrokeEngine.CurveSink() {
+                @Override
+                public void onCurve(Bezier curve, float startWidth, float endWidth, int caps) {
+                    raster.drawCurve(curve, startWidth, endWidth, caps);
+                }
+            });
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        raster.writePng(png, 0xff000000, 0);
+
+        // About 4 bytes per sample: x, y, time and pressure each take a
+        // byte, as the pen keeps to its pace.
+        assertTrue(data.length + " bytes for " + store.getSampleCount() + " samples",
+                data.length < store.getSampleCount() * 9 / 2);
+        assertTrue(data.length + " vs " + svgBytes + " bytes of SVG", data.length * 4 < svgBytes);
+        assertTrue(data.length + " vs " + png.size() + " bytes of PNG", data.length * 5 < png.size());
+    }
+}
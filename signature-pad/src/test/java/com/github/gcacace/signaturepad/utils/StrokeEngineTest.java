@@ -0,0 +1,221 @@
+package com.github.gcacace.signaturepad.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pure-JVM tests for {@link StrokeEngine}: the same samples must give the
+ * same curves, widths and SVG as the decimator, fitter and SVG builder run
+ * by hand, the way {@code SignaturePad} used to.
+ */
+public class StrokeEngineTest {
+
+    private static final long MS = 1000000L;
+    private static final int SAMPLES = 40;
+
+    @Test
+    public void addSample_matchesTheHandRunPipeline() {
+        StrokeEngine engine = new StrokeEngine(new SampleDecimator(1.5f, 0),
+                new StrokeFitter(2f, 8f, 0.9f), new SvgBuilder());
+        SampleDecimator decimator = new SampleDecimator(1.5f, 0);
+        StrokeFitter fitter = new StrokeFitter(2f, 8f, 0.9f);
+        SvgBuilder svg = new SvgBuilder();
+
+        int curves = 0;
+        for (int stroke = 0; stroke < 3; stroke++) {
+            for (int i = 0; i < SAMPLES; i++) {
+                int flags = flags(i);
+                if ((flags & StrokeEngine.FLAG_STROKE_START) != 0) {
+                    svg.beginStroke();
+                    decimator.reset();
+                    fitter.startStroke();
+                }
+                boolean expected = decimator.filter(x(i), y(stroke, i), t(stroke, i),
+                        (flags & StrokeEngine.FLAG_FORCE) != 0)
+                        && fitter.addPoint(x(i), y(stroke, i), t(stroke, i), 1f);
+                assertEquals(expected, engine.addSample(x(i), y(stroke, i), t(stroke, i), 1f, flags));
+                if (expected) {
+                    svg.append(fitter.getCurve(), (fitter.getCurveStartWidth() + fitter.getCurveEndWidth()) / 2);
+                    assertArrayEquals(flatten(fitter.getCurve()), flatten(engine.getCurve()), 0f);
+                    assertEquals(fitter.getCurveStartWidth(), engine.getCurveStartWidth(), 0f);
+                    assertEquals(fitter.getCurveEndWidth(), engine.getCurveEndWidth(), 0f);
+                    int caps = fitter.isFirstCurve() ? StrokeOutline.CAP_START : 0;
+                    if (i == SAMPLES - 1) {
+                        caps |= StrokeOutline.CAP_END;
+                    }
+                    assertEquals(caps, engine.getCurveCaps());
+                    curves++;
+                }
+            }
+        }
+
+        assertTrue(curves > 0);
+        assertEquals(svg.build(400, 300), engine.buildSvg(400, 300));
+    }
+
+    @Test
+    public void addStroke_capsTheFirstAndLastCurve() {
+        StrokeEngine engine = new StrokeEngine(2f, 8f, 0.9f);
+        float[] xs = new float[SAMPLES];
+        float[] ys = new float[SAMPLES];
+        long[] times = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            xs[i] = x(i);
+            ys[i] = y(0, i);
+            times[i] = t(0, i);
+        }
+        final List<Integer> caps = new ArrayList<>();
+
+        int curves = engine.addStroke(xs, ys, times, null, 0, SAMPLES, new StrokeEngine.CurveSink() {
+            @Override
+            public void onCurve(Bezier curve, float startWidth, float endWidth, int curveCaps) {
+                caps.add(curveCaps);
+            }
+        });
+
+        assertEquals(caps.size(), curves);
+        assertEquals(StrokeOutline.CAP_START, (int) caps.get(0));
+        assertEquals(StrokeOutline.CAP_END, (int) caps.get(curves - 1));
+        for (int i = 1; i < curves - 1; i++) {
+            assertEquals(0, (int) caps.get(i));
+        }
+    }
+
+    @Test
+    public void addStroke_feedsTheSamplesLikeThePad() {
+        StrokeEngine engine = new StrokeEngine(new SampleDecimator(1.5f, 0),
+                new StrokeFitter(2f, 8f, 0.9f), new SvgBuilder());
+        StrokeEngine pad = new StrokeEngine(new SampleDecimator(1.5f, 0),
+                new StrokeFitter(2f, 8f, 0.9f), new SvgBuilder());
+        float[] xs = new float[SAMPLES];
+        float[] ys = new float[SAMPLES];
+        long[] times = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            xs[i] = x(i);
+            ys[i] = y(0, i);
+            times[i] = t(0, i);
+        }
+
+        // ACTION_DOWN feeds the down sample, then falls through to
+        // ACTION_MOVE, which feeds it again; ACTION_UP forces the last one.
+        pad.addSample(xs[0], ys[0], times[0], 1f, StrokeEngine.FLAG_STROKE_START | StrokeEngine.FLAG_FORCE);
+        pad.addSample(xs[0], ys[0], times[0], 1f, StrokeEngine.FLAG_FORCE);
+        for (int i = 1; i < SAMPLES - 1; i++) {
+            pad.addSample(xs[i], ys[i], times[i], 1f, 0);
+        }
+        pad.addSample(xs[SAMPLES - 1], ys[SAMPLES - 1], times[SAMPLES - 1], 1f,
+                StrokeEngine.FLAG_FORCE | StrokeEngine.FLAG_STROKE_END);
+        engine.addStroke(xs, ys, times, null, 0, SAMPLES, null);
+
+        assertEquals(pad.buildSvg(400, 300), engine.buildSvg(400, 300));
+    }
+
+    @Test
+    public void addStroke_ofASingleSample_drawsATap() {
+        StrokeEngine engine = new StrokeEngine(2f, 8f, 0.9f);
+        final List<Integer> caps = new ArrayList<>();
+
+        int curves = engine.addStroke(new float[]{50f}, new float[]{60f}, new long[]{0}, null, 0, 1,
+                new StrokeEngine.CurveSink() {
+                    @Override
+                    public void onCurve(Bezier curve, float startWidth, float endWidth, int curveCaps) {
+                        assertEquals(curve.startPoint.x, curve.endPoint.x, 0f);
+                        assertEquals(curve.startPoint.y, curve.endPoint.y, 0f);
+                        caps.add(curveCaps);
+                    }
+                });
+
+        assertEquals(1, curves);
+        assertEquals(StrokeOutline.CAP_START | StrokeOutline.CAP_END, (int) caps.get(0));
+        assertTrue(engine.buildSvg(400, 300).contains("<path"));
+    }
+
+    @Test
+    public void setStrokeStore_recordsEachWidthAtTheSampleItsCurveEndsAt() {
+        // Without velocity filtering, the curve that ends at sample j is as
+        // wide as the velocity from sample j - 1 to j, 0.05 * j px/ms here.
+        StrokeEngine engine = new StrokeEngine(2f, 8f, 1f);
+        StrokeStore store = new StrokeStore(32, 1);
+        engine.setStrokeStore(store);
+        float x = 0;
+        for (int j = 0; j < 20; j++) {
+            x += j * 0.5f;
+            int flags = j == 0 ? StrokeEngine.FLAG_STROKE_START | StrokeEngine.FLAG_FORCE
+                    : j == 19 ? StrokeEngine.FLAG_STROKE_END | StrokeEngine.FLAG_FORCE : 0;
+            engine.addSample(x, 50f, j * 10 * MS, 1f, flags);
+        }
+
+        assertEquals(20, store.getSampleCount());
+        for (int j = 1; j < 19; j++) {
+            assertEquals("sample " + j, 8f / (1 + 0.05f * j), store.getWidth(j), 1e-4f);
+        }
+    }
+
+    @Test
+    public void discardStroke_dropsItFromTheSvg() {
+        StrokeEngine engine = new StrokeEngine(2f, 8f, 0.9f);
+        addStroke(engine, 0);
+        String oneStroke = engine.buildSvg(400, 300);
+
+        for (int i = 0; i < SAMPLES / 2; i++) {
+            engine.addSample(x(i), y(1, i), t(1, i), 1f, i == 0 ? flags(0) : 0);
+        }
+        engine.discardStroke();
+
+        assertEquals(oneStroke, engine.buildSvg(400, 300));
+    }
+
+    @Test
+    public void reset_startsOver() {
+        StrokeEngine engine = new StrokeEngine(2f, 8f, 0.9f);
+        StrokeEngine fresh = new StrokeEngine(2f, 8f, 0.9f);
+        addStroke(engine, 0);
+
+        engine.reset();
+        assertFalse(engine.buildSvg(400, 300).contains("<path"));
+        addStroke(engine, 1);
+        addStroke(fresh, 1);
+
+        assertEquals(fresh.buildSvg(400, 300), engine.buildSvg(400, 300));
+    }
+
+    private static void addStroke(StrokeEngine engine, int stroke) {
+        for (int i = 0; i < SAMPLES; i++) {
+            engine.addSample(x(i), y(stroke, i), t(stroke, i), 1f, flags(i));
+        }
+    }
+
+    private static float[] flatten(Bezier curve) {
+        return new float[]{
+                curve.startPoint.x, curve.startPoint.y, curve.control1.x, curve.control1.y,
+                curve.control2.x, curve.control2.y, curve.endPoint.x, curve.endPoint.y};
+    }
+
+    // A wavy stroke with uneven spacing, so that decimation drops some samples
+    // and the width keeps changing.
+    private static float x(int i) {
+        return 20f + i * (i % 3 + 0.5f);
+    }
+
+    private static float y(int stroke, int i) {
+        return 20f + stroke * 5f + (float) Math.sin(i / 4.0) * 30f;
+    }
+
+    private static long t(int stroke, int i) {
+        return (stroke * 1000L + i * (4 + i % 5)) * MS;
+    }
+
+    private static int flags(int i) {
+        if (i == 0) {
+            return StrokeEngine.FLAG_STROKE_START | StrokeEngine.FLAG_FORCE;
+        }
+        return i == SAMPLES - 1 ? StrokeEngine.FLAG_STROKE_END | StrokeEngine.FLAG_FORCE : 0;
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.gcacace.signaturepad.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Pure-JVM tests for {@link StrokeFitter}.
+ */
+public class StrokeFitterTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void firstCurve_comesWithTheThirdSample() {
+        StrokeFitter fitter = new StrokeFitter(2f, 8f, 0.9f);
+
+        assertFalse(fitter.addPoint(0, 0, 0, 1f));
+        assertEquals("the first sample is duplicated", 2, fitter.getWindow().size());
+        assertFalse(fitter.addPoint(10, 0, 10 * MS, 1f));
+        assertTrue(fitter.addPoint(20, 0, 20 * MS, 1f));
+
+        Bezier curve = fitter.getCurve();
+        assertEquals(0f, curve.startPoint.x, 0f);
+        assertEquals(10f, curve.endPoint.x, 0f);
+        assertEquals(3, fitter.getWindow().size());
+    }
+
+    @Test
+    public void velocityMode_chainsWidthsAcrossCurves() {
+        StrokeFitter fitter = new StrokeFitter(2f, 8f, 0.9f);
+        fitter.addPoint(0, 0, 0, 1f);
+        fitter.addPoint(10, 0, 10 * MS, 1f);
+        fitter.addPoint(20, 0, 20 * MS, 1f);
+
+        assertEquals("starts from the middle of the range", 5f, fitter.getCurveStartWidth(), 0f);
+        float firstEnd = fitter.getCurveEndWidth();
+        assertTrue(firstEnd >= 2f && firstEnd <= 8f);
+
+        assertTrue(fitter.addPoint(30, 0, 30 * MS, 1f));
+        assertEquals(firstEnd, fitter.getCurveStartWidth(), 0f);
+        assertEquals(fitter.getCurveEndWidth(), fitter.getLastWidth(), 0f);
+    }
+
+    @Test
+    public void pressureMode_takesEachEndFromItsSample() {
+        StrokeFitter fitter = new StrokeFitter(2f, 8f, 0.9f);
+        fitter.setWidthMode(StrokeFitter.WIDTH_MODE_PRESSURE);
+        fitter.addPoint(0, 0, 0, 0f);
+        fitter.addPoint(10, 0, 10 * MS, 1f);
+        fitter.addPoint(20, 0, 20 * MS, 1f);
+        assertTrue(fitter.addPoint(30, 0, 30 * MS, 1f));
+
+        assertEquals(8f, fitter.getCurveStartWidth(), 0f);
+        assertEquals(8f, fitter.getCurveEndWidth(), 0f);
+    }
+
+    @Test
+    public void isFirstCurve_marksOnlyTheFirstCurveOfEachStroke() {
+        StrokeFitter fitter = new StrokeFitter(2f, 8f, 0.9f);
+        fitter.addPoint(0, 0, 0, 1f);
+        fitter.addPoint(10, 0, 10 * MS, 1f);
+        fitter.addPoint(20, 0, 20 * MS, 1f);
+        assertTrue(fitter.isFirstCurve());
+        fitter.addPoint(30, 0, 30 * MS, 1f);
+        assertFalse(fitter.isFirstCurve());
+
+        fitter.startStroke();
+        fitter.addPoint(0, 10, 40 * MS, 1f);
+        fitter.addPoint(10, 10, 50 * MS, 1f);
+        fitter.addPoint(20, 10, 60 * MS, 1f);
+        assertTrue(fitter.isFirstCurve());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownWidthMode_isRejected() {
+        new StrokeFitter(2f, 8f, 0.9f).setWidthMode(7);
+    }
+
+    @Test
+    public void startStroke_keepsTheWidth_butResetForgetsIt() {
+        StrokeFitter fitter = new StrokeFitter(2f, 8f, 0.9f);
+        fitter.addPoint(0, 0, 0, 1f);
+        fitter.addPoint(100, 0, MS, 1f);
+        fitter.addPoint(200, 0, 2 * MS, 1f);
+        float width = fitter.getLastWidth();
+        assertTrue("a fast stroke thins the pen", width < 5f);
+
+        fitter.startStroke();
+        assertEquals(0, fitter.getWindow().size());
+        assertEquals(width, fitter.getLastWidth(), 0f);
+
+        fitter.reset();
+        assertEquals(5f, fitter.getLastWidth(), 0f);
+    }
+
+    @Test
+    public void setWidths_restartsFromTheMiddle() {
+        StrokeFitter fitter = new StrokeFitter(2f, 8f, 0.9f);
+        fitter.setWidths(4f, 10f);
+
+        assertEquals(4f, fitter.getMinWidth(), 0f);
+        assertEquals(10f, fitter.getMaxWidth(), 0f);
+        assertEquals(7f, fitter.getLastWidth(), 0f);
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.gcacace.signaturepad.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Pure-JVM tests for {@link StrokeOutline}.
+ */
+public class StrokeOutlineTest {
+
+    private static Bezier curve(float sx, float sy, float c1x, float c1y,
+                                float c2x, float c2y, float ex, float ey) {
+        return new Bezier().set(new TimedPoint().set(sx, sy, 0), new TimedPoint().set(c1x, c1y, 0),
+                new TimedPoint().set(c2x, c2y, 0), new TimedPoint().set(ex, ey, 0));
+    }
+
+    @Test
+    public void straightSegment_isOffsetByHalfTheWidth() {
+        StrokeOutline outline = new StrokeOutline();
+
+        assertTrue(outline.set(curve(0, 0, 10, 0, 20, 0, 30, 0), 4f, 4f));
+
+        assertTrue("about one point per 3px", outline.size() >= 10);
+        for (int i = 0; i < outline.size(); i++) {
+            assertEquals(2f, Math.abs(outline.getLeftY(i)), 1e-5f);
+            assertEquals(-outline.getLeftY(i), outline.getRightY(i), 1e-5f);
+            assertEquals(outline.getLeftX(i), outline.getRightX(i), 1e-5f);
+        }
+        assertEquals(0f, outline.getCenterX(0), 0f);
+        assertEquals(30f, outline.getCenterX(outline.size() - 1), 1e-5f);
+    }
+
+    @Test
+    public void width_followsTheDotStampingProfile() {
+        StrokeOutline outline = new StrokeOutline();
+        outline.set(curve(0, 0, 10, 0, 20, 0, 30, 0), 2f, 10f);
+
+        int last = outline.size() - 1;
+        assertEquals(1f, outline.getHalfWidth(0), 1e-5f);
+        assertEquals(5f, outline.getHalfWidth(last), 1e-5f);
+        int middle = last / 2;
+        float t = (float) middle / last;
+        assertEquals((2f + t * t * t * 8f) / 2, outline.getHalfWidth(middle), 1e-5f);
+    }
+
+    @Test
+    public void vanishingDerivative_stillHasANormal() {
+        // The first curve of a stroke has its control point on its start.
+        StrokeOutline outline = new StrokeOutline();
+
+        assertTrue(outline.set(curve(0, 0, 0, 0, 0, 10, 0, 20), 2f, 2f));
+
+        assertEquals(1f, Math.abs(outline.getNormalX(0)), 1e-5f);
+        assertEquals(0f, outline.getNormalY(0), 1e-5f);
+    }
+
+    @Test
+    public void zeroLengthSegment_isLeftToTheDotPath() {
+        StrokeOutline outline = new StrokeOutline();
+
+        assertFalse(outline.set(curve(5, 5, 5, 5, 5, 5, 5, 5), 3f, 3f));
+        assertEquals(0, outline.size());
+    }
+
+    @Test
+    public void bounds_coverTheCaps() {
+        StrokeOutline outline = new StrokeOutline();
+        outline.set(curve(10, 10, 20, 10, 30, 10, 40, 10), 6f, 6f);
+
+        assertEquals(7f, outline.getBoundsLeft(), 1e-5f);
+        assertEquals(7f, outline.getBoundsTop(), 1e-5f);
+        assertEquals(43f, outline.getBoundsRight(), 1e-5f);
+        assertEquals(13f, outline.getBoundsBottom(), 1e-5f);
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.gcacace.signaturepad.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Pure-JVM tests for {@link StrokePredictor}.
+ */
+public class StrokePredictorTest {
+
+    private static final float DELTA = 1e-3f;
+    private static final long MS = 1000000L;
+
+    @Test
+    public void predict_extrapolatesConstantVelocity() {
+        StrokePredictor predictor = new StrokePredictor(10 * MS);
+        TimedPointRingBuffer window = window(0, 0, 0, 10, 5, 10 * MS, 20, 10, 20 * MS);
+        float[] out = new float[2];
+
+        assertTrue(predictor.predict(window, out));
+        // 1px/ms in x, 0.5px/ms in y, 10ms past the newest sample
+        assertEquals(30f, out[0], DELTA);
+        assertEquals(15f, out[1], DELTA);
+    }
+
+    @Test
+    public void predict_disabledWhenHorizonIsZero() {
+        StrokePredictor predictor = new StrokePredictor(0);
+        TimedPointRingBuffer window = window(0, 0, 0, 10, 0, 10 * MS);
+
+        assertFalse(predictor.predict(window, new float[2]));
+    }
+
+    @Test
+    public void predict_needsTwoSamplesWithDistinctTimestamps() {
+        StrokePredictor predictor = new StrokePredictor(10 * MS);
+
+        assertFalse(predictor.predict(window(5, 5, 0), new float[2]));
+        assertFalse(predictor.predict(window(5, 5, 0, 5, 5, 0, 5, 5, 0), new float[2]));
+    }
+
+    @Test
+    public void stats_onStraightConstantSpeedStroke_haveNoError() {
+        StrokePredictor predictor = new StrokePredictor(8 * MS);
+        TimedPointRingBuffer window = new TimedPointRingBuffer(4);
+        float[] out = new float[2];
+        for (int i = 0; i < 20; i++) {
+            float x = i * 4f;
+            long t = i * 4 * MS;
+            predictor.addSample(x, 0, t);
+            window.add(x, 0, t);
+            predictor.predict(window, out);
+        }
+
+        StrokePredictor.Stats stats = predictor.getStats();
+        assertTrue("predictions should have been scored", stats.count > 0);
+        assertEquals(0f, stats.meanError, DELTA);
+        assertEquals(0f, stats.maxError, DELTA);
+    }
+
+    @Test
+    public void stats_measureDistanceToInterpolatedActualPosition() {
+        StrokePredictor predictor = new StrokePredictor(10 * MS);
+        predictor.addSample(10, 0, 10 * MS);
+        float[] out = new float[2];
+        predictor.predict(window(0, 0, 0, 10, 0, 10 * MS), out); // predicts (20, 0) at 20ms
+
+        // The pen stopped: it is at (10, 10) at 30ms, so at 20ms it was at (10, 5).
+        predictor.addSample(10, 10, 30 * MS);
+
+        StrokePredictor.Stats stats = predictor.getStats();
+        assertEquals(1, stats.count);
+        float expected = (float) Math.sqrt(10 * 10 + 5 * 5);
+        assertEquals(expected, stats.meanError, DELTA);
+        assertEquals(expected, stats.maxError, DELTA);
+    }
+
+    @Test
+    public void reset_dropsThePendingPrediction() {
+        StrokePredictor predictor = new StrokePredictor(10 * MS);
+        predictor.addSample(10, 0, 10 * MS);
+        predictor.predict(window(0, 0, 0, 10, 0, 10 * MS), new float[2]);
+
+        predictor.reset();
+        predictor.addSample(500, 500, 40 * MS);
+
+        assertEquals("a prediction must not be scored against the next stroke",
+                0, predictor.getStats().count);
+    }
+
+    @Test
+    public void resetStats_clearsTheCounters() {
+        StrokePredictor predictor = new StrokePredictor(10 * MS);
+        predictor.addSample(10, 0, 10 * MS);
+        predictor.predict(window(0, 0, 0, 10, 0, 10 * MS), new float[2]);
+        predictor.addSample(20, 0, 20 * MS);
+        assertEquals(1, predictor.getStats().count);
+
+        predictor.resetStats();
+
+        assertEquals(0, predictor.getStats().count);
+        assertEquals(0f, predictor.getStats().maxError, DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setHorizonNanos_rejectsNegative() {
+        new StrokePredictor(-1);
+    }
+
+    /** Builds a window from (x, y, timestampNanos) triples. */
+    private static TimedPointRingBuffer window(long... xyt) {
+        TimedPointRingBuffer window = new TimedPointRingBuffer(4);
+        for (int i = 0; i < xyt.length; i += 3) {
+            window.add(xyt[i], xyt[i + 1], xyt[i + 2]);
+        }
+        return window;
+    }
+}
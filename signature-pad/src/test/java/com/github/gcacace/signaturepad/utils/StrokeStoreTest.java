@@ -0,0 +1,198 @@
+package com.github.gcacace.signaturepad.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Pure-JVM tests for {@link StrokeStore}.
+ */
+public class StrokeStoreTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void cursor_walksTheStrokesInOrder() {
+        StrokeStore store = new StrokeStore(1, 1);
+        addStroke(store, 0, 3);
+        addStroke(store, 100, 5);
+
+        StrokeStore.Cursor cursor = store.cursor();
+        assertEquals(2, cursor.getStrokeCount());
+        assertTrue(cursor.nextStroke());
+        assertEquals(3, cursor.getStrokeSize());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(cursor.nextSample());
+            assertEquals(i, cursor.getX(), 0f);
+            assertEquals(i * MS, cursor.getTimestamp());
+        }
+        assertFalse(cursor.nextSample());
+        assertTrue(cursor.nextStroke());
+        assertEquals(1, cursor.getStroke());
+        assertTrue(cursor.nextSample());
+        assertEquals(100, cursor.getX(), 0f);
+        assertEquals(0.5f, cursor.getPressure(), 0f);
+        assertEquals(3f, cursor.getWidth(), 0f);
+        assertFalse(cursor.nextStroke());
+
+        cursor.rewind();
+        assertTrue(cursor.nextStroke());
+        assertEquals(0, cursor.getStroke());
+    }
+
+    @Test
+    public void memory_isExactlyTheArrays() {
+        StrokeStore store = new StrokeStore(4, 2);
+        assertEquals(4 * 24 + 2 * 4, store.getMemoryBytes());
+
+        addStroke(store, 0, 3);
+        assertEquals(3 * 24 + 4, store.getUsedBytes());
+
+        // Growing doubles the capacity.
+        addStroke(store, 0, 3);
+        assertEquals(8 * 24 + 2 * 4, store.getMemoryBytes());
+    }
+
+    @Test
+    public void discardStroke_dropsOnlyTheOpenStroke() {
+        StrokeStore store = new StrokeStore(4, 2);
+        addStroke(store, 0, 3);
+        store.beginStroke();
+        store.add(50, 50, 0, 1f, 2f);
+
+        store.discardStroke();
+
+        assertEquals(1, store.getStrokeCount());
+        assertEquals(3, store.getSampleCount());
+        assertFalse(store.isStrokeOpen());
+    }
+
+    @Test
+    public void emptyStrokes_areNotKept() {
+        StrokeStore store = new StrokeStore(4, 2);
+        store.beginStroke();
+        store.beginStroke();
+        store.endStroke();
+
+        assertTrue(store.isEmpty());
+    }
+
+    @Test
+    public void truncate_keepsTheFirstStrokes() {
+        StrokeStore store = new StrokeStore(4, 2);
+        addStroke(store, 0, 3);
+        addStroke(store, 10, 2);
+        addStroke(store, 20, 4);
+
+        store.truncate(1);
+        addStroke(store, 30, 2);
+
+        assertEquals(2, store.getStrokeCount());
+        assertEquals(3, store.getStrokeStart(1));
+        assertEquals(30, store.getX(3), 0f);
+    }
+
+    @Test
+    public void transform_scalesPositionsAndWidths() {
+        StrokeStore store = new StrokeStore(4, 2);
+        addStroke(store, 10, 1);
+
+        store.transform(2f, 3f, 1f, 1f, 2f);
+
+        assertEquals(21f, store.getX(0), 0f);
+        assertEquals(31f, store.getY(0), 0f);
+        assertEquals(6f, store.getWidth(0), 0f);
+    }
+
+    @Test
+    public void copyStroke_fillsTheArrays() {
+        StrokeStore store = new StrokeStore(4, 2);
+        addStroke(store, 0, 2);
+        addStroke(store, 10, 3);
+        float[] xs = new float[4];
+        long[] times = new long[4];
+
+        assertEquals(3, store.copyStroke(1, xs, null, times, null, null, 1));
+
+        assertArrayEquals(new float[]{0, 10, 11, 12}, xs, 0f);
+        assertArrayEquals(new long[]{0, 0, MS, 2 * MS}, times);
+    }
+
+    @Test
+    public void appendStroke_copiesOneStrokeOver() {
+        StrokeStore store = new StrokeStore(4, 2);
+        addStroke(store, 0, 2);
+        addStroke(store, 10, 3);
+        StrokeStore other = new StrokeStore(1, 1);
+        addStroke(other, 50, 1);
+
+        other.appendStroke(store, 1);
+        store.truncate(1);
+
+        assertEquals(2, other.getStrokeCount());
+        assertEquals(3, other.getStrokeEnd(1) - other.getStrokeStart(1));
+        assertEquals(12, other.getX(3), 0f);
+        assertEquals(2 * MS, other.getTimestamp(3));
+        assertFalse(other.isStrokeOpen());
+        assertEquals(2, store.getSampleCount());
+    }
+
+    @Test
+    public void strokeEngine_dropsStrokesWithoutACurve() {
+        StrokeEngine engine = new StrokeEngine(2f, 8f, 0.9f);
+        StrokeStore store = new StrokeStore(16, 4);
+        engine.setStrokeStore(store);
+
+        // Too few samples for the fitter's window.
+        engine.addSample(10, 10, 0, 1f, StrokeEngine.FLAG_STROKE_START | StrokeEngine.FLAG_FORCE);
+        engine.addSample(20, 10, 10 * MS, 1f, StrokeEngine.FLAG_STROKE_END | StrokeEngine.FLAG_FORCE);
+        assertTrue(store.isEmpty());
+
+        for (int i = 0; i < 8; i++) {
+            int flags = i == 0 ? StrokeEngine.FLAG_STROKE_START | StrokeEngine.FLAG_FORCE
+                    : i == 7 ? StrokeEngine.FLAG_STROKE_END | StrokeEngine.FLAG_FORCE : 0;
+            engine.addSample(10 + i * 10, 50, i * 10 * MS, 1f, flags);
+        }
+        assertEquals(1, store.getStrokeCount());
+        assertEquals(8, store.getSampleCount());
+    }
+
+    @Test
+    public void strokeEngine_recordsTheFittedSamples_andReplaysToTheSameSvg() {
+        StrokeEngine engine = new StrokeEngine(new SampleDecimator(3f, 0),
+                new StrokeFitter(2f, 8f, 0.9f), new SvgBuilder());
+        StrokeStore store = new StrokeStore(16, 4);
+        engine.setStrokeStore(store);
+        for (int stroke = 0; stroke < 2; stroke++) {
+            for (int i = 0; i < 30; i++) {
+                int flags = i == 0 ? StrokeEngine.FLAG_STROKE_START | StrokeEngine.FLAG_FORCE
+                        : i == 29 ? StrokeEngine.FLAG_STROKE_END | StrokeEngine.FLAG_FORCE : 0;
+                engine.addSample(10f + i * (i % 4), 20f + stroke * 40f, i * 7 * MS, 1f, flags);
+            }
+        }
+
+        assertEquals(2, store.getStrokeCount());
+        assertTrue("decimation dropped samples", store.getSampleCount() < 60);
+        StrokeEngine replay = new StrokeEngine(2f, 8f, 0.9f);
+        float[] xs = new float[30];
+        float[] ys = new float[30];
+        long[] times = new long[30];
+        float[] pressures = new float[30];
+        for (int stroke = 0; stroke < 2; stroke++) {
+            int count = store.copyStroke(stroke, xs, ys, times, pressures, null, 0);
+            replay.addRecordedStroke(xs, ys, times, pressures, 0, count, null);
+        }
+        assertEquals(engine.buildSvg(400, 300), replay.buildSvg(400, 300));
+    }
+
+    private static void addStroke(StrokeStore store, float x, int samples) {
+        store.beginStroke();
+        for (int i = 0; i < samples; i++) {
+            store.add(x + i, x, i * MS, 0.5f, 3f);
+        }
+        store.endStroke();
+    }
+}
@@ -0,0 +1,245 @@
+package com.github.gcacace.signaturepad.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pure-JVM tests for {@link StrokeWorker}. Each one compares the worker's
+ * output against the same samples run through a {@link StrokeEngine}
+ * synchronously.
+ */
+public class StrokeWorkerTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void nothingHappens_untilTheWorkerRuns() {
+        StrokeWorker worker = newWorker(new SvgBuilder(), null);
+        worker.push(0, 0, 0, 1f, StrokeEngine.FLAG_STROKE_START | StrokeEngine.FLAG_FORCE);
+
+        assertFalse(worker.isIdle());
+        assertTrue(worker.processPending());
+        assertTrue(worker.isIdle());
+        assertFalse("the queue is drained", worker.processPending());
+    }
+
+    @Test
+    public void manuallyPumped_matchesTheSynchronousCurvesAndSvg() {
+        SvgBuilder svg = new SvgBuilder();
+        StrokeWorker worker = newWorker(svg, null);
+        List<float[]> expected = new ArrayList<>();
+        SvgBuilder expectedSvg = new SvgBuilder();
+        runSynchronously(expected, expectedSvg, 3);
+
+        List<float[]> actual = new ArrayList<>();
+        for (int stroke = 0; stroke < 3; stroke++) {
+            for (int i = 0; i < 40; i++) {
+                worker.push(x(stroke, i), y(stroke, i), t(stroke, i), pressure(i), flags(i));
+                if (i % 10 == 9) {
+                    // Ten samples make more curves than the queue holds, so
+                    // draining in between is what lets the worker catch up.
+                    while (worker.processPending()) {
+                        drain(worker, actual);
+                    }
+                    drain(worker, actual);
+                }
+            }
+        }
+
+        assertCurvesEqual(expected, actual);
+        assertEquals(expectedSvg.build(400, 300), svg.build(400, 300));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void push_withoutAWorkerThread_failsWhenTheQueueIsFull() {
+        StrokeWorker worker = newWorker(new SvgBuilder(), null);
+        for (int i = 0; i <= 16; i++) {
+            worker.push(i, 0, i * MS, 1f, 0);
+        }
+    }
+
+    @Test
+    public void fullCurveQueue_holdsSamplesBack_insteadOfDroppingInk() {
+        StrokeWorker worker = newWorker(new SvgBuilder(), null);
+        worker.push(0, 0, 0, 1f, StrokeEngine.FLAG_STROKE_START | StrokeEngine.FLAG_FORCE);
+        for (int i = 1; i < 15; i++) {
+            worker.push(i * 5f, 0, i * MS, 1f, 0);
+        }
+
+        worker.processPending();
+        assertFalse("the curve queue holds 8 of the 13 curves", worker.isIdle());
+
+        List<float[]> curves = new ArrayList<>();
+        drain(worker, curves);
+        worker.processPending();
+        drain(worker, curves);
+
+        assertTrue(worker.isIdle());
+        assertEquals(13, curves.size());
+    }
+
+    @Test
+    public void callback_firesOncePerBatchWithCurves() {
+        final AtomicInteger calls = new AtomicInteger();
+        StrokeWorker worker = newWorker(new SvgBuilder(), new StrokeWorker.Callback() {
+            @Override
+            public void onCurvesAvailable() {
+                calls.incrementAndGet();
+            }
+        });
+        worker.push(0, 0, 0, 1f, StrokeEngine.FLAG_STROKE_START | StrokeEngine.FLAG_FORCE);
+        worker.processPending();
+        assertEquals("one sample makes no curve", 0, calls.get());
+
+        for (int i = 1; i < 10; i++) {
+            worker.push(i * 5f, 0, i * MS, 1f, 0);
+        }
+        worker.processPending();
+        assertEquals(1, calls.get());
+    }
+
+    @Test(timeout = 10000)
+    public void onItsOwnThread_matchesTheSynchronousCurvesAndSvg() {
+        SvgBuilder svg = new SvgBuilder();
+        StrokeWorker worker = newWorker(svg, null);
+        List<float[]> expected = new ArrayList<>();
+        SvgBuilder expectedSvg = new SvgBuilder();
+        runSynchronously(expected, expectedSvg, 50);
+
+        List<float[]> actual = new ArrayList<>();
+        worker.start();
+        try {
+            for (int stroke = 0; stroke < 50; stroke++) {
+                for (int i = 0; i < 40; i++) {
+                    worker.push(x(stroke, i), y(stroke, i), t(stroke, i), pressure(i), flags(i));
+                    drain(worker, actual);
+                }
+            }
+            while (!worker.isIdle()) {
+                drain(worker, actual);
+                Thread.yield();
+            }
+            drain(worker, actual);
+        } finally {
+            worker.stop();
+        }
+
+        assertFalse(worker.isStarted());
+        assertCurvesEqual(expected, actual);
+        assertEquals(expectedSvg.build(400, 300), svg.build(400, 300));
+    }
+
+    @Test(timeout = 10000)
+    public void push_pastBothQueues_drainsTheCurvesWhileItWaits() {
+        SvgBuilder svg = new SvgBuilder();
+        final StrokeWorker worker = newWorker(svg, null);
+        List<float[]> expected = new ArrayList<>();
+        SvgBuilder expectedSvg = new SvgBuilder();
+        runSynchronously(expected, expectedSvg, 2);
+
+        // The 80 samples are pushed at once, as from one batched event, with
+        // nothing else taking the curves: 16 queued samples and 8 waiting
+        // curves would stop the worker for good.
+        final List<float[]> actual = new ArrayList<>();
+        Runnable drain = new Runnable() {
+            @Override
+            public void run() {
+                drain(worker, actual);
+            }
+        };
+        worker.start();
+        try {
+            for (int stroke = 0; stroke < 2; stroke++) {
+                for (int i = 0; i < 40; i++) {
+                    worker.push(x(stroke, i), y(stroke, i), t(stroke, i), pressure(i), flags(i), drain);
+                }
+            }
+            while (!worker.isIdle()) {
+                drain(worker, actual);
+                Thread.yield();
+            }
+            drain(worker, actual);
+        } finally {
+            worker.stop();
+        }
+
+        assertCurvesEqual(expected, actual);
+        assertEquals(expectedSvg.build(400, 300), svg.build(400, 300));
+    }
+
+    private static StrokeWorker newWorker(SvgBuilder svg, StrokeWorker.Callback callback) {
+        return new StrokeWorker(newEngine(svg), callback, 16, 8);
+    }
+
+    private static StrokeEngine newEngine(SvgBuilder svg) {
+        return new StrokeEngine(new SampleDecimator(1.5f, 0), new StrokeFitter(2f, 8f, 0.9f), svg);
+    }
+
+    private static void runSynchronously(List<float[]> curves, SvgBuilder svg, int strokes) {
+        StrokeEngine engine = newEngine(svg);
+        for (int stroke = 0; stroke < strokes; stroke++) {
+            for (int i = 0; i < 40; i++) {
+                if (engine.addSample(x(stroke, i), y(stroke, i), t(stroke, i), pressure(i), flags(i))) {
+                    curves.add(flatten(engine.getCurve(), engine.getCurveStartWidth(),
+                            engine.getCurveEndWidth(), engine.getCurveCaps()));
+                }
+            }
+        }
+    }
+
+    private static void drain(StrokeWorker worker, List<float[]> out) {
+        Bezier curve = new Bezier().set(new TimedPoint(), new TimedPoint(), new TimedPoint(), new TimedPoint());
+        float[] widths = new float[2];
+        int caps;
+        while ((caps = worker.pollCurve(curve, widths)) >= 0) {
+            out.add(flatten(curve, widths[0], widths[1], caps));
+        }
+    }
+
+    private static float[] flatten(Bezier curve, float startWidth, float endWidth, int caps) {
+        return new float[]{
+                curve.startPoint.x, curve.startPoint.y, curve.control1.x, curve.control1.y,
+                curve.control2.x, curve.control2.y, curve.endPoint.x, curve.endPoint.y,
+                startWidth, endWidth, caps};
+    }
+
+    private static void assertCurvesEqual(List<float[]> expected, List<float[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals("curve " + i, expected.get(i), actual.get(i), 0f);
+        }
+    }
+
+    // A wavy stroke with uneven spacing, so that decimation drops some samples
+    // and the velocity, and therefore the width, keeps changing.
+    private static float x(int stroke, int i) {
+        return 20f + i * (i % 3 + 0.5f);
+    }
+
+    private static float y(int stroke, int i) {
+        return 20f + stroke * 5f + (float) Math.sin(i / 4.0) * 30f;
+    }
+
+    private static long t(int stroke, int i) {
+        return (stroke * 1000L + i * (4 + i % 5)) * MS;
+    }
+
+    private static float pressure(int i) {
+        return 0.5f + (i % 7) / 14f;
+    }
+
+    private static int flags(int i) {
+        if (i == 0) {
+            return StrokeEngine.FLAG_STROKE_START | StrokeEngine.FLAG_FORCE;
+        }
+        return i == 39 ? StrokeEngine.FLAG_FORCE | StrokeEngine.FLAG_STROKE_END : 0;
+    }
+}
@@ -7,6 +7,10 @@ import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Tests for {@link SvgBuilder}, which assembles the SVG document returned by
  * {@code SignaturePad.getSignatureSvg()}.
@@ -133,6 +137,23 @@ public class SvgBuilderTest {
         assertEquals("restored path plus one appended path", 2, svg.split("<path ", -1).length - 1);
     }
 
+    @Test
+    public void rebuild_startsOverFromThePathsThenTheCurves() {
+        builder.append(curve(90, 90, 91, 91, 92, 92, 93, 93), 9f);
+        CurveList curves = new CurveList(2);
+        curves.add(curve(10, 10, 20, 20, 30, 30, 40, 40), 2f, 4f, 0, 0);
+        curves.add(curve(40, 40, 50, 50, 60, 60, 70, 70), 2f, 4f, 0, 0);
+
+        builder.rebuild("<path d=\"M1,1\"/>", curves);
+
+        SvgBuilder expected = new SvgBuilder();
+        expected.restorePaths("<path d=\"M1,1\"/>");
+        expected.append(curve(10, 10, 20, 20, 30, 30, 40, 40), 3f);
+        expected.append(curve(40, 40, 50, 50, 60, 60, 70, 70), 3f);
+        assertEquals(expected.build(100, 100), builder.build(100, 100));
+        assertFalse(builder.build(100, 100).contains("stroke-width=\"9\""));
+    }
+
     @Test
     public void restorePaths_null_isNoOp() {
         builder.restorePaths(null);
@@ -140,4 +161,107 @@ public class SvgBuilderTest {
 
         assertFalse("restoring null should add no path", svg.contains("<path "));
     }
+
+    @Test
+    public void discardStroke_dropsOnlyTheCurvesSinceBeginStroke() {
+        builder.beginStroke();
+        builder.append(curve(0, 0, 10, 10, 20, 20, 30, 30), 5f);
+        String kept = builder.build(100, 100);
+
+        builder.beginStroke();
+        builder.append(curve(50, 50, 60, 60, 70, 70, 80, 80), 3f);
+        builder.append(curve(80, 80, 90, 90, 90, 90, 95, 95), 3f);
+        builder.discardStroke();
+
+        assertEquals(kept, builder.build(100, 100));
+    }
+
+    @Test
+    public void discardStroke_restoresAPathTheStrokeContinued() {
+        // The second stroke starts where the first ended, at the same width, so
+        // its curves are merged into the first stroke's path.
+        builder.beginStroke();
+        builder.append(curve(0, 0, 10, 10, 20, 20, 30, 30), 5f);
+        SvgBuilder expected = new SvgBuilder();
+        expected.append(curve(0, 0, 10, 10, 20, 20, 30, 30), 5f);
+
+        builder.beginStroke();
+        builder.append(curve(30, 30, 40, 40, 50, 40, 60, 30), 5f);
+        // An export in the middle of the stroke flushes the merged path.
+        builder.build(100, 100);
+        builder.discardStroke();
+        builder.append(curve(30, 30, 20, 40, 10, 40, 0, 30), 5f);
+        expected.append(curve(30, 30, 20, 40, 10, 40, 0, 30), 5f);
+
+        assertEquals(expected.build(100, 100), builder.build(100, 100));
+    }
+
+    @Test
+    public void discardStroke_outsideOfAStroke_isNoOp() {
+        builder.beginStroke();
+        builder.append(curve(0, 0, 10, 10, 20, 20, 30, 30), 5f);
+        builder.discardStroke();
+        builder.restorePaths("<path d=\"M1,1\"/>");
+        builder.discardStroke();
+
+        assertTrue(builder.build(100, 100).contains("<path d=\"M1,1\"/>"));
+
+        builder.clear();
+        builder.discardStroke();
+        assertFalse(builder.build(100, 100).contains("<path "));
+    }
+
+    /** A signature long enough for its paths to take several chunks. */
+    private void appendLongSignature() {
+        for (int stroke = 0; stroke < 200; stroke++) {
+            for (int i = 0; i < 10; i++) {
+                float x = stroke * 3 + i * 7;
+                builder.append(curve(x, i, x + 2, i + 3, x + 4, i + 5, x + 7, i + 1), 2f + stroke % 4);
+            }
+        }
+    }
+
+    @Test
+    public void writeTo_appendable_writesWhatBuildReturns_aChunkAtATime() throws IOException {
+        appendLongSignature();
+        final int[] largestWrite = new int[1];
+        final StringBuilder written = new StringBuilder();
+        Appendable sink = new Appendable() {
+            @Override
+            public Appendable append(CharSequence csq) {
+                return append(csq, 0, csq.length());
+            }
+
+            @Override
+            public Appendable append(CharSequence csq, int start, int end) {
+                largestWrite[0] = Math.max(largestWrite[0], end - start);
+                written.append(csq, start, end);
+                return this;
+            }
+
+            @Override
+            public Appendable append(char c) {
+                written.append(c);
+                return this;
+            }
+        };
+
+        builder.writeTo(sink, 400, 300);
+
+        String svg = builder.build(400, 300);
+        assertTrue(svg.length() > 3 * SvgBuilder.CHUNK_CHARS);
+        assertEquals(svg, written.toString());
+        assertTrue(largestWrite[0] <= SvgBuilder.CHUNK_CHARS);
+    }
+
+    @Test
+    public void writeTo_outputStream_writesUtf8() throws IOException {
+        appendLongSignature();
+        builder.restorePaths("<path d=\"M1,1\"/><!-- \u00e9 -->");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        builder.writeTo(out, 400, 300);
+
+        assertEquals(builder.build(400, 300), new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
 }
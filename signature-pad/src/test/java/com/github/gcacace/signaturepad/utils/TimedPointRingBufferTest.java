@@ -0,0 +1,118 @@
+package com.github.gcacace.signaturepad.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Pure-JVM tests for {@link TimedPointRingBuffer}.
+ */
+public class TimedPointRingBufferTest {
+
+    private static final float DELTA = 1e-4f;
+
+    @Test
+    public void newBuffer_isEmpty() {
+        TimedPointRingBuffer buffer = new TimedPointRingBuffer(4);
+
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.size());
+        assertEquals(4, buffer.capacity());
+    }
+
+    @Test
+    public void add_thenGet_returnsPointsOldestFirst() {
+        TimedPointRingBuffer buffer = new TimedPointRingBuffer(4);
+        buffer.add(1f, 2f, 10L);
+        buffer.add(3f, 4f, 20L);
+
+        assertEquals(2, buffer.size());
+        assertEquals(1f, buffer.getX(0), DELTA);
+        assertEquals(2f, buffer.getY(0), DELTA);
+        assertEquals(10L, buffer.getTimestampNanos(0));
+        assertEquals(3f, buffer.getX(1), DELTA);
+        assertEquals(4f, buffer.getY(1), DELTA);
+        assertEquals(20L, buffer.getTimestampNanos(1));
+    }
+
+    @Test
+    public void removeFirst_shiftsIndicesAcrossTheWrap() {
+        // Mimics the curve-fitting window: fill, drop the oldest, append, repeat.
+        TimedPointRingBuffer buffer = new TimedPointRingBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            buffer.add(i, i, i);
+        }
+        for (int i = 4; i < 10; i++) {
+            buffer.removeFirst();
+            buffer.add(i, i, i);
+        }
+
+        assertEquals(4, buffer.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(6f + i, buffer.getX(i), DELTA);
+        }
+    }
+
+    @Test
+    public void add_whenFull_overwritesOldest() {
+        TimedPointRingBuffer buffer = new TimedPointRingBuffer(2);
+        buffer.add(1f, 1f, 1L);
+        buffer.add(2f, 2f, 2L);
+        buffer.add(3f, 3f, 3L);
+
+        assertEquals(2, buffer.size());
+        assertEquals(2f, buffer.getX(0), DELTA);
+        assertEquals(3f, buffer.getX(1), DELTA);
+    }
+
+    @Test
+    public void get_copiesIntoTheGivenPoint() {
+        TimedPointRingBuffer buffer = new TimedPointRingBuffer(4);
+        buffer.add(5f, 6f, 7000000L);
+        TimedPoint out = new TimedPoint();
+
+        assertSame(out, buffer.get(0, out));
+        assertEquals(5f, out.x, DELTA);
+        assertEquals(6f, out.y, DELTA);
+        assertEquals(7000000L, out.timestampNanos);
+    }
+
+    @Test
+    public void add_recordsPressure() {
+        TimedPointRingBuffer buffer = new TimedPointRingBuffer(4);
+        buffer.add(1f, 1f, 1L, 0.4f);
+        buffer.add(2f, 2f, 2L);
+
+        assertEquals(0.4f, buffer.getPressure(0), DELTA);
+        assertEquals(TimedPoint.DEFAULT_PRESSURE, buffer.getPressure(1), DELTA);
+        assertEquals(0.4f, buffer.get(0, new TimedPoint()).pressure, DELTA);
+    }
+
+    @Test
+    public void clear_emptiesTheBuffer() {
+        TimedPointRingBuffer buffer = new TimedPointRingBuffer(4);
+        buffer.add(1f, 1f, 1L);
+        buffer.clear();
+
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_outOfRange_throws() {
+        TimedPointRingBuffer buffer = new TimedPointRingBuffer(4);
+        buffer.add(1f, 1f, 1L);
+        buffer.getX(1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void removeFirst_whenEmpty_throws() {
+        new TimedPointRingBuffer(4).removeFirst();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsNonPositiveCapacity() {
+        new TimedPointRingBuffer(0);
+    }
+}
@@ -3,6 +3,7 @@ package com.github.gcacace.signaturepad.utils;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -42,12 +43,38 @@ public class TimedPointTest {
         assertEquals(0f, a.distanceTo(b), DELTA);
     }
 
+    @Test
+    @SuppressWarnings("deprecation")
+    public void set_withTimestamp_storesNanosAndDerivedMillis() {
+        TimedPoint point = new TimedPoint().set(1f, 2f, 3500000L);
+
+        assertEquals(3500000L, point.timestampNanos);
+        assertEquals(3L, point.timestamp);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void velocityFrom_ignoresWritesToDeprecatedTimestamp() {
+        TimedPoint start = new TimedPoint().set(0f, 0f, 0L);
+        TimedPoint end = new TimedPoint().set(10f, 0f, 5000000L);
+        end.timestamp = 1L;
+
+        assertEquals(2f, end.velocityFrom(start), DELTA);
+    }
+
+    @Test
+    public void set_withPressure_storesIt_otherwiseDefaults() {
+        TimedPoint point = new TimedPoint().set(1f, 2f, 0L, 0.25f);
+        assertEquals(0.25f, point.pressure, DELTA);
+
+        point.set(1f, 2f, 0L);
+        assertEquals(TimedPoint.DEFAULT_PRESSURE, point.pressure, DELTA);
+    }
+
     @Test
     public void velocityFrom_isDistanceOverTime() {
-        TimedPoint start = new TimedPoint().set(0f, 0f);
-        start.timestamp = 1000L;
-        TimedPoint end = new TimedPoint().set(0f, 100f);
-        end.timestamp = 1010L; // 10ms later
+        TimedPoint start = new TimedPoint().set(0f, 0f, ms(1000L));
+        TimedPoint end = new TimedPoint().set(0f, 100f, ms(1010L)); // 10ms later
 
         // 100px over 10ms => 10 px/ms
         assertEquals(10f, end.velocityFrom(start), DELTA);
@@ -57,39 +84,57 @@ public class TimedPointTest {
     public void velocityFrom_nonPositiveTimeDeltaIsTreatedAsOneMs() {
         // Guards a real-world bug: some devices report identical (or backwards)
         // timestamps for consecutive touch events, which would divide by zero.
-        TimedPoint start = new TimedPoint().set(0f, 0f);
-        start.timestamp = 5000L;
-        TimedPoint end = new TimedPoint().set(0f, 42f);
-        end.timestamp = 5000L; // same timestamp -> diff clamped to 1ms
+        TimedPoint start = new TimedPoint().set(0f, 0f, ms(5000L));
+        TimedPoint end = new TimedPoint().set(0f, 42f, ms(5000L)); // same timestamp -> diff clamped to 1ms
 
         assertEquals(42f, end.velocityFrom(start), DELTA);
     }
 
     @Test
     public void velocityFrom_backwardsTimestampDoesNotProduceNegativeVelocity() {
-        TimedPoint start = new TimedPoint().set(0f, 0f);
-        start.timestamp = 5000L;
-        TimedPoint end = new TimedPoint().set(0f, 30f);
-        end.timestamp = 4990L; // earlier than start -> diff clamped to 1ms
+        TimedPoint start = new TimedPoint().set(0f, 0f, ms(5000L));
+        TimedPoint end = new TimedPoint().set(0f, 30f, ms(4990L)); // earlier than start -> diff clamped to 1ms
 
         assertEquals(30f, end.velocityFrom(start), DELTA);
     }
 
     @Test
     public void velocityFrom_zeroDistanceIsZeroVelocity() {
-        TimedPoint start = new TimedPoint().set(7f, 7f);
-        start.timestamp = 1000L;
-        TimedPoint end = new TimedPoint().set(7f, 7f);
-        end.timestamp = 1005L;
+        TimedPoint start = new TimedPoint().set(7f, 7f, ms(1000L));
+        TimedPoint end = new TimedPoint().set(7f, 7f, ms(1005L));
 
         assertEquals(0f, end.velocityFrom(start), DELTA);
     }
 
+    @Test
+    public void velocityFrom_resolvesSubMillisecondDeltas() {
+        // Two samples 250us apart used to share a millisecond stamp and be clamped
+        // to a 1ms delta; with nanosecond timestamps the real delta is used.
+        TimedPoint start = new TimedPoint().set(0f, 0f, 1000000000L);
+        TimedPoint end = new TimedPoint().set(0f, 1f, 1000250000L);
+
+        // 1px over 0.25ms => 4 px/ms
+        assertEquals(4f, end.velocityFrom(start), DELTA);
+    }
+
+    @Test
+    public void set_withoutTimestamp_usesSystemClock() {
+        long before = Clock.SYSTEM.nanoTime();
+        TimedPoint point = new TimedPoint().set(0f, 0f);
+        long after = Clock.SYSTEM.nanoTime();
+
+        assertTrue(point.timestampNanos >= before && point.timestampNanos <= after);
+    }
+
     @Test
     public void set_refreshesTimestamp() throws InterruptedException {
         TimedPoint point = new TimedPoint().set(0f, 0f);
-        point.timestamp = 1L; // sentinel value to verify set() overwrites it
+        point.timestampNanos = 1L; // sentinel value to verify set() overwrites it
         point.set(1f, 1f);
-        assertEquals("set() should overwrite timestamp", false, point.timestamp == 1L);
+        assertEquals("set() should overwrite timestamp", false, point.timestampNanos == 1L);
+    }
+
+    private static long ms(long millis) {
+        return millis * 1000000L;
     }
 }
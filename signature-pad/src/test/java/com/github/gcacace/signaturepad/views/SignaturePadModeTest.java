@@ -0,0 +1,187 @@
+package com.github.gcacace.signaturepad.views;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.Robolectric;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Robolectric tests run once per optional mode of {@link SignaturePad}: each
+ * mode changes how the ink is processed, stored or drawn, never what it looks
+ * like, so a pad in that mode must draw and export exactly what a default pad
+ * does for the same touches.
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+@Config(sdk = 34)
+// NATIVE graphics, as in SignaturePadTest, so the bitmaps compared are real.
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class SignaturePadModeTest {
+
+    /** Switches a pad into the mode under test. */
+    interface Mode {
+        void apply(SignaturePad target);
+    }
+
+    @ParameterizedRobolectricTestRunner.Parameters(name = "{0}")
+    public static List<Object[]> modes() {
+        return Arrays.asList(
+                mode("backgroundStrokeEngine", true, new Mode() {
+                    @Override
+                    public void apply(SignaturePad target) {
+                        target.setBackgroundStrokeEngine(true);
+                    }
+                }),
+                mode("retainedRendering", true, new Mode() {
+                    @Override
+                    public void apply(SignaturePad target) {
+                        target.setRetainedRendering(true);
+                    }
+                }),
+                mode("tiledBacking", true, new Mode() {
+                    @Override
+                    public void apply(SignaturePad target) {
+                        target.setTiledBacking(true);
+                    }
+                }),
+                // One pen colour for the whole signature, so no colour change.
+                mode("coverageOnly", false, new Mode() {
+                    @Override
+                    public void apply(SignaturePad target) {
+                        target.setCoverageOnly(true);
+                    }
+                }),
+                mode("tiledCoverageOnly", false, new Mode() {
+                    @Override
+                    public void apply(SignaturePad target) {
+                        target.setTiledBacking(true);
+                        target.setCoverageOnly(true);
+                    }
+                }),
+                mode("frameCoalescing", true, new Mode() {
+                    @Override
+                    public void apply(SignaturePad target) {
+                        target.setFrameCoalescing(true);
+                    }
+                }));
+    }
+
+    private static Object[] mode(String name, boolean perStrokeColors, Mode mode) {
+        return new Object[]{name, perStrokeColors, mode};
+    }
+
+    private final boolean perStrokeColors;
+    private final Mode mode;
+
+    private Activity activity;
+    private FrameLayout root;
+
+    public SignaturePadModeTest(String name, boolean perStrokeColors, Mode mode) {
+        this.perStrokeColors = perStrokeColors;
+        this.mode = mode;
+    }
+
+    @Before
+    public void setUp() {
+        activity = Robolectric.buildActivity(Activity.class).setup().get();
+        root = new FrameLayout(activity);
+        activity.setContentView(root);
+    }
+
+    @Test
+    public void drawsAndExportsLikeTheDefaultMode() {
+        SignaturePad reference = newPad();
+        SignaturePad target = newPad();
+        mode.apply(target);
+
+        for (SignaturePad pad : new SignaturePad[]{reference, target}) {
+            drawStroke(pad);
+            pad.setRenderMode(SignaturePad.RENDER_MODE_OUTLINE);
+            if (perStrokeColors) {
+                pad.setPenColor(Color.RED);
+            }
+            drawDenseStroke(pad);
+            pad.setRenderMode(SignaturePad.RENDER_MODE_POINTS);
+            dispatchTouch(pad, 300f, 250f);
+        }
+
+        // No frame has run and the worker may be behind: every export brings
+        // the ink up to date first.
+        assertEquals(reference.getSignatureSvg(), target.getSignatureSvg());
+        assertTrue(reference.getTransparentSignatureBitmap().sameAs(target.getTransparentSignatureBitmap()));
+        assertTrue(reference.getTransparentSignatureBitmap(true)
+                .sameAs(target.getTransparentSignatureBitmap(true)));
+        assertTrue(reference.getSignatureBitmap().sameAs(target.getSignatureBitmap()));
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(100));
+        Bitmap screen = Bitmap.createBitmap(400, 300, Bitmap.Config.ARGB_8888);
+        target.draw(new Canvas(screen));
+        assertTrue(screen.sameAs(target.getTransparentSignatureBitmap()));
+    }
+
+    /** A pad attached to the activity's view tree and laid out at 400x300. */
+    private SignaturePad newPad() {
+        SignaturePad target = new SignaturePad(activity, null);
+        target.setId(View.generateViewId());
+        root.addView(target);
+        target.measure(
+                View.MeasureSpec.makeMeasureSpec(400, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(300, View.MeasureSpec.EXACTLY));
+        target.layout(0, 0, 400, 300);
+        return target;
+    }
+
+    private void dispatch(SignaturePad target, long downTime, long eventTime, int action, float x, float y) {
+        MotionEvent event = MotionEvent.obtain(downTime, eventTime, action, x, y, 0);
+        try {
+            target.onTouchEvent(event);
+        } finally {
+            event.recycle();
+        }
+    }
+
+    private void dispatchTouch(SignaturePad target, float x, float y) {
+        long t = SystemClock.uptimeMillis();
+        dispatch(target, t, t, MotionEvent.ACTION_DOWN, x, y);
+        dispatch(target, t, t + 10, MotionEvent.ACTION_UP, x, y);
+    }
+
+    private void drawStroke(SignaturePad target) {
+        long t = SystemClock.uptimeMillis();
+        dispatch(target, t, t, MotionEvent.ACTION_DOWN, 20f, 20f);
+        for (int i = 1; i <= 8; i++) {
+            dispatch(target, t, t + i * 10L, MotionEvent.ACTION_MOVE, 20f + i * 15f, 20f + i * 8f);
+        }
+        dispatch(target, t, t + 90, MotionEvent.ACTION_UP, 140f, 84f);
+    }
+
+    /** 200 samples half a pixel apart, enough to make curves queue up. */
+    private void drawDenseStroke(SignaturePad target) {
+        long t = SystemClock.uptimeMillis();
+        dispatch(target, t, t, MotionEvent.ACTION_DOWN, 40f, 100f);
+        for (int i = 1; i < 200; i++) {
+            dispatch(target, t, t + i, MotionEvent.ACTION_MOVE, 40f + i * 0.5f, 100f + i * 0.25f);
+        }
+        dispatch(target, t, t + 200, MotionEvent.ACTION_UP, 140f, 150f);
+    }
+}
@@ -3,19 +3,29 @@ package com.github.gcacace.signaturepad.views;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
 
 import android.app.Activity;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.os.Looper;
 import android.os.Parcelable;
 import android.os.SystemClock;
 import android.view.MotionEvent;
 import android.view.View;
 import android.widget.FrameLayout;
 
+import com.github.gcacace.signaturepad.utils.Clock;
+import com.github.gcacace.signaturepad.utils.StrokeEngine;
+import com.github.gcacace.signaturepad.utils.StrokeStore;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -25,6 +35,13 @@ import org.robolectric.android.controller.ActivityController;
 import org.robolectric.annotation.Config;
 import org.robolectric.annotation.GraphicsMode;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
 /**
  * Robolectric tests for {@link SignaturePad}. Lives in the view's own package so
  * it can exercise the protected {@code onSaveInstanceState()} /
@@ -756,81 +773,1579 @@ public class SignaturePadTest {
                 + "not resurrect the pre-clear signature", restored2.isEmpty());
     }
 
-    // --- #94: setSignatureBitmap(null) clears instead of crashing ------------
+    // --- batched historical samples -----------------------------------------
 
     @Test
-    public void setSignatureBitmap_null_clearsPadWithoutThrowing() {
-        // Passing null used to NPE (clearView() -> signature.getWidth()). It must
-        // now clear the pad gracefully. Gates the null guard: without it, the
-        // laid-out branch dereferences the null bitmap and throws.
+    public void setConsumeHistoricalSamples_togglesTheFlag() {
+        assertFalse("default is off", pad.isConsumeHistoricalSamples());
+
+        pad.setConsumeHistoricalSamples(true);
+        assertTrue("setter enables the flag", pad.isConsumeHistoricalSamples());
+
+        pad.setConsumeHistoricalSamples(false);
+        assertFalse("setter disables the flag", pad.isConsumeHistoricalSamples());
+    }
+
+    @Test
+    public void consumeHistoricalSamples_enabled_drawsThroughBatchedSamples() {
+        // The batched MOVE carries a historical sample far to the right of both
+        // its current sample and the touch-down point. Only a pad that replays the
+        // history can put ink there.
         layout();
-        drawStroke(pad);
-        assertFalse("precondition: pad has content", pad.isEmpty());
+        pad.setConsumeHistoricalSamples(true);
 
-        pad.setSignatureBitmap(null);
+        drawBatchedStroke(pad);
 
-        assertTrue("setSignatureBitmap(null) clears the pad", pad.isEmpty());
+        assertTrue("the historical sample must be part of the stroke",
+                hasInkIn(pad.getTransparentSignatureBitmap(), 280, 20, 320, 60));
     }
 
     @Test
-    public void setSignatureBitmap_null_beforeLayout_doesNotThrow() {
-        // The not-laid-out branch also dereferenced the bitmap (deferred via the
-        // layout listener). The guard runs before the isLaidOut() check, so a null
-        // passed on a 0x0 view is handled without throwing too.
-        assertEquals(0, pad.getWidth());
-        pad.setSignatureBitmap(null);
-        assertTrue("a null bitmap on an un-laid-out pad leaves it empty",
-                pad.isEmpty());
+    public void consumeHistoricalSamples_disabled_ignoresBatchedSamples() {
+        layout();
+
+        drawBatchedStroke(pad);
+
+        assertFalse("the pad must only see the current sample by default",
+                hasInkIn(pad.getTransparentSignatureBitmap(), 280, 20, 320, 60));
     }
 
     /**
-     * Dispatch a double tap so the GestureDetector fires onDoubleTap(). The
-     * second tap's down-time must fall within [DOUBLE_TAP_MIN_TIME (40ms),
-     * DOUBLE_TAP_TIMEOUT (300ms)] after the first tap's up-time, so the event
-     * times are spaced explicitly rather than read from the (frozen) test clock.
+     * Draw down (40,40) -> move [history (300,40)] (60,200) -> up (60,200). The
+     * MOVE is built with {@code addBatch}, which pushes the sample it was obtained
+     * with into the event's history.
      */
-    private void doubleTap(SignaturePad target, float x, float y) {
+    private void drawBatchedStroke(SignaturePad target) {
         long t = SystemClock.uptimeMillis();
-        dispatch(target, t, t, MotionEvent.ACTION_DOWN, x, y);
-        dispatch(target, t, t + 10, MotionEvent.ACTION_UP, x, y);
-        long t2 = t + 110; // 100ms after the first up: inside the double-tap window
-        dispatch(target, t2, t2, MotionEvent.ACTION_DOWN, x, y);
-        dispatch(target, t2, t2 + 10, MotionEvent.ACTION_UP, x, y);
+        dispatch(target, t, t, MotionEvent.ACTION_DOWN, 40f, 40f);
+        MotionEvent move = MotionEvent.obtain(t, t + 8, MotionEvent.ACTION_MOVE, 300f, 40f, 0);
+        try {
+            move.addBatch(t + 16, 60f, 200f, 1f, 1f, 0);
+            assertEquals("precondition: one historical sample", 1, move.getHistorySize());
+            target.onTouchEvent(move);
+        } finally {
+            move.recycle();
+        }
+        dispatch(target, t, t + 24, MotionEvent.ACTION_UP, 60f, 200f);
     }
 
-    /** True if any pixel in the bitmap is non-transparent. */
-    private static boolean hasInk(Bitmap bitmap) {
-        for (int x = 0; x < bitmap.getWidth(); x++) {
-            for (int y = 0; y < bitmap.getHeight(); y++) {
-                if (Color.alpha(bitmap.getPixel(x, y)) != 0) {
-                    return true;
+    // --- sample timestamps --------------------------------------------------
+
+    @Test
+    public void touchSamples_areStampedWithTheEventTime() {
+        layout();
+        long t = SystemClock.uptimeMillis();
+
+        dispatch(pad, t, t + 5, MotionEvent.ACTION_DOWN, 50f, 50f);
+
+        assertEquals("points carry the time the sample was taken, in nanoseconds",
+                (t + 5) * 1000000L, pad.getPoints().get(0).timestampNanos);
+    }
+
+    @Test
+    public void setClock_replacesEventTimestamps() {
+        layout();
+        final long[] now = {42000000L};
+        pad.setClock(new Clock() {
+            @Override
+            public long nanoTime() {
+                return now[0];
+            }
+        });
+
+        dispatch(pad, 0, 0, MotionEvent.ACTION_DOWN, 50f, 50f);
+
+        assertEquals(42000000L, pad.getPoints().get(0).timestampNanos);
+    }
+
+    // --- motion prediction --------------------------------------------------
+
+    @Test
+    public void setPredictionHorizon_roundTrips() {
+        assertEquals("prediction is off by default", 0f, pad.getPredictionHorizon(), 0f);
+
+        pad.setPredictionHorizon(12.5f);
+
+        assertEquals(12.5f, pad.getPredictionHorizon(), 1e-3f);
+    }
+
+    @Test
+    public void prediction_neverReachesTheSignatureBitmap() {
+        // The overlay is transient: the committed ink must be identical with and
+        // without prediction.
+        layout();
+        SignaturePad predicted = newPad();
+        layout(predicted, 400, 300);
+        predicted.setPredictionHorizon(30f);
+
+        drawStroke(pad);
+        drawStroke(predicted);
+
+        assertTrue(pad.getTransparentSignatureBitmap()
+                .sameAs(predicted.getTransparentSignatureBitmap()));
+        assertEquals(pad.getSignatureSvg(), predicted.getSignatureSvg());
+    }
+
+    @Test
+    public void prediction_isScoredAgainstLaterSamples() {
+        layout();
+        pad.setPredictionHorizon(10f);
+
+        drawStroke(pad);
+
+        assertTrue("predictions should be scored as real samples arrive",
+                pad.getPredictionStats().count > 0);
+        pad.resetPredictionStats();
+        assertEquals(0, pad.getPredictionStats().count);
+    }
+
+    // --- unbuffered input ---------------------------------------------------
+
+    @Test
+    public void setUnbufferedInput_togglesTheFlag() {
+        assertFalse("default is off", pad.isUnbufferedInput());
+
+        pad.setUnbufferedInput(true);
+        assertTrue("setter enables the flag", pad.isUnbufferedInput());
+
+        pad.setUnbufferedInput(false);
+        assertFalse("setter disables the flag", pad.isUnbufferedInput());
+    }
+
+    @Test
+    public void unbufferedInput_drawsEachEventImmediately() {
+        // Only the redraw is deferred to the next frame; the ink itself must be
+        // rasterized as each event arrives.
+        layout();
+        pad.setUnbufferedInput(true);
+
+        drawStroke(pad);
+
+        assertFalse(pad.isEmpty());
+        assertTrue(hasInk(pad.getTransparentSignatureBitmap()));
+    }
+
+    @Test
+    public void unbufferedInput_invalidatesOncePerFrame() {
+        InvalidateCountingPad counting = new InvalidateCountingPad(activity);
+        root.addView(counting);
+        layout(counting, 400, 300);
+        counting.setUnbufferedInput(true);
+
+        // Ten events, all within one frame.
+        drawStroke(counting);
+        assertEquals(0, counting.invalidations);
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(100));
+        assertEquals(1, counting.invalidations);
+    }
+
+    @Test
+    public void unbufferedInput_dropsThePendingInvalidateOnDetach() {
+        InvalidateCountingPad counting = new InvalidateCountingPad(activity);
+        root.addView(counting);
+        layout(counting, 400, 300);
+        counting.setUnbufferedInput(true);
+        drawStroke(counting);
+
+        root.removeView(counting);
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(100));
+        assertEquals(0, counting.invalidations);
+
+        // And schedules the next one once attached again.
+        root.addView(counting);
+        layout(counting, 400, 300);
+        drawStrokeAt(counting, 200f, 150f);
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(100));
+        assertEquals(1, counting.invalidations);
+    }
+
+    // --- pressure width mode ------------------------------------------------
+
+    @Test
+    public void setWidthMode_roundTrips() {
+        assertEquals("velocity is the default", SignaturePad.WIDTH_MODE_VELOCITY, pad.getWidthMode());
+
+        pad.setWidthMode(SignaturePad.WIDTH_MODE_PRESSURE);
+
+        assertEquals(SignaturePad.WIDTH_MODE_PRESSURE, pad.getWidthMode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setWidthMode_rejectsUnknownModes() {
+        pad.setWidthMode(42);
+    }
+
+    @Test
+    public void pressureMode_widthFollowsPressureInRasterAndSvg() {
+        // Default pen widths are 3..7dp; Robolectric's density is 1.
+        layout();
+        SignaturePad heavy = newPad();
+        layout(heavy, 400, 300);
+        pad.setWidthMode(SignaturePad.WIDTH_MODE_PRESSURE);
+        heavy.setWidthMode(SignaturePad.WIDTH_MODE_PRESSURE);
+
+        drawPressureStroke(pad, 0f);
+        drawPressureStroke(heavy, 1f);
+
+        assertTrue(pad.getSignatureSvg().contains("stroke-width=\"3\""));
+        assertTrue(heavy.getSignatureSvg().contains("stroke-width=\"7\""));
+        Bitmap light = pad.getTransparentSignatureBitmap(true);
+        Bitmap bold = heavy.getTransparentSignatureBitmap(true);
+        assertTrue("a heavier pen must ink a taller band",
+                bold.getHeight() > light.getHeight());
+    }
+
+    /** Draw a horizontal stroke with every sample at the given pressure. */
+    private void drawPressureStroke(SignaturePad target, float pressure) {
+        long t = SystemClock.uptimeMillis();
+        for (int i = 0; i <= 10; i++) {
+            int action = i == 0 ? MotionEvent.ACTION_DOWN
+                    : i == 10 ? MotionEvent.ACTION_UP : MotionEvent.ACTION_MOVE;
+            MotionEvent event = MotionEvent.obtain(t, t + i * 10L, action,
+                    40f + i * 20f, 150f, pressure, 1f, 0, 1f, 1f, 0, 0);
+            try {
+                target.onTouchEvent(event);
+            } finally {
+                event.recycle();
+            }
+        }
+    }
+
+    // --- input decimation ---------------------------------------------------
+
+    @Test
+    public void decimation_dropsSubPixelSamplesAndShrinksTheSvg() {
+        layout();
+        SignaturePad decimated = newPad();
+        layout(decimated, 400, 300);
+        decimated.setSampleDecimation(2f, 0f);
+
+        drawDenseStroke(pad);
+        drawDenseStroke(decimated);
+
+        assertEquals("disabled by default", 0, pad.getDecimationStats().dropped);
+        assertTrue(decimated.getDecimationStats().dropped > 0);
+        assertTrue("every dropped sample is a curve that is not emitted",
+                decimated.getSignatureSvg().length() < pad.getSignatureSvg().length());
+        assertTrue(hasInk(decimated.getTransparentSignatureBitmap()));
+    }
+
+    @Test
+    public void decimation_keepsTheStrokeEnds() {
+        // A tap is entirely sub-threshold; it must still render its dot.
+        layout();
+        pad.setSampleDecimation(10f, 50f);
+
+        dispatchTouch(pad, 50f, 50f);
+
+        assertTrue(hasInkIn(pad.getTransparentSignatureBitmap(), 45, 45, 56, 56));
+        pad.resetDecimationStats();
+        assertEquals(0, pad.getDecimationStats().kept);
+    }
+
+    /** Draw a stroke sampled every 0.5px, as a high-rate digitizer would. */
+    private void drawDenseStroke(SignaturePad target) {
+        long t = SystemClock.uptimeMillis();
+        dispatch(target, t, t, MotionEvent.ACTION_DOWN, 40f, 100f);
+        for (int i = 1; i < 200; i++) {
+            dispatch(target, t, t + i, MotionEvent.ACTION_MOVE, 40f + i * 0.5f, 100f + i * 0.25f);
+        }
+        dispatch(target, t, t + 200, MotionEvent.ACTION_UP, 140f, 150f);
+    }
+
+    // --- background stroke engine -------------------------------------------
+
+    @Test
+    public void backgroundStrokeEngine_matchesWithDecimationAndPressure() {
+        layout();
+        SignaturePad background = newPad();
+        layout(background, 400, 300);
+        background.setBackgroundStrokeEngine(true);
+        for (SignaturePad target : new SignaturePad[]{pad, background}) {
+            target.setSampleDecimation(2f, 0f);
+            target.setWidthMode(SignaturePad.WIDTH_MODE_PRESSURE);
+            drawDenseStroke(target);
+            drawPressureStroke(target, 0.7f);
+        }
+
+        assertEquals(pad.getDecimationStats().dropped, background.getDecimationStats().dropped);
+        assertEquals(pad.getSignatureSvg(), background.getSignatureSvg());
+        assertTrue(pad.getTransparentSignatureBitmap()
+                .sameAs(background.getTransparentSignatureBitmap()));
+    }
+
+    @Test
+    public void backgroundStrokeEngine_takesABatchLargerThanBothQueues() {
+        layout();
+        SignaturePad background = newPad();
+        layout(background, 400, 300);
+        background.setBackgroundStrokeEngine(true);
+
+        // 600 samples in one MOVE: more than the 256 queued samples and 128
+        // waiting curves the worker holds, with the worker thread running.
+        for (SignaturePad target : new SignaturePad[]{pad, background}) {
+            target.setConsumeHistoricalSamples(true);
+            long t = SystemClock.uptimeMillis();
+            dispatch(target, t, t, MotionEvent.ACTION_DOWN, 20f, 150f);
+            MotionEvent move = MotionEvent.obtain(t, t + 1, MotionEvent.ACTION_MOVE, 20.5f, 150f, 0);
+            try {
+                for (int i = 2; i <= 600; i++) {
+                    move.addBatch(t + i, 20f + i * 0.5f, 150f + (float) Math.sin(i / 20.0) * 60f, 1f, 1f, 0);
                 }
+                target.onTouchEvent(move);
+            } finally {
+                move.recycle();
             }
+            dispatch(target, t, t + 601, MotionEvent.ACTION_UP, 320f, 150f);
         }
-        return false;
+
+        assertEquals(pad.getSignatureSvg(), background.getSignatureSvg());
+        assertTrue(pad.getTransparentSignatureBitmap()
+                .sameAs(background.getTransparentSignatureBitmap()));
     }
 
-    /** True if any non-transparent pixel in the bitmap approximately matches the given color. */
-    private static boolean hasPixelOfColor(Bitmap bitmap, int color) {
-        final int expectedR = Color.red(color);
-        final int expectedG = Color.green(color);
-        final int expectedB = Color.blue(color);
-        final int maxDelta = 10; // tolerate anti-aliasing / blending
+    @Test
+    public void backgroundStrokeEngine_handsStateBackWhenDisabled() {
+        layout();
+        pad.setBackgroundStrokeEngine(true);
+        drawStroke(pad);
+        pad.setBackgroundStrokeEngine(false);
 
-        for (int x = 0; x < bitmap.getWidth(); x++) {
-            for (int y = 0; y < bitmap.getHeight(); y++) {
-                int pixel = bitmap.getPixel(x, y);
-                if (Color.alpha(pixel) == 0) {
+        assertTrue(hasInk(pad.getTransparentSignatureBitmap()));
+        assertTrue(pad.getSignatureSvg().contains("<path"));
+
+        pad.clear();
+        assertTrue(pad.isEmpty());
+        assertFalse(pad.getSignatureSvg().contains("<path"));
+    }
+
+    // --- outline rendering ----------------------------------------------------
+
+    @Test
+    public void renderMode_defaultsToPointsAndRoundTrips() {
+        assertEquals(SignaturePad.RENDER_MODE_POINTS, pad.getRenderMode());
+        pad.setRenderMode(SignaturePad.RENDER_MODE_OUTLINE);
+        assertEquals(SignaturePad.RENDER_MODE_OUTLINE, pad.getRenderMode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void renderMode_rejectsUnknownModes() {
+        pad.setRenderMode(42);
+    }
+
+    @Test
+    public void outlineRendering_matchesDotStampingWithinOnePixel() {
+        layout();
+        SignaturePad outlined = newPad();
+        layout(outlined, 400, 300);
+        outlined.setRenderMode(SignaturePad.RENDER_MODE_OUTLINE);
+
+        for (SignaturePad target : new SignaturePad[]{pad, outlined}) {
+            drawStroke(target);
+            drawDenseStroke(target);
+            drawPressureStroke(target, 1f);
+        }
+
+        Bitmap points = pad.getTransparentSignatureBitmap();
+        Bitmap outline = outlined.getTransparentSignatureBitmap();
+        assertEquals("the outline draws nothing the dots do not reach",
+                0, countUncovered(outline, points, 1));
+        assertEquals("the dots draw nothing the outline does not reach",
+                0, countUncovered(points, outline, 1));
+        assertEquals("the SVG is unaffected", pad.getSignatureSvg(), outlined.getSignatureSvg());
+    }
+
+    @Test
+    public void outlineRendering_stillDrawsTaps() {
+        layout();
+        pad.setRenderMode(SignaturePad.RENDER_MODE_OUTLINE);
+
+        dispatchTouch(pad, 50f, 50f);
+
+        assertTrue(hasInkIn(pad.getTransparentSignatureBitmap(), 45, 45, 56, 56));
+    }
+
+    @Test
+    public void outlineRendering_withTheBackgroundEngine_matchesTheSynchronousMode() {
+        layout();
+        pad.setRenderMode(SignaturePad.RENDER_MODE_OUTLINE);
+        SignaturePad background = newPad();
+        layout(background, 400, 300);
+        background.setRenderMode(SignaturePad.RENDER_MODE_OUTLINE);
+        background.setBackgroundStrokeEngine(true);
+
+        for (SignaturePad target : new SignaturePad[]{pad, background}) {
+            drawStroke(target);
+            drawDenseStroke(target);
+        }
+
+        assertTrue(pad.getTransparentSignatureBitmap()
+                .sameAs(background.getTransparentSignatureBitmap()));
+    }
+
+    /**
+     * Counts the pixels inked (alpha of at least half) in {@code a} that have no
+     * inked pixel in {@code b} within {@code tolerance} pixels.
+     */
+    private static int countUncovered(Bitmap a, Bitmap b, int tolerance) {
+        int uncovered = 0;
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                if (Color.alpha(a.getPixel(x, y)) < 128) {
                     continue;
                 }
-                if (Math.abs(Color.red(pixel) - expectedR) <= maxDelta
-                        && Math.abs(Color.green(pixel) - expectedG) <= maxDelta
-                        && Math.abs(Color.blue(pixel) - expectedB) <= maxDelta) {
-                    return true;
+                boolean covered = false;
+                for (int dy = -tolerance; dy <= tolerance && !covered; dy++) {
+                    for (int dx = -tolerance; dx <= tolerance && !covered; dx++) {
+                        int bx = x + dx;
+                        int by = y + dy;
+                        covered = bx >= 0 && by >= 0 && bx < b.getWidth() && by < b.getHeight()
+                                && Color.alpha(b.getPixel(bx, by)) >= 128;
+                    }
+                }
+                if (!covered) {
+                    uncovered++;
                 }
             }
         }
-        return false;
+        return uncovered;
+    }
+
+    // --- live stroke layer ---------------------------------------------------
+
+    @Test
+    public void liveStroke_isShownBeforeItIsCommittedOnActionUp() {
+        layout();
+        long t = SystemClock.uptimeMillis();
+        dispatch(pad, t, t, MotionEvent.ACTION_DOWN, 20f, 20f);
+        for (int i = 1; i <= 8; i++) {
+            dispatch(pad, t, t + i * 10L, MotionEvent.ACTION_MOVE, 20f + i * 15f, 20f + i * 8f);
+        }
+
+        assertFalse("the signature bitmap is untouched mid-stroke", hasInk(pad.peekSignatureBitmap()));
+        Bitmap screen = Bitmap.createBitmap(400, 300, Bitmap.Config.ARGB_8888);
+        pad.draw(new Canvas(screen));
+        assertTrue(hasInk(screen));
+
+        dispatch(pad, t, t + 90, MotionEvent.ACTION_UP, 140f, 84f);
+        assertTrue(hasInk(pad.peekSignatureBitmap()));
+        Bitmap committed = Bitmap.createBitmap(400, 300, Bitmap.Config.ARGB_8888);
+        pad.draw(new Canvas(committed));
+        assertTrue(committed.sameAs(pad.getTransparentSignatureBitmap()));
+    }
+
+    @Test
+    public void actionCancel_discardsTheStroke() {
+        layout();
+        SignaturePad retained = newPad();
+        layout(retained, 400, 300);
+        retained.setRetainedRendering(true);
+        SignaturePad background = newPad();
+        layout(background, 400, 300);
+        background.setBackgroundStrokeEngine(true);
+
+        for (SignaturePad target : new SignaturePad[]{pad, retained, background}) {
+            drawStroke(target);
+            String svg = target.getSignatureSvg();
+            Bitmap ink = target.getTransparentSignatureBitmap().copy(Bitmap.Config.ARGB_8888, false);
+
+            drawCancelledStroke(target);
+
+            assertFalse(target.isEmpty());
+            assertEquals(svg, target.getSignatureSvg());
+            assertTrue(ink.sameAs(target.getTransparentSignatureBitmap()));
+        }
+    }
+
+    @Test
+    public void actionCancel_onAnEmptyPad_leavesItEmpty() {
+        layout();
+        RecordingListener listener = new RecordingListener();
+        pad.setOnSignedListener(listener);
+
+        drawCancelledStroke(pad);
+
+        assertTrue(pad.isEmpty());
+        assertTrue(listener.onClearCalled);
+        assertFalse(pad.getSignatureSvg().contains("<path"));
+        assertFalse(hasInk(pad.getTransparentSignatureBitmap()));
+    }
+
+    /** Draw a stroke across the pad that is cancelled instead of lifted. */
+    @Test
+    public void actionCancel_afterAnExportMidStroke_discardsTheStroke() {
+        layout();
+        SignaturePad tiled = newPad();
+        layout(tiled, 400, 300);
+        tiled.setTiledBacking(true);
+        SignaturePad coverage = newPad();
+        layout(coverage, 400, 300);
+        coverage.setCoverageOnly(true);
+
+        for (SignaturePad target : new SignaturePad[]{pad, tiled, coverage}) {
+            drawStroke(target);
+            Bitmap ink = target.getTransparentSignatureBitmap().copy(Bitmap.Config.ARGB_8888, false);
+
+            long t = SystemClock.uptimeMillis();
+            dispatch(target, t, t, MotionEvent.ACTION_DOWN, 40f, 200f);
+            for (int i = 1; i <= 8; i++) {
+                dispatch(target, t, t + i * 10L, MotionEvent.ACTION_MOVE, 40f + i * 30f, 200f - i * 5f);
+            }
+            // The export shows the stroke, which the cancel still takes back.
+            target.getSignatureBitmap();
+            assertFalse(ink.sameAs(target.getTransparentSignatureBitmap()));
+            dispatch(target, t, t + 90, MotionEvent.ACTION_CANCEL, 280f, 160f);
+
+            assertTrue(ink.sameAs(target.getTransparentSignatureBitmap()));
+        }
+    }
+
+    private void drawCancelledStroke(SignaturePad target) {
+        long t = SystemClock.uptimeMillis();
+        dispatch(target, t, t, MotionEvent.ACTION_DOWN, 40f, 200f);
+        for (int i = 1; i <= 8; i++) {
+            dispatch(target, t, t + i * 10L, MotionEvent.ACTION_MOVE, 40f + i * 30f, 200f - i * 5f);
+        }
+        dispatch(target, t, t + 90, MotionEvent.ACTION_CANCEL, 280f, 160f);
+    }
+
+    // --- retained rendering --------------------------------------------------
+
+    @Test
+    public void retainedRendering_allocatesNoBitmapUntilAnExport() {
+        layout();
+        pad.setRetainedRendering(true);
+
+        drawStroke(pad);
+        dispatchTouch(pad, 300f, 250f);
+        pad.getSignatureSvg();
+
+        assertNull(pad.peekSignatureBitmap());
+        assertTrue(hasInk(pad.getTransparentSignatureBitmap()));
+        assertNull("the export is rendered offscreen", pad.peekSignatureBitmap());
+    }
+
+    @Test
+    public void retainedRendering_drawsTheViewLikeItsExport() {
+        layout();
+        pad.setRetainedRendering(true);
+        drawStroke(pad);
+        drawDenseStroke(pad);
+
+        Bitmap screen = Bitmap.createBitmap(400, 300, Bitmap.Config.ARGB_8888);
+        pad.draw(new Canvas(screen));
+
+        assertTrue(screen.sameAs(pad.getTransparentSignatureBitmap()));
+    }
+
+    @Test
+    public void retainedRendering_keepsEarlierInkUnderneath_andFlattensWhenDisabled() {
+        layout();
+        SignaturePad reference = newPad();
+        layout(reference, 400, 300);
+        for (SignaturePad target : new SignaturePad[]{pad, reference}) {
+            drawStroke(target);
+        }
+        pad.setRetainedRendering(true);
+        for (SignaturePad target : new SignaturePad[]{pad, reference}) {
+            drawDenseStroke(target);
+        }
+
+        assertTrue(reference.getTransparentSignatureBitmap()
+                .sameAs(pad.getTransparentSignatureBitmap()));
+        pad.setRetainedRendering(false);
+        assertTrue(reference.getTransparentSignatureBitmap()
+                .sameAs(pad.getTransparentSignatureBitmap()));
+    }
+
+    @Test
+    public void retainedRendering_clearDropsTheRetainedInk() {
+        layout();
+        pad.setRetainedRendering(true);
+        drawStroke(pad);
+
+        pad.clear();
+
+        assertTrue(pad.isEmpty());
+        assertFalse(hasInk(pad.getTransparentSignatureBitmap()));
+    }
+
+    // --- tiled backing ---------------------------------------------------------
+
+    @Test
+    public void tiledBacking_allocatesOnlyTheInkedTiles() {
+        layout(pad, 1024, 768);
+        pad.setTiledBacking(true);
+
+        drawStroke(pad);
+
+        SignaturePad.MemoryStats stats = pad.getMemoryStats();
+        assertEquals(1, stats.tiles);
+        assertEquals(256L * 256 * 4, stats.backingBytes);
+        assertEquals(1024L * 768 * 4, stats.fullBitmapBytes);
+        assertTrue(stats.liveStrokeBytes > 0);
+        assertTrue(stats.liveStrokeBytes < stats.fullBitmapBytes);
+
+        pad.clear();
+        assertEquals(0, pad.getMemoryStats().tiles);
+        assertNull(pad.getTransparentSignatureBitmap(true));
+    }
+
+    @Test
+    public void getStrokes_recordsEachStrokeUntilCleared() {
+        layout();
+        drawStroke(pad);
+        drawStroke(pad);
+
+        StrokeStore.Cursor strokes = pad.getStrokes();
+        assertEquals(2, strokes.getStrokeCount());
+        assertTrue(strokes.nextStroke());
+        assertTrue(strokes.nextSample());
+        assertEquals(20f, strokes.getX(), 0.01f);
+        assertEquals(20f, strokes.getY(), 0.01f);
+        assertTrue(strokes.getWidth() > 0);
+        assertTrue(pad.getMemoryStats().strokeBytes > 0);
+
+        pad.clear();
+        assertEquals(0, pad.getStrokes().getStrokeCount());
+    }
+
+    @Test
+    public void strokeEngine_addStroke_drawsTheCurvesThePadDrew() {
+        layout();
+        pad.setMinWidth(2f);
+        pad.setMaxWidth(8f);
+        pad.setVelocityFilterWeight(0.9f);
+        float density = activity.getResources().getDisplayMetrics().density;
+        StrokeEngine engine = new StrokeEngine(Math.round(2f * density), Math.round(8f * density), 0.9f);
+        StrokeStore engineStrokes = new StrokeStore(16, 2);
+        engine.setStrokeStore(engineStrokes);
+
+        // A stroke, then a tap that lifts at the very time and place it went
+        // down, which the engine gets as a single sample.
+        long t = SystemClock.uptimeMillis();
+        float[] xs = new float[10];
+        float[] ys = new float[10];
+        long[] times = new long[10];
+        float[] pressures = new float[10];
+        for (int i = 0; i < 10; i++) {
+            xs[i] = 20f + i * 15f + (i % 3) * 4f;
+            ys[i] = 20f + i * 8f;
+            times[i] = (t + i * (8 + i % 4)) * 1000000L;
+            pressures[i] = 1f;
+            int action = i == 0 ? MotionEvent.ACTION_DOWN : i == 9 ? MotionEvent.ACTION_UP : MotionEvent.ACTION_MOVE;
+            dispatch(pad, t, times[i] / 1000000L, action, xs[i], ys[i]);
+        }
+        engine.addStroke(xs, ys, times, pressures, 0, 10, null);
+        long tap = t + 500;
+        dispatch(pad, tap, tap, MotionEvent.ACTION_DOWN, 300f, 200f);
+        dispatch(pad, tap, tap, MotionEvent.ACTION_UP, 300f, 200f);
+        engine.addStroke(new float[]{300f}, new float[]{200f}, new long[]{tap * 1000000L},
+                new float[]{1f}, 0, 1, null);
+
+        assertEquals(pad.getSignatureSvg(), engine.buildSvg(pad.getWidth(), pad.getHeight()));
+        StrokeStore.Cursor drawn = pad.getStrokes();
+        StrokeStore.Cursor replayed = engineStrokes.cursor();
+        assertEquals(2, drawn.getStrokeCount());
+        assertEquals(2, replayed.getStrokeCount());
+        while (drawn.nextStroke()) {
+            assertTrue(replayed.nextStroke());
+            assertEquals(drawn.getStrokeSize(), replayed.getStrokeSize());
+            while (drawn.nextSample()) {
+                assertTrue(replayed.nextSample());
+                assertEquals(drawn.getX(), replayed.getX(), 0f);
+                assertEquals(drawn.getY(), replayed.getY(), 0f);
+                assertEquals(drawn.getTimestamp(), replayed.getTimestamp());
+                assertEquals(drawn.getWidth(), replayed.getWidth(), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void tiledBacking_movesTheInkOverWhenSwitched() {
+        layout();
+        drawStroke(pad);
+        Bitmap ink = pad.getTransparentSignatureBitmap().copy(Bitmap.Config.ARGB_8888, false);
+
+        pad.setTiledBacking(true);
+        assertNull(pad.peekSignatureBitmap());
+        assertTrue(ink.sameAs(pad.getTransparentSignatureBitmap()));
+
+        pad.setTiledBacking(false);
+        assertTrue(ink.sameAs(pad.peekSignatureBitmap()));
+    }
+
+    @Test
+    public void tiledBacking_setSignatureBitmap_drawsIntoTheTiles() {
+        layout();
+        drawStroke(pad);
+        Bitmap ink = pad.getTransparentSignatureBitmap().copy(Bitmap.Config.ARGB_8888, false);
+        SignaturePad tiled = newPad();
+        layout(tiled, 400, 300);
+        tiled.setTiledBacking(true);
+
+        tiled.setSignatureBitmap(ink);
+
+        assertFalse(tiled.isEmpty());
+        assertEquals(1, tiled.getMemoryStats().tiles);
+        assertTrue(ink.sameAs(tiled.getTransparentSignatureBitmap()));
+    }
+
+    // --- coverage only ---------------------------------------------------------
+
+    @Test
+    public void coverageOnly_keepsAnAlpha8Raster() {
+        layout();
+        pad.setCoverageOnly(true);
+        drawStroke(pad);
+
+        assertEquals(Bitmap.Config.ALPHA_8, pad.peekSignatureBitmap().getConfig());
+        assertEquals(400L * 300, pad.getMemoryStats().backingBytes);
+    }
+
+    @Test
+    public void coverageOnly_setPenColorRecoloursTheWholeSignature() {
+        layout();
+        pad.setCoverageOnly(true);
+        drawStroke(pad);
+
+        pad.setPenColor(Color.RED);
+
+        Bitmap export = pad.getTransparentSignatureBitmap();
+        assertTrue(hasPixelOfColor(export, Color.RED));
+        assertFalse(hasPixelOfColor(export, Color.BLACK));
+    }
+
+    @Test
+    public void coverageOnly_keepsTheInkWhenSwitched() {
+        layout();
+        drawStroke(pad);
+        Bitmap ink = pad.getTransparentSignatureBitmap().copy(Bitmap.Config.ARGB_8888, false);
+
+        pad.setCoverageOnly(true);
+        assertTrue(ink.sameAs(pad.getTransparentSignatureBitmap()));
+
+        pad.setCoverageOnly(false);
+        assertEquals(Bitmap.Config.ARGB_8888, pad.peekSignatureBitmap().getConfig());
+        assertTrue(ink.sameAs(pad.getTransparentSignatureBitmap()));
+    }
+
+    @Test
+    public void coverageOnly_saveThenRestore_restoresTheCoverage() {
+        layout();
+        pad.setCoverageOnly(true);
+        drawStroke(pad);
+
+        Parcelable state = pad.onSaveInstanceState();
+
+        SignaturePad restored = newPad();
+        layout(restored, 400, 300);
+        restored.setCoverageOnly(true);
+        restored.onRestoreInstanceState(state);
+
+        assertFalse(restored.isEmpty());
+        assertTrue(pad.getTransparentSignatureBitmap().sameAs(restored.getTransparentSignatureBitmap()));
+    }
+
+    @Test
+    public void coverageOnly_saveThenRestore_intoAPlainPad_keepsThePenColor() {
+        layout();
+        pad.setCoverageOnly(true);
+        pad.setPenColor(Color.RED);
+        drawStroke(pad);
+
+        Parcelable state = pad.onSaveInstanceState();
+
+        SignaturePad restored = newPad();
+        layout(restored, 400, 300);
+        restored.onRestoreInstanceState(state);
+
+        Bitmap export = restored.getTransparentSignatureBitmap();
+        assertTrue(hasPixelOfColor(export, Color.RED));
+        assertFalse(hasPixelOfColor(export, Color.BLACK));
+    }
+
+    @Test
+    public void coverageOnly_export_isKeptUntilTheInkOrPenColorChanges() {
+        layout();
+        pad.setCoverageOnly(true);
+        drawStroke(pad);
+
+        Bitmap export = pad.getTransparentSignatureBitmap();
+        assertSame(export, pad.getTransparentSignatureBitmap());
+
+        dispatchTouch(pad, 300f, 250f);
+        Bitmap redrawn = pad.getTransparentSignatureBitmap();
+        assertNotSame(export, redrawn);
+
+        pad.setPenColor(Color.RED);
+        assertNotSame(redrawn, pad.getTransparentSignatureBitmap());
+        assertTrue(hasPixelOfColor(pad.getTransparentSignatureBitmap(), Color.RED));
+    }
+
+    // --- frame coalescing ------------------------------------------------------
+
+    @Test
+    public void frameCoalescing_drawsOncePerFrame() {
+        layout();
+        pad.setFrameCoalescing(true);
+        pad.resetFrameStats();
+
+        drawStroke(pad);
+        assertEquals(10, pad.getFrameStats().events);
+        assertEquals(0, pad.getFrameStats().frames);
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(100));
+        assertEquals(1, pad.getFrameStats().frames);
+
+        Bitmap screen = Bitmap.createBitmap(400, 300, Bitmap.Config.ARGB_8888);
+        pad.draw(new Canvas(screen));
+        assertTrue(screen.sameAs(pad.getTransparentSignatureBitmap()));
+    }
+
+    @Test
+    public void frameCoalescing_immediateModeDrawsOncePerEvent() {
+        layout();
+        pad.resetFrameStats();
+
+        drawStroke(pad);
+
+        assertEquals(10, pad.getFrameStats().events);
+        assertEquals(10, pad.getFrameStats().frames);
+    }
+
+    @Test
+    public void frameCoalescing_disabling_drawsTheQueuedSamples() {
+        layout();
+        pad.setFrameCoalescing(true);
+        drawStroke(pad);
+
+        pad.setFrameCoalescing(false);
+
+        Bitmap screen = Bitmap.createBitmap(400, 300, Bitmap.Config.ARGB_8888);
+        pad.draw(new Canvas(screen));
+        assertTrue(hasInk(screen));
+    }
+
+    // --- resize -----------------------------------------------------------------
+
+    @Test
+    public void resizeMode_defaultsToKeep() {
+        assertEquals(SignaturePad.RESIZE_MODE_KEEP, pad.getResizeMode());
+        pad.setResizeMode(SignaturePad.RESIZE_MODE_FIT);
+        assertEquals(SignaturePad.RESIZE_MODE_FIT, pad.getResizeMode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setResizeMode_rejectsUnknownModes() {
+        pad.setResizeMode(3);
+    }
+
+    @Test
+    public void resize_keep_reallocatesWithTheInkInPlace() {
+        layout();
+        drawStroke(pad);
+        SignaturePad reference = newPad();
+        layout(reference, 600, 450);
+        drawStroke(reference);
+
+        layout(pad, 600, 450);
+
+        Bitmap export = pad.getTransparentSignatureBitmap();
+        assertEquals(600, export.getWidth());
+        assertEquals(450, export.getHeight());
+        assertTrue(reference.getTransparentSignatureBitmap().sameAs(export));
+        assertEquals(reference.getSignatureSvg(), pad.getSignatureSvg());
+    }
+
+    @Test
+    public void resize_fit_scalesTheInkFromItsCurves() {
+        layout();
+        drawStroke(pad);
+        Bitmap trimmed = pad.getTransparentSignatureBitmap(true);
+        pad.setResizeMode(SignaturePad.RESIZE_MODE_FIT);
+
+        layout(pad, 800, 600);
+
+        Bitmap scaled = pad.getTransparentSignatureBitmap(true);
+        assertEquals(trimmed.getWidth() * 2, scaled.getWidth(), 4);
+        assertEquals(trimmed.getHeight() * 2, scaled.getHeight(), 4);
+        assertTrue(pad.getSignatureSvg().contains("width=\"800\""));
+    }
+
+    @Test
+    public void resize_fit_thereAndBack_restoresTheInk() {
+        layout();
+        pad.setResizeMode(SignaturePad.RESIZE_MODE_FIT);
+        drawStroke(pad);
+        Bitmap original = pad.getTransparentSignatureBitmap().copy(Bitmap.Config.ARGB_8888, false);
+
+        layout(pad, 200, 300);
+        Bitmap narrow = pad.getTransparentSignatureBitmap();
+        assertEquals(200, narrow.getWidth());
+        assertTrue(hasInk(narrow));
+        layout(pad, 400, 300);
+
+        // Both resizes transform the ink from where it was drawn.
+        assertTrue(original.sameAs(pad.getTransparentSignatureBitmap()));
+    }
+
+    @Test
+    public void resize_stretch_thenDrawing_keepsTheSvgInTheNewCoordinates() {
+        layout();
+        pad.setResizeMode(SignaturePad.RESIZE_MODE_STRETCH);
+        drawStroke(pad);
+
+        layout(pad, 800, 300);
+        dispatchTouch(pad, 700f, 250f);
+
+        String svg = pad.getSignatureSvg();
+        assertTrue(svg.contains("width=\"800\""));
+        // The stroke that ended at x = 140 now ends at x = 280.
+        assertTrue(svg.contains("280"));
+        assertTrue(hasInkIn(pad.getTransparentSignatureBitmap(), 690, 240, 710, 260));
+    }
+
+    @Test
+    public void resize_setSignatureBitmap_isScaledAsPixels() {
+        layout();
+        pad.setResizeMode(SignaturePad.RESIZE_MODE_FIT);
+        Bitmap square = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+        square.eraseColor(Color.BLACK);
+        pad.setSignatureBitmap(square);
+
+        layout(pad, 800, 600);
+
+        // The 300px square centered in 400x300 becomes 600px centered in 800x600.
+        Bitmap export = pad.getTransparentSignatureBitmap();
+        assertEquals(Color.BLACK, export.getPixel(400, 300));
+        assertEquals(Color.BLACK, export.getPixel(110, 10));
+        assertEquals(Color.TRANSPARENT, export.getPixel(90, 300));
+    }
+
+    @Test
+    public void resize_repeatedShrinking_reusesTheBitmap() {
+        layout();
+        drawStroke(pad);
+        Bitmap bitmap = pad.peekSignatureBitmap();
+
+        for (int step = 1; step <= 5; step++) {
+            layout(pad, 400 - step * 20, 300 - step * 10);
+            pad.getSignatureSvg();
+            assertSame(bitmap, pad.peekSignatureBitmap());
+        }
+        assertEquals(300, bitmap.getWidth());
+        assertTrue(hasInk(bitmap));
+    }
+
+    @Test
+    public void resize_leavesABitmapAlreadyHandedOutAlone() {
+        layout();
+        drawStroke(pad);
+        Bitmap exported = pad.getTransparentSignatureBitmap();
+        Bitmap copy = exported.copy(Bitmap.Config.ARGB_8888, false);
+
+        layout(pad, 360, 280);
+        pad.getSignatureSvg();
+
+        assertEquals(400, exported.getWidth());
+        assertEquals(300, exported.getHeight());
+        assertTrue(copy.sameAs(exported));
+        assertEquals(360, pad.getTransparentSignatureBitmap().getWidth());
+    }
+
+    @Test
+    public void resize_retained_fitsTheRetainedInk() {
+        layout();
+        pad.setRetainedRendering(true);
+        pad.setResizeMode(SignaturePad.RESIZE_MODE_FIT);
+        drawStroke(pad);
+        Bitmap trimmed = pad.getTransparentSignatureBitmap(true);
+
+        layout(pad, 800, 600);
+
+        assertEquals(trimmed.getWidth() * 2, pad.getTransparentSignatureBitmap(true).getWidth(), 4);
+    }
+
+    // --- undo -------------------------------------------------------------------
+
+    /** Draw a short diagonal stroke starting at the given coordinates. */
+    private void drawStrokeAt(SignaturePad target, float x, float y) {
+        long t = SystemClock.uptimeMillis();
+        dispatch(target, t, t, MotionEvent.ACTION_DOWN, x, y);
+        for (int i = 1; i <= 8; i++) {
+            dispatch(target, t, t + i * 10L, MotionEvent.ACTION_MOVE, x + i * 10f, y + i * 4f);
+        }
+        dispatch(target, t, t + 90, MotionEvent.ACTION_UP, x + 90f, y + 36f);
+    }
+
+    @Test
+    public void undo_removesTheLastStroke_andRedoPutsItBack() {
+        layout();
+        drawStrokeAt(pad, 20f, 20f);
+        Bitmap one = pad.getTransparentSignatureBitmap().copy(Bitmap.Config.ARGB_8888, false);
+        String oneSvg = pad.getSignatureSvg();
+        drawStrokeAt(pad, 200f, 150f);
+        Bitmap two = pad.getTransparentSignatureBitmap().copy(Bitmap.Config.ARGB_8888, false);
+        String twoSvg = pad.getSignatureSvg();
+
+        assertTrue(pad.undo());
+        assertTrue(one.sameAs(pad.getTransparentSignatureBitmap()));
+        assertEquals(oneSvg, pad.getSignatureSvg());
+        assertEquals(1, pad.getStrokes().getStrokeCount());
+        assertTrue(pad.canRedo());
+
+        assertTrue(pad.redo());
+        assertTrue(two.sameAs(pad.getTransparentSignatureBitmap()));
+        assertEquals(twoSvg, pad.getSignatureSvg());
+        assertEquals(2, pad.getStrokes().getStrokeCount());
+        assertFalse(pad.canRedo());
+    }
+
+    @Test
+    public void undo_restoresFromTheNearestCheckpoint() {
+        layout();
+        pad.setUndoCheckpoints(2, 0);
+        Bitmap[] states = new Bitmap[5];
+        for (int i = 0; i < states.length; i++) {
+            drawStrokeAt(pad, 10f + i * 20f, 10f + i * 40f);
+            states[i] = pad.getTransparentSignatureBitmap().copy(Bitmap.Config.ARGB_8888, false);
+        }
+        assertTrue(pad.getMemoryStats().checkpointBytes > 0);
+
+        for (int i = states.length - 2; i >= 0; i--) {
+            assertTrue(pad.undo());
+            assertTrue("after undoing stroke " + (i + 1), states[i].sameAs(pad.getTransparentSignatureBitmap()));
+        }
+        assertTrue(pad.undo());
+
+        assertTrue(pad.isEmpty());
+        assertFalse(pad.canUndo());
+        assertFalse(hasInk(pad.getTransparentSignatureBitmap()));
+        assertEquals(0, pad.getMemoryStats().checkpointBytes);
+    }
+
+    @Test
+    public void undoCheckpoint_copiesOnlyTheTilesTheNextStrokeChanges() {
+        layout(pad, 1024, 768);
+        SignaturePad tiled = newPad();
+        layout(tiled, 1024, 768);
+        tiled.setTiledBacking(true);
+
+        for (SignaturePad target : new SignaturePad[]{pad, tiled}) {
+            target.setUndoCheckpoints(1, 0);
+            drawStrokeAt(target, 20f, 20f);
+            Bitmap one = target.getTransparentSignatureBitmap().copy(Bitmap.Config.ARGB_8888, false);
+            // Checkpointed first, but it only changes a blank tile.
+            drawStrokeAt(target, 700f, 600f);
+            Bitmap two = target.getTransparentSignatureBitmap().copy(Bitmap.Config.ARGB_8888, false);
+            assertEquals(0, target.getMemoryStats().checkpointBytes);
+
+            // Both checkpoints take the one inked tile it changes, once.
+            drawStrokeAt(target, 30f, 60f);
+            assertEquals(256L * 256 * 4, target.getMemoryStats().checkpointBytes);
+
+            assertTrue(target.undo());
+            assertTrue(two.sameAs(target.getTransparentSignatureBitmap()));
+            assertTrue(target.undo());
+            assertTrue(one.sameAs(target.getTransparentSignatureBitmap()));
+        }
+    }
+
+    @Test
+    public void undo_keepsASetSignatureBitmap() {
+        layout();
+        Bitmap square = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+        square.eraseColor(Color.BLACK);
+        pad.setSignatureBitmap(square);
+        Bitmap base = pad.getTransparentSignatureBitmap().copy(Bitmap.Config.ARGB_8888, false);
+        pad.setPenColor(Color.RED);
+        drawStrokeAt(pad, 10f, 200f);
+
+        assertTrue(pad.undo());
+
+        assertTrue(base.sameAs(pad.getTransparentSignatureBitmap()));
+        assertFalse(pad.isEmpty());
+        assertFalse(pad.canUndo());
+    }
+
+    @Test
+    public void undo_tiledBacking_restoresTheTiles() {
+        layout(pad, 1024, 768);
+        pad.setTiledBacking(true);
+        drawStrokeAt(pad, 20f, 20f);
+        Bitmap one = pad.getTransparentSignatureBitmap().copy(Bitmap.Config.ARGB_8888, false);
+        drawStrokeAt(pad, 700f, 600f);
+        assertEquals(2, pad.getMemoryStats().tiles);
+
+        assertTrue(pad.undo());
+
+        assertEquals(1, pad.getMemoryStats().tiles);
+        assertTrue(one.sameAs(pad.getTransparentSignatureBitmap()));
+    }
+
+    @Test
+    public void undo_retainedRendering_dropsTheRetainedStroke() {
+        layout();
+        pad.setRetainedRendering(true);
+        drawStrokeAt(pad, 20f, 20f);
+        Bitmap one = pad.getTransparentSignatureBitmap().copy(Bitmap.Config.ARGB_8888, false);
+        drawStrokeAt(pad, 200f, 150f);
+
+        assertTrue(pad.undo());
+        assertTrue(one.sameAs(pad.getTransparentSignatureBitmap()));
+        assertTrue(pad.redo());
+        assertTrue(hasInkIn(pad.getTransparentSignatureBitmap(), 240, 170, 300, 200));
+    }
+
+    @Test
+    public void drawing_dropsTheUndoneStrokes() {
+        layout();
+        drawStrokeAt(pad, 20f, 20f);
+        assertTrue(pad.undo());
+        assertTrue(pad.isEmpty());
+
+        drawStrokeAt(pad, 200f, 150f);
+
+        assertFalse(pad.canRedo());
+        assertFalse(pad.redo());
+        assertFalse(hasInkIn(pad.getTransparentSignatureBitmap(), 0, 0, 120, 60));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setUndoCheckpoints_rejectsNegativeValues() {
+        pad.setUndoCheckpoints(-1, 0);
+    }
+
+    // --- saved state as strokes ------------------------------------------------
+
+    @Test
+    public void savedStateStrokes_persistsTheStrokesInsteadOfAPng() {
+        layout();
+        pad.setSavedStateMode(SignaturePad.SAVED_STATE_STROKES);
+        drawStroke(pad);
+
+        Bundle bundle = (Bundle) pad.onSaveInstanceState();
+
+        assertNotNull(bundle.getByteArray("signatureStrokes"));
+        assertTrue(bundle.getByteArray("signatureStrokes").length < 200);
+        assertNull(bundle.getByteArray("signaturePng"));
+        assertNull(bundle.getString("signatureSvgPaths"));
+    }
+
+    @Test
+    public void savedStateStrokes_restoresTheSameInkAtTheSameSize() {
+        layout();
+        pad.setSavedStateMode(SignaturePad.SAVED_STATE_STROKES);
+        drawStroke(pad);
+        Bitmap drawn = pad.getTransparentSignatureBitmap().copy(Bitmap.Config.ARGB_8888, false);
+        String svg = pad.getSignatureSvg();
+        Parcelable state = pad.onSaveInstanceState();
+
+        SignaturePad restored = newPad();
+        layout(restored, 400, 300);
+        restored.onRestoreInstanceState(state);
+
+        assertFalse(restored.isEmpty());
+        assertTrue(drawn.sameAs(restored.getTransparentSignatureBitmap()));
+        assertEquals(svg, restored.getSignatureSvg());
+        assertEquals(1, restored.getStrokes().getStrokeCount());
+        assertTrue(restored.canUndo());
+    }
+
+    @Test
+    public void savedStateStrokes_rotated_fitsTheInkToTheNewSize() {
+        layout();
+        pad.setSavedStateMode(SignaturePad.SAVED_STATE_STROKES);
+        pad.setPenColor(Color.RED);
+        drawStroke(pad);
+        Parcelable state = pad.onSaveInstanceState();
+
+        SignaturePad restored = newPad();
+        layout(restored, 300, 400);
+        restored.onRestoreInstanceState(state);
+
+        // Scaled by 0.75 and centred vertically: (20, 20)-(140, 84) lands on
+        // (15, 102.5)-(105, 150.5).
+        Bitmap bitmap = restored.getTransparentSignatureBitmap();
+        assertTrue(hasInkIn(bitmap, 10, 95, 110, 158));
+        assertFalse(hasInkIn(bitmap, 0, 0, 300, 90));
+        assertTrue(hasPixelOfColor(bitmap, Color.RED));
+        assertTrue(restored.getSignatureSvg().contains("viewBox=\"0 0 300 400\""));
+    }
+
+    @Test
+    public void savedStateStrokes_beforeLayout_replaysOnLayoutAndSurvivesAResave() {
+        layout();
+        pad.setSavedStateMode(SignaturePad.SAVED_STATE_STROKES);
+        drawStroke(pad);
+        Bundle first = (Bundle) pad.onSaveInstanceState();
+
+        SignaturePad restored = newPad();
+        restored.onRestoreInstanceState(first);
+        Bundle second = (Bundle) restored.onSaveInstanceState();
+        assertNotNull(second.getByteArray("signatureStrokes"));
+
+        layout(restored, 400, 300);
+        restored.getViewTreeObserver().dispatchOnGlobalLayout();
+        assertFalse(restored.isEmpty());
+        assertEquals(1, restored.getStrokes().getStrokeCount());
+    }
+
+    @Test
+    public void savedStateStrokes_setSignatureBitmap_fallsBackToAPng() {
+        layout();
+        pad.setSavedStateMode(SignaturePad.SAVED_STATE_STROKES);
+        Bitmap square = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+        square.eraseColor(Color.BLACK);
+        pad.setSignatureBitmap(square);
+
+        Bundle bundle = (Bundle) pad.onSaveInstanceState();
+
+        assertNull(bundle.getByteArray("signatureStrokes"));
+        assertNotNull(bundle.getByteArray("signaturePng"));
+    }
+
+    @Test
+    public void savedStateStrokes_stillRestoresAPngSavedState() {
+        layout();
+        drawStroke(pad);
+        Parcelable state = pad.onSaveInstanceState();
+
+        SignaturePad restored = newPad();
+        restored.setSavedStateMode(SignaturePad.SAVED_STATE_STROKES);
+        layout(restored, 400, 300);
+        restored.onRestoreInstanceState(state);
+
+        assertFalse(restored.isEmpty());
+        assertTrue(restored.getSignatureSvg().contains("<path "));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setSavedStateMode_rejectsUnknownModes() {
+        pad.setSavedStateMode(2);
+    }
+
+    // --- asynchronous export ---------------------------------------------------
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /** Runs the exports when told to, as a background executor would later. */
+    private static final class QueuedExecutor implements Executor {
+        final List<Runnable> queued = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            queued.add(command);
+        }
+
+        void runAll() {
+            for (Runnable command : queued) {
+                command.run();
+            }
+            queued.clear();
+        }
+    }
+
+    private static final class Result<T> implements SignaturePad.ExportCallback<T> {
+        int calls;
+        T value;
+        Throwable error;
+
+        @Override
+        public void onExported(T result) {
+            calls++;
+            value = result;
+        }
+
+        @Override
+        public void onExportFailed(Throwable error) {
+            calls++;
+            this.error = error;
+        }
+    }
+
+    @Test
+    public void asyncExports_matchTheSynchronousOnes() {
+        layout();
+        drawStrokeAt(pad, 20f, 20f);
+        drawStrokeAt(pad, 200f, 150f);
+        Result<Bitmap> bitmap = new Result<>();
+        Result<Bitmap> transparent = new Result<>();
+        Result<Bitmap> trimmed = new Result<>();
+        Result<String> svg = new Result<>();
+
+        pad.getSignatureBitmapAsync(DIRECT, bitmap);
+        pad.getTransparentSignatureBitmapAsync(false, DIRECT, transparent);
+        pad.getTransparentSignatureBitmapAsync(true, DIRECT, trimmed);
+        SignaturePad.ExportTask task = pad.getSignatureSvgAsync(DIRECT, svg);
+        // The results are delivered on the main thread.
+        assertEquals(0, svg.calls);
+        assertFalse(task.isDone());
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertTrue(task.isDone());
+        assertEquals(1, svg.calls);
+        assertNull(svg.error);
+        assertEquals(pad.getSignatureSvg(), svg.value);
+        assertTrue(pad.getSignatureBitmap().sameAs(bitmap.value));
+        assertTrue(pad.getTransparentSignatureBitmap().sameAs(transparent.value));
+        assertTrue(pad.getTransparentSignatureBitmap(true).sameAs(trimmed.value));
+    }
+
+    @Test
+    public void asyncExport_keepsTheSignatureAsItWasWhenStarted() {
+        layout();
+        drawStrokeAt(pad, 20f, 20f);
+        Bitmap before = pad.getTransparentSignatureBitmap().copy(Bitmap.Config.ARGB_8888, false);
+        String beforeSvg = pad.getSignatureSvg();
+        QueuedExecutor executor = new QueuedExecutor();
+        Result<Bitmap> bitmap = new Result<>();
+        Result<String> svg = new Result<>();
+
+        pad.getTransparentSignatureBitmapAsync(false, executor, bitmap);
+        pad.getSignatureSvgAsync(executor, svg);
+        drawStrokeAt(pad, 200f, 150f);
+        executor.runAll();
+        pad.clear();
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertTrue(before.sameAs(bitmap.value));
+        assertEquals(beforeSvg, svg.value);
+    }
+
+    @Test
+    public void asyncExport_cancelled_neverCallsBack() {
+        layout();
+        drawStroke(pad);
+        QueuedExecutor executor = new QueuedExecutor();
+        Result<Bitmap> before = new Result<>();
+        Result<Bitmap> after = new Result<>();
+
+        SignaturePad.ExportTask beforeRun = pad.getSignatureBitmapAsync(executor, before);
+        SignaturePad.ExportTask afterRun = pad.getSignatureBitmapAsync(executor, after);
+        assertTrue(beforeRun.cancel());
+        executor.runAll();
+        assertTrue(afterRun.cancel());
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(0, before.calls);
+        assertEquals(0, after.calls);
+        assertTrue(beforeRun.isCancelled());
+        assertTrue(afterRun.isDone());
+        assertFalse(afterRun.cancel());
+    }
+
+    @Test
+    public void asyncTrimmedExport_ofABlankPad_isNull() {
+        layout();
+        Result<Bitmap> trimmed = new Result<>();
+
+        pad.getTransparentSignatureBitmapAsync(true, DIRECT, trimmed);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(1, trimmed.calls);
+        assertNull(trimmed.value);
+        assertNull(trimmed.error);
+    }
+
+    @Test
+    public void asyncExport_ofABitmapSignature_copiesItsPixels() {
+        layout();
+        Bitmap source = Bitmap.createBitmap(40, 30, Bitmap.Config.ARGB_8888);
+        new Canvas(source).drawColor(Color.BLUE);
+        pad.setSignatureBitmap(source);
+        drawStroke(pad);
+        Result<Bitmap> transparent = new Result<>();
+        Result<Bitmap> trimmed = new Result<>();
+
+        pad.getTransparentSignatureBitmapAsync(false, DIRECT, transparent);
+        pad.getTransparentSignatureBitmapAsync(true, DIRECT, trimmed);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertTrue(pad.getTransparentSignatureBitmap().sameAs(transparent.value));
+        assertTrue(pad.getTransparentSignatureBitmap(true).sameAs(trimmed.value));
+    }
+
+    @Test
+    public void writeSignatureSvg_streamsWhatGetSignatureSvgReturns() throws Exception {
+        layout();
+        drawStrokeAt(pad, 20f, 20f);
+        drawStrokeAt(pad, 200f, 150f);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StringBuilder appended = new StringBuilder();
+
+        pad.writeSignatureSvg(out);
+        pad.writeSignatureSvg(appended);
+
+        String svg = pad.getSignatureSvg();
+        assertEquals(svg, new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(svg, appended.toString());
+    }
+
+    // --- scaled export -----------------------------------------------------------
+
+    @Test
+    public void getSignatureBitmap_scaled_rendersTheCurvesAtTheNewSize() {
+        layout();
+        drawStroke(pad);
+
+        Bitmap scaled = pad.getSignatureBitmap(1200, 900);
+
+        assertEquals(1200, scaled.getWidth());
+        assertEquals(900, scaled.getHeight());
+        assertEquals(Color.WHITE, scaled.getPixel(5, 5));
+        // The stroke that ended at (140, 84) now ends at (420, 252).
+        assertTrue(scaled.getPixel(420, 252) != Color.WHITE);
+        assertEquals(Color.WHITE, scaled.getPixel(460, 292));
+    }
+
+    @Test
+    public void writeSignaturePng_matchesTheScaledBitmap() throws Exception {
+        layout();
+        drawStroke(pad);
+        Bitmap expected = pad.getSignatureBitmap(2400, 1800);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // 2400px rows are rendered in bands of 436 rows, so the stroke, from
+        // y = 120 to y = 504, crosses the first band boundary.
+        pad.writeSignaturePng(out, 6f, false);
+
+        byte[] png = out.toByteArray();
+        Bitmap decoded = BitmapFactory.decodeByteArray(png, 0, png.length);
+        assertEquals(2400, decoded.getWidth());
+        assertEquals(1800, decoded.getHeight());
+        assertTrue(expected.sameAs(decoded.copy(Bitmap.Config.ARGB_8888, false)));
+    }
+
+    @Test
+    public void writeSignaturePng_transparent_keepsTheBackgroundClear() throws Exception {
+        layout();
+        drawStroke(pad);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        pad.writeSignaturePng(out, 800, 600, true);
+
+        byte[] png = out.toByteArray();
+        Bitmap decoded = BitmapFactory.decodeByteArray(png, 0, png.length);
+        assertEquals(Color.TRANSPARENT, decoded.getPixel(5, 5));
+        assertTrue(hasInkIn(decoded, 270, 160, 290, 176));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getSignatureBitmap_scaled_rejectsEmptySizes() {
+        layout();
+        pad.getSignatureBitmap(0, 100);
+    }
+
+    // --- #94: setSignatureBitmap(null) clears instead of crashing ------------
+
+    @Test
+    public void setSignatureBitmap_null_clearsPadWithoutThrowing() {
+        // Passing null used to NPE (clearView() -> signature.getWidth()). It must
+        // now clear the pad gracefully. Gates the null guard: without it, the
+        // laid-out branch dereferences the null bitmap and throws.
+        layout();
+        drawStroke(pad);
+        assertFalse("precondition: pad has content", pad.isEmpty());
+
+        pad.setSignatureBitmap(null);
+
+        assertTrue("setSignatureBitmap(null) clears the pad", pad.isEmpty());
+    }
+
+    @Test
+    public void setSignatureBitmap_null_beforeLayout_doesNotThrow() {
+        // The not-laid-out branch also dereferenced the bitmap (deferred via the
+        // layout listener). The guard runs before the isLaidOut() check, so a null
+        // passed on a 0x0 view is handled without throwing too.
+        assertEquals(0, pad.getWidth());
+        pad.setSignatureBitmap(null);
+        assertTrue("a null bitmap on an un-laid-out pad leaves it empty",
+                pad.isEmpty());
+    }
+
+    /**
+     * Dispatch a double tap so the GestureDetector fires onDoubleTap(). The
+     * second tap's down-time must fall within [DOUBLE_TAP_MIN_TIME (40ms),
+     * DOUBLE_TAP_TIMEOUT (300ms)] after the first tap's up-time, so the event
+     * times are spaced explicitly rather than read from the (frozen) test clock.
+     */
+    private void doubleTap(SignaturePad target, float x, float y) {
+        long t = SystemClock.uptimeMillis();
+        dispatch(target, t, t, MotionEvent.ACTION_DOWN, x, y);
+        dispatch(target, t, t + 10, MotionEvent.ACTION_UP, x, y);
+        long t2 = t + 110; // 100ms after the first up: inside the double-tap window
+        dispatch(target, t2, t2, MotionEvent.ACTION_DOWN, x, y);
+        dispatch(target, t2, t2 + 10, MotionEvent.ACTION_UP, x, y);
+    }
+
+    /** True if any pixel in the bitmap is non-transparent. */
+    private static boolean hasInk(Bitmap bitmap) {
+        for (int x = 0; x < bitmap.getWidth(); x++) {
+            for (int y = 0; y < bitmap.getHeight(); y++) {
+                if (Color.alpha(bitmap.getPixel(x, y)) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** True if any pixel inside [left, right) x [top, bottom) is non-transparent. */
+    private static boolean hasInkIn(Bitmap bitmap, int left, int top, int right, int bottom) {
+        for (int x = left; x < right; x++) {
+            for (int y = top; y < bottom; y++) {
+                if (Color.alpha(bitmap.getPixel(x, y)) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** True if any non-transparent pixel in the bitmap approximately matches the given color. */
+    private static boolean hasPixelOfColor(Bitmap bitmap, int color) {
+        final int expectedR = Color.red(color);
+        final int expectedG = Color.green(color);
+        final int expectedB = Color.blue(color);
+        final int maxDelta = 10; // tolerate anti-aliasing / blending
+
+        for (int x = 0; x < bitmap.getWidth(); x++) {
+            for (int y = 0; y < bitmap.getHeight(); y++) {
+                int pixel = bitmap.getPixel(x, y);
+                if (Color.alpha(pixel) == 0) {
+                    continue;
+                }
+                if (Math.abs(Color.red(pixel) - expectedR) <= maxDelta
+                        && Math.abs(Color.green(pixel) - expectedG) <= maxDelta
+                        && Math.abs(Color.blue(pixel) - expectedB) <= maxDelta) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Counts the area invalidations that redraw the ink as it is drawn. */
+    private static final class InvalidateCountingPad extends SignaturePad {
+        int invalidations;
+
+        InvalidateCountingPad(Activity activity) {
+            super(activity, null);
+        }
+
+        @Override
+        public void invalidate(int l, int t, int r, int b) {
+            invalidations++;
+            super.invalidate(l, t, r, b);
+        }
     }
 
     private static final class RecordingListener implements SignaturePad.OnSignedListener {